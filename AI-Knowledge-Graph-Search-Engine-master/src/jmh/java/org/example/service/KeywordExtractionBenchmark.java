@@ -0,0 +1,128 @@
+package org.example.service;
+
+import org.example.model.Ticket;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link AIService#extractKeywords} and {@link AIService#calculateSimilarity}
+ * on typical ticket text, next to the regex, split and HashMap versions they replaced.
+ * Add -prof gc to the JMH arguments for the bytes allocated per call:
+ * mvn -Pbench test-compile exec:exec -Dbench="KeywordExtraction -prof gc"
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class KeywordExtractionBenchmark {
+    private static final String TITLE = "Login fails after password reset";
+    private static final String DESCRIPTION = "Users report that the SSO redirect loops endlessly and the application "
+            + "crashes with a NullPointerException in the authentication module. This is blocking the whole sales "
+            + "team since Monday morning; restarting the browser or clearing cookies does not help. Steps to "
+            + "reproduce: reset password, log in, observe redirect. Expected: dashboard loads. Actual: the redirect "
+            + "repeats and eventually the server returns an error page. Logs attached show repeated token refresh "
+            + "errors.";
+
+    private AIService aiService;
+    private String text;
+    private Ticket ticket;
+    private Ticket similar;
+
+    @Setup
+    public void setUp() {
+        aiService = new AIService();
+        text = TITLE + " " + DESCRIPTION;
+        ticket = new Ticket("1", TITLE, DESCRIPTION, "OPEN", "HIGH", "BUG", null);
+        similar = new Ticket("2", "Password reset broken",
+                "Users cannot log in after a password reset; the SSO redirect loops and the token refresh fails.",
+                "OPEN", "HIGH", "BUG", null);
+    }
+
+    @Benchmark
+    public List<String> extractKeywords() {
+        return aiService.extractKeywords(text);
+    }
+
+    @Benchmark
+    public List<String> extractKeywordsBaseline() {
+        return Baseline.extractKeywords(text);
+    }
+
+    @Benchmark
+    public double calculateSimilarity() {
+        return aiService.calculateSimilarity(ticket, similar);
+    }
+
+    @Benchmark
+    public double calculateSimilarityBaseline() {
+        return Baseline.calculateSimilarity(ticket, similar);
+    }
+
+    // The keyword and similarity code as it was before the term count tables
+    static final class Baseline {
+        static List<String> extractKeywords(String text) {
+            Map<String, Integer> wordFrequency = new HashMap<>();
+            String[] words = text.toLowerCase()
+                    .replaceAll("[^a-z0-9\\s]", "")
+                    .split("\\s+");
+
+            for (String word : words) {
+                if (word.length() > 4) {
+                    wordFrequency.put(word, wordFrequency.getOrDefault(word, 0) + 1);
+                }
+            }
+
+            return wordFrequency.entrySet().stream()
+                    .sorted((e1, e2) -> e2.getValue().compareTo(e1.getValue()))
+                    .limit(10)
+                    .map(Map.Entry::getKey)
+                    .toList();
+        }
+
+        static double calculateSimilarity(Ticket ticket1, Ticket ticket2) {
+            Set<String> words1 = extractWords(ticket1.getTitle() + " " + ticket1.getDescription());
+            Set<String> words2 = extractWords(ticket2.getTitle() + " " + ticket2.getDescription());
+
+            Set<String> intersection = new HashSet<>(words1);
+            intersection.retainAll(words2);
+
+            Set<String> union = new HashSet<>(words1);
+            union.addAll(words2);
+
+            if (union.isEmpty())
+                return 0.0;
+            return (double) intersection.size() / union.size();
+        }
+
+        private static Set<String> extractWords(String text) {
+            String[] words = text.toLowerCase()
+                    .replaceAll("[^a-z0-9\\s]", "")
+                    .split("\\s+");
+
+            Set<String> wordSet = new HashSet<>();
+            for (String word : words) {
+                if (word.length() > 3) {
+                    wordSet.add(word);
+                }
+            }
+            return wordSet;
+        }
+    }
+}
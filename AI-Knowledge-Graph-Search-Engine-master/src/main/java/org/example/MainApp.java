@@ -8,6 +8,8 @@ import javafx.scene.control.Alert;
 import javafx.stage.Stage;
 import org.example.config.AppConfig;
 import org.example.repository.Neo4jConnection;
+import org.example.search.SearchEngine;
+import org.example.service.SearchFanOut;
 
 public class MainApp extends Application {
 
@@ -34,6 +36,11 @@ public class MainApp extends Application {
             System.exit(1);
         }
 
+        Neo4jConnection.getInstance().ensureIndexes();
+
+        // Load search indexes in the background
+        SearchEngine.getInstance().start();
+
         FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/MainWindow.fxml"));
         Parent root = loader.load();
 
@@ -45,6 +52,13 @@ public class MainApp extends Application {
         primaryStage.show();
     }
 
+    @Override
+    public void stop() {
+        // Persist pending index changes so the next start does not rebuild
+        SearchEngine.getInstance().stop();
+        SearchFanOut.getInstance().shutdown();
+    }
+
     public static void main(String[] args) {
         launch(args);
     }
@@ -55,6 +55,32 @@ public class AppConfig {
         return properties.getProperty(key, defaultValue);
     }
 
+    public int getIntProperty(String key, int defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Warning: invalid integer for " + key + ": " + value);
+            return defaultValue;
+        }
+    }
+
+    public double getDoubleProperty(String key, double defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Warning: invalid number for " + key + ": " + value);
+            return defaultValue;
+        }
+    }
+
     public String getAppName() {
         return getProperty("app.name", "AI Knowledge Graph");
     }
@@ -8,14 +8,26 @@ import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
+import javafx.scene.text.Text;
+import javafx.scene.text.TextFlow;
 import javafx.geometry.Pos;
+import javafx.geometry.Side;
 import javafx.fxml.FXMLLoader;
 
+import org.example.exception.ValidationException;
 import org.example.model.Ticket;
+import org.example.repository.Page;
 import org.example.repository.TicketRepository;
+import org.example.search.Highlight;
+import org.example.search.SearchDocuments;
+import org.example.service.AIService;
+import org.example.service.SearchService;
 
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.ResourceBundle;
 
 public class MainController implements Initializable {
@@ -69,11 +81,18 @@ public class MainController implements Initializable {
     private Button activeButton;
     private ObservableList<Ticket> ticketList;
     private TicketRepository ticketRepository;
+    private SearchService searchService;
+    private AIService aiService;
+    private ContextMenu searchSuggestions;
+    // Matched passages of the current search results, by ticket id and field
+    private Map<String, Map<String, Highlight>> searchHighlights = new HashMap<>();
 
     @Override
     public void initialize(URL url, ResourceBundle resourceBundle) {
         // Initialize repository
         ticketRepository = new TicketRepository();
+        searchService = new SearchService();
+        aiService = new AIService();
 
         // Set active button
         setActiveButton(btnDashboard);
@@ -84,6 +103,7 @@ public class MainController implements Initializable {
 
         // Setup filters
         setupFilters();
+        setupSearchSuggestions();
 
         // Load data from Neo4j
         loadTicketsFromDatabase();
@@ -111,6 +131,38 @@ public class MainController implements Initializable {
         priorityFilter.setValue("All");
     }
 
+    // Completions under the search box, refreshed on every keystroke
+    private void setupSearchSuggestions() {
+        searchSuggestions = new ContextMenu();
+        searchField.textProperty().addListener((observable, oldText, newText) -> {
+            List<String> suggestions = searchService.getSuggestedSearchTerms(newText);
+            if (suggestions.isEmpty() || !searchField.isFocused()) {
+                searchSuggestions.hide();
+                return;
+            }
+            List<MenuItem> items = new ArrayList<>();
+            for (String suggestion : suggestions) {
+                MenuItem item = new MenuItem(suggestion);
+                item.setOnAction(event -> {
+                    searchField.setText(suggestion);
+                    searchField.positionCaret(suggestion.length());
+                    searchSuggestions.hide();
+                    handleSearch();
+                });
+                items.add(item);
+            }
+            searchSuggestions.getItems().setAll(items);
+            if (!searchSuggestions.isShowing()) {
+                searchSuggestions.show(searchField, Side.BOTTOM, 0, 0);
+            }
+        });
+        searchField.focusedProperty().addListener((observable, wasFocused, focused) -> {
+            if (!focused) {
+                searchSuggestions.hide();
+            }
+        });
+    }
+
     private void loadTicketsFromDatabase() {
         try {
             List<Ticket> tickets = ticketRepository.findAll();
@@ -153,6 +205,7 @@ public class MainController implements Initializable {
         colAllCreatedAt.setCellValueFactory(new PropertyValueFactory<>("createdAtFormatted"));
 
         // Apply custom cell factories
+        colAllTitle.setCellFactory(col -> createTitleCell());
         colAllStatus.setCellFactory(col -> createStatusCell());
         colAllPriority.setCellFactory(col -> createPriorityCell());
 
@@ -199,6 +252,70 @@ public class MainController implements Initializable {
         allTicketsTable.setItems(ticketList);
     }
 
+    // Search results show matched title words in bold and the best matching passage as a tooltip
+    private TableCell<Ticket, String> createTitleCell() {
+        return new TableCell<>() {
+            @Override
+            protected void updateItem(String title, boolean empty) {
+                super.updateItem(title, empty);
+                Ticket ticket = empty || getIndex() >= getTableView().getItems().size() ? null
+                        : getTableView().getItems().get(getIndex());
+                Map<String, Highlight> highlights = ticket != null ? searchHighlights.get(ticket.getId()) : null;
+                setTooltip(null);
+                if (empty || title == null || highlights == null || highlights.isEmpty()) {
+                    setText(empty ? null : title);
+                    setGraphic(null);
+                    if (ticket != null && ticket.getSummary() != null && !ticket.getSummary().isBlank()) {
+                        setTooltip(wrappedTooltip(ticket.getSummary()));
+                    }
+                    return;
+                }
+                Highlight titleHighlight = highlights.get(SearchDocuments.TITLE);
+                if (titleHighlight != null) {
+                    setGraphic(highlightedText(titleHighlight));
+                    setText(null);
+                } else {
+                    setGraphic(null);
+                    setText(title);
+                }
+                for (Highlight highlight : highlights.values()) {
+                    if (!SearchDocuments.TITLE.equals(highlight.getField())) {
+                        setTooltip(wrappedTooltip(highlight.format("«", "»")));
+                        break;
+                    }
+                }
+            }
+        };
+    }
+
+    private static Tooltip wrappedTooltip(String text) {
+        Tooltip tooltip = new Tooltip(text);
+        tooltip.setWrapText(true);
+        tooltip.setMaxWidth(480);
+        return tooltip;
+    }
+
+    private static TextFlow highlightedText(Highlight highlight) {
+        TextFlow flow = new TextFlow();
+        String fragment = highlight.getFragment();
+        int last = 0;
+        for (int i = 0; i < highlight.getRangeCount(); i++) {
+            int start = highlight.getRangeStart(i);
+            int end = highlight.getRangeEnd(i);
+            if (start > last) {
+                flow.getChildren().add(new Text(fragment.substring(last, start)));
+            }
+            Text match = new Text(fragment.substring(start, end));
+            match.setStyle("-fx-font-weight: bold;");
+            flow.getChildren().add(match);
+            last = end;
+        }
+        if (last < fragment.length()) {
+            flow.getChildren().add(new Text(fragment.substring(last)));
+        }
+        return flow;
+    }
+
     private TableCell<Ticket, String> createStatusCell() {
         return new TableCell<>() {
             @Override
@@ -285,7 +402,9 @@ public class MainController implements Initializable {
 
     @FXML
     private void handleTickets() {
+        searchHighlights = new HashMap<>();
         setActiveButton(btnTickets);
+        allTicketsTable.setItems(ticketList);
         showTicketsView();
         lblPageTitle.setText("All Tickets");
     }
@@ -333,13 +452,49 @@ public class MainController implements Initializable {
 
     @FXML
     private void handleSearch() {
+        searchSuggestions.hide();
         String query = searchField.getText();
-        if (!query.isEmpty()) {
-            showAlert("Search", "Searching for: " + query, Alert.AlertType.INFORMATION);
-            // TODO: Implement search functionality
+        if (query.isBlank()) {
+            handleTickets();
+            return;
+        }
+
+        // Supports field filters, e.g. status:OPEN assignee:jdoe "login error" -vpn created:>2026-01-01
+        try {
+            Page<Ticket> results = searchService.queryTickets(query.trim(), 0);
+            searchHighlights = searchService.getTicketHighlights(query, results.getItems());
+            setActiveButton(btnTickets);
+            allTicketsTable.setItems(FXCollections.observableArrayList(results.getItems()));
+            showTicketsView();
+            lblPageTitle.setText("Search: " + results.getItems().size() + " of " + results.getTotalCount() +
+                    (results.isTotalExact() ? "" : "+") + " tickets");
+            if (results.getItems().isEmpty()) {
+                offerCorrection(query);
+            }
+        } catch (ValidationException e) {
+            showAlert("Search", e.getMessage(), Alert.AlertType.WARNING);
+        } catch (Exception e) {
+            System.err.println("❌ Error searching tickets: " + e.getMessage());
+            showAlert("Search", "Search failed: " + e.getMessage(), Alert.AlertType.ERROR);
         }
     }
 
+    // Offers a corrected query under the search box when a search found nothing
+    private void offerCorrection(String query) {
+        String correction = searchService.getDidYouMean(query);
+        if (correction == null) {
+            return;
+        }
+        MenuItem item = new MenuItem("Did you mean: " + correction);
+        item.setOnAction(event -> {
+            searchField.setText(correction);
+            searchField.positionCaret(correction.length());
+            handleSearch();
+        });
+        searchSuggestions.getItems().setAll(item);
+        searchSuggestions.show(searchField, Side.BOTTOM, 0, 0);
+    }
+
     @FXML
     private void handleViewAllTickets() {
         handleTickets();
@@ -424,6 +579,8 @@ public class MainController implements Initializable {
             }
 
             controller.setSaveCallback((savedTicket, isEdit) -> {
+                // Stored with the ticket so the table's tooltip never summarizes again
+                aiService.summarize(savedTicket);
                 if (isEdit) {
                     // Update ticket in database
                     Ticket updated = ticketRepository.update(savedTicket);
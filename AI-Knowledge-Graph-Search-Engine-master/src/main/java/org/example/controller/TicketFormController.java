@@ -6,6 +6,8 @@ import javafx.fxml.Initializable;
 import javafx.scene.control.*;
 import javafx.stage.Stage;
 import org.example.model.Ticket;
+import org.example.model.enums.Priority;
+import org.example.service.AIService;
 
 import java.net.URL;
 import java.util.ResourceBundle;
@@ -134,14 +136,12 @@ public class TicketFormController implements Initializable {
         btnAnalyzeAI.setDisable(true);
         lblAIResult.setVisible(false);
 
-        // Simulate AI analysis (replace with actual AI service call)
-        new Thread(() -> {
+        String title = txtTitle.getText().trim();
+        Thread analysis = new Thread(() -> {
             try {
-                Thread.sleep(2000); // Simulate AI processing
-
-                // Demo AI result
-                String suggestedCategory = analyzeWithAI(description);
-                String suggestedPriority = determinePriority(description);
+                AIService aiService = new AIService();
+                String suggestedCategory = formCategory(aiService.classifyTicket(title, description), description);
+                String suggestedPriority = formPriority(aiService.suggestPriority(title, description));
 
                 javafx.application.Platform.runLater(() -> {
                     aiProgress.setVisible(false);
@@ -156,10 +156,31 @@ public class TicketFormController implements Initializable {
                             ", Priority: " + suggestedPriority);
                     lblAIResult.setVisible(true);
                 });
-            } catch (InterruptedException e) {
-                e.printStackTrace();
+            } catch (Exception e) {
+                javafx.application.Platform.runLater(() -> {
+                    aiProgress.setVisible(false);
+                    btnAnalyzeAI.setDisable(false);
+                    showAlert("AI analysis failed: " + e.getMessage(), Alert.AlertType.ERROR);
+                });
             }
-        }).start();
+        }, "ai-analysis");
+        analysis.setDaemon(true);
+        analysis.start();
+    }
+
+    // The AI's category when the form offers it, else the form's own keyword mapping
+    private String formCategory(String category, String description) {
+        for (String option : comboCategory.getItems()) {
+            if (option.equalsIgnoreCase(category)) {
+                return option;
+            }
+        }
+        return analyzeWithAI(description);
+    }
+
+    private String formPriority(Priority priority) {
+        String name = priority.name();
+        return name.charAt(0) + name.substring(1).toLowerCase();
     }
 
     private String analyzeWithAI(String description) {
@@ -185,21 +206,6 @@ public class TicketFormController implements Initializable {
         }
     }
 
-    private String determinePriority(String description) {
-        description = description.toLowerCase();
-
-        if (description.contains("critical") || description.contains("urgent") ||
-                description.contains("down") || description.contains("not working")) {
-            return "Critical";
-        } else if (description.contains("important") || description.contains("asap")) {
-            return "High";
-        } else if (description.contains("minor") || description.contains("enhancement")) {
-            return "Low";
-        } else {
-            return "Medium";
-        }
-    }
-
     private boolean validateForm() {
         if (txtTitle.getText().trim().isEmpty()) {
             showAlert("Please enter a ticket title", Alert.AlertType.WARNING);
@@ -0,0 +1,76 @@
+package org.example.model;
+
+import org.example.model.enums.CustomFieldType;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Definition of a field teams add to tickets, such as customer tier or region.
+ * Ticket values are kept as strings in the canonical form of the field's type.
+ */
+public class CustomField {
+    private String name;
+    private String label;
+    private CustomFieldType type;
+    private List<String> allowedValues; // ENUM fields only
+    private LocalDateTime createdAt;
+
+    public CustomField() {
+        this.allowedValues = new ArrayList<>();
+        this.createdAt = LocalDateTime.now();
+    }
+
+    public CustomField(String name, String label, CustomFieldType type) {
+        this();
+        this.name = name;
+        this.label = label;
+        this.type = type;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public void setLabel(String label) {
+        this.label = label;
+    }
+
+    public CustomFieldType getType() {
+        return type;
+    }
+
+    public void setType(CustomFieldType type) {
+        this.type = type;
+    }
+
+    public List<String> getAllowedValues() {
+        return allowedValues;
+    }
+
+    public void setAllowedValues(List<String> allowedValues) {
+        this.allowedValues = allowedValues;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    @Override
+    public String toString() {
+        return label != null ? label : name;
+    }
+}
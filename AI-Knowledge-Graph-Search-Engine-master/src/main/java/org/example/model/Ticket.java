@@ -1,6 +1,10 @@
 package org.example.model;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 public class Ticket {
     private String id;
@@ -16,8 +20,14 @@ public class Ticket {
     private LocalDateTime updatedAt;
     private LocalDateTime dueDate; // Added for SLA tracking
     private LocalDateTime resolvedAt; // Added for resolution tracking
+    private List<String> tags;
+    private Map<String, String> customFields; // Field name to value, see CustomField
+    private String summary;
+    private String summaryHash; // Hash of the description the summary was made from
 
     public Ticket() {
+        this.tags = new ArrayList<>();
+        this.customFields = new LinkedHashMap<>();
         this.createdAt = LocalDateTime.now();
         this.updatedAt = LocalDateTime.now();
     }
@@ -31,6 +41,8 @@ public class Ticket {
         this.priority = priority;
         this.category = category;
         this.categoryId = category; // Set both for compatibility
+        this.tags = new ArrayList<>();
+        this.customFields = new LinkedHashMap<>();
         this.assignedTo = assignedTo;
         this.createdAt = LocalDateTime.now();
         this.updatedAt = LocalDateTime.now();
@@ -143,6 +155,38 @@ public class Ticket {
         this.resolvedAt = resolvedAt;
     }
 
+    public List<String> getTags() {
+        return tags;
+    }
+
+    public void setTags(List<String> tags) {
+        this.tags = tags;
+    }
+
+    public Map<String, String> getCustomFields() {
+        return customFields;
+    }
+
+    public void setCustomFields(Map<String, String> customFields) {
+        this.customFields = customFields;
+    }
+
+    public String getSummary() {
+        return summary;
+    }
+
+    public void setSummary(String summary) {
+        this.summary = summary;
+    }
+
+    public String getSummaryHash() {
+        return summaryHash;
+    }
+
+    public void setSummaryHash(String summaryHash) {
+        this.summaryHash = summaryHash;
+    }
+
     public String getCreatedAtFormatted() {
         if (createdAt == null)
             return "";
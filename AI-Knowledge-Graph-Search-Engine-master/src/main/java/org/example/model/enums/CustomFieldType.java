@@ -0,0 +1,9 @@
+package org.example.model.enums;
+
+public enum CustomFieldType {
+    STRING,
+    LONG,
+    DOUBLE,
+    DATE,
+    ENUM
+}
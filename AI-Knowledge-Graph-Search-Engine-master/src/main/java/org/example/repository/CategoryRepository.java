@@ -8,9 +8,11 @@ import static org.neo4j.driver.Values.parameters;
 
 public class CategoryRepository {
     private final Driver driver;
+    private final ChangeFeed changeFeed;
 
     public CategoryRepository() {
         this.driver = Neo4jConnection.getInstance().getDriver();
+        this.changeFeed = ChangeFeed.getInstance();
     }
 
     public Category save(Category category) {
@@ -31,9 +33,10 @@ public class CategoryRepository {
                     "createdAt",
                     category.getCreatedAt() != null ? category.getCreatedAt().toString()
                             : LocalDateTime.now().toString(),
-                    "ticketCount", category.getTicketCount()));
-            return category;
+                    "ticketCount", category.getTicketCount())).consume();
         }
+        changeFeed.publish(ChangeEvent.upsert(ChangeEvent.EntityType.CATEGORY, category.getId(), category));
+        return category;
     }
 
     public Category findById(String id) {
@@ -85,8 +88,9 @@ public class CategoryRepository {
 
     public void delete(String id) {
         try (Session session = driver.session()) {
-            session.run("MATCH (c:Category {id: $id}) DETACH DELETE c", parameters("id", id));
+            session.run("MATCH (c:Category {id: $id}) DETACH DELETE c", parameters("id", id)).consume();
         }
+        changeFeed.publish(ChangeEvent.delete(ChangeEvent.EntityType.CATEGORY, id));
     }
 
     private Category mapToCategory(Map<String, Object> map) {
@@ -0,0 +1,67 @@
+package org.example.repository;
+
+/**
+ * A committed write on one of the repositories, published through {@link ChangeFeed}.
+ */
+public class ChangeEvent {
+    public enum EntityType {
+        TICKET,
+        KNOWLEDGE_BASE,
+        COMMENT,
+        CATEGORY,
+        CUSTOM_FIELD,
+        USER,
+        TEAM
+    }
+
+    public enum Operation {
+        UPSERT,
+        DELETE
+    }
+
+    private final EntityType entityType;
+    private final Operation operation;
+    private final String entityId;
+    private final Object entity;
+
+    public ChangeEvent(EntityType entityType, Operation operation, String entityId, Object entity) {
+        this.entityType = entityType;
+        this.operation = operation;
+        this.entityId = entityId;
+        this.entity = entity;
+    }
+
+    public static ChangeEvent upsert(EntityType entityType, String entityId, Object entity) {
+        return new ChangeEvent(entityType, Operation.UPSERT, entityId, entity);
+    }
+
+    public static ChangeEvent delete(EntityType entityType, String entityId) {
+        return new ChangeEvent(entityType, Operation.DELETE, entityId, null);
+    }
+
+    public EntityType getEntityType() {
+        return entityType;
+    }
+
+    public Operation getOperation() {
+        return operation;
+    }
+
+    public String getEntityId() {
+        return entityId;
+    }
+
+    // The saved entity for UPSERT events, null for DELETE
+    public Object getEntity() {
+        return entity;
+    }
+
+    @Override
+    public String toString() {
+        return "ChangeEvent{" +
+                "entityType=" + entityType +
+                ", operation=" + operation +
+                ", entityId='" + entityId + '\'' +
+                '}';
+    }
+}
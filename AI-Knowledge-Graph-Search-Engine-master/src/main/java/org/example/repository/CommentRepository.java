@@ -8,9 +8,11 @@ import static org.neo4j.driver.Values.parameters;
 
 public class CommentRepository {
     private final Driver driver;
+    private final ChangeFeed changeFeed;
 
     public CommentRepository() {
         this.driver = Neo4jConnection.getInstance().getDriver();
+        this.changeFeed = ChangeFeed.getInstance();
     }
 
     public Comment save(Comment comment) {
@@ -29,8 +31,21 @@ public class CommentRepository {
                     "createdAt",
                     comment.getCreatedAt() != null ? comment.getCreatedAt().toString() : LocalDateTime.now().toString(),
                     "isInternal", comment.isInternal(),
-                    "edited", comment.isEdited()));
-            return comment;
+                    "edited", comment.isEdited())).consume();
+        }
+        changeFeed.publish(ChangeEvent.upsert(ChangeEvent.EntityType.COMMENT, comment.getId(), comment));
+        return comment;
+    }
+
+    public List<Comment> findAll() {
+        try (Session session = driver.session()) {
+            String query = "MATCH (c:Comment) RETURN c ORDER BY c.createdAt";
+            Result result = session.run(query);
+            List<Comment> comments = new ArrayList<>();
+            while (result.hasNext()) {
+                comments.add(mapToComment(result.next().get("c").asMap()));
+            }
+            return comments;
         }
     }
 
@@ -46,6 +61,18 @@ public class CommentRepository {
         }
     }
 
+    public List<Comment> findCreatedSince(LocalDateTime since) {
+        try (Session session = driver.session()) {
+            String query = "MATCH (c:Comment) WHERE c.createdAt > $since RETURN c ORDER BY c.createdAt";
+            Result result = session.run(query, parameters("since", since.toString()));
+            List<Comment> comments = new ArrayList<>();
+            while (result.hasNext()) {
+                comments.add(mapToComment(result.next().get("c").asMap()));
+            }
+            return comments;
+        }
+    }
+
     public void delete(String id) {
         try (Session session = driver.session()) {
             session.run("MATCH (c:Comment {id: $id}) DETACH DELETE c", parameters("id", id));
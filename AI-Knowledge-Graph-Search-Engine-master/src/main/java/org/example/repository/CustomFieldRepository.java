@@ -0,0 +1,72 @@
+package org.example.repository;
+
+import org.example.model.CustomField;
+import org.example.model.enums.CustomFieldType;
+import org.neo4j.driver.*;
+import java.time.LocalDateTime;
+import java.util.*;
+import static org.neo4j.driver.Values.parameters;
+
+public class CustomFieldRepository {
+    private final Driver driver;
+    private final ChangeFeed changeFeed;
+
+    public CustomFieldRepository() {
+        this.driver = Neo4jConnection.getInstance().getDriver();
+        this.changeFeed = ChangeFeed.getInstance();
+    }
+
+    public CustomField save(CustomField field) {
+        try (Session session = driver.session()) {
+            String query = "MERGE (f:CustomField {name: $name}) " +
+                    "SET f.label = $label, f.type = $type, f.allowedValues = $allowedValues, " +
+                    "f.createdAt = coalesce(f.createdAt, $createdAt) RETURN f";
+
+            session.run(query, parameters(
+                    "name", field.getName(),
+                    "label", field.getLabel(),
+                    "type", field.getType().name(),
+                    "allowedValues", field.getAllowedValues() != null ? field.getAllowedValues() : new ArrayList<>(),
+                    "createdAt",
+                    field.getCreatedAt() != null ? field.getCreatedAt().toString()
+                            : LocalDateTime.now().toString())).consume();
+        }
+        changeFeed.publish(ChangeEvent.upsert(ChangeEvent.EntityType.CUSTOM_FIELD, field.getName(), field));
+        return field;
+    }
+
+    public List<CustomField> findAll() {
+        try (Session session = driver.session()) {
+            Result result = session.run("MATCH (f:CustomField) RETURN f ORDER BY f.name");
+            List<CustomField> fields = new ArrayList<>();
+            while (result.hasNext()) {
+                fields.add(mapToCustomField(result.next().get("f").asMap()));
+            }
+            return fields;
+        }
+    }
+
+    // Ticket values of the field stay on the tickets; the registry ignores them once the field is gone
+    public void delete(String name) {
+        try (Session session = driver.session()) {
+            session.run("MATCH (f:CustomField {name: $name}) DELETE f", parameters("name", name)).consume();
+        }
+        changeFeed.publish(ChangeEvent.delete(ChangeEvent.EntityType.CUSTOM_FIELD, name));
+    }
+
+    private CustomField mapToCustomField(Map<String, Object> map) {
+        CustomField field = new CustomField();
+        field.setName((String) map.get("name"));
+        field.setLabel((String) map.get("label"));
+        field.setType(CustomFieldType.valueOf((String) map.get("type")));
+        if (map.get("allowedValues") instanceof List<?> values) {
+            List<String> allowed = new ArrayList<>();
+            values.forEach(value -> allowed.add(String.valueOf(value)));
+            field.setAllowedValues(allowed);
+        }
+        if (map.get("createdAt") != null) {
+            field.setCreatedAt(LocalDateTime.parse((String) map.get("createdAt")));
+        }
+        return field;
+    }
+}
@@ -8,17 +8,21 @@ import static org.neo4j.driver.Values.parameters;
 
 public class KBRepository {
     private final Driver driver;
+    private final ChangeFeed changeFeed;
 
     public KBRepository() {
         this.driver = Neo4jConnection.getInstance().getDriver();
+        this.changeFeed = ChangeFeed.getInstance();
     }
 
     public KnowledgeBase save(KnowledgeBase kb) {
+        kb.setUpdatedAt(LocalDateTime.now());
+
         try (Session session = driver.session()) {
             String query = "MERGE (k:KnowledgeBase {id: $id}) " +
                     "SET k.title = $title, k.content = $content, k.categoryId = $categoryId, " +
                     "k.authorId = $authorId, k.viewCount = $viewCount, k.helpfulCount = $helpfulCount, " +
-                    "k.published = $published, k.createdAt = $createdAt RETURN k";
+                    "k.published = $published, k.createdAt = $createdAt, k.updatedAt = $updatedAt, k.tags = $tags RETURN k";
 
             session.run(query, parameters(
                     "id", kb.getId(),
@@ -30,9 +34,12 @@ public class KBRepository {
                     "helpfulCount", kb.getHelpfulCount(),
                     "published", kb.isPublished(),
                     "createdAt",
-                    kb.getCreatedAt() != null ? kb.getCreatedAt().toString() : LocalDateTime.now().toString()));
-            return kb;
+                    kb.getCreatedAt() != null ? kb.getCreatedAt().toString() : LocalDateTime.now().toString(),
+                    "updatedAt", kb.getUpdatedAt().toString(),
+                    "tags", kb.getTags() != null ? kb.getTags() : new ArrayList<>())).consume();
         }
+        changeFeed.publish(ChangeEvent.upsert(ChangeEvent.EntityType.KNOWLEDGE_BASE, kb.getId(), kb));
+        return kb;
     }
 
     public KnowledgeBase findById(String id) {
@@ -82,10 +89,36 @@ public class KBRepository {
         }
     }
 
+    // Includes unpublished articles so callers can drop them from their views
+    public List<KnowledgeBase> findUpdatedSince(LocalDateTime since) {
+        try (Session session = driver.session()) {
+            String query = "MATCH (k:KnowledgeBase) WHERE coalesce(k.updatedAt, k.createdAt) > $since " +
+                    "RETURN k ORDER BY coalesce(k.updatedAt, k.createdAt)";
+            Result result = session.run(query, parameters("since", since.toString()));
+            List<KnowledgeBase> articles = new ArrayList<>();
+            while (result.hasNext()) {
+                articles.add(mapToKB(result.next().get("k").asMap()));
+            }
+            return articles;
+        }
+    }
+
+    public List<String> findAllPublishedIds() {
+        try (Session session = driver.session()) {
+            Result result = session.run("MATCH (k:KnowledgeBase {published: true}) RETURN k.id AS id");
+            List<String> ids = new ArrayList<>();
+            while (result.hasNext()) {
+                ids.add(result.next().get("id").asString());
+            }
+            return ids;
+        }
+    }
+
     public void delete(String id) {
         try (Session session = driver.session()) {
-            session.run("MATCH (k:KnowledgeBase {id: $id}) DETACH DELETE k", parameters("id", id));
+            session.run("MATCH (k:KnowledgeBase {id: $id}) DETACH DELETE k", parameters("id", id)).consume();
         }
+        changeFeed.publish(ChangeEvent.delete(ChangeEvent.EntityType.KNOWLEDGE_BASE, id));
     }
 
     private KnowledgeBase mapToKB(Map<String, Object> map) {
@@ -101,6 +134,14 @@ public class KBRepository {
         if (map.get("createdAt") != null) {
             kb.setCreatedAt(LocalDateTime.parse((String) map.get("createdAt")));
         }
+        if (map.get("updatedAt") != null) {
+            kb.setUpdatedAt(LocalDateTime.parse((String) map.get("updatedAt")));
+        }
+        if (map.get("tags") instanceof List<?> tags) {
+            List<String> values = new ArrayList<>();
+            tags.forEach(tag -> values.add(String.valueOf(tag)));
+            kb.setTags(values);
+        }
         return kb;
     }
 }
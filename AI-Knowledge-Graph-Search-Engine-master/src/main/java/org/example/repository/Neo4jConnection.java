@@ -43,6 +43,25 @@ public class Neo4jConnection {
         return driver;
     }
 
+    /**
+     * Creates the schema indexes the repositories' queries rely on, if missing. The
+     * range indexes on ticket timestamps let date filters and reports seek to their
+     * slice instead of scanning every ticket.
+     */
+    public void ensureIndexes() {
+        String[] statements = {
+                "CREATE RANGE INDEX ticket_created_at IF NOT EXISTS FOR (t:Ticket) ON (t.createdAt)",
+                "CREATE RANGE INDEX ticket_updated_at IF NOT EXISTS FOR (t:Ticket) ON (t.updatedAt)"
+        };
+        try (Session session = getSession()) {
+            for (String statement : statements) {
+                session.run(statement).consume();
+            }
+        } catch (Exception e) {
+            System.err.println("❌ Error creating Neo4j indexes: " + e.getMessage());
+        }
+    }
+
     public boolean testConnection() {
         try (Session session = getSession()) {
             session.run("RETURN 1").consume();
@@ -0,0 +1,68 @@
+package org.example.repository;
+
+import java.util.List;
+
+/**
+ * One page of a query result plus an estimate of the total.
+ */
+public class Page<T> {
+    private final List<T> items;
+    private final int skip;
+    private final int limit;
+    private final long totalCount;
+    private final boolean totalExact;
+    private final boolean hasMore;
+    private final String nextCursor;
+
+    public Page(List<T> items, int skip, int limit, long totalCount, boolean totalExact, boolean hasMore,
+            String nextCursor) {
+        this.items = items;
+        this.skip = skip;
+        this.limit = limit;
+        this.totalCount = totalCount;
+        this.totalExact = totalExact;
+        this.hasMore = hasMore;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public int getSkip() {
+        return skip;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    // When not exact this is a lower bound: counting stopped at the configured cap
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public boolean isTotalExact() {
+        return totalExact;
+    }
+
+    public boolean hasMore() {
+        return hasMore;
+    }
+
+    // Opaque keyset cursor for fetching the page after this one, null on the last page
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    @Override
+    public String toString() {
+        return "Page{" +
+                "items=" + items.size() +
+                ", skip=" + skip +
+                ", limit=" + limit +
+                ", totalCount=" + totalCount + (totalExact ? "" : "+") +
+                ", hasMore=" + hasMore +
+                '}';
+    }
+}
@@ -8,9 +8,11 @@ import static org.neo4j.driver.Values.parameters;
 
 public class TeamRepository {
     private final Driver driver;
+    private final ChangeFeed changeFeed;
 
     public TeamRepository() {
         this.driver = Neo4jConnection.getInstance().getDriver();
+        this.changeFeed = ChangeFeed.getInstance();
     }
 
     public Team save(Team team) {
@@ -29,9 +31,10 @@ public class TeamRepository {
                     "active", team.isActive(),
                     "createdAt",
                     team.getCreatedAt() != null ? team.getCreatedAt().toString() : LocalDateTime.now().toString(),
-                    "maxCapacity", team.getMaxCapacity()));
-            return team;
+                    "maxCapacity", team.getMaxCapacity())).consume();
         }
+        changeFeed.publish(ChangeEvent.upsert(ChangeEvent.EntityType.TEAM, team.getId(), team));
+        return team;
     }
 
     public Team findById(String id) {
@@ -59,8 +62,9 @@ public class TeamRepository {
 
     public void delete(String id) {
         try (Session session = driver.session()) {
-            session.run("MATCH (t:Team {id: $id}) DETACH DELETE t", parameters("id", id));
+            session.run("MATCH (t:Team {id: $id}) DETACH DELETE t", parameters("id", id)).consume();
         }
+        changeFeed.publish(ChangeEvent.delete(ChangeEvent.EntityType.TEAM, id));
     }
 
     private Team mapToTeam(Map<String, Object> map) {
@@ -0,0 +1,150 @@
+package org.example.repository;
+
+import org.example.exception.ValidationException;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles an advanced search criteria map into a parameterized Cypher WHERE clause.
+ *
+ * Supported keys: status, priority, assignedTo, category (or categoryId) as a value or
+ * a collection of values; text as a case-insensitive substring of title or description;
+ * createdFrom, createdTo, updatedFrom, updatedTo as LocalDateTime, LocalDate or ISO strings.
+ * Equality predicates come first so the planner can start from a property index;
+ * the substring test only runs on the rows they leave.
+ */
+public class TicketQueryBuilder {
+    private final List<String> predicates = new ArrayList<>();
+    private final Map<String, Object> parameters = new HashMap<>();
+
+    public static TicketQueryBuilder fromCriteria(Map<String, Object> criteria) {
+        TicketQueryBuilder builder = new TicketQueryBuilder();
+        if (criteria == null) {
+            return builder;
+        }
+
+        builder.equality("status", criteria.get("status"));
+        builder.equality("priority", criteria.get("priority"));
+        builder.equality("assignedTo", criteria.get("assignedTo"));
+        builder.equality("category", criteria.containsKey("category")
+                ? criteria.get("category") : criteria.get("categoryId"));
+
+        builder.range("createdAt", ">=", "createdFrom", criteria.get("createdFrom"));
+        builder.range("createdAt", "<=", "createdTo", criteria.get("createdTo"));
+        builder.range("updatedAt", ">=", "updatedFrom", criteria.get("updatedFrom"));
+        builder.range("updatedAt", "<=", "updatedTo", criteria.get("updatedTo"));
+
+        Object text = criteria.get("text");
+        if (text instanceof String && !((String) text).isBlank()) {
+            builder.predicates.add("(toLower(t.title) CONTAINS $text OR toLower(t.description) CONTAINS $text)");
+            builder.parameters.put("text", ((String) text).toLowerCase());
+        }
+        return builder;
+    }
+
+    /**
+     * Restricts results to those after a keyset cursor produced by {@link #cursorOf}, in
+     * the order createdAt DESC, id DESC. Neo4j sorts a missing createdAt first in that
+     * order, so a ticket without one is followed by the rest of those and then by all
+     * dated tickets.
+     */
+    public TicketQueryBuilder after(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return this;
+        }
+        int separator = cursor.indexOf('|');
+        if (separator < 0) {
+            throw new ValidationException("Invalid search cursor: " + cursor);
+        }
+        if (separator == 0) {
+            predicates.add("(t.createdAt IS NOT NULL OR t.id < $afterId)");
+        } else {
+            predicates.add("(t.createdAt < datetime($afterCreatedAt) OR " +
+                    "(t.createdAt = datetime($afterCreatedAt) AND t.id < $afterId))");
+            parameters.put("afterCreatedAt", cursor.substring(0, separator));
+        }
+        parameters.put("afterId", cursor.substring(separator + 1));
+        return this;
+    }
+
+    // An empty createdAt part stands for a ticket without one
+    public static String cursorOf(LocalDateTime createdAt, String id) {
+        return (createdAt != null ? createdAt.toString() : "") + "|" + id;
+    }
+
+    public boolean hasPredicates() {
+        return !predicates.isEmpty();
+    }
+
+    public String whereClause() {
+        return predicates.isEmpty() ? "" : "WHERE " + String.join("\n  AND ", predicates) + "\n";
+    }
+
+    public Map<String, Object> getParameters() {
+        return parameters;
+    }
+
+    private void equality(String property, Object value) {
+        if (value == null) {
+            return;
+        }
+        if (value instanceof Collection) {
+            List<String> values = new ArrayList<>();
+            for (Object item : (Collection<?>) value) {
+                values.add(String.valueOf(item));
+            }
+            predicates.add("t." + property + " IN $" + property);
+            parameters.put(property, values);
+        } else {
+            String text = value instanceof Enum ? ((Enum<?>) value).name() : value.toString();
+            predicates.add("t." + property + " = $" + property);
+            parameters.put(property, text);
+        }
+    }
+
+    private void range(String property, String operator, String parameter, Object value) {
+        if (value == null) {
+            return;
+        }
+        LocalDate date = toDate(value);
+        if (date != null && operator.equals("<=")) {
+            // A bare date as the upper bound includes that whole day
+            predicates.add("t." + property + " < datetime($" + parameter + ")");
+            parameters.put(parameter, date.plusDays(1).atStartOfDay().toString());
+            return;
+        }
+        predicates.add("t." + property + " " + operator + " datetime($" + parameter + ")");
+        parameters.put(parameter, date != null ? date.atStartOfDay().toString() : toDateTime(parameter, value).toString());
+    }
+
+    private static LocalDate toDate(Object value) {
+        if (value instanceof LocalDate) {
+            return (LocalDate) value;
+        }
+        if (value instanceof String && ((String) value).trim().length() == 10) {
+            try {
+                return LocalDate.parse(((String) value).trim());
+            } catch (Exception e) {
+                throw new ValidationException("Invalid ISO date: " + value);
+            }
+        }
+        return null;
+    }
+
+    private static LocalDateTime toDateTime(String name, Object value) {
+        if (value instanceof LocalDateTime) {
+            return (LocalDateTime) value;
+        }
+        try {
+            return LocalDateTime.parse(value.toString().trim());
+        } catch (Exception e) {
+            throw new ValidationException(name + " must be an ISO date or date-time: " + value);
+        }
+    }
+}
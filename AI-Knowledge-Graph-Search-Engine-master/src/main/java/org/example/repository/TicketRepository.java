@@ -1,5 +1,6 @@
 package org.example.repository;
 
+import org.example.config.AppConfig;
 import org.example.model.Ticket;
 import org.neo4j.driver.Record;
 import org.neo4j.driver.Result;
@@ -8,14 +9,28 @@ import org.neo4j.driver.Values;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.UUID;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class TicketRepository {
     private final Neo4jConnection connection;
+    private final ChangeFeed changeFeed;
+    private final int countCap;
 
     public TicketRepository() {
         this.connection = Neo4jConnection.getInstance();
+        this.changeFeed = ChangeFeed.getInstance();
+        this.countCap = AppConfig.getInstance().getIntProperty("search.advanced.countCap", 10000);
     }
 
     // Create a new ticket
@@ -35,7 +50,12 @@ public class TicketRepository {
                     assignedTo: $assignedTo,
                     createdBy: $createdBy,
                     createdAt: datetime($createdAt),
-                    updatedAt: datetime($updatedAt)
+                    updatedAt: datetime($updatedAt),
+                    tags: $tags,
+                    customFieldNames: $customFieldNames,
+                    customFieldValues: $customFieldValues,
+                    summary: $summary,
+                    summaryHash: $summaryHash
                 })
                 RETURN t
                 """;
@@ -52,8 +72,14 @@ public class TicketRepository {
                             "assignedTo", ticket.getAssignedTo(),
                             "createdBy", ticket.getCreatedBy(),
                             "createdAt", ticket.getCreatedAt().toString(),
-                            "updatedAt", ticket.getUpdatedAt().toString()));
+                            "updatedAt", ticket.getUpdatedAt().toString(),
+                            "tags", tags(ticket),
+                            "customFieldNames", customFieldNames(ticket),
+                            "customFieldValues", customFieldValues(ticket),
+                            "summary", ticket.getSummary(),
+                            "summaryHash", ticket.getSummaryHash())).consume();
             System.out.println("✅ Ticket created: " + ticket.getId());
+            changeFeed.publish(ChangeEvent.upsert(ChangeEvent.EntityType.TICKET, ticket.getId(), ticket));
             return ticket;
         } catch (Exception e) {
             System.err.println("❌ Error creating ticket: " + e.getMessage());
@@ -110,7 +136,12 @@ public class TicketRepository {
                     t.priority = $priority,
                     t.category = $category,
                     t.assignedTo = $assignedTo,
-                    t.updatedAt = datetime($updatedAt)
+                    t.updatedAt = datetime($updatedAt),
+                    t.tags = $tags,
+                    t.customFieldNames = $customFieldNames,
+                    t.customFieldValues = $customFieldValues,
+                    t.summary = $summary,
+                    t.summaryHash = $summaryHash
                 RETURN t
                 """;
 
@@ -124,8 +155,14 @@ public class TicketRepository {
                             "priority", ticket.getPriority(),
                             "category", ticket.getCategory(),
                             "assignedTo", ticket.getAssignedTo(),
-                            "updatedAt", ticket.getUpdatedAt().toString()));
+                            "updatedAt", ticket.getUpdatedAt().toString(),
+                            "tags", tags(ticket),
+                            "customFieldNames", customFieldNames(ticket),
+                            "customFieldValues", customFieldValues(ticket),
+                            "summary", ticket.getSummary(),
+                            "summaryHash", ticket.getSummaryHash())).consume();
             System.out.println("✅ Ticket updated: " + ticket.getId());
+            changeFeed.publish(ChangeEvent.upsert(ChangeEvent.EntityType.TICKET, ticket.getId(), ticket));
             return ticket;
         } catch (Exception e) {
             System.err.println("❌ Error updating ticket: " + e.getMessage());
@@ -138,8 +175,9 @@ public class TicketRepository {
         String query = "MATCH (t:Ticket {id: $id}) DELETE t";
 
         try (Session session = connection.getSession()) {
-            session.run(query, Values.parameters("id", id));
+            session.run(query, Values.parameters("id", id)).consume();
             System.out.println("✅ Ticket deleted: " + id);
+            changeFeed.publish(ChangeEvent.delete(ChangeEvent.EntityType.TICKET, id));
             return true;
         } catch (Exception e) {
             System.err.println("❌ Error deleting ticket: " + e.getMessage());
@@ -174,6 +212,48 @@ public class TicketRepository {
         return tickets;
     }
 
+    /**
+     * Tickets carrying every one of the given lower case tags. Scans the tickets, since a
+     * list property cannot be looked up through an index; the search engine's tag index
+     * answers this once it is loaded.
+     */
+    public List<Ticket> findByTags(List<String> tags) {
+        String query = """
+                MATCH (t:Ticket)
+                WHERE all(tag IN $tags WHERE any(value IN coalesce(t.tags, []) WHERE toLower(trim(value)) = tag))
+                RETURN t ORDER BY t.createdAt DESC
+                """;
+        List<Ticket> tickets = new ArrayList<>();
+
+        try (Session session = connection.getSession()) {
+            Result result = session.run(query, Values.parameters("tags", tags));
+            while (result.hasNext()) {
+                tickets.add(mapToTicket(result.next()));
+            }
+        } catch (Exception e) {
+            System.err.println("❌ Error finding tickets by tags: " + e.getMessage());
+        }
+
+        return tickets;
+    }
+
+    // Tickets with any value for the custom field; callers compare the values themselves
+    public List<Ticket> findWithCustomField(String name) {
+        String query = "MATCH (t:Ticket) WHERE $name IN t.customFieldNames RETURN t ORDER BY t.createdAt DESC";
+        List<Ticket> tickets = new ArrayList<>();
+
+        try (Session session = connection.getSession()) {
+            Result result = session.run(query, Values.parameters("name", name));
+            while (result.hasNext()) {
+                tickets.add(mapToTicket(result.next()));
+            }
+        } catch (Exception e) {
+            System.err.println("❌ Error finding tickets by custom field: " + e.getMessage());
+        }
+
+        return tickets;
+    }
+
     // Find tickets by priority
     public List<Ticket> findByPriority(org.example.model.enums.Priority priority) {
         String query = "MATCH (t:Ticket {priority: $priority}) RETURN t ORDER BY t.createdAt DESC";
@@ -276,18 +356,33 @@ public class TicketRepository {
 
     // Search tickets by title or description
     public List<Ticket> search(String keyword) {
+        return search(keyword, Integer.MAX_VALUE);
+    }
+
+    /**
+     * At most limit tickets whose title or description contains the keyword. Title matches
+     * come first, then open tickets, then by priority and newest first, roughly the order
+     * the search index ranks them in.
+     */
+    public List<Ticket> search(String keyword, int limit) {
         String query = """
                 MATCH (t:Ticket)
                 WHERE toLower(t.title) CONTAINS toLower($keyword)
                    OR toLower(t.description) CONTAINS toLower($keyword)
                 RETURN t
-                ORDER BY t.createdAt DESC
+                ORDER BY CASE WHEN toLower(t.title) CONTAINS toLower($keyword) THEN 0 ELSE 1 END,
+                         CASE toUpper(replace(t.status, ' ', '_'))
+                              WHEN 'OPEN' THEN 0 WHEN 'IN_PROGRESS' THEN 0 ELSE 1 END,
+                         CASE toUpper(t.priority)
+                              WHEN 'CRITICAL' THEN 0 WHEN 'HIGH' THEN 1 WHEN 'MEDIUM' THEN 2 ELSE 3 END,
+                         t.createdAt DESC
+                LIMIT $limit
                 """;
 
         List<Ticket> tickets = new ArrayList<>();
 
         try (Session session = connection.getSession()) {
-            Result result = session.run(query, Values.parameters("keyword", keyword));
+            Result result = session.run(query, Values.parameters("keyword", keyword, "limit", limit));
             while (result.hasNext()) {
                 tickets.add(mapToTicket(result.next()));
             }
@@ -298,6 +393,230 @@ public class TicketRepository {
         return tickets;
     }
 
+    /**
+     * Server-side filtered search. Only the requested page crosses the wire;
+     * one extra row is fetched to tell whether another page follows.
+     */
+    public Page<Ticket> findByCriteria(Map<String, Object> criteria, int skip, int limit) {
+        return findPage(TicketQueryBuilder.fromCriteria(criteria), skip, limit, true);
+    }
+
+    // Keyset paging: cheaper than SKIP for deep pages since nothing is skipped server-side
+    public Page<Ticket> findByCriteriaAfter(Map<String, Object> criteria, String cursor, int limit) {
+        return findPage(TicketQueryBuilder.fromCriteria(criteria).after(cursor), 0, limit, true);
+    }
+
+    /**
+     * Every ticket matching the criteria, newest first, read lazily a page at a time with
+     * keyset paging so a backlog of any size streams through without being held in memory.
+     * Pages are not counted.
+     */
+    public Stream<Ticket> streamByCriteria(Map<String, Object> criteria, int pageSize) {
+        Iterator<Ticket> tickets = new Iterator<>() {
+            private Iterator<Ticket> page = Collections.emptyIterator();
+            private String cursor;
+            private boolean last;
+
+            @Override
+            public boolean hasNext() {
+                while (!page.hasNext() && !last) {
+                    Page<Ticket> next = findPage(TicketQueryBuilder.fromCriteria(criteria).after(cursor), 0,
+                            pageSize, false);
+                    page = next.getItems().iterator();
+                    cursor = next.getNextCursor();
+                    last = cursor == null;
+                }
+                return page.hasNext();
+            }
+
+            @Override
+            public Ticket next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return page.next();
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(tickets,
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    private Page<Ticket> findPage(TicketQueryBuilder builder, int skip, int limit, boolean counted) {
+        String query = "MATCH (t:Ticket)\n" + builder.whereClause() +
+                "RETURN t\n" +
+                "ORDER BY t.createdAt DESC, t.id DESC\n" +
+                "SKIP $skip LIMIT $limit";
+
+        Map<String, Object> parameters = new HashMap<>(builder.getParameters());
+        parameters.put("skip", Math.max(skip, 0));
+        parameters.put("limit", limit + 1);
+
+        List<Ticket> tickets = new ArrayList<>();
+        try (Session session = connection.getSession()) {
+            Result result = session.run(query, parameters);
+            while (result.hasNext()) {
+                tickets.add(mapToTicket(result.next()));
+            }
+        } catch (Exception e) {
+            System.err.println("❌ Error searching tickets by criteria: " + e.getMessage());
+        }
+
+        boolean hasMore = tickets.size() > limit;
+        if (hasMore) {
+            tickets.remove(tickets.size() - 1);
+        }
+
+        String nextCursor = null;
+        if (hasMore && !tickets.isEmpty()) {
+            Ticket last = tickets.get(tickets.size() - 1);
+            nextCursor = TicketQueryBuilder.cursorOf(last.getCreatedAt(), last.getId());
+        }
+
+        long total;
+        boolean exact;
+        if (!counted) {
+            total = Math.max(skip, 0) + tickets.size();
+            exact = false;
+        } else if (!hasMore) {
+            // The page itself tells us the total
+            total = Math.max(skip, 0) + tickets.size();
+            exact = !builder.getParameters().containsKey("afterId");
+        } else {
+            long[] estimate = estimateCount(builder);
+            total = estimate[0];
+            exact = estimate[1] == 1;
+        }
+
+        return new Page<>(tickets, Math.max(skip, 0), limit, total, exact, hasMore, nextCursor);
+    }
+
+    /**
+     * Counts matches, stopping at countCap so an unselective filter never turns
+     * into a full scan. Returns {count, 1 if exact}.
+     */
+    private long[] estimateCount(TicketQueryBuilder builder) {
+        if (!builder.hasPredicates()) {
+            // Served from the label count store
+            return new long[] { count(), 1 };
+        }
+
+        String query = "MATCH (t:Ticket)\n" + builder.whereClause() +
+                "WITH t LIMIT $countCap\n" +
+                "RETURN count(t) AS count";
+        Map<String, Object> parameters = new HashMap<>(builder.getParameters());
+        parameters.put("countCap", countCap);
+
+        try (Session session = connection.getSession()) {
+            Result result = session.run(query, parameters);
+            if (result.hasNext()) {
+                long count = result.next().get("count").asLong();
+                return new long[] { count, count < countCap ? 1 : 0 };
+            }
+        } catch (Exception e) {
+            System.err.println("❌ Error counting tickets by criteria: " + e.getMessage());
+        }
+
+        return new long[] { 0, 0 };
+    }
+
+    // Tickets created or modified after the given time, oldest first
+    public List<Ticket> findUpdatedSince(LocalDateTime since) {
+        String query = """
+                MATCH (t:Ticket)
+                WHERE t.updatedAt > datetime($since)
+                RETURN t
+                ORDER BY t.updatedAt
+                """;
+
+        List<Ticket> tickets = new ArrayList<>();
+
+        try (Session session = connection.getSession()) {
+            Result result = session.run(query, Values.parameters("since", since.toString()));
+            while (result.hasNext()) {
+                tickets.add(mapToTicket(result.next()));
+            }
+        } catch (Exception e) {
+            System.err.println("❌ Error finding updated tickets: " + e.getMessage());
+        }
+
+        return tickets;
+    }
+
+    /**
+     * Tickets per status created in [from, to). Aggregated in Neo4j, so with the
+     * createdAt range index only that slice of tickets is read and none is returned.
+     */
+    public Map<String, Long> countByStatusCreatedBetween(LocalDateTime from, LocalDateTime to) {
+        String query = """
+                MATCH (t:Ticket)
+                WHERE t.createdAt >= datetime($from) AND t.createdAt < datetime($to)
+                RETURN t.status AS status, count(t) AS count
+                """;
+
+        Map<String, Long> counts = new LinkedHashMap<>();
+
+        try (Session session = connection.getSession()) {
+            Result result = session.run(query, Values.parameters("from", from.toString(), "to", to.toString()));
+            while (result.hasNext()) {
+                Record record = result.next();
+                counts.put(record.get("status").asString(null), record.get("count").asLong());
+            }
+        } catch (Exception e) {
+            System.err.println("❌ Error counting tickets by status: " + e.getMessage());
+        }
+
+        return counts;
+    }
+
+    /**
+     * Stores triage suggestions on many tickets in one UNWIND write. Each row has the
+     * ticket's id, its suggested category, priority, severity and keywords, and its
+     * summary with the hash it was made for; the ticket's own fields are left alone. Returns how many of the tickets were found.
+     */
+    public int saveSuggestions(List<Map<String, Object>> rows) {
+        if (rows.isEmpty()) {
+            return 0;
+        }
+
+        String query = """
+                UNWIND $rows AS row
+                MATCH (t:Ticket {id: row.id})
+                SET t.suggestedCategory = row.category,
+                    t.suggestedPriority = row.priority,
+                    t.suggestedSeverity = row.severity,
+                    t.keywords = row.keywords,
+                    t.summary = row.summary,
+                    t.summaryHash = row.summaryHash,
+                    t.analyzedAt = datetime(row.analyzedAt)
+                RETURN count(t) AS count
+                """;
+
+        try (Session session = connection.getSession()) {
+            Result result = session.run(query, Values.parameters("rows", rows));
+            return result.hasNext() ? result.next().get("count").asInt() : 0;
+        } catch (Exception e) {
+            System.err.println("❌ Error saving ticket suggestions: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    // Ids only; far cheaper than findAll when reconciling deletes
+    public List<String> findAllIds() {
+        String query = "MATCH (t:Ticket) RETURN t.id AS id";
+        List<String> ids = new ArrayList<>();
+
+        try (Session session = connection.getSession()) {
+            Result result = session.run(query);
+            while (result.hasNext()) {
+                ids.add(result.next().get("id").asString());
+            }
+        } catch (Exception e) {
+            System.err.println("❌ Error fetching ticket ids: " + e.getMessage());
+        }
+
+        return ids;
+    }
+
     private Ticket mapToTicket(Record record) {
         var node = record.get("t").asNode();
 
@@ -310,6 +629,8 @@ public class TicketRepository {
         ticket.setCategory(node.get("category").asString());
         ticket.setAssignedTo(node.get("assignedTo").asString(""));
         ticket.setCreatedBy(node.get("createdBy").asString(""));
+        ticket.setSummary(node.get("summary").asString(null));
+        ticket.setSummaryHash(node.get("summaryHash").asString(null));
 
         if (!node.get("createdAt").isNull()) {
             ticket.setCreatedAt(node.get("createdAt").asLocalDateTime());
@@ -319,9 +640,46 @@ public class TicketRepository {
             ticket.setUpdatedAt(node.get("updatedAt").asLocalDateTime());
         }
 
+        if (!node.get("tags").isNull()) {
+            ticket.setTags(new ArrayList<>(node.get("tags").asList(value -> value.asString())));
+        }
+
+        // Custom fields are two parallel arrays, since a node property cannot hold a map
+        if (!node.get("customFieldNames").isNull() && !node.get("customFieldValues").isNull()) {
+            List<String> names = node.get("customFieldNames").asList(value -> value.asString());
+            List<String> values = node.get("customFieldValues").asList(value -> value.asString());
+            for (int i = 0; i < Math.min(names.size(), values.size()); i++) {
+                ticket.getCustomFields().put(names.get(i), values.get(i));
+            }
+        }
+
         return ticket;
     }
 
+    private static List<String> tags(Ticket ticket) {
+        return ticket.getTags() != null ? ticket.getTags() : new ArrayList<>();
+    }
+
+    private static List<String> customFieldNames(Ticket ticket) {
+        return customFieldColumn(ticket, true);
+    }
+
+    private static List<String> customFieldValues(Ticket ticket) {
+        return customFieldColumn(ticket, false);
+    }
+
+    private static List<String> customFieldColumn(Ticket ticket, boolean names) {
+        List<String> column = new ArrayList<>();
+        if (ticket.getCustomFields() != null) {
+            for (Map.Entry<String, String> entry : ticket.getCustomFields().entrySet()) {
+                if (entry.getValue() != null) {
+                    column.add(names ? entry.getKey() : entry.getValue());
+                }
+            }
+        }
+        return column;
+    }
+
     // Generate unique ticket ID
     private String generateTicketId() {
         return "TKT-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
@@ -16,9 +16,11 @@ import static org.neo4j.driver.Values.parameters;
 
 public class UserRepository {
     private final Driver driver;
+    private final ChangeFeed changeFeed;
 
     public UserRepository() {
         this.driver = Neo4jConnection.getInstance().getDriver();
+        this.changeFeed = ChangeFeed.getInstance();
     }
 
     public User save(User user) {
@@ -43,10 +45,10 @@ public class UserRepository {
                     "active", user.isActive(),
                     "createdAt",
                     user.getCreatedAt() != null ? user.getCreatedAt().toString() : LocalDateTime.now().toString(),
-                    "avatarUrl", user.getAvatarUrl()));
-
-            return user;
+                    "avatarUrl", user.getAvatarUrl())).consume();
         }
+        changeFeed.publish(ChangeEvent.upsert(ChangeEvent.EntityType.USER, user.getId(), user));
+        return user;
     }
 
     public User findById(String id) {
@@ -106,8 +108,9 @@ public class UserRepository {
     public void delete(String id) {
         try (Session session = driver.session()) {
             String query = "MATCH (u:User {id: $id}) DETACH DELETE u";
-            session.run(query, parameters("id", id));
+            session.run(query, parameters("id", id)).consume();
         }
+        changeFeed.publish(ChangeEvent.delete(ChangeEvent.EntityType.USER, id));
     }
 
     private User mapToUser(Map<String, Object> map) {
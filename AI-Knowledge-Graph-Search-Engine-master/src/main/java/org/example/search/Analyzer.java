@@ -0,0 +1,250 @@
+package org.example.search;
+
+import org.example.config.AppConfig;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Turns text into index terms: tokenizes it, drops stop words, replaces synonyms
+ * ("pwd" becomes "password") and stems what remains with the {@link PorterStemmer}.
+ * Documents are analyzed with it when indexed and queries when searched, so both
+ * sides always agree on what a word's term is.
+ *
+ * A stop word still takes up a position, so the words around it keep their distance.
+ * Each thread reuses its own token buffer, stemmer and a small cache from words to
+ * their terms, so a word seen recently costs a lookup and no allocation.
+ */
+public class Analyzer {
+    // Words too common to tell documents apart
+    public static final List<String> ENGLISH_STOP_WORDS = List.of(
+            "a", "an", "and", "are", "as", "at", "be", "but", "by", "for", "if", "in", "into", "is", "it",
+            "no", "not", "of", "on", "or", "such", "that", "the", "their", "then", "there", "these",
+            "they", "this", "to", "was", "will", "with");
+
+    // Splits and lowercases only; used by schemas that do not set an analyzer
+    public static final Analyzer SIMPLE = new Analyzer(false, Collections.emptyList(), Collections.emptyMap());
+
+    private static final int CACHE_SIZE = 4096;
+
+    private static Analyzer instance;
+
+    private final boolean stem;
+    private final CharTable stopWords;
+    private final CharTable synonyms;
+    private final String signature;
+    private final ThreadLocal<State> state = ThreadLocal.withInitial(State::new);
+
+    // One thread's buffers; busy while an analysis runs, so a nested one gets its own
+    private static final class State {
+        final char[] token = new char[Tokenizer.MAX_TOKEN_LENGTH];
+        final char[] work = new char[Tokenizer.MAX_TOKEN_LENGTH];
+        final PorterStemmer stemmer = new PorterStemmer();
+        final char[][] words = new char[CACHE_SIZE][];
+        final String[] terms = new String[CACHE_SIZE];
+        boolean busy;
+    }
+
+    /**
+     * Stop words and synonyms are given as they would be written and analyzed like any
+     * other word; a synonym's replacement is then stemmed like the word it stands for.
+     */
+    public Analyzer(boolean stem, Collection<String> stopWords, Map<String, String> synonyms) {
+        this.stem = stem;
+        TreeSet<String> stops = new TreeSet<>();
+        for (String word : stopWords) {
+            String token = singleToken(word);
+            if (token != null) {
+                stops.add(token);
+            }
+        }
+        TreeMap<String, String> replacements = new TreeMap<>();
+        for (Map.Entry<String, String> synonym : synonyms.entrySet()) {
+            String word = singleToken(synonym.getKey());
+            String replacement = singleToken(synonym.getValue());
+            if (word != null && replacement != null && !word.equals(replacement)) {
+                replacements.put(word, replacement);
+            }
+        }
+        this.stopWords = new CharTable(stops, null);
+        this.synonyms = new CharTable(replacements.keySet(), replacements.values());
+        this.signature = (stem ? "porter" : "none") + ":" + Integer.toHexString(stops.hashCode())
+                + ":" + Integer.toHexString(replacements.hashCode());
+    }
+
+    /**
+     * The shared analyzer of the search indexes and text features. Stemming, stop words and
+     * synonyms come from search.analysis.*; synonyms are written "pwd:password,db:database".
+     */
+    public static synchronized Analyzer getInstance() {
+        if (instance == null) {
+            AppConfig config = AppConfig.getInstance();
+            String stops = config.getProperty("search.analysis.stopWords");
+            Map<String, String> synonyms = new LinkedHashMap<>();
+            for (String entry : config.getProperty("search.analysis.synonyms", "").split(",")) {
+                int separator = entry.indexOf(':');
+                if (separator > 0) {
+                    synonyms.put(entry.substring(0, separator).trim(), entry.substring(separator + 1).trim());
+                }
+            }
+            instance = new Analyzer(Boolean.parseBoolean(config.getProperty("search.analysis.stemming", "true")),
+                    stops != null ? Arrays.asList(stops.split(",")) : ENGLISH_STOP_WORDS, synonyms);
+        }
+        return instance;
+    }
+
+    /**
+     * Calls the handler with each term of the text, its position among all words of the
+     * text (stop words included) and the offsets of the word it came from.
+     */
+    public void analyze(CharSequence text, Tokenizer.TokenHandler handler) {
+        if (text == null) {
+            return;
+        }
+        State current = state.get();
+        if (current.busy) {
+            current = new State();
+        }
+        current.busy = true;
+        try {
+            State owned = current;
+            Tokenizer.tokenize(text, owned.token, (buffer, length, position, startOffset, endOffset) -> {
+                String term = term(owned, buffer, length);
+                if (term != null) {
+                    handler.onToken(term, position, startOffset, endOffset);
+                }
+            });
+        } finally {
+            current.busy = false;
+        }
+    }
+
+    public List<String> analyze(CharSequence text) {
+        List<String> terms = new ArrayList<>();
+        analyze(text, (term, position, startOffset, endOffset) -> terms.add(term));
+        return terms;
+    }
+
+    // The term of a single word, or null for a stop word or text without a word
+    public String term(String word) {
+        List<String> terms = analyze(word);
+        return terms.isEmpty() ? null : terms.get(0);
+    }
+
+    // Changes whenever the analyzer would produce different terms for some text
+    public String signature() {
+        return signature;
+    }
+
+    private String term(State state, char[] word, int length) {
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + word[i];
+        }
+        int slot = (hash ^ (hash >>> 16)) & (CACHE_SIZE - 1);
+        char[] cached = state.words[slot];
+        if (cached != null && cached.length == length && Arrays.equals(cached, 0, length, word, 0, length)) {
+            return state.terms[slot];
+        }
+
+        String term = null;
+        if (stopWords.find(word, length, hash) < 0) {
+            char[] work = state.work;
+            int synonym = synonyms.find(word, length, hash);
+            int termLength;
+            if (synonym >= 0) {
+                String replacement = synonyms.value(synonym);
+                termLength = replacement.length();
+                replacement.getChars(0, termLength, work, 0);
+            } else {
+                termLength = length;
+                System.arraycopy(word, 0, work, 0, length);
+            }
+            if (stem && isAsciiWord(work, termLength)) {
+                termLength = state.stemmer.stem(work, termLength);
+            }
+            term = new String(work, 0, termLength);
+        }
+        state.words[slot] = Arrays.copyOf(word, length);
+        state.terms[slot] = term;
+        return term;
+    }
+
+    // The stemmer only knows English spelling; words with digits or other letters keep their form
+    private static boolean isAsciiWord(char[] word, int length) {
+        for (int i = 0; i < length; i++) {
+            if (word[i] < 'a' || word[i] > 'z') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String singleToken(String text) {
+        List<String> tokens = Tokenizer.tokenize(text);
+        return tokens.size() == 1 ? tokens.get(0) : null;
+    }
+
+    /**
+     * Open-addressing set of words, optionally with a value per word, probed with a word
+     * in a char buffer and its String hash so a lookup allocates nothing.
+     */
+    private static final class CharTable {
+        private final String[] keys;
+        private final String[] values;
+        private final int mask;
+
+        CharTable(Collection<String> words, Collection<String> replacements) {
+            int capacity = Integer.highestOneBit(Math.max(words.size() * 2, 8) - 1) << 1;
+            this.keys = new String[capacity];
+            this.values = new String[capacity];
+            this.mask = capacity - 1;
+            List<String> valueList = replacements != null ? new ArrayList<>(replacements) : null;
+            int i = 0;
+            for (String word : words) {
+                int slot = spread(word.hashCode()) & mask;
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = word;
+                values[slot] = valueList != null ? valueList.get(i) : null;
+                i++;
+            }
+        }
+
+        // The word's slot, or -1
+        int find(char[] word, int length, int hash) {
+            for (int slot = spread(hash) & mask; keys[slot] != null; slot = (slot + 1) & mask) {
+                String key = keys[slot];
+                if (key.length() == length && matches(key, word, length)) {
+                    return slot;
+                }
+            }
+            return -1;
+        }
+
+        String value(int slot) {
+            return values[slot];
+        }
+
+        private static boolean matches(String key, char[] word, int length) {
+            for (int i = 0; i < length; i++) {
+                if (key.charAt(i) != word[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static int spread(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+    }
+}
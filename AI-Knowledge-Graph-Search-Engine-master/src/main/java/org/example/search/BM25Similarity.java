@@ -0,0 +1,34 @@
+package org.example.search;
+
+/**
+ * Okapi BM25 term weighting.
+ */
+public class BM25Similarity {
+    public static final float DEFAULT_K1 = 1.2f;
+    public static final float DEFAULT_B = 0.75f;
+
+    private final float k1;
+    private final float b;
+
+    public BM25Similarity() {
+        this(DEFAULT_K1, DEFAULT_B);
+    }
+
+    public BM25Similarity(float k1, float b) {
+        this.k1 = k1;
+        this.b = b;
+    }
+
+    public float idf(long docFreq, long docCount) {
+        return (float) Math.log(1 + (docCount - docFreq + 0.5) / (docFreq + 0.5));
+    }
+
+    // Per-document length normalisation; precomputed once per field and query
+    public float lengthNorm(int docLength, float avgDocLength) {
+        return k1 * (1 - b + b * docLength / avgDocLength);
+    }
+
+    public float score(float weight, int freq, float lengthNorm) {
+        return weight * freq * (k1 + 1) / (freq + lengthNorm);
+    }
+}
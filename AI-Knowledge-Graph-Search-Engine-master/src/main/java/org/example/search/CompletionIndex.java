@@ -0,0 +1,478 @@
+package org.example.search;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Prefix completion over weighted phrases (titles, category names, past queries).
+ *
+ * Phrases live in a path-compressed trie whose nodes are rows of parallel int arrays;
+ * an edge label is a slice of one phrase's key, so the trie stores no strings of its
+ * own. Every node keeps its subtree's top k phrase ids, so a lookup is a walk down the
+ * typed prefix plus a copy of at most k entries, whatever the number of phrases.
+ *
+ * A phrase's score is the sum of its weights, each scaled by 2^(age / half-life)
+ * relative to a fixed landmark (forward decay): newer occurrences count for more,
+ * and scores never have to be aged in place. Adding weight moves a phrase up the top
+ * lists on its path; removing weight rebuilds those lists from the children.
+ */
+public class CompletionIndex {
+    public static final int DEFAULT_TOP_K = 8;
+    private static final int MAX_PHRASE_LENGTH = 64;
+    private static final int ROOT = 0;
+    // Scores are rescaled before the decay factor overflows
+    private static final double MAX_EXPONENT = 64;
+
+    private final int topK;
+    private final double halfLifeMillis;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Integer> phraseIds = new HashMap<>();
+    private String[] keys = new String[16];
+    private String[] display = new String[16];
+    private double[] scores = new double[16];
+    private int[] counts = new int[16];
+    private int phraseCount;
+
+    // The edge into a node is keys[labelPhrase].substring(labelStart, labelEnd)
+    private int[] firstChild;
+    private int[] nextSibling;
+    private char[] firstChar;
+    private int[] labelPhrase;
+    private int[] labelStart;
+    private int[] labelEnd;
+    private int[] terminal;
+    private int[] top;
+    private byte[] topSize;
+    private int nodeCount;
+
+    private long landmark;
+
+    public CompletionIndex(int topK, double halfLifeDays) {
+        if (topK < 1 || topK > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("topK must be between 1 and " + Byte.MAX_VALUE);
+        }
+        this.topK = topK;
+        this.halfLifeMillis = halfLifeDays * 24 * 60 * 60 * 1000;
+        clear();
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            phraseIds.clear();
+            Arrays.fill(keys, null);
+            Arrays.fill(display, null);
+            phraseCount = 0;
+            firstChild = new int[64];
+            nextSibling = new int[64];
+            firstChar = new char[64];
+            labelPhrase = new int[64];
+            labelStart = new int[64];
+            labelEnd = new int[64];
+            terminal = new int[64];
+            top = new int[64 * topK];
+            topSize = new byte[64];
+            nodeCount = 0;
+            newNode(-1, 0, 0);
+            landmark = System.currentTimeMillis();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds one occurrence of a phrase seen at the given time (now if null).
+     */
+    public void add(String phrase, double weight, LocalDateTime time) {
+        update(phrase, weight, time, 1);
+    }
+
+    // Withdraws an occurrence added earlier with the same weight and time
+    public void remove(String phrase, double weight, LocalDateTime time) {
+        update(phrase, -weight, time, -1);
+    }
+
+    private void update(String phrase, double weight, LocalDateTime time, int occurrences) {
+        String key = normalize(phrase, false);
+        if (key.isEmpty() || weight == 0) {
+            return;
+        }
+        long millis = time != null ? time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                : System.currentTimeMillis();
+
+        lock.writeLock().lock();
+        try {
+            Integer existing = phraseIds.get(key);
+            if (existing == null && occurrences < 0) {
+                return;
+            }
+            if ((millis - landmark) / halfLifeMillis > MAX_EXPONENT) {
+                rescale(millis);
+            }
+            int id = existing != null ? existing : insert(key);
+            if (occurrences > 0) {
+                display[id] = displayForm(phrase);
+            }
+
+            counts[id] += occurrences;
+            scores[id] += weight * Math.pow(2, (millis - landmark) / halfLifeMillis);
+            if (counts[id] <= 0) {
+                // Exact zero once every occurrence is gone, whatever rounding has accumulated
+                counts[id] = 0;
+                scores[id] = 0;
+            }
+
+            int[] path = path(key);
+            if (weight > 0) {
+                for (int node : path) {
+                    promote(node, id);
+                }
+            } else {
+                for (int i = path.length - 1; i >= 0; i--) {
+                    if (contains(path[i], id)) {
+                        recompute(path[i]);
+                    }
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Highest scoring phrases starting with the prefix, at most min(limit, k) of them.
+     */
+    public List<String> suggest(String prefix, int limit) {
+        List<String> suggestions = new ArrayList<>();
+        String key = normalize(prefix, true);
+        if (key.isEmpty() || limit <= 0) {
+            return suggestions;
+        }
+
+        lock.readLock().lock();
+        try {
+            int node = ROOT;
+            int i = 0;
+            while (i < key.length()) {
+                int child = findChild(node, key.charAt(i));
+                if (child < 0) {
+                    return suggestions;
+                }
+                String label = keys[labelPhrase[child]];
+                int start = labelStart[child];
+                int length = Math.min(labelEnd[child] - start, key.length() - i);
+                if (!label.regionMatches(start, key, i, length)) {
+                    return suggestions;
+                }
+                i += length;
+                node = child;
+            }
+            int base = node * topK;
+            for (int k = 0; k < topSize[node] && suggestions.size() < limit; k++) {
+                suggestions.add(display[top[base + k]]);
+            }
+            return suggestions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            int live = 0;
+            for (int id = 0; id < phraseCount; id++) {
+                if (counts[id] > 0) {
+                    live++;
+                }
+            }
+            return live;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Map<String, Object> getStatistics() {
+        lock.readLock().lock();
+        try {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("phrases", phraseCount);
+            stats.put("nodes", nodeCount);
+            // Trie arrays only; phrase strings are shared with the phrase table
+            stats.put("trieBytes", (long) firstChild.length * (7 * Integer.BYTES + Character.BYTES + 1)
+                    + (long) top.length * Integer.BYTES);
+            return stats;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int insert(String key) {
+        int id = newPhrase(key);
+        int node = ROOT;
+        int i = 0;
+        while (i < key.length()) {
+            int child = findChild(node, key.charAt(i));
+            if (child < 0) {
+                int leaf = newNode(id, i, key.length());
+                nextSibling[leaf] = firstChild[node];
+                firstChild[node] = leaf;
+                node = leaf;
+                break;
+            }
+
+            String label = keys[labelPhrase[child]];
+            int start = labelStart[child];
+            int length = labelEnd[child] - start;
+            int common = 0;
+            while (common < length && i + common < key.length()
+                    && label.charAt(start + common) == key.charAt(i + common)) {
+                common++;
+            }
+            if (common < length) {
+                // Split the edge: the new node takes the shared part and the child keeps the rest
+                int middle = newNode(labelPhrase[child], start, start + common);
+                replaceChild(node, child, middle);
+                labelStart[child] = start + common;
+                firstChar[child] = label.charAt(start + common);
+                firstChild[middle] = child;
+                nextSibling[child] = -1;
+                System.arraycopy(top, child * topK, top, middle * topK, topK);
+                topSize[middle] = topSize[child];
+                child = middle;
+            }
+            node = child;
+            i += common;
+        }
+        terminal[node] = id;
+        return id;
+    }
+
+    // Nodes from the root to the phrase's terminal node
+    private int[] path(String key) {
+        int[] path = new int[key.length() + 1];
+        int depth = 0;
+        int node = ROOT;
+        path[depth++] = node;
+        int i = 0;
+        while (i < key.length()) {
+            node = findChild(node, key.charAt(i));
+            path[depth++] = node;
+            i += labelEnd[node] - labelStart[node];
+        }
+        return Arrays.copyOf(path, depth);
+    }
+
+    private int findChild(int node, char c) {
+        for (int child = firstChild[node]; child >= 0; child = nextSibling[child]) {
+            if (firstChar[child] == c) {
+                return child;
+            }
+        }
+        return -1;
+    }
+
+    private void replaceChild(int parent, int child, int replacement) {
+        nextSibling[replacement] = nextSibling[child];
+        if (firstChild[parent] == child) {
+            firstChild[parent] = replacement;
+            return;
+        }
+        int previous = firstChild[parent];
+        while (nextSibling[previous] != child) {
+            previous = nextSibling[previous];
+        }
+        nextSibling[previous] = replacement;
+    }
+
+    // Moves a phrase whose score went up into, or up within, a node's top list
+    private void promote(int node, int id) {
+        int base = node * topK;
+        int size = topSize[node];
+        int position = -1;
+        for (int k = 0; k < size; k++) {
+            if (top[base + k] == id) {
+                position = k;
+                break;
+            }
+        }
+        if (position < 0) {
+            if (size < topK) {
+                position = size;
+                topSize[node]++;
+            } else if (better(id, top[base + size - 1])) {
+                position = size - 1;
+            } else {
+                return;
+            }
+            top[base + position] = id;
+        }
+        while (position > 0 && better(top[base + position], top[base + position - 1])) {
+            int swap = top[base + position];
+            top[base + position] = top[base + position - 1];
+            top[base + position - 1] = swap;
+            position--;
+        }
+    }
+
+    // Rebuilds a node's top list from its own phrase and its children's lists
+    private void recompute(int node) {
+        int base = node * topK;
+        int size = 0;
+        if (terminal[node] >= 0 && scores[terminal[node]] > 0) {
+            top[base + size++] = terminal[node];
+        }
+        for (int child = firstChild[node]; child >= 0; child = nextSibling[child]) {
+            int childBase = child * topK;
+            for (int k = 0; k < topSize[child]; k++) {
+                int id = top[childBase + k];
+                if (scores[id] <= 0) {
+                    continue;
+                }
+                if (size < topK) {
+                    top[base + size++] = id;
+                } else if (better(id, top[base + size - 1])) {
+                    top[base + size - 1] = id;
+                } else {
+                    // Child lists are sorted, so the rest of this one cannot do better
+                    break;
+                }
+                for (int p = size - 1; p > 0 && better(top[base + p], top[base + p - 1]); p--) {
+                    int swap = top[base + p];
+                    top[base + p] = top[base + p - 1];
+                    top[base + p - 1] = swap;
+                }
+            }
+        }
+        topSize[node] = (byte) size;
+    }
+
+    private boolean contains(int node, int id) {
+        int base = node * topK;
+        for (int k = 0; k < topSize[node]; k++) {
+            if (top[base + k] == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean better(int a, int b) {
+        return scores[a] > scores[b] || (scores[a] == scores[b] && a < b);
+    }
+
+    private void rescale(long millis) {
+        double factor = Math.pow(2, -(millis - landmark) / halfLifeMillis);
+        for (int id = 0; id < phraseCount; id++) {
+            scores[id] *= factor;
+        }
+        landmark = millis;
+    }
+
+    private int newPhrase(String key) {
+        if (phraseCount == keys.length) {
+            int capacity = phraseCount + (phraseCount >> 1);
+            keys = Arrays.copyOf(keys, capacity);
+            display = Arrays.copyOf(display, capacity);
+            scores = Arrays.copyOf(scores, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+        }
+        int id = phraseCount++;
+        keys[id] = key;
+        scores[id] = 0;
+        counts[id] = 0;
+        phraseIds.put(key, id);
+        return id;
+    }
+
+    private int newNode(int phrase, int start, int end) {
+        if (nodeCount == firstChild.length) {
+            int capacity = nodeCount + (nodeCount >> 1);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            nextSibling = Arrays.copyOf(nextSibling, capacity);
+            firstChar = Arrays.copyOf(firstChar, capacity);
+            labelPhrase = Arrays.copyOf(labelPhrase, capacity);
+            labelStart = Arrays.copyOf(labelStart, capacity);
+            labelEnd = Arrays.copyOf(labelEnd, capacity);
+            terminal = Arrays.copyOf(terminal, capacity);
+            top = Arrays.copyOf(top, capacity * topK);
+            topSize = Arrays.copyOf(topSize, capacity);
+        }
+        int node = nodeCount++;
+        firstChild[node] = -1;
+        nextSibling[node] = -1;
+        firstChar[node] = phrase >= 0 && start < end ? keys[phrase].charAt(start) : 0;
+        labelPhrase[node] = phrase;
+        labelStart[node] = start;
+        labelEnd[node] = end;
+        terminal[node] = -1;
+        topSize[node] = 0;
+        return node;
+    }
+
+    /**
+     * Lower case with runs of whitespace collapsed, cut at a word boundary to
+     * MAX_PHRASE_LENGTH. A prefix keeps one trailing space, since "vpn " should
+     * not complete to "vpnclient".
+     */
+    static String normalize(String text, boolean prefix) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder key = new StringBuilder(Math.min(text.length(), MAX_PHRASE_LENGTH));
+        boolean space = false;
+        for (int i = 0; i < text.length() && key.length() < MAX_PHRASE_LENGTH; i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = key.length() > 0;
+            } else {
+                if (space) {
+                    key.append(' ');
+                    space = false;
+                }
+                key.append(Character.toLowerCase(c));
+            }
+        }
+        if (prefix) {
+            if (space && key.length() < MAX_PHRASE_LENGTH) {
+                key.append(' ');
+            }
+            return key.toString();
+        }
+        if (key.length() == MAX_PHRASE_LENGTH && text.length() > MAX_PHRASE_LENGTH) {
+            int cut = key.lastIndexOf(" ");
+            if (cut > 0) {
+                key.setLength(cut);
+            }
+        }
+        return key.toString();
+    }
+
+    // The phrase as first typed, with the same whitespace and length as its key
+    private static String displayForm(String phrase) {
+        String key = normalize(phrase, false);
+        StringBuilder form = new StringBuilder(key.length());
+        boolean space = false;
+        for (int i = 0; i < phrase.length() && form.length() < key.length(); i++) {
+            char c = phrase.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = form.length() > 0;
+            } else {
+                if (space) {
+                    form.append(' ');
+                    space = false;
+                }
+                form.append(c);
+            }
+        }
+        return form.toString();
+    }
+}
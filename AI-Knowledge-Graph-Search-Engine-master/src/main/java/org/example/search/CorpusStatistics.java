@@ -0,0 +1,363 @@
+package org.example.search;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Document frequencies of every analyzed term across all indexed tickets and articles, for
+ * TF-IDF weighting outside the search index. A document is all of its text fields; a term
+ * counts once per document however often it occurs.
+ *
+ * Terms are kept as 64-bit hashes in an open-addressing table of longs with an int count
+ * each, 12 bytes a slot and no strings; a collision would need billions of distinct terms.
+ * Changes are applied as a document's before and after texts, so only the terms that
+ * appeared or disappeared are touched.
+ */
+public class CorpusStatistics {
+    private static final int MAGIC = 0x43535453;
+    private static final int VERSION = 1;
+
+    private final Analyzer analyzer;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // One thread's distinct term hashes of a document's old and new texts
+    private final ThreadLocal<TermHashes[]> scratch = ThreadLocal.withInitial(
+            () -> new TermHashes[] { new TermHashes(), new TermHashes() });
+    // Term hash per slot, 0 when free; slots whose count fell to 0 stay until the next resize
+    private long[] keys;
+    private int[] docFreqs;
+    private int used;
+    private int terms;
+    private int documents;
+
+    public CorpusStatistics(Analyzer analyzer) {
+        this.analyzer = analyzer;
+        this.keys = new long[1024];
+        this.docFreqs = new int[1024];
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            keys = new long[1024];
+            docFreqs = new int[1024];
+            used = 0;
+            terms = 0;
+            documents = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Counts a new document made of the texts
+    public void add(CharSequence... texts) {
+        replace(null, texts);
+    }
+
+    /**
+     * Moves a document from its old texts to its new ones; null stands for no document, so
+     * a null before adds one and a null after removes it.
+     */
+    public void replace(CharSequence[] before, CharSequence[] after) {
+        TermHashes[] hashes = scratch.get();
+        TermHashes removed = hashes[0].collect(analyzer, before);
+        TermHashes added = hashes[1].collect(analyzer, after);
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < removed.size; i++) {
+                if (!added.contains(removed.hashes[i])) {
+                    decrement(removed.hashes[i]);
+                }
+            }
+            for (int i = 0; i < added.size; i++) {
+                if (!removed.contains(added.hashes[i])) {
+                    increment(added.hashes[i]);
+                }
+            }
+            documents += (after != null ? 1 : 0) - (before != null ? 1 : 0);
+        } finally {
+            lock.writeLock().unlock();
+            removed.clear();
+            added.clear();
+        }
+    }
+
+    public int documents() {
+        lock.readLock().lock();
+        try {
+            return documents;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int docFreq(String term) {
+        long hash = hash(term);
+        lock.readLock().lock();
+        try {
+            int slot = find(hash);
+            return slot >= 0 ? docFreqs[slot] : 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Puts the inverse document frequency of each counted term into idf, by term number,
+     * under one lock: ln((1 + documents) / (1 + docFreq)) + 1, which is 1 for a term in
+     * every document and for every term of an empty corpus.
+     */
+    public void idf(TermCounts counts, float[] idf) {
+        int n = counts.size();
+        lock.readLock().lock();
+        try {
+            for (int id = 0; id < n; id++) {
+                int slot = find(hash(counts.term(id)));
+                int docFreq = slot >= 0 ? docFreqs[slot] : 0;
+                idf[id] = (float) Math.log((1.0 + documents) / (1.0 + docFreq)) + 1;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes the counts to a temporary file and moves it over the target, so a crash
+     * leaves the previous file intact. User data is stored alongside.
+     */
+    public void save(Path file, Map<String, String> userData) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+
+        lock.readLock().lock();
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(userData.size());
+            for (Map.Entry<String, String> entry : userData.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeUTF(entry.getValue() != null ? entry.getValue() : "");
+            }
+            out.writeInt(documents);
+            out.writeInt(terms);
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (docFreqs[slot] > 0) {
+                    out.writeLong(keys[slot]);
+                    out.writeInt(docFreqs[slot]);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Replaces the counts with saved ones
+    public void load(Path file, Map<String, String> userData) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a corpus statistics file: " + file);
+            }
+            Map<String, String> data = new HashMap<>();
+            for (int i = in.readInt(); i > 0; i--) {
+                data.put(in.readUTF(), in.readUTF());
+            }
+            int savedDocuments = in.readInt();
+            int count = in.readInt();
+            int capacity = Math.max(1024, Integer.highestOneBit(Math.max(count, 1)) << 2);
+            long[] savedKeys = new long[capacity];
+            int[] savedDocFreqs = new int[capacity];
+            for (int i = 0; i < count; i++) {
+                long hash = in.readLong();
+                int slot = slot(hash, capacity);
+                while (savedKeys[slot] != 0) {
+                    slot = (slot + 1) & (capacity - 1);
+                }
+                savedKeys[slot] = hash;
+                savedDocFreqs[slot] = in.readInt();
+            }
+
+            lock.writeLock().lock();
+            try {
+                keys = savedKeys;
+                docFreqs = savedDocFreqs;
+                used = count;
+                terms = count;
+                documents = savedDocuments;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            userData.putAll(data);
+        }
+    }
+
+    public Map<String, Object> getStatistics() {
+        lock.readLock().lock();
+        try {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("documents", documents);
+            stats.put("terms", terms);
+            stats.put("estimatedBytes", keys.length * (long) (Long.BYTES + Integer.BYTES));
+            return stats;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int find(long hash) {
+        int mask = keys.length - 1;
+        for (int slot = slot(hash, keys.length); keys[slot] != 0; slot = (slot + 1) & mask) {
+            if (keys[slot] == hash) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private void increment(long hash) {
+        int slot = find(hash);
+        if (slot < 0) {
+            if ((used + 1) * 2 > keys.length) {
+                resize();
+            }
+            slot = slot(hash, keys.length);
+            while (keys[slot] != 0) {
+                slot = (slot + 1) & (keys.length - 1);
+            }
+            keys[slot] = hash;
+            used++;
+        }
+        if (docFreqs[slot]++ == 0) {
+            terms++;
+        }
+    }
+
+    private void decrement(long hash) {
+        int slot = find(hash);
+        if (slot >= 0 && docFreqs[slot] > 0 && --docFreqs[slot] == 0) {
+            terms--;
+        }
+    }
+
+    // Rehashes the live terms, dropping those no document has any more, and grows if still crowded
+    private void resize() {
+        int capacity = keys.length;
+        while ((terms + 1) * 4 > capacity) {
+            capacity *= 2;
+        }
+        long[] oldKeys = keys;
+        int[] oldDocFreqs = docFreqs;
+        keys = new long[capacity];
+        docFreqs = new int[capacity];
+        for (int old = 0; old < oldKeys.length; old++) {
+            if (oldDocFreqs[old] > 0) {
+                int slot = slot(oldKeys[old], capacity);
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & (capacity - 1);
+                }
+                keys[slot] = oldKeys[old];
+                docFreqs[slot] = oldDocFreqs[old];
+            }
+        }
+        used = terms;
+    }
+
+    private static int slot(long hash, int capacity) {
+        return (int) (hash ^ (hash >>> 32)) & (capacity - 1);
+    }
+
+    // FNV-1a over the term's characters, finished with a 64-bit mix; never 0, which marks a free slot
+    static long hash(CharSequence term) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < term.length(); i++) {
+            h ^= term.charAt(i);
+            h *= 0x100000001B3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return h != 0 ? h : 1;
+    }
+
+    // A reusable set of the distinct term hashes of some texts
+    private static final class TermHashes {
+        long[] table = new long[256];
+        long[] hashes = new long[128];
+        int size;
+
+        TermHashes collect(Analyzer analyzer, CharSequence[] texts) {
+            if (texts != null) {
+                for (CharSequence text : texts) {
+                    analyzer.analyze(text, (term, position, startOffset, endOffset) -> add(hash(term)));
+                }
+            }
+            return this;
+        }
+
+        void add(long hash) {
+            int mask = table.length - 1;
+            int slot = slot(hash, table.length);
+            while (table[slot] != 0) {
+                if (table[slot] == hash) {
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            if ((size + 1) * 2 > table.length) {
+                grow();
+                add(hash);
+                return;
+            }
+            table[slot] = hash;
+            if (size == hashes.length) {
+                hashes = Arrays.copyOf(hashes, size * 2);
+            }
+            hashes[size++] = hash;
+        }
+
+        boolean contains(long hash) {
+            int mask = table.length - 1;
+            for (int slot = slot(hash, table.length); table[slot] != 0; slot = (slot + 1) & mask) {
+                if (table[slot] == hash) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void clear() {
+            for (int i = 0; i < size; i++) {
+                int mask = table.length - 1;
+                int slot = slot(hashes[i], table.length);
+                while (table[slot] != hashes[i]) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = 0;
+            }
+            size = 0;
+        }
+
+        private void grow() {
+            table = new long[table.length * 2];
+            for (int i = 0; i < size; i++) {
+                int mask = table.length - 1;
+                int slot = slot(hashes[i], table.length);
+                while (table[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = hashes[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,388 @@
+package org.example.search;
+
+import org.example.model.CustomField;
+import org.example.model.enums.CustomFieldType;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Custom field values of tickets, one column per field, outside the search index.
+ *
+ * Every value is held as a long in an array indexed by ticket ordinal: numbers as
+ * themselves, decimals as order-preserving bits, dates as epoch milliseconds, and
+ * strings and enum values as codes into the column's dictionary. Per column a sorted
+ * index of (value, ordinal) answers equality and range lookups by binary search.
+ * Writes do not re-sort it; the tickets changed since go to a small delta that lookups
+ * check directly, and the index is rebuilt once the delta outgrows an eighth of it.
+ */
+public class CustomFieldStore {
+    private static final int MIN_DELTA = 1024;
+
+    private final EntityOrdinals ordinals = new EntityOrdinals();
+    private final Map<String, Column> columns = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private static final class Column {
+        final CustomFieldType type;
+        long[] keys = new long[16];
+        final BitSet present = new BitSet();
+        // Strings and enum values, lower case so equality ignores case
+        final Map<String, Integer> codes = new HashMap<>();
+        final List<String> dictionary = new ArrayList<>();
+
+        // Sorted index: distinct keys ascending, and (rank of key << 32 | ordinal) ascending
+        long[] distinct = new long[0];
+        long[] entries = new long[0];
+        // Ordinals written since the index was built, whose entries in it are stale, with
+        // the key each had in the index and whether it had one
+        final BitSet changed = new BitSet();
+        int[] delta = new int[16];
+        long[] deltaKeys = new long[16];
+        final BitSet wasPresent = new BitSet();
+        int deltaCount;
+
+        Column(CustomFieldType type) {
+            this.type = type;
+        }
+
+        boolean isDictionary() {
+            return type == CustomFieldType.STRING || type == CustomFieldType.ENUM;
+        }
+
+        boolean needsRebuild() {
+            return deltaCount > Math.max(MIN_DELTA, entries.length / 8);
+        }
+    }
+
+    /**
+     * Adds a column for the field, replacing one of another type. Returns whether the
+     * column is new, in which case the caller has to put the tickets' values again.
+     */
+    public boolean define(CustomField field) {
+        lock.writeLock().lock();
+        try {
+            Column column = columns.get(field.getName());
+            if (column != null && column.type == field.getType()) {
+                return false;
+            }
+            columns.put(field.getName(), new Column(field.getType()));
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void drop(String field) {
+        lock.writeLock().lock();
+        try {
+            columns.remove(field);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces the ticket's values of every defined field. Values of fields without a
+     * column, and values that are not in their type's canonical form, are left out.
+     */
+    public void put(String entityId, Map<String, String> values) {
+        lock.writeLock().lock();
+        try {
+            int ordinal = ordinals.acquire(entityId);
+            for (Map.Entry<String, Column> entry : columns.entrySet()) {
+                String value = values != null ? values.get(entry.getKey()) : null;
+                set(entry.getValue(), ordinal, value);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String entityId) {
+        lock.writeLock().lock();
+        try {
+            int ordinal = ordinals.release(entityId);
+            if (ordinal >= 0) {
+                for (Column column : columns.values()) {
+                    set(column, ordinal, null);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void set(Column column, int ordinal, String value) {
+        if (ordinal >= column.keys.length) {
+            column.keys = Arrays.copyOf(column.keys, Math.max(column.keys.length * 2, ordinal + 1));
+        }
+        boolean present = value != null;
+        long key = 0;
+        if (present) {
+            try {
+                key = column.isDictionary() ? code(column, value) : encode(column.type, value, false);
+            } catch (RuntimeException e) {
+                present = false;
+            }
+        }
+        if (present == column.present.get(ordinal) && (!present || key == column.keys[ordinal])) {
+            return;
+        }
+        if (!column.changed.get(ordinal)) {
+            column.changed.set(ordinal);
+            if (column.deltaCount == column.delta.length) {
+                column.delta = Arrays.copyOf(column.delta, column.deltaCount * 2);
+                column.deltaKeys = Arrays.copyOf(column.deltaKeys, column.deltaCount * 2);
+            }
+            column.delta[column.deltaCount] = ordinal;
+            column.deltaKeys[column.deltaCount] = column.keys[ordinal];
+            column.wasPresent.set(column.deltaCount, column.present.get(ordinal));
+            column.deltaCount++;
+        }
+        column.keys[ordinal] = key;
+        column.present.set(ordinal, present);
+    }
+
+    private static long code(Column column, String value) {
+        String normalized = value.toLowerCase(Locale.ROOT);
+        Integer code = column.codes.get(normalized);
+        if (code == null) {
+            code = column.dictionary.size();
+            column.codes.put(normalized, code);
+            column.dictionary.add(normalized);
+        }
+        return code;
+    }
+
+    /**
+     * The long a canonical value is held as. A date bound that is only a day stands for
+     * the start of the day, or its last millisecond when it is an upper bound.
+     */
+    static long encode(CustomFieldType type, String value, boolean upper) {
+        switch (type) {
+            case LONG:
+                return Long.parseLong(value);
+            case DOUBLE:
+                // Flipping the magnitude bits of negatives makes signed long order match double order
+                long bits = Double.doubleToLongBits(Double.parseDouble(value) + 0.0);
+                return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+            case DATE:
+                LocalDateTime dateTime = value.length() == 10
+                        ? LocalDate.parse(value).plusDays(upper ? 1 : 0).atStartOfDay()
+                        : LocalDateTime.parse(value);
+                long millis = dateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+                return value.length() == 10 && upper ? millis - 1 : millis;
+            default:
+                throw new IllegalArgumentException("Not an ordered type: " + type);
+        }
+    }
+
+    /**
+     * Ids of at most limit tickets whose value of the field lies between from and to,
+     * both inclusive and null for no bound, in no particular order. String and enum
+     * fields only support equality, with from equal to to, ignoring case.
+     */
+    public List<String> find(String field, String from, String to, int limit) {
+        List<String> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            Column column = indexedColumn(field);
+            long[] keys = keyRange(column, field, from, to);
+            if (keys == null) {
+                return result;
+            }
+            int[] slice = slice(column, keys[0], keys[1]);
+            for (int i = slice[0]; i < slice[1] && result.size() < limit; i++) {
+                int ordinal = (int) column.entries[i];
+                if (!column.changed.get(ordinal)) {
+                    result.add(ordinals.entityId(ordinal));
+                }
+            }
+            for (int i = 0; i < column.deltaCount && result.size() < limit; i++) {
+                int ordinal = column.delta[i];
+                if (column.present.get(ordinal) && inRange(column.keys[ordinal], keys)) {
+                    result.add(ordinals.entityId(ordinal));
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // The sorted index's count corrected by the delta, without visiting the matches
+    public long count(String field, String from, String to) {
+        lock.readLock().lock();
+        try {
+            Column column = indexedColumn(field);
+            long[] keys = keyRange(column, field, from, to);
+            if (keys == null) {
+                return 0;
+            }
+            int[] slice = slice(column, keys[0], keys[1]);
+            long count = slice[1] - slice[0];
+            for (int i = 0; i < column.deltaCount; i++) {
+                if (column.wasPresent.get(i) && inRange(column.deltaKeys[i], keys)) {
+                    count--;
+                }
+                int ordinal = column.delta[i];
+                if (column.present.get(ordinal) && inRange(column.keys[ordinal], keys)) {
+                    count++;
+                }
+            }
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // The field's column with its sorted index rebuilt if due; called holding the read lock
+    private Column indexedColumn(String field) {
+        Column column = column(field);
+        if (column.needsRebuild()) {
+            // A read lock cannot be upgraded; give it up while the index is rebuilt
+            lock.readLock().unlock();
+            lock.writeLock().lock();
+            try {
+                column = column(field);
+                if (column.needsRebuild()) {
+                    rebuild(column);
+                }
+            } finally {
+                lock.readLock().lock();
+                lock.writeLock().unlock();
+            }
+            column = column(field);
+        }
+        return column;
+    }
+
+    // The inclusive key bounds of a lookup, or null if nothing can match
+    private static long[] keyRange(Column column, String field, String from, String to) {
+        long low;
+        long high;
+        if (column.isDictionary()) {
+            if (from == null || !from.equalsIgnoreCase(to)) {
+                throw new IllegalArgumentException("Only equality is supported on " + field);
+            }
+            Integer code = column.codes.get(from.toLowerCase(Locale.ROOT));
+            if (code == null) {
+                return null;
+            }
+            low = code;
+            high = code;
+        } else {
+            low = from != null ? encode(column.type, from, false) : Long.MIN_VALUE;
+            high = to != null ? encode(column.type, to, true) : Long.MAX_VALUE;
+        }
+        return low <= high ? new long[] {low, high} : null;
+    }
+
+    // Start and end of the sorted index entries with keys in [low, high]
+    private static int[] slice(Column column, long low, long high) {
+        int lowRank = lowerBound(column.distinct, low);
+        int highRank = high == Long.MAX_VALUE ? column.distinct.length : lowerBound(column.distinct, high + 1);
+        return new int[] {lowerBound(column.entries, (long) lowRank << 32),
+                lowerBound(column.entries, (long) highRank << 32)};
+    }
+
+    private static boolean inRange(long key, long[] keys) {
+        return key >= keys[0] && key <= keys[1];
+    }
+
+    private Column column(String field) {
+        Column column = columns.get(field);
+        if (column == null) {
+            throw new IllegalArgumentException("Unknown custom field: " + field);
+        }
+        return column;
+    }
+
+    // Sorts the present values; ranks of distinct keys let key and ordinal share one long
+    private static void rebuild(Column column) {
+        BitSet present = column.present;
+        int count = present.cardinality();
+        long[] keys = new long[count];
+        int n = 0;
+        for (int ordinal = present.nextSetBit(0); ordinal >= 0; ordinal = present.nextSetBit(ordinal + 1)) {
+            keys[n++] = column.keys[ordinal];
+        }
+        Arrays.sort(keys);
+        int distinctCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0 || keys[i] != keys[i - 1]) {
+                keys[distinctCount++] = keys[i];
+            }
+        }
+        long[] distinct = Arrays.copyOf(keys, distinctCount);
+
+        long[] entries = new long[count];
+        n = 0;
+        for (int ordinal = present.nextSetBit(0); ordinal >= 0; ordinal = present.nextSetBit(ordinal + 1)) {
+            long rank = Arrays.binarySearch(distinct, column.keys[ordinal]);
+            entries[n++] = rank << 32 | ordinal;
+        }
+        Arrays.sort(entries);
+
+        column.distinct = distinct;
+        column.entries = entries;
+        column.changed.clear();
+        column.wasPresent.clear();
+        column.deltaCount = 0;
+    }
+
+    // First index of the sorted values whose value is at least key
+    private static int lowerBound(long[] values, long key) {
+        int low = 0;
+        int high = values.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (values[middle] < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            ordinals.clear();
+            columns.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Map<String, Object> getStatistics() {
+        lock.readLock().lock();
+        try {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("tickets", ordinals.size());
+            long bytes = 0;
+            for (Map.Entry<String, Column> entry : columns.entrySet()) {
+                Column column = entry.getValue();
+                stats.put(entry.getKey(), column.present.cardinality());
+                bytes += (long) (column.keys.length + column.distinct.length + column.entries.length) * Long.BYTES;
+            }
+            stats.put("columnBytes", bytes);
+            return stats;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
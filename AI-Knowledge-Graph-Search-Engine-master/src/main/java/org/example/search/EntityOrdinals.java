@@ -0,0 +1,73 @@
+package org.example.search;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Dense int numbers for entity ids. A released number is handed out again before a new
+ * one, so arrays and bitmaps indexed by them stay as large as the number of entities.
+ * Not thread safe; owners guard it with their own lock.
+ */
+class EntityOrdinals {
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    private String[] entityIds = new String[16];
+    private int[] free = new int[16];
+    private int freeCount;
+    private int limit;
+
+    // The entity's ordinal, or -1
+    int get(String entityId) {
+        Integer ordinal = ordinals.get(entityId);
+        return ordinal != null ? ordinal : -1;
+    }
+
+    // The entity's ordinal, numbering it if it has none yet
+    int acquire(String entityId) {
+        int ordinal = get(entityId);
+        if (ordinal >= 0) {
+            return ordinal;
+        }
+        ordinal = freeCount > 0 ? free[--freeCount] : limit++;
+        if (ordinal == entityIds.length) {
+            entityIds = Arrays.copyOf(entityIds, ordinal * 2);
+        }
+        ordinals.put(entityId, ordinal);
+        entityIds[ordinal] = entityId;
+        return ordinal;
+    }
+
+    // Frees the entity's ordinal and returns it, or -1 if it had none
+    int release(String entityId) {
+        Integer ordinal = ordinals.remove(entityId);
+        if (ordinal == null) {
+            return -1;
+        }
+        entityIds[ordinal] = null;
+        if (freeCount == free.length) {
+            free = Arrays.copyOf(free, freeCount * 2);
+        }
+        free[freeCount++] = ordinal;
+        return ordinal;
+    }
+
+    String entityId(int ordinal) {
+        return entityIds[ordinal];
+    }
+
+    int size() {
+        return ordinals.size();
+    }
+
+    // One more than the highest ordinal handed out; arrays indexed by ordinal need this length
+    int limit() {
+        return limit;
+    }
+
+    void clear() {
+        ordinals.clear();
+        entityIds = new String[16];
+        freeCount = 0;
+        limit = 0;
+    }
+}
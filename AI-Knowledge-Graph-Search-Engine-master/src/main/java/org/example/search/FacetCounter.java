@@ -0,0 +1,114 @@
+package org.example.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Counts the values of keyword fields over a set of matching documents without loading
+ * them. Per segment and faceted field, every value gets a {@link RoaringBitmap} of its
+ * documents, built from the postings the first time the segment is faceted and dropped
+ * with the segment; a count is the value's bitmap intersected with the matches.
+ */
+public class FacetCounter {
+    private final IndexSchema schema;
+    private final Map<IndexSegment, Map<String, SegmentFacets>> segments =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    // One field's values in one segment: the indexed term, how it was written and its documents
+    private static final class SegmentFacets {
+        final String[] terms;
+        final String[] labels;
+        final RoaringBitmap[] docs;
+
+        SegmentFacets(String[] terms, String[] labels, RoaringBitmap[] docs) {
+            this.terms = terms;
+            this.labels = labels;
+            this.docs = docs;
+        }
+    }
+
+    public FacetCounter(IndexSchema schema) {
+        this.schema = schema;
+    }
+
+    /**
+     * Documents per value of a keyword field among those set in matches, a bitset over
+     * the snapshot's doc ids. Values are labelled as first written and come most frequent
+     * first; values without matches are left out.
+     */
+    public Map<String, Long> count(IndexSnapshot snapshot, long[] matches, String field) {
+        if (!schema.isKeywordField(field)) {
+            throw new IllegalArgumentException("Not a keyword field: " + field);
+        }
+        Map<String, Long> counts = new HashMap<>();
+        Map<String, String> labels = new HashMap<>();
+        for (int s = 0; s < snapshot.segmentCount(); s++) {
+            IndexSegment segment = snapshot.segment(s);
+            SegmentFacets facets = segments.computeIfAbsent(segment, key -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(field, key -> index(segment, field));
+            int base = snapshot.docBase(s);
+            for (int v = 0; v < facets.terms.length; v++) {
+                long count = facets.docs[v].andCardinality(matches, base);
+                if (count > 0) {
+                    counts.merge(facets.terms[v], count, Long::sum);
+                    labels.putIfAbsent(facets.terms[v], facets.labels[v]);
+                }
+            }
+        }
+
+        List<Map.Entry<String, Long>> sorted = new ArrayList<>(counts.entrySet());
+        sorted.sort((a, b) -> !a.getValue().equals(b.getValue()) ? Long.compare(b.getValue(), a.getValue())
+                : a.getKey().compareTo(b.getKey()));
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> entry : sorted) {
+            result.put(labels.get(entry.getKey()), entry.getValue());
+        }
+        return result;
+    }
+
+    private SegmentFacets index(IndexSegment segment, String field) {
+        IndexSegment.FieldIndex fieldIndex = segment.field(field);
+        List<String> terms = new ArrayList<>();
+        List<String> labels = new ArrayList<>();
+        List<RoaringBitmap> docs = new ArrayList<>();
+        if (fieldIndex != null) {
+            boolean date = schema.isDateField(field);
+            for (String term : date ? fieldIndex.terms(null, null) : fieldIndex.terms()) {
+                PostingList postings = fieldIndex.postings(term);
+                if (postings == null || postings.size() == 0) {
+                    continue;
+                }
+                RoaringBitmap bitmap = new RoaringBitmap();
+                for (int i = 0; i < postings.size(); i++) {
+                    bitmap.add(postings.docId(i));
+                }
+                if (date) {
+                    // Dates are indexed by hour but faceted by day; a day's hours sort together
+                    String day = term.substring(0, Math.min(term.length(), IndexSchema.DAY_LENGTH));
+                    int last = terms.size() - 1;
+                    if (last >= 0 && terms.get(last).equals(day)) {
+                        docs.set(last, RoaringBitmap.or(docs.get(last), bitmap));
+                    } else {
+                        terms.add(day);
+                        labels.add(day);
+                        docs.add(bitmap);
+                    }
+                    continue;
+                }
+                // Terms are normalized, so take the label from a document that has the value
+                String label = segment.storedFields(postings.docId(0)).get(field);
+                terms.add(term);
+                labels.add(label != null ? label : term);
+                docs.add(bitmap);
+            }
+        }
+        return new SegmentFacets(terms.toArray(new String[0]), labels.toArray(new String[0]),
+                docs.toArray(new RoaringBitmap[0]));
+    }
+}
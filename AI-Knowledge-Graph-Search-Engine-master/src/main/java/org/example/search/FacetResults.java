@@ -0,0 +1,31 @@
+package org.example.search;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Value counts per faceted field over the documents a query matched, and how many
+ * documents that was.
+ */
+public class FacetResults {
+    private final int totalHits;
+    private final Map<String, Map<String, Long>> counts;
+
+    public FacetResults(int totalHits, Map<String, Map<String, Long>> counts) {
+        this.totalHits = totalHits;
+        this.counts = Collections.unmodifiableMap(counts);
+    }
+
+    public int getTotalHits() {
+        return totalHits;
+    }
+
+    // Field to value to documents, most frequent value first
+    public Map<String, Map<String, Long>> getCounts() {
+        return counts;
+    }
+
+    public Map<String, Long> getCounts(String field) {
+        return counts.getOrDefault(field, Collections.emptyMap());
+    }
+}
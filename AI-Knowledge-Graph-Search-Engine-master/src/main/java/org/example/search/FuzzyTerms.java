@@ -0,0 +1,252 @@
+package org.example.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Finds indexed terms within a small edit distance of a query term, so "pasword"
+ * still finds "password".
+ *
+ * Each segment's text terms get a trigram index, built the first time the segment is
+ * searched fuzzily and dropped with the segment. Words padded with two boundary marks
+ * on each side and k edits apart share at least max(length) + 2 - 3k trigrams, so only
+ * terms meeting that count are compared, with a Levenshtein distance that gives up
+ * as soon as it exceeds k.
+ */
+public class FuzzyTerms {
+    private final IndexSchema schema;
+    private final Map<IndexSegment, SegmentTerms> segments = Collections.synchronizedMap(new WeakHashMap<>());
+
+    // Per-thread shared-trigram counters, grown to the largest term dictionary seen
+    private final ThreadLocal<int[]> scratch = ThreadLocal.withInitial(() -> new int[0]);
+
+    public static final class Match {
+        private final String term;
+        private final int distance;
+        private final int docFreq;
+
+        Match(String term, int distance, int docFreq) {
+            this.term = term;
+            this.distance = distance;
+            this.docFreq = docFreq;
+        }
+
+        public String getTerm() {
+            return term;
+        }
+
+        public int getDistance() {
+            return distance;
+        }
+
+        // Summed over the text fields
+        public int getDocFreq() {
+            return docFreq;
+        }
+    }
+
+    public FuzzyTerms(IndexSchema schema) {
+        this.schema = schema;
+    }
+
+    // Edits tolerated for a word of this length: none below 3 characters, two from 6
+    public static int maxEdits(String term) {
+        int length = term.length();
+        return length < 3 ? 0 : length < 6 ? 1 : 2;
+    }
+
+    /**
+     * Terms of the snapshot other than the term itself within maxEdits, closest first
+     * and more frequent first among equally close ones. At most maxExpansions are returned.
+     */
+    public List<Match> expand(IndexSnapshot snapshot, String term, int maxEdits, int maxExpansions) {
+        if (maxEdits <= 0 || maxExpansions <= 0) {
+            return new ArrayList<>();
+        }
+        Map<String, Integer> distances = new HashMap<>();
+        for (IndexSegment segment : snapshot.getSegments()) {
+            SegmentTerms terms = segments.computeIfAbsent(segment, this::index);
+            terms.collect(term, maxEdits, scratch, distances);
+        }
+
+        List<Match> matches = new ArrayList<>(distances.size());
+        for (Map.Entry<String, Integer> entry : distances.entrySet()) {
+            int docFreq = 0;
+            for (String field : schema.getTextFields()) {
+                docFreq += snapshot.docFreq(field, entry.getKey());
+            }
+            if (docFreq > 0) {
+                matches.add(new Match(entry.getKey(), entry.getValue(), docFreq));
+            }
+        }
+        matches.sort((a, b) -> a.distance != b.distance ? Integer.compare(a.distance, b.distance)
+                : a.docFreq != b.docFreq ? Integer.compare(b.docFreq, a.docFreq) : a.term.compareTo(b.term));
+        return matches.size() > maxExpansions ? new ArrayList<>(matches.subList(0, maxExpansions)) : matches;
+    }
+
+    private SegmentTerms index(IndexSegment segment) {
+        Set<String> distinct = new HashSet<>();
+        for (String field : schema.getTextFields()) {
+            IndexSegment.FieldIndex fieldIndex = segment.field(field);
+            if (fieldIndex != null) {
+                for (String term : fieldIndex.terms()) {
+                    distinct.add(term);
+                }
+            }
+        }
+        return new SegmentTerms(distinct.toArray(new String[0]));
+    }
+
+    /**
+     * Trigram postings over one segment's terms, stored as sorted gram keys with
+     * offsets into a flat array of term ordinals.
+     */
+    private static final class SegmentTerms {
+        private final String[] terms;
+        private final int[] gramKeys;
+        private final int[] offsets;
+        private final int[] ords;
+
+        SegmentTerms(String[] terms) {
+            this.terms = terms;
+
+            // (gram, ord) pairs packed into longs so one primitive sort groups them by gram
+            long[] pairs = new long[16];
+            int count = 0;
+            for (int ord = 0; ord < terms.length; ord++) {
+                int[] grams = grams(terms[ord]);
+                if (count + grams.length > pairs.length) {
+                    pairs = Arrays.copyOf(pairs, Math.max(pairs.length * 2, count + grams.length));
+                }
+                for (int gram : grams) {
+                    pairs[count++] = ((long) gram << 32) | ord;
+                }
+            }
+            Arrays.sort(pairs, 0, count);
+
+            int[] keys = new int[16];
+            int[] starts = new int[17];
+            int[] postings = new int[count];
+            int keyCount = 0;
+            int size = 0;
+            long previous = -1;
+            for (int i = 0; i < count; i++) {
+                if (pairs[i] == previous) {
+                    // A gram repeated within one word counts once
+                    continue;
+                }
+                previous = pairs[i];
+                int gram = (int) (pairs[i] >>> 32);
+                if (keyCount == 0 || keys[keyCount - 1] != gram) {
+                    if (keyCount == keys.length) {
+                        keys = Arrays.copyOf(keys, keyCount * 2);
+                        starts = Arrays.copyOf(starts, keyCount * 2 + 1);
+                    }
+                    keys[keyCount] = gram;
+                    starts[keyCount++] = size;
+                }
+                postings[size++] = (int) pairs[i];
+            }
+            starts[keyCount] = size;
+            this.gramKeys = Arrays.copyOf(keys, keyCount);
+            this.offsets = Arrays.copyOf(starts, keyCount + 1);
+            this.ords = Arrays.copyOf(postings, size);
+        }
+
+        void collect(String term, int maxEdits, ThreadLocal<int[]> scratch, Map<String, Integer> distances) {
+            int[] counts = scratch.get();
+            if (counts.length < terms.length) {
+                counts = new int[terms.length];
+                scratch.set(counts);
+            }
+
+            int[] touched = new int[64];
+            int touchedCount = 0;
+            for (int gram : grams(term)) {
+                int key = Arrays.binarySearch(gramKeys, gram);
+                if (key < 0) {
+                    continue;
+                }
+                for (int i = offsets[key]; i < offsets[key + 1]; i++) {
+                    int ord = ords[i];
+                    if (counts[ord]++ == 0) {
+                        if (touchedCount == touched.length) {
+                            touched = Arrays.copyOf(touched, touchedCount * 2);
+                        }
+                        touched[touchedCount++] = ord;
+                    }
+                }
+            }
+
+            // Most touched terms share only a boundary trigram; reject those before reading the term itself
+            int minShared = term.length() + 2 - 3 * maxEdits;
+            for (int i = 0; i < touchedCount; i++) {
+                int ord = touched[i];
+                int shared = counts[ord];
+                counts[ord] = 0;
+                if (shared < minShared) {
+                    continue;
+                }
+                String candidate = terms[ord];
+                if (Math.abs(candidate.length() - term.length()) > maxEdits
+                        || shared < Math.max(candidate.length(), term.length()) + 2 - 3 * maxEdits
+                        || candidate.equals(term)) {
+                    continue;
+                }
+                int distance = distance(term, candidate, maxEdits);
+                if (distance <= maxEdits) {
+                    distances.merge(candidate, distance, Math::min);
+                }
+            }
+        }
+    }
+
+    // Trigrams of "$$term$$" hashed to ints; collisions only add candidates that fail verification
+    private static int[] grams(String term) {
+        int length = term.length();
+        int[] grams = new int[length + 2];
+        for (int i = 0; i < grams.length; i++) {
+            grams[i] = (charAt(term, i - 2) * 31 + charAt(term, i - 1)) * 31 + charAt(term, i);
+        }
+        return grams;
+    }
+
+    private static char charAt(String term, int index) {
+        return index < 0 || index >= term.length() ? '$' : term.charAt(index);
+    }
+
+    /**
+     * Levenshtein distance of a and b, or max + 1 once it is certain to exceed max.
+     */
+    static int distance(String a, String b, int max) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            char ca = a.charAt(i - 1);
+            for (int j = 1; j <= b.length(); j++) {
+                int substitute = previous[j - 1] + (ca == b.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitute, Math.min(previous[j], current[j - 1]) + 1);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > max) {
+                return max + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return Math.min(previous[b.length()], max + 1);
+    }
+}
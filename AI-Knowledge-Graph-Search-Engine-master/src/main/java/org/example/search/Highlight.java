@@ -0,0 +1,64 @@
+package org.example.search;
+
+/**
+ * The best passage of one field of a hit, with the ranges of the words the query matched.
+ * A passage cut out of a longer text starts or ends with an ellipsis where it was cut.
+ */
+public class Highlight {
+    public static final String ELLIPSIS = "…";
+
+    private final String field;
+    private final String fragment;
+    // Start and end of each matched word in the fragment, as pairs in text order
+    private final int[] ranges;
+    private final float score;
+
+    public Highlight(String field, String fragment, int[] ranges, float score) {
+        this.field = field;
+        this.fragment = fragment;
+        this.ranges = ranges;
+        this.score = score;
+    }
+
+    public String getField() {
+        return field;
+    }
+
+    public String getFragment() {
+        return fragment;
+    }
+
+    public int getRangeCount() {
+        return ranges.length / 2;
+    }
+
+    public int getRangeStart(int index) {
+        return ranges[index * 2];
+    }
+
+    public int getRangeEnd(int index) {
+        return ranges[index * 2 + 1];
+    }
+
+    // Sum of the weights of the distinct query terms in the passage
+    public float getScore() {
+        return score;
+    }
+
+    // The fragment with every matched word wrapped in before and after, such as "<b>" and "</b>"
+    public String format(String before, String after) {
+        StringBuilder formatted = new StringBuilder(fragment.length() + ranges.length * 4);
+        int last = 0;
+        for (int i = 0; i < ranges.length; i += 2) {
+            formatted.append(fragment, last, ranges[i]).append(before)
+                    .append(fragment, ranges[i], ranges[i + 1]).append(after);
+            last = ranges[i + 1];
+        }
+        return formatted.append(fragment, last, fragment.length()).toString();
+    }
+
+    @Override
+    public String toString() {
+        return format("[", "]");
+    }
+}
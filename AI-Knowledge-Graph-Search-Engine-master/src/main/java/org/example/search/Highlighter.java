@@ -0,0 +1,148 @@
+package org.example.search;
+
+import java.util.Arrays;
+
+/**
+ * Picks the best passage of a field from the offsets its {@link TermVector} kept, so the
+ * text is only cut, never analyzed again. A passage scores the weights of the distinct
+ * query terms it contains plus a little for each repeat; the best one is widened to
+ * fragmentLength around its matches and cut at spaces.
+ */
+public class Highlighter {
+    public static final int DEFAULT_FRAGMENT_LENGTH = 160;
+    // Share of a term's weight a second or later occurrence in the same passage adds
+    private static final float REPEAT_WEIGHT = 0.2f;
+    // Occurrences are packed with 16 bits for their index, so later ones of a very frequent term are ignored
+    private static final int MAX_OFFSETS = 0xFFFE;
+
+    private final int fragmentLength;
+
+    public Highlighter(int fragmentLength) {
+        this.fragmentLength = Math.max(fragmentLength, 20);
+    }
+
+    /**
+     * The best passage of text, where offsets[t] are the start and end pairs of term t
+     * (null when it does not occur) and weights[t] what finding it is worth. Returns null
+     * when no term occurs.
+     */
+    public Highlight highlight(String field, String text, int[][] offsets, float[] weights) {
+        int count = 0;
+        for (int[] termOffsets : offsets) {
+            count += termOffsets != null ? Math.min(termOffsets.length, MAX_OFFSETS) / 2 : 0;
+        }
+        if (count == 0) {
+            return null;
+        }
+
+        // Occurrences in text order: start in the high bits, then term and index in its offsets
+        long[] occurrences = new long[count];
+        int n = 0;
+        for (int t = 0; t < offsets.length; t++) {
+            for (int i = 0; offsets[t] != null && i < Math.min(offsets[t].length, MAX_OFFSETS); i += 2) {
+                occurrences[n++] = (long) offsets[t][i] << 32 | (long) t << 16 | i;
+            }
+        }
+        Arrays.sort(occurrences);
+
+        // Best-scoring window of fragmentLength chars starting at an occurrence
+        int[] seen = new int[offsets.length];
+        float score = 0;
+        float bestScore = -1;
+        int bestFirst = 0;
+        int bestLast = 0;
+        int last = -1;
+        for (int first = 0; first < n; first++) {
+            int limit = start(occurrences[first]) + fragmentLength;
+            while (last + 1 < n && end(occurrences[last + 1], offsets) <= limit) {
+                last++;
+                int t = term(occurrences[last]);
+                score += seen[t]++ == 0 ? weights[t] : weights[t] * REPEAT_WEIGHT;
+            }
+            if (last >= first && score > bestScore) {
+                bestScore = score;
+                bestFirst = first;
+                bestLast = last;
+            }
+            if (last >= first) {
+                int t = term(occurrences[first]);
+                score -= --seen[t] == 0 ? weights[t] : weights[t] * REPEAT_WEIGHT;
+            } else {
+                last = first;
+            }
+        }
+        if (bestScore < 0) {
+            // Every occurrence is longer than a fragment; show the start of the first
+            bestScore = weights[term(occurrences[0])];
+            bestLast = 0;
+        }
+
+        int spanStart = start(occurrences[bestFirst]);
+        int spanEnd = Math.max(end(occurrences[bestLast], offsets), spanStart);
+        int from;
+        int to;
+        if (text.length() <= fragmentLength) {
+            from = 0;
+            to = text.length();
+        } else {
+            // Centre the matches, then move the cuts to the nearest spaces outside them
+            from = Math.max(0, spanStart - Math.max(0, fragmentLength - (spanEnd - spanStart)) / 2);
+            to = Math.min(text.length(), from + fragmentLength);
+            from = Math.max(0, Math.min(from, to - fragmentLength));
+            if (from > 0 && !Character.isWhitespace(text.charAt(from - 1))) {
+                int space = from;
+                while (space < spanStart && !Character.isWhitespace(text.charAt(space))) {
+                    space++;
+                }
+                from = space < spanStart ? space + 1 : from;
+            }
+            if (to < text.length() && !Character.isWhitespace(text.charAt(to))) {
+                int space = to;
+                while (space > spanEnd && !Character.isWhitespace(text.charAt(space - 1))) {
+                    space--;
+                }
+                to = space > spanEnd ? space - 1 : to;
+            }
+        }
+        while (from < to && Character.isWhitespace(text.charAt(from))) {
+            from++;
+        }
+        while (to > from && Character.isWhitespace(text.charAt(to - 1))) {
+            to--;
+        }
+
+        String prefix = from > 0 ? Highlight.ELLIPSIS : "";
+        StringBuilder fragment = new StringBuilder(to - from + 2).append(prefix);
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            fragment.append(c == '\n' || c == '\r' || c == '\t' ? ' ' : c);
+        }
+        if (to < text.length()) {
+            fragment.append(Highlight.ELLIPSIS);
+        }
+
+        int[] ranges = new int[n * 2];
+        int r = 0;
+        for (int i = 0; i < n; i++) {
+            int start = start(occurrences[i]);
+            int end = end(occurrences[i], offsets);
+            if (start >= from && end <= to) {
+                ranges[r++] = start - from + prefix.length();
+                ranges[r++] = end - from + prefix.length();
+            }
+        }
+        return new Highlight(field, fragment.toString(), Arrays.copyOf(ranges, r), bestScore);
+    }
+
+    private static int start(long occurrence) {
+        return (int) (occurrence >>> 32);
+    }
+
+    private static int term(long occurrence) {
+        return (int) (occurrence >>> 16) & 0xFFFF;
+    }
+
+    private static int end(long occurrence, int[][] offsets) {
+        return offsets[term(occurrence)][((int) occurrence & 0xFFFF) + 1];
+    }
+}
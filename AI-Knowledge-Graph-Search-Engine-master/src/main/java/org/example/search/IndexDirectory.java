@@ -0,0 +1,193 @@
+package org.example.search;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Directory holding the committed state of one index: segment files, delete
+ * bitsets and a commit point that names them. The commit point is replaced
+ * atomically, so a crash mid-commit leaves the previous commit intact.
+ */
+public class IndexDirectory {
+    private static final String COMMIT_FILE = "commit.properties";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String DELETES_SUFFIX = ".del";
+
+    private final Path path;
+    private final Map<IndexSegment, String> segmentNames = new IdentityHashMap<>();
+    private long generation;
+    private long segmentCounter;
+
+    public IndexDirectory(Path path) {
+        this.path = path;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public boolean hasCommit() {
+        return Files.exists(path.resolve(COMMIT_FILE));
+    }
+
+    /**
+     * Maps the committed segments. User data stored with the commit
+     * (such as the reindex watermark) is copied into {@code userData}.
+     */
+    public synchronized IndexSnapshot open(Map<String, String> userData) throws IOException {
+        Properties commit = new Properties();
+        try (InputStream in = Files.newInputStream(path.resolve(COMMIT_FILE))) {
+            commit.load(in);
+        }
+        generation = Long.parseLong(commit.getProperty("generation", "0"));
+        segmentCounter = Long.parseLong(commit.getProperty("segmentCounter", "0"));
+
+        List<IndexSegment> segments = new ArrayList<>();
+        List<long[]> deletes = new ArrayList<>();
+        String names = commit.getProperty("segments", "");
+        for (String name : names.split(",")) {
+            if (name.isBlank()) {
+                continue;
+            }
+            MappedSegment segment = MappedSegment.open(path.resolve(name + SEGMENT_SUFFIX));
+            String deletesFile = commit.getProperty(name + ".deletes");
+            segments.add(segment);
+            deletes.add(deletesFile != null ? readDeletes(path.resolve(deletesFile)) : null);
+            segmentNames.put(segment, name);
+        }
+
+        for (String key : commit.stringPropertyNames()) {
+            if (key.startsWith("user.")) {
+                userData.put(key.substring("user.".length()), commit.getProperty(key));
+            }
+        }
+        removeUnreferenced(commit);
+        return new IndexSnapshot(segments, deletes);
+    }
+
+    /**
+     * Writes every heap segment of the snapshot to disk and records a new commit point.
+     * Returns an equivalent snapshot whose segments are all memory-mapped.
+     */
+    public synchronized IndexSnapshot commit(IndexSnapshot snapshot, Map<String, String> userData)
+            throws IOException {
+        Files.createDirectories(path);
+        generation++;
+
+        Properties commit = new Properties();
+        List<IndexSegment> segments = new ArrayList<>();
+        List<long[]> deletes = new ArrayList<>();
+        StringBuilder names = new StringBuilder();
+        Map<IndexSegment, String> committedNames = new IdentityHashMap<>();
+
+        for (int i = 0; i < snapshot.segmentCount(); i++) {
+            IndexSegment segment = snapshot.segment(i);
+            String name = segmentNames.get(segment);
+            if (name == null) {
+                // Never reuse a file name: an older snapshot may still have it mapped
+                do {
+                    name = "seg_" + (++segmentCounter);
+                } while (Files.exists(path.resolve(name + SEGMENT_SUFFIX)));
+                Path file = path.resolve(name + SEGMENT_SUFFIX);
+                SegmentFile.write(segment, file);
+                segment = MappedSegment.open(file);
+            }
+            committedNames.put(segment, name);
+            segments.add(segment);
+            deletes.add(snapshot.deletes(i));
+
+            if (names.length() > 0) {
+                names.append(',');
+            }
+            names.append(name);
+            if (snapshot.deletes(i) != null) {
+                String deletesFile = name + "_" + generation + DELETES_SUFFIX;
+                writeDeletes(path.resolve(deletesFile), snapshot.deletes(i));
+                commit.setProperty(name + ".deletes", deletesFile);
+            }
+        }
+
+        commit.setProperty("generation", String.valueOf(generation));
+        commit.setProperty("segmentCounter", String.valueOf(segmentCounter));
+        commit.setProperty("segments", names.toString());
+        for (Map.Entry<String, String> entry : userData.entrySet()) {
+            if (entry.getValue() != null) {
+                commit.setProperty("user." + entry.getKey(), entry.getValue());
+            }
+        }
+
+        Path temp = path.resolve(COMMIT_FILE + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            commit.store(out, "Search index commit point");
+        }
+        Files.move(temp, path.resolve(COMMIT_FILE), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+
+        segmentNames.clear();
+        segmentNames.putAll(committedNames);
+        removeUnreferenced(commit);
+        return new IndexSnapshot(segments, deletes);
+    }
+
+    // Best effort: on Windows a file stays locked while an old snapshot still maps it
+    private void removeUnreferenced(Properties commit) {
+        Set<String> referenced = new HashSet<>();
+        referenced.add(COMMIT_FILE);
+        for (String name : commit.getProperty("segments", "").split(",")) {
+            referenced.add(name + SEGMENT_SUFFIX);
+            String deletesFile = commit.getProperty(name + ".deletes");
+            if (deletesFile != null) {
+                referenced.add(deletesFile);
+            }
+        }
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(path)) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                if (!referenced.contains(fileName)
+                        && (fileName.endsWith(SEGMENT_SUFFIX) || fileName.endsWith(DELETES_SUFFIX))) {
+                    try {
+                        Files.deleteIfExists(file);
+                    } catch (IOException e) {
+                        // Retried after the next commit
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("❌ Error cleaning index directory " + path + ": " + e.getMessage());
+        }
+    }
+
+    private static void writeDeletes(Path file, long[] bits) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+            out.writeInt(bits.length);
+            for (long word : bits) {
+                out.writeLong(word);
+            }
+        }
+    }
+
+    private static long[] readDeletes(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+            long[] bits = new long[in.readInt()];
+            for (int i = 0; i < bits.length; i++) {
+                bits[i] = in.readLong();
+            }
+            return bits;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package org.example.search;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Flat document handed to the search index.
+ * Every field is stored; the index schema decides which ones are analyzed.
+ */
+public class IndexDocument {
+    private final String entityId;
+    private final Map<String, String> fields;
+
+    public IndexDocument(String entityId) {
+        this.entityId = entityId;
+        this.fields = new LinkedHashMap<>();
+    }
+
+    public IndexDocument(String entityId, Map<String, String> fields) {
+        this.entityId = entityId;
+        this.fields = new LinkedHashMap<>(fields);
+    }
+
+    public String getEntityId() {
+        return entityId;
+    }
+
+    public Map<String, String> getFields() {
+        return fields;
+    }
+
+    public String get(String field) {
+        return fields.get(field);
+    }
+
+    public IndexDocument put(String field, String value) {
+        if (value != null) {
+            fields.put(field, value);
+        }
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "IndexDocument{" +
+                "entityId='" + entityId + '\'' +
+                ", fields=" + fields.keySet() +
+                '}';
+    }
+}
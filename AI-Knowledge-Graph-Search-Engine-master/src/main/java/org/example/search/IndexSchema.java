@@ -0,0 +1,111 @@
+package org.example.search;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Describes which document fields are analyzed into the inverted index, with which
+ * {@link Analyzer}, and how much each field contributes to the relevance score.
+ *
+ * Keyword fields are indexed as a single untokenized term per document so they
+ * can be filtered on; they never contribute to the score. Date fields are keyword
+ * fields bucketed by hour ("2026-01-31T14", or the day alone for a value without a
+ * time), so the term dictionary sorts like the timeline and a range reads whole buckets.
+ * Every field is stored; fields that are only stored can be declared so that a commit
+ * made before they existed is rebuilt rather than served without them.
+ */
+public class IndexSchema {
+    static final int DAY_LENGTH = "yyyy-MM-dd".length();
+    static final int HOUR_LENGTH = "yyyy-MM-ddTHH".length();
+
+    private final Map<String, Float> textFields = new LinkedHashMap<>();
+    private final Map<String, Boolean> keywordFields = new LinkedHashMap<>();
+    private final Set<String> storedFields = new LinkedHashSet<>();
+    private Analyzer analyzer = Analyzer.SIMPLE;
+
+    // Analyzes the text fields when indexing and the words of queries against them
+    public IndexSchema analyzer(Analyzer analyzer) {
+        this.analyzer = analyzer;
+        return this;
+    }
+
+    public Analyzer getAnalyzer() {
+        return analyzer;
+    }
+
+    public IndexSchema text(String field, float boost) {
+        textFields.put(field, boost);
+        return this;
+    }
+
+    public IndexSchema keyword(String field) {
+        keywordFields.put(field, false);
+        return this;
+    }
+
+    public IndexSchema date(String field) {
+        keywordFields.put(field, true);
+        return this;
+    }
+
+    // Fields kept with the document but not indexed
+    public IndexSchema stored(String... fields) {
+        storedFields.addAll(Arrays.asList(fields));
+        return this;
+    }
+
+    public Set<String> getTextFields() {
+        return Collections.unmodifiableSet(textFields.keySet());
+    }
+
+    public Set<String> getKeywordFields() {
+        return Collections.unmodifiableSet(keywordFields.keySet());
+    }
+
+    public boolean isTextField(String field) {
+        return textFields.containsKey(field);
+    }
+
+    public boolean isKeywordField(String field) {
+        return keywordFields.containsKey(field);
+    }
+
+    public boolean isDateField(String field) {
+        return Boolean.TRUE.equals(keywordFields.get(field));
+    }
+
+    public float getBoost(String field) {
+        return textFields.getOrDefault(field, 1.0f);
+    }
+
+    // The term a keyword field value is indexed under, or null if there is none
+    public String keywordTerm(String field, String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        String term = value.trim();
+        if (isDateField(field)) {
+            return term.length() >= HOUR_LENGTH ? term.substring(0, HOUR_LENGTH)
+                    : term.length() >= DAY_LENGTH ? term.substring(0, DAY_LENGTH) : null;
+        }
+        return term.toLowerCase();
+    }
+
+    // Identifies the index layout; a commit made under another layout has to be rebuilt
+    public String signature() {
+        StringBuilder signature = new StringBuilder("text=").append(String.join(",", textFields.keySet()));
+        signature.append(";analyzer=").append(analyzer.signature());
+        signature.append(";keyword=");
+        for (Map.Entry<String, Boolean> field : keywordFields.entrySet()) {
+            signature.append(field.getKey()).append(field.getValue() ? ":hour," : ",");
+        }
+        if (!storedFields.isEmpty()) {
+            signature.append(";stored=").append(String.join(",", storedFields));
+        }
+        return signature.toString();
+    }
+}
@@ -0,0 +1,53 @@
+package org.example.search;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable slice of the inverted index: per-field term dictionaries and postings,
+ * per-document field lengths and term offsets, stored fields and the doc id to
+ * entity id mapping.
+ * Freshly indexed segments live on the heap ({@link MemorySegment}); committed ones
+ * are memory-mapped from disk ({@link MappedSegment}).
+ */
+public interface IndexSegment {
+
+    /**
+     * Term dictionary and length statistics for one analyzed field.
+     */
+    interface FieldIndex {
+        PostingList postings(String term);
+
+        int docFreq(String term);
+
+        int docLength(int docId);
+
+        long getTotalLength();
+
+        int getTermCount();
+
+        Iterable<String> terms();
+
+        // Terms t with from <= t < to, in sorted order; a null bound is open
+        Iterable<String> terms(String from, String to);
+
+        // The document's terms and their offsets; null for keyword fields
+        TermVector termVector(int docId);
+
+        // Start and end offsets of the term in the document's text as pairs, or null if it does not occur
+        int[] offsets(int docId, String term);
+    }
+
+    int maxDoc();
+
+    String entityId(int docId);
+
+    // Local doc id of an entity in this segment (deleted or not), or -1
+    int docIdOf(String entityId);
+
+    Map<String, String> storedFields(int docId);
+
+    Set<String> fieldNames();
+
+    FieldIndex field(String name);
+}
@@ -0,0 +1,145 @@
+package org.example.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Point-in-time view of an index: a list of immutable segments plus their deleted docs.
+ * Snapshots are never modified once published; the writer derives a new one per refresh.
+ * Global doc ids are the segment's doc base plus its local doc id.
+ */
+public class IndexSnapshot {
+    private final List<IndexSegment> segments;
+    private final List<long[]> deletes;
+    private final int[] docBases;
+    private final int maxDoc;
+    private final int numDocs;
+
+    IndexSnapshot(List<IndexSegment> segments, List<long[]> deletes) {
+        this.segments = Collections.unmodifiableList(new ArrayList<>(segments));
+        this.deletes = Collections.unmodifiableList(new ArrayList<>(deletes));
+        this.docBases = new int[segments.size()];
+
+        int base = 0;
+        int live = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            docBases[i] = base;
+            base += segments.get(i).maxDoc();
+            live += segments.get(i).maxDoc() - deletedCount(deletes.get(i));
+        }
+        this.maxDoc = base;
+        this.numDocs = live;
+    }
+
+    static IndexSnapshot empty() {
+        return new IndexSnapshot(new ArrayList<>(), new ArrayList<>());
+    }
+
+    public List<IndexSegment> getSegments() {
+        return segments;
+    }
+
+    public IndexSegment segment(int index) {
+        return segments.get(index);
+    }
+
+    public int segmentCount() {
+        return segments.size();
+    }
+
+    public int docBase(int segmentIndex) {
+        return docBases[segmentIndex];
+    }
+
+    // Total docs including deleted ones; this is what term statistics are based on
+    public int maxDoc() {
+        return maxDoc;
+    }
+
+    // Live docs only
+    public int numDocs() {
+        return numDocs;
+    }
+
+    long[] deletes(int segmentIndex) {
+        return deletes.get(segmentIndex);
+    }
+
+    public boolean isDeleted(int segmentIndex, int docId) {
+        long[] bits = deletes.get(segmentIndex);
+        return bits != null && (bits[docId >>> 6] & (1L << docId)) != 0;
+    }
+
+    public int segmentOf(int globalDoc) {
+        int index = Arrays.binarySearch(docBases, globalDoc);
+        if (index >= 0) {
+            // Skip empty segments that share a doc base
+            while (index + 1 < docBases.length && docBases[index + 1] == globalDoc) {
+                index++;
+            }
+            return index;
+        }
+        return -index - 2;
+    }
+
+    public String entityId(int globalDoc) {
+        int segment = segmentOf(globalDoc);
+        return segments.get(segment).entityId(globalDoc - docBases[segment]);
+    }
+
+    public Map<String, String> storedFields(int globalDoc) {
+        int segment = segmentOf(globalDoc);
+        return segments.get(segment).storedFields(globalDoc - docBases[segment]);
+    }
+
+    /**
+     * Returns the global doc id of the live document for an entity, or -1.
+     * An entity is live in at most one segment because the writer always
+     * tombstones the previous version before adding a new one.
+     */
+    public int lookup(String entityId) {
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            int docId = segments.get(i).docIdOf(entityId);
+            if (docId >= 0 && !isDeleted(i, docId)) {
+                return docBases[i] + docId;
+            }
+        }
+        return -1;
+    }
+
+    public int docFreq(String field, String term) {
+        int docFreq = 0;
+        for (IndexSegment segment : segments) {
+            IndexSegment.FieldIndex fieldIndex = segment.field(field);
+            if (fieldIndex != null) {
+                docFreq += fieldIndex.docFreq(term);
+            }
+        }
+        return docFreq;
+    }
+
+    public long totalLength(String field) {
+        long total = 0;
+        for (IndexSegment segment : segments) {
+            IndexSegment.FieldIndex fieldIndex = segment.field(field);
+            if (fieldIndex != null) {
+                total += fieldIndex.getTotalLength();
+            }
+        }
+        return total;
+    }
+
+    private static int deletedCount(long[] bits) {
+        if (bits == null) {
+            return 0;
+        }
+        int count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+}
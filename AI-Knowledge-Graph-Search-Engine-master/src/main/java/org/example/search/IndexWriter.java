@@ -0,0 +1,253 @@
+package org.example.search;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+
+/**
+ * Applies document changes to a {@link SearchIndex} in small batches.
+ * Changes are queued without locking; {@link #refresh()} drains the queue,
+ * seals the additions into a new segment, tombstones replaced documents and
+ * publishes the result as a new snapshot. Readers keep using the previous
+ * snapshot until the swap, so searches never wait for indexing.
+ */
+public class IndexWriter {
+    private final SearchIndex index;
+    private final int batchSize;
+    private final int maxSegments;
+    private final ConcurrentLinkedQueue<PendingChange> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final List<RefreshListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Told about every published change, after readers can see it. {@code changed} maps
+     * entity ids to their new document, or null if deleted; it is null when the whole
+     * index was replaced.
+     */
+    public interface RefreshListener {
+        void onRefresh(Map<String, IndexDocument> changed);
+    }
+
+    private static class PendingChange {
+        final String entityId;
+        final UnaryOperator<IndexDocument> change;
+
+        PendingChange(String entityId, UnaryOperator<IndexDocument> change) {
+            this.entityId = entityId;
+            this.change = change;
+        }
+    }
+
+    public IndexWriter(SearchIndex index, int batchSize, int maxSegments) {
+        this.index = index;
+        this.batchSize = Math.max(batchSize, 1);
+        this.maxSegments = Math.max(maxSegments, 2);
+    }
+
+    public SearchIndex getIndex() {
+        return index;
+    }
+
+    public void upsert(IndexDocument document) {
+        enqueue(document.getEntityId(), current -> document);
+    }
+
+    public void delete(String entityId) {
+        enqueue(entityId, current -> null);
+    }
+
+    /**
+     * Queues a change computed from the document as it is at refresh time
+     * (null if the entity is not indexed). Returning null removes the document.
+     */
+    public void update(String entityId, UnaryOperator<IndexDocument> change) {
+        enqueue(entityId, change);
+    }
+
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    private void enqueue(String entityId, UnaryOperator<IndexDocument> change) {
+        pending.add(new PendingChange(entityId, change));
+        pendingCount.incrementAndGet();
+    }
+
+    /**
+     * Replaces the whole index with a single freshly built segment.
+     * Changes still queued are applied on top by the next refresh.
+     */
+    public synchronized void replaceAll(Collection<IndexDocument> documents) {
+        SegmentBuilder builder = new SegmentBuilder(index.getSchema());
+        for (IndexDocument document : documents) {
+            builder.addDocument(document);
+        }
+        List<IndexSegment> segments = new ArrayList<>();
+        List<long[]> deletes = new ArrayList<>();
+        segments.add(builder.build());
+        deletes.add(null);
+        index.publish(new IndexSnapshot(segments, deletes));
+        notifyListeners(null);
+    }
+
+    // Starts from a snapshot loaded from disk
+    public synchronized void open(IndexSnapshot snapshot) {
+        index.publish(snapshot);
+        notifyListeners(null);
+    }
+
+    public void addRefreshListener(RefreshListener listener) {
+        listeners.add(listener);
+    }
+
+    private void notifyListeners(Map<String, IndexDocument> changed) {
+        for (RefreshListener listener : listeners) {
+            try {
+                listener.onRefresh(changed);
+            } catch (Exception e) {
+                System.err.println("❌ Error in refresh listener of " + index.getName() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Persists the current snapshot. Heap segments are written out and swapped
+     * for their memory-mapped equivalents, which releases their heap.
+     */
+    public synchronized void commit(IndexDirectory directory, Map<String, String> userData) throws IOException {
+        index.publish(directory.commit(index.snapshot(), userData));
+    }
+
+    /**
+     * Applies queued changes batch by batch. Returns the number of changes applied.
+     */
+    public synchronized int refresh() {
+        int applied = 0;
+        while (!pending.isEmpty()) {
+            Map<String, IndexDocument> batch = new LinkedHashMap<>();
+            IndexSnapshot current = index.snapshot();
+
+            PendingChange change;
+            while (batch.size() < batchSize && (change = pending.poll()) != null) {
+                pendingCount.decrementAndGet();
+                IndexDocument before = batch.containsKey(change.entityId)
+                        ? batch.get(change.entityId)
+                        : currentDocument(current, change.entityId);
+                batch.put(change.entityId, change.change.apply(before));
+                applied++;
+            }
+
+            index.publish(apply(current, batch));
+            notifyListeners(Collections.unmodifiableMap(batch));
+        }
+
+        if (index.snapshot().segmentCount() > maxSegments) {
+            index.publish(mergeSmallest(index.snapshot()));
+        }
+        return applied;
+    }
+
+    private IndexDocument currentDocument(IndexSnapshot snapshot, String entityId) {
+        int doc = snapshot.lookup(entityId);
+        return doc >= 0 ? new IndexDocument(entityId, snapshot.storedFields(doc)) : null;
+    }
+
+    private IndexSnapshot apply(IndexSnapshot current, Map<String, IndexDocument> batch) {
+        List<IndexSegment> segments = new ArrayList<>(current.getSegments());
+        List<long[]> deletes = new ArrayList<>();
+        boolean[] copied = new boolean[segments.size()];
+        for (int i = 0; i < segments.size(); i++) {
+            deletes.add(current.deletes(i));
+        }
+
+        SegmentBuilder builder = new SegmentBuilder(index.getSchema());
+        for (Map.Entry<String, IndexDocument> entry : batch.entrySet()) {
+            int doc = current.lookup(entry.getKey());
+            if (doc >= 0) {
+                int s = current.segmentOf(doc);
+                long[] bits = deletes.get(s);
+                if (!copied[s]) {
+                    // Copy-on-write so readers of the current snapshot are unaffected
+                    int words = (segments.get(s).maxDoc() + 63) >>> 6;
+                    bits = bits == null ? new long[words] : bits.clone();
+                    deletes.set(s, bits);
+                    copied[s] = true;
+                }
+                int local = doc - current.docBase(s);
+                bits[local >>> 6] |= 1L << local;
+            }
+            if (entry.getValue() != null) {
+                builder.addDocument(entry.getValue());
+            }
+        }
+
+        if (builder.size() > 0) {
+            segments.add(builder.build());
+            deletes.add(null);
+        }
+        return dropEmpty(segments, deletes);
+    }
+
+    // Re-indexes the live documents of the smaller half of the segments into one
+    private IndexSnapshot mergeSmallest(IndexSnapshot current) {
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < current.segmentCount(); i++) {
+            order.add(i);
+        }
+        order.sort(Comparator.comparingInt(i -> current.segment(i).maxDoc()));
+        List<Integer> toMerge = order.subList(0, current.segmentCount() - maxSegments / 2);
+
+        SegmentBuilder builder = new SegmentBuilder(index.getSchema());
+        List<IndexSegment> segments = new ArrayList<>();
+        List<long[]> deletes = new ArrayList<>();
+        for (int s = 0; s < current.segmentCount(); s++) {
+            IndexSegment segment = current.segment(s);
+            if (!toMerge.contains(s)) {
+                segments.add(segment);
+                deletes.add(current.deletes(s));
+                continue;
+            }
+            for (int doc = 0; doc < segment.maxDoc(); doc++) {
+                if (!current.isDeleted(s, doc)) {
+                    builder.addDocument(new IndexDocument(segment.entityId(doc), segment.storedFields(doc)));
+                }
+            }
+        }
+        segments.add(builder.build());
+        deletes.add(null);
+        return dropEmpty(segments, deletes);
+    }
+
+    private static IndexSnapshot dropEmpty(List<IndexSegment> segments, List<long[]> deletes) {
+        List<IndexSegment> keptSegments = new ArrayList<>();
+        List<long[]> keptDeletes = new ArrayList<>();
+        for (int i = 0; i < segments.size(); i++) {
+            IndexSegment segment = segments.get(i);
+            if (segment.maxDoc() > 0 && liveCount(segment, deletes.get(i)) > 0) {
+                keptSegments.add(segment);
+                keptDeletes.add(deletes.get(i));
+            }
+        }
+        return new IndexSnapshot(keptSegments, keptDeletes);
+    }
+
+    private static int liveCount(IndexSegment segment, long[] bits) {
+        if (bits == null) {
+            return segment.maxDoc();
+        }
+        int deleted = 0;
+        for (long word : bits) {
+            deleted += Long.bitCount(word);
+        }
+        return segment.maxDoc() - deleted;
+    }
+}
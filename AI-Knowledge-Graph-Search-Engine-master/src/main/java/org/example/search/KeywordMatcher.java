@@ -0,0 +1,208 @@
+package org.example.search;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finds every occurrence of a fixed set of keywords in one pass over a text, however many
+ * keywords there are (Aho-Corasick). The keywords' trie is compiled into a transition
+ * table over the characters they use, with failure links folded in, so each character of
+ * the text costs one table lookup and no strings are built.
+ *
+ * Matching ignores case and treats a run of whitespace as one space. A keyword matches
+ * whole words only; one ending in '*' matches any word starting with it, so "crash*"
+ * finds "crash", "crashes" and "crashed".
+ */
+public class KeywordMatcher {
+    private static final char SPACE = ' ';
+
+    public interface MatchHandler {
+        void onMatch(int keyword, int startOffset, int endOffset);
+    }
+
+    private final int keywordCount;
+    // Keyword lengths in normalized characters, and whether a keyword may end inside a word
+    private final int[] lengths;
+    private final boolean[] prefixes;
+    // Characters the keywords use, sorted, and the transition table over them
+    private final char[] alphabet;
+    // Symbol of each ASCII character, -1 when no keyword uses it
+    private final int[] asciiSymbols = new int[128];
+    private final int[] transitions;
+    // Keywords ending at a node, its own and those of its failure chain: outputs[outputStarts[node]...]
+    private final int[] outputStarts;
+    private final int[] outputs;
+    private final int maxLength;
+
+    /**
+     * Keyword i of the list is reported as i. Blank keywords never match.
+     */
+    public KeywordMatcher(List<String> keywords) {
+        this.keywordCount = keywords.size();
+        this.lengths = new int[keywordCount];
+        this.prefixes = new boolean[keywordCount];
+        String[] normalized = new String[keywordCount];
+        int longest = 1;
+        StringBuilder chars = new StringBuilder();
+        for (int i = 0; i < keywordCount; i++) {
+            String keyword = keywords.get(i) != null ? keywords.get(i).trim() : "";
+            prefixes[i] = keyword.endsWith("*");
+            normalized[i] = normalize(prefixes[i] ? keyword.substring(0, keyword.length() - 1) : keyword);
+            lengths[i] = normalized[i].length();
+            longest = Math.max(longest, lengths[i]);
+            chars.append(normalized[i]);
+        }
+        this.maxLength = Integer.highestOneBit(longest) << 1;
+        char[] used = chars.toString().toCharArray();
+        Arrays.sort(used);
+        int distinct = 0;
+        for (int i = 0; i < used.length; i++) {
+            if (i == 0 || used[i] != used[i - 1]) {
+                used[distinct++] = used[i];
+            }
+        }
+        this.alphabet = Arrays.copyOf(used, distinct);
+        Arrays.fill(asciiSymbols, -1);
+        for (int symbol = 0; symbol < alphabet.length && alphabet[symbol] < 128; symbol++) {
+            asciiSymbols[alphabet[symbol]] = symbol;
+        }
+
+        // Trie, with -1 for missing edges
+        int width = Math.max(alphabet.length, 1);
+        int[] trie = new int[width * 16];
+        Arrays.fill(trie, -1);
+        List<List<Integer>> ends = new ArrayList<>();
+        ends.add(new ArrayList<>());
+        int nodes = 1;
+        for (int i = 0; i < keywordCount; i++) {
+            if (lengths[i] == 0) {
+                continue;
+            }
+            int node = 0;
+            for (int c = 0; c < lengths[i]; c++) {
+                int symbol = Arrays.binarySearch(alphabet, normalized[i].charAt(c));
+                if (trie[node * width + symbol] < 0) {
+                    if ((nodes + 1) * width > trie.length) {
+                        int old = trie.length;
+                        trie = Arrays.copyOf(trie, old * 2);
+                        Arrays.fill(trie, old, trie.length, -1);
+                    }
+                    trie[node * width + symbol] = nodes++;
+                    ends.add(new ArrayList<>());
+                }
+                node = trie[node * width + symbol];
+            }
+            ends.get(node).add(i);
+        }
+
+        // Breadth first, each node's missing edges take those of its failure node, which is shallower
+        int[] fail = new int[nodes];
+        this.transitions = Arrays.copyOf(trie, nodes * width);
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int symbol = 0; symbol < width; symbol++) {
+            int child = transitions[symbol];
+            if (child < 0) {
+                transitions[symbol] = 0;
+            } else {
+                fail[child] = 0;
+                queue.add(child);
+            }
+        }
+        List<Integer> order = new ArrayList<>();
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            order.add(node);
+            for (int symbol = 0; symbol < width; symbol++) {
+                int child = transitions[node * width + symbol];
+                if (child < 0) {
+                    transitions[node * width + symbol] = transitions[fail[node] * width + symbol];
+                } else {
+                    fail[child] = transitions[fail[node] * width + symbol];
+                    queue.add(child);
+                }
+            }
+        }
+        // Failure nodes come earlier in breadth-first order, so their outputs are complete first
+        for (int node : order) {
+            if (fail[node] != 0) {
+                ends.get(node).addAll(ends.get(fail[node]));
+            }
+        }
+        this.outputStarts = new int[nodes + 1];
+        int total = 0;
+        for (int node = 0; node < nodes; node++) {
+            outputStarts[node] = total;
+            total += ends.get(node).size();
+        }
+        outputStarts[nodes] = total;
+        this.outputs = new int[total];
+        for (int node = 0; node < nodes; node++) {
+            for (int k = 0; k < ends.get(node).size(); k++) {
+                outputs[outputStarts[node] + k] = ends.get(node).get(k);
+            }
+        }
+    }
+
+    public int size() {
+        return keywordCount;
+    }
+
+    /**
+     * Calls the handler with every keyword occurring in the text, in order of where they
+     * end, with the offsets of the occurrence.
+     */
+    public void match(CharSequence text, MatchHandler handler) {
+        if (text == null || alphabet.length == 0) {
+            return;
+        }
+        // Text offsets of the last maxLength normalized characters, to find where a match started
+        int[] offsets = new int[maxLength];
+        int mask = maxLength - 1;
+        int position = 0;
+        int node = 0;
+        int width = alphabet.length;
+        boolean space = false;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                if (space) {
+                    continue;
+                }
+                space = true;
+                c = SPACE;
+            } else {
+                space = false;
+                c = Character.toLowerCase(c);
+            }
+            offsets[position++ & mask] = i;
+            int symbol = c < 128 ? asciiSymbols[c] : Arrays.binarySearch(alphabet, c);
+            node = symbol >= 0 ? transitions[node * width + symbol] : 0;
+            for (int k = outputStarts[node]; k < outputStarts[node + 1]; k++) {
+                int keyword = outputs[k];
+                int start = offsets[(position - lengths[keyword]) & mask];
+                if ((start == 0 || !Character.isLetterOrDigit(text.charAt(start - 1)))
+                        && (prefixes[keyword] || i + 1 == n || !Character.isLetterOrDigit(text.charAt(i + 1)))) {
+                    handler.onMatch(keyword, start, i + 1);
+                }
+            }
+        }
+    }
+
+    // Lower case with runs of whitespace made one space
+    private static String normalize(String keyword) {
+        StringBuilder normalized = new StringBuilder(keyword.length());
+        for (int i = 0; i < keyword.length(); i++) {
+            char c = keyword.charAt(i);
+            if (Character.isWhitespace(c)) {
+                if (normalized.length() > 0 && normalized.charAt(normalized.length() - 1) != SPACE) {
+                    normalized.append(SPACE);
+                }
+            } else {
+                normalized.append(Character.toLowerCase(c));
+            }
+        }
+        return normalized.toString();
+    }
+}
@@ -0,0 +1,371 @@
+package org.example.search;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Segment read straight from a {@link SegmentFile} through {@code FileChannel.map}.
+ * Opening only parses the header and field table; postings, stored fields and
+ * entity ids are decoded on demand with absolute reads, so the segment is
+ * safe to share between threads and costs almost no heap.
+ */
+public class MappedSegment implements IndexSegment {
+    private final String name;
+    private final MappedByteBuffer buffer;
+    private final int maxDoc;
+    private final int storedOffset;
+    private final int entityOffset;
+    private final Map<String, FieldIndex> fields = new LinkedHashMap<>();
+
+    private class MappedFieldIndex implements FieldIndex {
+        private final long totalLength;
+        private final int termCount;
+        private final int docLengthsOffset;
+        private final int termBytesOffset;
+        private final int termTableOffset;
+        private final int termVectorsOffset;
+
+        MappedFieldIndex(long totalLength, int termCount, int docLengthsOffset, int termBytesOffset,
+                int termTableOffset, int termVectorsOffset) {
+            this.totalLength = totalLength;
+            this.termCount = termCount;
+            this.docLengthsOffset = docLengthsOffset;
+            this.termBytesOffset = termBytesOffset;
+            this.termTableOffset = termTableOffset;
+            this.termVectorsOffset = termVectorsOffset;
+        }
+
+        @Override
+        public PostingList postings(String term) {
+            int ord = find(term);
+            if (ord < 0) {
+                return null;
+            }
+            int entry = termTableOffset + ord * SegmentFile.TERM_ENTRY_SIZE;
+            int position = buffer.getInt(entry + 8);
+            int docFreq = buffer.getInt(entry + 12);
+
+            PostingList postings = new PostingList(docFreq);
+            int doc = 0;
+            for (int i = 0; i < docFreq; i++) {
+                int value = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = buffer.get(position++);
+                    value |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                doc += value;
+
+                int freq = 0;
+                shift = 0;
+                do {
+                    b = buffer.get(position++);
+                    freq |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                postings.add(doc, freq);
+            }
+            return postings;
+        }
+
+        @Override
+        public int docFreq(String term) {
+            int ord = find(term);
+            return ord < 0 ? 0 : buffer.getInt(termTableOffset + ord * SegmentFile.TERM_ENTRY_SIZE + 12);
+        }
+
+        @Override
+        public int docLength(int docId) {
+            return buffer.getInt(docLengthsOffset + docId * 4);
+        }
+
+        @Override
+        public long getTotalLength() {
+            return totalLength;
+        }
+
+        @Override
+        public int getTermCount() {
+            return termCount;
+        }
+
+        @Override
+        public Iterable<String> terms() {
+            return terms(0, termCount);
+        }
+
+        @Override
+        public Iterable<String> terms(String from, String to) {
+            int start = from == null ? 0 : lowerBound(from.getBytes(StandardCharsets.UTF_8));
+            int end = to == null ? termCount : lowerBound(to.getBytes(StandardCharsets.UTF_8));
+            return terms(start, Math.max(start, end));
+        }
+
+        private Iterable<String> terms(int start, int end) {
+            return () -> new Iterator<>() {
+                private int ord = start;
+
+                @Override
+                public boolean hasNext() {
+                    return ord < end;
+                }
+
+                @Override
+                public String next() {
+                    if (ord >= end) {
+                        throw new NoSuchElementException();
+                    }
+                    return term(ord++);
+                }
+            };
+        }
+
+        @Override
+        public TermVector termVector(int docId) {
+            if (termVectorsOffset == 0) {
+                return null;
+            }
+            int[] position = { buffer.getInt(termVectorsOffset + docId * 4) };
+            int count = readVInt(position);
+            String[] terms = new String[count];
+            int[][] termOffsets = new int[count][];
+            Integer[] order = new Integer[count];
+            int total = 0;
+            for (int t = 0; t < count; t++) {
+                terms[t] = term(readVInt(position));
+                termOffsets[t] = readOffsets(position, readVInt(position));
+                order[t] = t;
+                total += termOffsets[t].length;
+            }
+            // Stored in term ordinal order, which is byte order; a TermVector is in String order
+            Arrays.sort(order, (a, b) -> terms[a].compareTo(terms[b]));
+            String[] sorted = new String[count];
+            int[] starts = new int[count + 1];
+            int[] offsets = new int[total];
+            for (int t = 0; t < count; t++) {
+                sorted[t] = terms[order[t]];
+                int[] entry = termOffsets[order[t]];
+                System.arraycopy(entry, 0, offsets, starts[t], entry.length);
+                starts[t + 1] = starts[t] + entry.length;
+            }
+            return new TermVector(sorted, starts, offsets);
+        }
+
+        // Reads only the record of the term asked for, skipping the others' offsets
+        @Override
+        public int[] offsets(int docId, String term) {
+            if (termVectorsOffset == 0) {
+                return null;
+            }
+            int ord = find(term);
+            if (ord < 0) {
+                return null;
+            }
+            int[] position = { buffer.getInt(termVectorsOffset + docId * 4) };
+            int count = readVInt(position);
+            for (int t = 0; t < count; t++) {
+                int termOrd = readVInt(position);
+                int occurrences = readVInt(position);
+                if (termOrd == ord) {
+                    return readOffsets(position, occurrences);
+                }
+                for (int i = 0; i < occurrences * 2; i++) {
+                    while (buffer.get(position[0]++) < 0) {
+                        // continuation byte
+                    }
+                }
+            }
+            return null;
+        }
+
+        private int[] readOffsets(int[] position, int occurrences) {
+            int[] offsets = new int[occurrences * 2];
+            int start = 0;
+            for (int i = 0; i < offsets.length; i += 2) {
+                start += readVInt(position);
+                offsets[i] = start;
+                offsets[i + 1] = start + readVInt(position);
+            }
+            return offsets;
+        }
+
+        private String term(int ord) {
+            int entry = termTableOffset + ord * SegmentFile.TERM_ENTRY_SIZE;
+            return string(termBytesOffset + buffer.getInt(entry), buffer.getInt(entry + 4));
+        }
+
+        // Binary search over the sorted term table, comparing raw UTF-8 bytes
+        private int find(String term) {
+            byte[] key = term.getBytes(StandardCharsets.UTF_8);
+            int low = 0;
+            int high = termCount - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int entry = termTableOffset + mid * SegmentFile.TERM_ENTRY_SIZE;
+                int cmp = compare(termBytesOffset + buffer.getInt(entry), buffer.getInt(entry + 4), key);
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+
+        // Ordinal of the first term not below key
+        private int lowerBound(byte[] key) {
+            int low = 0;
+            int high = termCount;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                int entry = termTableOffset + mid * SegmentFile.TERM_ENTRY_SIZE;
+                if (compare(termBytesOffset + buffer.getInt(entry), buffer.getInt(entry + 4), key) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    private MappedSegment(String name, MappedByteBuffer buffer) throws IOException {
+        this.name = name;
+        this.buffer = buffer;
+        if (buffer.getInt(0) != SegmentFile.MAGIC || buffer.getInt(4) != SegmentFile.VERSION) {
+            throw new IOException("Not a search segment or unsupported version: " + name);
+        }
+        this.maxDoc = buffer.getInt(8);
+        int fieldCount = buffer.getInt(12);
+        this.storedOffset = buffer.getInt(16);
+        this.entityOffset = buffer.getInt(20);
+
+        ByteBuffer table = buffer.duplicate();
+        table.position(buffer.getInt(24));
+        for (int f = 0; f < fieldCount; f++) {
+            byte[] fieldName = new byte[table.getShort() & 0xFFFF];
+            table.get(fieldName);
+            fields.put(new String(fieldName, StandardCharsets.UTF_8), new MappedFieldIndex(
+                    table.getLong(), table.getInt(), table.getInt(), table.getInt(), table.getInt(), table.getInt()));
+        }
+    }
+
+    public static MappedSegment open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Segment file too large: " + file);
+            }
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new MappedSegment(file.getFileName().toString(), buffer);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int maxDoc() {
+        return maxDoc;
+    }
+
+    @Override
+    public String entityId(int docId) {
+        int entry = entityOffset + docId * 8;
+        return string(buffer.getInt(entry), buffer.getInt(entry + 4));
+    }
+
+    @Override
+    public int docIdOf(String entityId) {
+        byte[] key = entityId.getBytes(StandardCharsets.UTF_8);
+        int sortedOffset = entityOffset + maxDoc * 8;
+        int low = 0;
+        int high = maxDoc - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int docId = buffer.getInt(sortedOffset + mid * 4);
+            int entry = entityOffset + docId * 8;
+            int cmp = compare(buffer.getInt(entry), buffer.getInt(entry + 4), key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return docId;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public Map<String, String> storedFields(int docId) {
+        int[] position = { buffer.getInt(storedOffset + docId * 4) };
+        int count = readVInt(position);
+        Map<String, String> stored = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            int nameLength = readVInt(position);
+            String field = string(position[0], nameLength);
+            position[0] += nameLength;
+            int valueLength = readVInt(position);
+            stored.put(field, string(position[0], valueLength));
+            position[0] += valueLength;
+        }
+        return Collections.unmodifiableMap(stored);
+    }
+
+    @Override
+    public Set<String> fieldNames() {
+        return Collections.unmodifiableSet(fields.keySet());
+    }
+
+    @Override
+    public FieldIndex field(String name) {
+        return fields.get(name);
+    }
+
+    private String string(int offset, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int compare(int offset, int length, byte[] key) {
+        int n = Math.min(length, key.length);
+        for (int i = 0; i < n; i++) {
+            int cmp = (buffer.get(offset + i) & 0xFF) - (key[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return length - key.length;
+    }
+
+    private int readVInt(int[] position) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get(position[0]++);
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+}
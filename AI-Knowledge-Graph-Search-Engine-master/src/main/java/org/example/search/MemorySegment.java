@@ -0,0 +1,137 @@
+package org.example.search;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Heap-resident segment produced by {@link SegmentBuilder}. Lives until the
+ * next commit writes it to disk and replaces it with a {@link MappedSegment}.
+ */
+public class MemorySegment implements IndexSegment {
+
+    static class MemoryFieldIndex implements FieldIndex {
+        private final Map<String, PostingList> terms;
+        private final int[] docLengths;
+        private final long totalLength;
+        private final TermVector[] termVectors;
+        // Sorted on the first range lookup; racing threads just sort twice
+        private volatile String[] sortedTerms;
+
+        MemoryFieldIndex(Map<String, PostingList> terms, int[] docLengths, long totalLength,
+                TermVector[] termVectors) {
+            this.terms = terms;
+            this.docLengths = docLengths;
+            this.totalLength = totalLength;
+            this.termVectors = termVectors;
+        }
+
+        @Override
+        public PostingList postings(String term) {
+            return terms.get(term);
+        }
+
+        @Override
+        public int docFreq(String term) {
+            PostingList postings = terms.get(term);
+            return postings == null ? 0 : postings.size();
+        }
+
+        @Override
+        public int docLength(int docId) {
+            return docLengths[docId];
+        }
+
+        @Override
+        public long getTotalLength() {
+            return totalLength;
+        }
+
+        @Override
+        public int getTermCount() {
+            return terms.size();
+        }
+
+        @Override
+        public Iterable<String> terms() {
+            return Collections.unmodifiableSet(terms.keySet());
+        }
+
+        @Override
+        public Iterable<String> terms(String from, String to) {
+            String[] sorted = sortedTerms;
+            if (sorted == null) {
+                sorted = terms.keySet().toArray(new String[0]);
+                Arrays.sort(sorted);
+                sortedTerms = sorted;
+            }
+            int start = from == null ? 0 : lowerBound(sorted, from);
+            int end = to == null ? sorted.length : lowerBound(sorted, to);
+            return Arrays.asList(sorted).subList(start, Math.max(start, end));
+        }
+
+        @Override
+        public TermVector termVector(int docId) {
+            return termVectors != null ? termVectors[docId] : null;
+        }
+
+        @Override
+        public int[] offsets(int docId, String term) {
+            return termVectors != null ? termVectors[docId].offsets(term) : null;
+        }
+
+        private static int lowerBound(String[] sorted, String key) {
+            int index = Arrays.binarySearch(sorted, key);
+            return index >= 0 ? index : -index - 1;
+        }
+    }
+
+    private final String[] entityIds;
+    private final List<Map<String, String>> storedFields;
+    private final Map<String, FieldIndex> fields;
+    private final Map<String, Integer> docIdsByEntity;
+
+    MemorySegment(String[] entityIds, List<Map<String, String>> storedFields, Map<String, FieldIndex> fields) {
+        this.entityIds = entityIds;
+        this.storedFields = storedFields;
+        this.fields = fields;
+        this.docIdsByEntity = new HashMap<>(entityIds.length * 2);
+        for (int docId = 0; docId < entityIds.length; docId++) {
+            docIdsByEntity.put(entityIds[docId], docId);
+        }
+    }
+
+    @Override
+    public int maxDoc() {
+        return entityIds.length;
+    }
+
+    @Override
+    public String entityId(int docId) {
+        return entityIds[docId];
+    }
+
+    @Override
+    public int docIdOf(String entityId) {
+        Integer docId = docIdsByEntity.get(entityId);
+        return docId == null ? -1 : docId;
+    }
+
+    @Override
+    public Map<String, String> storedFields(int docId) {
+        return Collections.unmodifiableMap(storedFields.get(docId));
+    }
+
+    @Override
+    public Set<String> fieldNames() {
+        return Collections.unmodifiableSet(fields.keySet());
+    }
+
+    @Override
+    public FieldIndex field(String name) {
+        return fields.get(name);
+    }
+}
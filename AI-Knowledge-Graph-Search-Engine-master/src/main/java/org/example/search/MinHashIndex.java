@@ -0,0 +1,549 @@
+package org.example.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Near-duplicate lookup by word-set Jaccard similarity.
+ *
+ * Each document is reduced to the set of its {@link Analyzer} terms, the same terms
+ * {@code AIService.calculateSimilarity} compares, so both give the same Jaccard
+ * similarity, and to a MinHash signature of {@code bands * rows} values. Documents sharing all rows of any band
+ * land in the same bucket, so a lookup only verifies the few candidates it shares
+ * a bucket with instead of every document. Candidates are verified against their
+ * exact Jaccard similarity, so results never fall below the threshold; what LSH
+ * can cost is recall, which {@link #accuracyReport} measures.
+ */
+public class MinHashIndex {
+    public static final int DEFAULT_BANDS = 20;
+    public static final int DEFAULT_ROWS = 3;
+    private static final int EMPTY = -1;
+
+    private final Analyzer analyzer;
+    private final int bands;
+    private final int rows;
+    private final long[] multipliers;
+    private final long[] increments;
+    private final BandTable[] tables;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Per slot state; freed slots are reused
+    private final Map<String, Integer> slotsByEntity = new HashMap<>();
+    private String[] entityIds = new String[16];
+    private int[][] signatures = new int[16][];
+    private int[][] shingles = new int[16][];
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private int slotCount;
+
+    public MinHashIndex(Analyzer analyzer, int bands, int rows) {
+        if (bands < 1 || rows < 1) {
+            throw new IllegalArgumentException("bands and rows must be positive");
+        }
+        this.analyzer = analyzer;
+        this.bands = bands;
+        this.rows = rows;
+
+        int hashes = bands * rows;
+        this.multipliers = new long[hashes];
+        this.increments = new long[hashes];
+        // Fixed seed: signatures must stay comparable across restarts
+        SplittableRandom random = new SplittableRandom(0x5EED_5EEDL);
+        for (int i = 0; i < hashes; i++) {
+            multipliers[i] = random.nextLong() | 1L;
+            increments[i] = random.nextLong();
+        }
+
+        this.tables = new BandTable[bands];
+        for (int b = 0; b < bands; b++) {
+            tables[b] = new BandTable();
+        }
+    }
+
+    public int getBands() {
+        return bands;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    // Similarity at which a pair has a 50% chance of sharing a bucket
+    public double getThreshold() {
+        return Math.pow(1.0 / bands, 1.0 / rows);
+    }
+
+    // Probability that a pair with the given similarity shares at least one bucket
+    public double detectionProbability(double similarity) {
+        return 1 - Math.pow(1 - Math.pow(similarity, rows), bands);
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slotsByEntity.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void put(String entityId, CharSequence text) {
+        int[] words = shingle(text);
+        int[] signature = signature(words);
+
+        lock.writeLock().lock();
+        try {
+            Integer existing = slotsByEntity.get(entityId);
+            int slot;
+            if (existing != null) {
+                slot = existing;
+                unlink(slot);
+            } else {
+                slot = allocate();
+                slotsByEntity.put(entityId, slot);
+                entityIds[slot] = entityId;
+            }
+            signatures[slot] = signature;
+            shingles[slot] = words;
+            link(slot);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String entityId) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slotsByEntity.remove(entityId);
+            if (slot == null) {
+                return;
+            }
+            unlink(slot);
+            entityIds[slot] = null;
+            signatures[slot] = null;
+            shingles[slot] = null;
+            if (freeCount == freeSlots.length) {
+                freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+            }
+            freeSlots[freeCount++] = slot;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            slotsByEntity.clear();
+            Arrays.fill(entityIds, null);
+            Arrays.fill(signatures, null);
+            Arrays.fill(shingles, null);
+            freeCount = 0;
+            slotCount = 0;
+            for (int b = 0; b < bands; b++) {
+                tables[b] = new BandTable();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Documents whose word-set Jaccard similarity to the given text is at least
+     * minSimilarity, best first. excludeId (may be null) is left out of the results.
+     */
+    public List<SearchHit> findSimilar(CharSequence text, String excludeId, int limit, double minSimilarity) {
+        int[] words = shingle(text);
+        return findSimilar(words, signature(words), excludeId, limit, minSimilarity, null);
+    }
+
+    // Like findSimilar(text, ...) but reuses the stored signature of an indexed document
+    public List<SearchHit> findSimilar(String entityId, int limit, double minSimilarity) {
+        lock.readLock().lock();
+        try {
+            Integer slot = slotsByEntity.get(entityId);
+            if (slot == null) {
+                return new ArrayList<>();
+            }
+            return findSimilar(shingles[slot], signatures[slot], entityId, limit, minSimilarity, null);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<SearchHit> findSimilar(int[] words, int[] signature, String excludeId, int limit,
+            double minSimilarity, int[] candidateCount) {
+        if (words.length == 0 || limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        lock.readLock().lock();
+        try {
+            int[] candidates = new int[16];
+            int count = 0;
+            for (int b = 0; b < bands; b++) {
+                BandTable table = tables[b];
+                int key = bandKey(signature, b);
+                for (int slot = table.head(key); slot != EMPTY; slot = table.next[slot]) {
+                    if (count == candidates.length) {
+                        candidates = Arrays.copyOf(candidates, count * 2);
+                    }
+                    candidates[count++] = slot;
+                }
+            }
+
+            // A pair sharing several bands is collected once per band
+            Arrays.sort(candidates, 0, count);
+            TopKCollector collector = new TopKCollector(limit);
+            int verified = 0;
+            for (int i = 0; i < count; i++) {
+                int slot = candidates[i];
+                if (i > 0 && candidates[i - 1] == slot) {
+                    continue;
+                }
+                verified++;
+                if (excludeId != null && excludeId.equals(entityIds[slot])) {
+                    continue;
+                }
+                float similarity = (float) jaccard(words, shingles[slot]);
+                if (similarity >= minSimilarity) {
+                    collector.collect(slot, similarity);
+                }
+            }
+            if (candidateCount != null) {
+                candidateCount[0] = verified;
+            }
+            return toHits(collector);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Exact answer by comparing against every document; the baseline for the accuracy report
+    private List<SearchHit> findSimilarExact(int[] words, String excludeId, int limit, double minSimilarity) {
+        TopKCollector collector = new TopKCollector(limit);
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (shingles[slot] == null || (excludeId != null && excludeId.equals(entityIds[slot]))) {
+                continue;
+            }
+            float similarity = (float) jaccard(words, shingles[slot]);
+            if (similarity >= minSimilarity) {
+                collector.collect(slot, similarity);
+            }
+        }
+        return toHits(collector);
+    }
+
+    /**
+     * Compares LSH lookups for a sample of indexed documents against an exact scan.
+     * Recall is the share of the exact top results the LSH lookup also returned.
+     */
+    public Map<String, Object> accuracyReport(int sampleSize, int limit, double minSimilarity) {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("bands", bands);
+        report.put("rows", rows);
+        report.put("lshThreshold", getThreshold());
+        report.put("minSimilarity", minSimilarity);
+        report.put("detectionProbabilityAtMinSimilarity", detectionProbability(minSimilarity));
+
+        lock.readLock().lock();
+        try {
+            int documents = slotsByEntity.size();
+            report.put("documents", documents);
+            if (documents == 0 || sampleSize <= 0) {
+                report.put("sampleSize", 0);
+                return report;
+            }
+
+            int step = Math.max(1, slotCount / Math.min(sampleSize, documents));
+            int sampled = 0;
+            long expected = 0;
+            long found = 0;
+            long candidates = 0;
+            long lshNanos = 0;
+            long exactNanos = 0;
+            int[] candidateCount = new int[1];
+
+            for (int slot = 0; slot < slotCount && sampled < sampleSize; slot += step) {
+                if (shingles[slot] == null) {
+                    continue;
+                }
+                String entityId = entityIds[slot];
+
+                long start = System.nanoTime();
+                List<SearchHit> approximate = findSimilar(shingles[slot], signatures[slot], entityId, limit,
+                        minSimilarity, candidateCount);
+                lshNanos += System.nanoTime() - start;
+                candidates += candidateCount[0];
+
+                start = System.nanoTime();
+                List<SearchHit> exact = findSimilarExact(shingles[slot], entityId, limit, minSimilarity);
+                exactNanos += System.nanoTime() - start;
+
+                expected += exact.size();
+                for (SearchHit hit : exact) {
+                    for (SearchHit candidate : approximate) {
+                        if (candidate.getEntityId().equals(hit.getEntityId())) {
+                            found++;
+                            break;
+                        }
+                    }
+                }
+                sampled++;
+            }
+
+            report.put("sampleSize", sampled);
+            report.put("recall", expected == 0 ? 1.0 : (double) found / expected);
+            report.put("avgExpectedResults", (double) expected / sampled);
+            report.put("avgCandidatesVerified", (double) candidates / sampled);
+            report.put("avgLshMicros", lshNanos / 1000.0 / sampled);
+            report.put("avgExactMicros", exactNanos / 1000.0 / sampled);
+            return report;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<SearchHit> toHits(TopKCollector collector) {
+        int[] slots = new int[collector.size()];
+        float[] scores = new float[collector.size()];
+        int count = collector.drainTo(slots, scores);
+
+        List<SearchHit> hits = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            hits.add(new SearchHit(entityIds[slots[i]], scores[i], Collections.emptyMap()));
+        }
+        return hits;
+    }
+
+    // Sorted, distinct hashes of the text's terms
+    private int[] shingle(CharSequence text) {
+        int[][] buffer = { new int[32] };
+        int[] count = { 0 };
+        analyzer.analyze(text, (term, position, startOffset, endOffset) -> {
+            if (count[0] == buffer[0].length) {
+                buffer[0] = Arrays.copyOf(buffer[0], count[0] * 2);
+            }
+            buffer[0][count[0]++] = mix(term.hashCode());
+        });
+
+        int[] words = buffer[0];
+        int n = count[0];
+        Arrays.sort(words, 0, n);
+        int distinct = 0;
+        for (int i = 0; i < n; i++) {
+            if (distinct == 0 || words[distinct - 1] != words[i]) {
+                words[distinct++] = words[i];
+            }
+        }
+        return Arrays.copyOf(words, distinct);
+    }
+
+    private int[] signature(int[] words) {
+        int[] signature = new int[bands * rows];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        for (int word : words) {
+            for (int i = 0; i < signature.length; i++) {
+                // Multiply-shift hashing; the high bits are the well mixed ones
+                int hash = (int) ((multipliers[i] * word + increments[i]) >>> 33);
+                if (hash < signature[i]) {
+                    signature[i] = hash;
+                }
+            }
+        }
+        return signature;
+    }
+
+    private int bandKey(int[] signature, int band) {
+        int hash = band;
+        for (int r = band * rows, end = r + rows; r < end; r++) {
+            hash = hash * 31 + signature[r];
+        }
+        return mix(hash);
+    }
+
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        hash *= 0xC2B2AE35;
+        return hash ^ (hash >>> 16);
+    }
+
+    // Both arrays are sorted and distinct
+    static double jaccard(int[] a, int[] b) {
+        if (a.length == 0 && b.length == 0) {
+            return 0.0;
+        }
+        int i = 0;
+        int j = 0;
+        int shared = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] == b[j]) {
+                shared++;
+                i++;
+                j++;
+            } else if (a[i] < b[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return (double) shared / (a.length + b.length - shared);
+    }
+
+    private int allocate() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        if (slotCount == entityIds.length) {
+            int capacity = slotCount * 2;
+            entityIds = Arrays.copyOf(entityIds, capacity);
+            signatures = Arrays.copyOf(signatures, capacity);
+            shingles = Arrays.copyOf(shingles, capacity);
+        }
+        return slotCount++;
+    }
+
+    // Documents without words can't be similar to anything, so they are never bucketed
+    private void link(int slot) {
+        if (shingles[slot].length == 0) {
+            return;
+        }
+        for (int b = 0; b < bands; b++) {
+            tables[b].add(bandKey(signatures[slot], b), slot);
+        }
+    }
+
+    private void unlink(int slot) {
+        if (shingles[slot].length == 0) {
+            return;
+        }
+        for (int b = 0; b < bands; b++) {
+            tables[b].remove(slot);
+        }
+    }
+
+    /**
+     * Buckets of one band: an open-addressing table from band key to the first slot
+     * of the bucket, with the remaining slots chained through next[].
+     */
+    private static class BandTable {
+        private int[] tableKeys = new int[16];
+        private int[] tableHeads = filled(16);
+        private int used;
+        private int[] keys = new int[16];
+        private int[] next = filled(16);
+
+        int head(int key) {
+            int mask = tableHeads.length - 1;
+            for (int i = key & mask; tableHeads[i] != EMPTY; i = (i + 1) & mask) {
+                if (tableKeys[i] == key) {
+                    return tableHeads[i];
+                }
+            }
+            return EMPTY;
+        }
+
+        void add(int key, int slot) {
+            if (slot >= keys.length) {
+                int capacity = Math.max(keys.length * 2, slot + 1);
+                keys = Arrays.copyOf(keys, capacity);
+                int old = next.length;
+                next = Arrays.copyOf(next, capacity);
+                Arrays.fill(next, old, capacity, EMPTY);
+            }
+            if ((used + 1) * 2 > tableHeads.length) {
+                rehash(tableHeads.length * 2);
+            }
+
+            keys[slot] = key;
+            int mask = tableHeads.length - 1;
+            int i = key & mask;
+            while (tableHeads[i] != EMPTY && tableKeys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            if (tableHeads[i] == EMPTY) {
+                tableKeys[i] = key;
+                used++;
+            }
+            next[slot] = tableHeads[i];
+            tableHeads[i] = slot;
+        }
+
+        void remove(int slot) {
+            int key = keys[slot];
+            int mask = tableHeads.length - 1;
+            int i = key & mask;
+            while (tableHeads[i] != EMPTY && tableKeys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            if (tableHeads[i] == EMPTY) {
+                return;
+            }
+
+            if (tableHeads[i] == slot) {
+                tableHeads[i] = next[slot];
+                if (tableHeads[i] == EMPTY) {
+                    used--;
+                    shiftBack(i);
+                }
+            } else {
+                for (int s = tableHeads[i]; s != EMPTY; s = next[s]) {
+                    if (next[s] == slot) {
+                        next[s] = next[slot];
+                        break;
+                    }
+                }
+            }
+            next[slot] = EMPTY;
+        }
+
+        // Linear probing deletion without tombstones: pull later entries of the run back
+        private void shiftBack(int hole) {
+            int mask = tableHeads.length - 1;
+            for (int i = (hole + 1) & mask; tableHeads[i] != EMPTY; i = (i + 1) & mask) {
+                int home = tableKeys[i] & mask;
+                boolean movable = hole <= i ? (home <= hole || home > i) : (home <= hole && home > i);
+                if (movable) {
+                    tableKeys[hole] = tableKeys[i];
+                    tableHeads[hole] = tableHeads[i];
+                    tableHeads[i] = EMPTY;
+                    hole = i;
+                }
+            }
+        }
+
+        private void rehash(int capacity) {
+            int[] oldKeys = tableKeys;
+            int[] oldHeads = tableHeads;
+            tableKeys = new int[capacity];
+            tableHeads = filled(capacity);
+            int mask = capacity - 1;
+            for (int j = 0; j < oldHeads.length; j++) {
+                if (oldHeads[j] != EMPTY) {
+                    int i = oldKeys[j] & mask;
+                    while (tableHeads[i] != EMPTY) {
+                        i = (i + 1) & mask;
+                    }
+                    tableKeys[i] = oldKeys[j];
+                    tableHeads[i] = oldHeads[j];
+                }
+            }
+        }
+
+        private static int[] filled(int length) {
+            int[] array = new int[length];
+            Arrays.fill(array, EMPTY);
+            return array;
+        }
+    }
+}
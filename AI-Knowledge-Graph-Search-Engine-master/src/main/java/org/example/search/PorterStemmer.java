@@ -0,0 +1,359 @@
+package org.example.search;
+
+/**
+ * The Porter stemming algorithm (M.F. Porter, 1980) over a lower-case ASCII word held in
+ * a char array, which is rewritten in place. Reduces inflected and derived forms to a
+ * common stem: "connected", "connecting" and "connection" all become "connect". Stems are
+ * not always words ("configuration" becomes "configur"); they are only ever compared.
+ * Not thread safe; the {@link Analyzer} keeps one per thread.
+ */
+class PorterStemmer {
+    private char[] b;
+    // Index of the last letter of the word, and of the letter before a matched suffix
+    private int k;
+    private int j;
+
+    /**
+     * Stems the first length chars of word and returns the stem's length. Words of two
+     * letters or fewer are left as they are.
+     */
+    int stem(char[] word, int length) {
+        if (length <= 2) {
+            return length;
+        }
+        b = word;
+        k = length - 1;
+        step1ab();
+        if (k > 0) {
+            step1c();
+            step2();
+            step3();
+            step4();
+            step5();
+        }
+        b = null;
+        return k + 1;
+    }
+
+    private boolean isConsonant(int i) {
+        switch (b[i]) {
+            case 'a':
+            case 'e':
+            case 'i':
+            case 'o':
+            case 'u':
+                return false;
+            case 'y':
+                return i == 0 || !isConsonant(i - 1);
+            default:
+                return true;
+        }
+    }
+
+    // Number of vowel-consonant sequences in b[0..j]: [C](VC)^m[V]
+    private int measure() {
+        int n = 0;
+        int i = 0;
+        while (true) {
+            if (i > j) {
+                return n;
+            }
+            if (!isConsonant(i)) {
+                break;
+            }
+            i++;
+        }
+        i++;
+        while (true) {
+            while (true) {
+                if (i > j) {
+                    return n;
+                }
+                if (isConsonant(i)) {
+                    break;
+                }
+                i++;
+            }
+            i++;
+            n++;
+            while (true) {
+                if (i > j) {
+                    return n;
+                }
+                if (!isConsonant(i)) {
+                    break;
+                }
+                i++;
+            }
+            i++;
+        }
+    }
+
+    private boolean vowelInStem() {
+        for (int i = 0; i <= j; i++) {
+            if (!isConsonant(i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean doubleConsonant(int i) {
+        return i >= 1 && b[i] == b[i - 1] && isConsonant(i);
+    }
+
+    // Consonant-vowel-consonant ending at i, the last consonant not w, x or y: "hop", not "snow"
+    private boolean cvc(int i) {
+        if (i < 2 || !isConsonant(i) || isConsonant(i - 1) || !isConsonant(i - 2)) {
+            return false;
+        }
+        char c = b[i];
+        return c != 'w' && c != 'x' && c != 'y';
+    }
+
+    private boolean endsWith(String suffix) {
+        int length = suffix.length();
+        int start = k - length + 1;
+        if (start < 0) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (b[start + i] != suffix.charAt(i)) {
+                return false;
+            }
+        }
+        j = k - length;
+        return true;
+    }
+
+    // Replaces the matched suffix; the word never grows past the length it came in with
+    private void setTo(String suffix) {
+        int length = suffix.length();
+        for (int i = 0; i < length; i++) {
+            b[j + 1 + i] = suffix.charAt(i);
+        }
+        k = j + length;
+    }
+
+    private void replaceIfMeasured(String suffix) {
+        if (measure() > 0) {
+            setTo(suffix);
+        }
+    }
+
+    // Plurals and -ed or -ing: "caresses" -> "caress", "ponies" -> "poni", "hopping" -> "hop"
+    private void step1ab() {
+        if (b[k] == 's') {
+            if (endsWith("sses")) {
+                k -= 2;
+            } else if (endsWith("ies")) {
+                setTo("i");
+            } else if (b[k - 1] != 's') {
+                k--;
+            }
+        }
+        if (endsWith("eed")) {
+            if (measure() > 0) {
+                k--;
+            }
+        } else if ((endsWith("ed") || endsWith("ing")) && vowelInStem()) {
+            k = j;
+            if (endsWith("at")) {
+                setTo("ate");
+            } else if (endsWith("bl")) {
+                setTo("ble");
+            } else if (endsWith("iz")) {
+                setTo("ize");
+            } else if (doubleConsonant(k)) {
+                k--;
+                char c = b[k];
+                if (c == 'l' || c == 's' || c == 'z') {
+                    k++;
+                }
+            } else {
+                j = k;
+                if (measure() == 1 && cvc(k)) {
+                    setTo("e");
+                }
+            }
+        }
+    }
+
+    // Terminal y to i when there is another vowel in the stem: "happy" -> "happi"
+    private void step1c() {
+        if (endsWith("y") && vowelInStem()) {
+            b[k] = 'i';
+        }
+    }
+
+    // Double suffixes to single ones: "relational" -> "relate", "digitizer" -> "digitize"
+    private void step2() {
+        switch (b[k - 1]) {
+            case 'a':
+                if (endsWith("ational")) {
+                    replaceIfMeasured("ate");
+                } else if (endsWith("tional")) {
+                    replaceIfMeasured("tion");
+                }
+                break;
+            case 'c':
+                if (endsWith("enci")) {
+                    replaceIfMeasured("ence");
+                } else if (endsWith("anci")) {
+                    replaceIfMeasured("ance");
+                }
+                break;
+            case 'e':
+                if (endsWith("izer")) {
+                    replaceIfMeasured("ize");
+                }
+                break;
+            case 'l':
+                if (endsWith("bli")) {
+                    replaceIfMeasured("ble");
+                } else if (endsWith("alli")) {
+                    replaceIfMeasured("al");
+                } else if (endsWith("entli")) {
+                    replaceIfMeasured("ent");
+                } else if (endsWith("eli")) {
+                    replaceIfMeasured("e");
+                } else if (endsWith("ousli")) {
+                    replaceIfMeasured("ous");
+                }
+                break;
+            case 'o':
+                if (endsWith("ization")) {
+                    replaceIfMeasured("ize");
+                } else if (endsWith("ation")) {
+                    replaceIfMeasured("ate");
+                } else if (endsWith("ator")) {
+                    replaceIfMeasured("ate");
+                }
+                break;
+            case 's':
+                if (endsWith("alism")) {
+                    replaceIfMeasured("al");
+                } else if (endsWith("iveness")) {
+                    replaceIfMeasured("ive");
+                } else if (endsWith("fulness")) {
+                    replaceIfMeasured("ful");
+                } else if (endsWith("ousness")) {
+                    replaceIfMeasured("ous");
+                }
+                break;
+            case 't':
+                if (endsWith("aliti")) {
+                    replaceIfMeasured("al");
+                } else if (endsWith("iviti")) {
+                    replaceIfMeasured("ive");
+                } else if (endsWith("biliti")) {
+                    replaceIfMeasured("ble");
+                }
+                break;
+            case 'g':
+                if (endsWith("logi")) {
+                    replaceIfMeasured("log");
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    // -ic-, -full, -ness and the like: "electrical" -> "electric", "goodness" -> "good"
+    private void step3() {
+        switch (b[k]) {
+            case 'e':
+                if (endsWith("icate")) {
+                    replaceIfMeasured("ic");
+                } else if (endsWith("ative")) {
+                    replaceIfMeasured("");
+                } else if (endsWith("alize")) {
+                    replaceIfMeasured("al");
+                }
+                break;
+            case 'i':
+                if (endsWith("iciti")) {
+                    replaceIfMeasured("ic");
+                }
+                break;
+            case 'l':
+                if (endsWith("ical")) {
+                    replaceIfMeasured("ic");
+                } else if (endsWith("ful")) {
+                    replaceIfMeasured("");
+                }
+                break;
+            case 's':
+                if (endsWith("ness")) {
+                    replaceIfMeasured("");
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    // Drops -ant, -ence, -ment and the like from longer stems: "adjustment" -> "adjust"
+    private void step4() {
+        boolean matched;
+        switch (b[k - 1]) {
+            case 'a':
+                matched = endsWith("al");
+                break;
+            case 'c':
+                matched = endsWith("ance") || endsWith("ence");
+                break;
+            case 'e':
+                matched = endsWith("er");
+                break;
+            case 'i':
+                matched = endsWith("ic");
+                break;
+            case 'l':
+                matched = endsWith("able") || endsWith("ible");
+                break;
+            case 'n':
+                matched = endsWith("ant") || endsWith("ement") || endsWith("ment") || endsWith("ent");
+                break;
+            case 'o':
+                matched = endsWith("ion") && j >= 0 && (b[j] == 's' || b[j] == 't') || endsWith("ou");
+                break;
+            case 's':
+                matched = endsWith("ism");
+                break;
+            case 't':
+                matched = endsWith("ate") || endsWith("iti");
+                break;
+            case 'u':
+                matched = endsWith("ous");
+                break;
+            case 'v':
+                matched = endsWith("ive");
+                break;
+            case 'z':
+                matched = endsWith("ize");
+                break;
+            default:
+                matched = false;
+                break;
+        }
+        if (matched && measure() > 1) {
+            k = j;
+        }
+    }
+
+    // A final -e, and -ll to -l, on longer stems: "probate" -> "probat", "controll" -> "control"
+    private void step5() {
+        j = k;
+        if (b[k] == 'e') {
+            int m = measure();
+            if (m > 1 || m == 1 && !cvc(k - 1)) {
+                k--;
+            }
+        }
+        if (b[k] == 'l' && doubleConsonant(k) && measure() > 1) {
+            k--;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package org.example.search;
+
+import java.util.Arrays;
+
+/**
+ * Doc ids (ascending) and term frequencies for a single term in a single field.
+ * Grows while a segment is being built and is trimmed once the segment is sealed.
+ */
+public class PostingList {
+    private int[] docIds;
+    private int[] freqs;
+    private int size;
+
+    public PostingList() {
+        this(4);
+    }
+
+    PostingList(int capacity) {
+        this.docIds = new int[Math.max(capacity, 1)];
+        this.freqs = new int[Math.max(capacity, 1)];
+    }
+
+    void add(int docId, int freq) {
+        if (size == docIds.length) {
+            int capacity = size + (size >> 1) + 1;
+            docIds = Arrays.copyOf(docIds, capacity);
+            freqs = Arrays.copyOf(freqs, capacity);
+        }
+        docIds[size] = docId;
+        freqs[size] = freq;
+        size++;
+    }
+
+    void trim() {
+        if (size < docIds.length) {
+            docIds = Arrays.copyOf(docIds, size);
+            freqs = Arrays.copyOf(freqs, size);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int docId(int index) {
+        return docIds[index];
+    }
+
+    public int freq(int index) {
+        return freqs[index];
+    }
+}
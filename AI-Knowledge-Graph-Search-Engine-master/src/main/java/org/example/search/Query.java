@@ -0,0 +1,819 @@
+package org.example.search;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parsed structured query: text terms, phrases, field filters and date ranges
+ * combined with AND, OR and NOT. Produced by {@link QueryParser} and executed by
+ * {@link SearchIndex#search(Query, int)}.
+ *
+ * A node evaluates to the live documents it matches as a bitset over the snapshot's
+ * global doc ids, and can also test a single document from its stored fields. A
+ * conjunction starts from its most selective child and, once few candidates remain,
+ * checks the others per document instead of reading their postings.
+ */
+public abstract class Query {
+    // Rough cost of testing one document, in posting entries read: a stored field lookup, or also tokenizing text
+    static final int FILTER_VERIFY_COST = 200;
+    static final int TEXT_VERIFY_COST = 2000;
+
+    /**
+     * Snapshot a query runs against, plus a trace of the decisions the planner made.
+     */
+    static final class Context {
+        final IndexSnapshot snapshot;
+        final IndexSchema schema;
+        final List<String> plan = new ArrayList<>();
+
+        Context(IndexSnapshot snapshot, IndexSchema schema) {
+            this.snapshot = snapshot;
+            this.schema = schema;
+        }
+
+        long[] newBits() {
+            return new long[(snapshot.maxDoc() + 63) >>> 6];
+        }
+
+        long[] liveDocs() {
+            long[] bits = newBits();
+            for (int s = 0; s < snapshot.segmentCount(); s++) {
+                int base = snapshot.docBase(s);
+                for (int doc = 0; doc < snapshot.segment(s).maxDoc(); doc++) {
+                    if (!snapshot.isDeleted(s, doc)) {
+                        set(bits, base + doc);
+                    }
+                }
+            }
+            return bits;
+        }
+
+        // Sets the live docs containing term in field
+        void addPostings(long[] bits, String field, String term) {
+            for (int s = 0; s < snapshot.segmentCount(); s++) {
+                IndexSegment.FieldIndex fieldIndex = snapshot.segment(s).field(field);
+                PostingList postings = fieldIndex != null ? fieldIndex.postings(term) : null;
+                if (postings == null) {
+                    continue;
+                }
+                int base = snapshot.docBase(s);
+                for (int i = 0; i < postings.size(); i++) {
+                    int doc = postings.docId(i);
+                    if (!snapshot.isDeleted(s, doc)) {
+                        set(bits, base + doc);
+                    }
+                }
+            }
+        }
+
+        Map<String, String> storedFields(int globalDoc) {
+            return snapshot.storedFields(globalDoc);
+        }
+    }
+
+    // Upper bound on the number of matching documents, from term statistics only
+    abstract long estimate(Context context);
+
+    // Work to materialize the matches, in posting entries read
+    long cost(Context context) {
+        return estimate(context);
+    }
+
+    abstract long[] docs(Context context);
+
+    public abstract boolean matches(Map<String, String> fields, IndexSchema schema);
+
+    abstract int verifyCost();
+
+    // Terms that should contribute to the relevance score of a match
+    void collectScoringTerms(Collection<String> terms) {
+    }
+
+    public List<String> scoringTerms() {
+        List<String> terms = new ArrayList<>();
+        collectScoringTerms(terms);
+        return terms;
+    }
+
+    // A query with nothing but bare words, which keeps the ranked any-term behaviour
+    public boolean isPlainText() {
+        return false;
+    }
+
+    /**
+     * A word that must occur in one text field, or in any of them when field is null.
+     */
+    public static final class Term extends Query {
+        private final String field;
+        private final String term;
+
+        public Term(String field, String term) {
+            this.field = field;
+            this.term = term;
+        }
+
+        public String getField() {
+            return field;
+        }
+
+        public String getTerm() {
+            return term;
+        }
+
+        @Override
+        long estimate(Context context) {
+            long docFreq = 0;
+            for (String textField : fields(field, context.schema)) {
+                docFreq += context.snapshot.docFreq(textField, term);
+            }
+            return Math.min(docFreq, context.snapshot.numDocs());
+        }
+
+        @Override
+        long[] docs(Context context) {
+            long[] bits = context.newBits();
+            for (String textField : fields(field, context.schema)) {
+                context.addPostings(bits, textField, term);
+            }
+            return bits;
+        }
+
+        @Override
+        public boolean matches(Map<String, String> fields, IndexSchema schema) {
+            for (String textField : fields(field, schema)) {
+                if (schema.getAnalyzer().analyze(fields.get(textField)).contains(term)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        int verifyCost() {
+            return TEXT_VERIFY_COST;
+        }
+
+        @Override
+        void collectScoringTerms(Collection<String> terms) {
+            terms.add(term);
+        }
+
+        @Override
+        public boolean isPlainText() {
+            return field == null;
+        }
+
+        @Override
+        public String toString() {
+            return field != null ? field + ":" + term : term;
+        }
+    }
+
+    /**
+     * Words that must occur consecutively in one text field. Candidates come from
+     * intersecting the words' postings and are confirmed against the stored text.
+     */
+    public static final class Phrase extends Query {
+        private final String field;
+        private final List<String> terms;
+
+        public Phrase(String field, List<String> terms) {
+            this.field = field;
+            this.terms = Collections.unmodifiableList(new ArrayList<>(terms));
+        }
+
+        public String getField() {
+            return field;
+        }
+
+        public List<String> getTerms() {
+            return terms;
+        }
+
+        @Override
+        long estimate(Context context) {
+            long estimate = context.snapshot.numDocs();
+            for (String term : terms) {
+                estimate = Math.min(estimate, new Term(field, term).estimate(context));
+            }
+            return estimate;
+        }
+
+        // Reading each word's postings, then checking the stored text of every document that has them all
+        @Override
+        long cost(Context context) {
+            long cost = 0;
+            for (String term : terms) {
+                cost += new Term(field, term).estimate(context);
+            }
+            return cost + estimate(context) * TEXT_VERIFY_COST;
+        }
+
+        @Override
+        long[] docs(Context context) {
+            List<Query> words = new ArrayList<>();
+            for (String term : terms) {
+                words.add(new Term(field, term));
+            }
+            long[] bits = new And(words).docs(context);
+            for (int doc = nextSetBit(bits, 0); doc >= 0; doc = nextSetBit(bits, doc + 1)) {
+                if (!matches(context.storedFields(doc), context.schema)) {
+                    clear(bits, doc);
+                }
+            }
+            return bits;
+        }
+
+        @Override
+        public boolean matches(Map<String, String> fields, IndexSchema schema) {
+            for (String textField : fields(field, schema)) {
+                if (Collections.indexOfSubList(schema.getAnalyzer().analyze(fields.get(textField)), terms) >= 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        int verifyCost() {
+            return TEXT_VERIFY_COST;
+        }
+
+        @Override
+        void collectScoringTerms(Collection<String> terms) {
+            terms.addAll(this.terms);
+        }
+
+        @Override
+        public String toString() {
+            return (field != null ? field + ":" : "") + '"' + String.join(" ", terms) + '"';
+        }
+    }
+
+    /**
+     * A keyword field equal to one of the given values, ignoring case.
+     */
+    public static final class Field extends Query {
+        private final String field;
+        private final List<String> values;
+
+        public Field(String field, List<String> values) {
+            this.field = field;
+            this.values = Collections.unmodifiableList(new ArrayList<>(values));
+        }
+
+        public String getField() {
+            return field;
+        }
+
+        public List<String> getValues() {
+            return values;
+        }
+
+        @Override
+        long estimate(Context context) {
+            long docFreq = 0;
+            for (String value : values) {
+                String term = context.schema.keywordTerm(field, value);
+                if (term != null) {
+                    docFreq += context.snapshot.docFreq(field, term);
+                }
+            }
+            return docFreq;
+        }
+
+        @Override
+        long[] docs(Context context) {
+            long[] bits = context.newBits();
+            for (String value : values) {
+                String term = context.schema.keywordTerm(field, value);
+                if (term != null) {
+                    context.addPostings(bits, field, term);
+                }
+            }
+            return bits;
+        }
+
+        @Override
+        public boolean matches(Map<String, String> fields, IndexSchema schema) {
+            String actual = schema.keywordTerm(field, fields.get(field));
+            if (actual == null) {
+                return false;
+            }
+            for (String value : values) {
+                if (actual.equals(schema.keywordTerm(field, value))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        int verifyCost() {
+            return FILTER_VERIFY_COST;
+        }
+
+        @Override
+        public String toString() {
+            return field + ":" + String.join(",", values);
+        }
+    }
+
+    /**
+     * A date field within a range; a null bound is open. Bounds are ISO days or
+     * date-times and compare at their own precision, so "to 2026-01-31" inclusive
+     * covers that whole day while "from 2026-01-31T08:00" starts at that minute.
+     * Date fields are indexed in hour buckets that sort like the timeline, so only the
+     * buckets between the bounds' days are read, and stored values are checked only in
+     * the buckets a bound falls inside.
+     */
+    public static final class Range extends Query {
+        // Padding that completes a shorter ISO value to the earliest instant it can stand for
+        private static final String EARLIEST = "0000-01-01T00:00:00.000000000";
+
+        private final String field;
+        private final String from;
+        private final boolean fromInclusive;
+        private final String to;
+        private final boolean toInclusive;
+
+        public Range(String field, String from, boolean fromInclusive, String to, boolean toInclusive) {
+            this.field = field;
+            this.from = from;
+            this.fromInclusive = fromInclusive;
+            this.to = to;
+            this.toInclusive = toInclusive;
+        }
+
+        public String getField() {
+            return field;
+        }
+
+        public String getFrom() {
+            return from;
+        }
+
+        public boolean isFromInclusive() {
+            return fromInclusive;
+        }
+
+        public String getTo() {
+            return to;
+        }
+
+        public boolean isToInclusive() {
+            return toInclusive;
+        }
+
+        boolean contains(String value) {
+            return value != null && afterFrom(value) && beforeTo(value);
+        }
+
+        private boolean afterFrom(String value) {
+            if (from == null) {
+                return true;
+            }
+            int compared = compareAtPrecision(value, from);
+            return compared > 0 || (compared == 0 && fromInclusive);
+        }
+
+        private boolean beforeTo(String value) {
+            if (to == null) {
+                return true;
+            }
+            int compared = compareAtPrecision(value, to);
+            return compared < 0 || (compared == 0 && toInclusive);
+        }
+
+        // Compares value cut or padded to the bound's length
+        private static int compareAtPrecision(String value, String bound) {
+            if (value.length() >= bound.length()) {
+                return value.substring(0, bound.length()).compareTo(bound);
+            }
+            String padded = value + EARLIEST.substring(Math.min(value.length(), EARLIEST.length()));
+            return padded.substring(0, Math.min(padded.length(), bound.length())).compareTo(bound);
+        }
+
+        // Bucket terms that can hold matches: from the first day of the range up to the day after it
+        private Iterable<String> buckets(IndexSegment.FieldIndex fieldIndex) {
+            String firstDay = from != null ? day(from) : null;
+            String lastDay = to != null ? day(to) : null;
+            return fieldIndex.terms(firstDay, lastDay != null ? nextDay(lastDay) : null);
+        }
+
+        // 1 if every value in the bucket matches, 0 if some may, -1 if none can
+        private int coverage(String bucket) {
+            String first = bucket;
+            String last = bucket + (bucket.length() == IndexSchema.HOUR_LENGTH ? ":59:59.999999999"
+                    : "T23:59:59.999999999");
+            if (!afterFrom(last) || !beforeTo(first)) {
+                return -1;
+            }
+            return afterFrom(first) && beforeTo(last) ? 1 : 0;
+        }
+
+        @Override
+        long estimate(Context context) {
+            long docFreq = 0;
+            for (IndexSegment segment : context.snapshot.getSegments()) {
+                IndexSegment.FieldIndex fieldIndex = segment.field(field);
+                if (fieldIndex != null) {
+                    for (String bucket : buckets(fieldIndex)) {
+                        if (coverage(bucket) >= 0) {
+                            docFreq += fieldIndex.docFreq(bucket);
+                        }
+                    }
+                }
+            }
+            return docFreq;
+        }
+
+        @Override
+        long cost(Context context) {
+            long cost = 0;
+            for (IndexSegment segment : context.snapshot.getSegments()) {
+                IndexSegment.FieldIndex fieldIndex = segment.field(field);
+                if (fieldIndex != null) {
+                    for (String bucket : buckets(fieldIndex)) {
+                        int coverage = coverage(bucket);
+                        if (coverage >= 0) {
+                            cost += fieldIndex.docFreq(bucket) * (coverage == 0 ? FILTER_VERIFY_COST + 1L : 1L);
+                        }
+                    }
+                }
+            }
+            return cost;
+        }
+
+        @Override
+        long[] docs(Context context) {
+            long[] bits = context.newBits();
+            IndexSnapshot snapshot = context.snapshot;
+            for (int s = 0; s < snapshot.segmentCount(); s++) {
+                IndexSegment segment = snapshot.segment(s);
+                IndexSegment.FieldIndex fieldIndex = segment.field(field);
+                if (fieldIndex == null) {
+                    continue;
+                }
+                int base = snapshot.docBase(s);
+                for (String bucket : buckets(fieldIndex)) {
+                    int coverage = coverage(bucket);
+                    if (coverage < 0) {
+                        continue;
+                    }
+                    PostingList postings = fieldIndex.postings(bucket);
+                    for (int i = 0; i < postings.size(); i++) {
+                        int doc = postings.docId(i);
+                        if (!snapshot.isDeleted(s, doc)
+                                && (coverage > 0 || contains(segment.storedFields(doc).get(field)))) {
+                            set(bits, base + doc);
+                        }
+                    }
+                }
+            }
+            return bits;
+        }
+
+        @Override
+        public boolean matches(Map<String, String> fields, IndexSchema schema) {
+            String value = fields.get(field);
+            return value != null && contains(value.trim());
+        }
+
+        @Override
+        int verifyCost() {
+            return FILTER_VERIFY_COST;
+        }
+
+        private static String day(String bound) {
+            return bound.substring(0, Math.min(bound.length(), IndexSchema.DAY_LENGTH));
+        }
+
+        private static String nextDay(String day) {
+            try {
+                return LocalDate.parse(day).plusDays(1).toString();
+            } catch (DateTimeParseException e) {
+                // Not a day; leave the range open above
+                return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return field + ":" + (fromInclusive ? "[" : "{") + (from != null ? from : "*") + " TO " +
+                    (to != null ? to : "*") + (toInclusive ? "]" : "}");
+        }
+    }
+
+    /**
+     * Every clause must match. Negated clauses are applied after the positive ones.
+     */
+    public static final class And extends Query {
+        private final List<Query> clauses;
+
+        public And(List<Query> clauses) {
+            this.clauses = Collections.unmodifiableList(new ArrayList<>(clauses));
+        }
+
+        public List<Query> getClauses() {
+            return clauses;
+        }
+
+        @Override
+        long estimate(Context context) {
+            long estimate = context.snapshot.numDocs();
+            for (Query clause : clauses) {
+                estimate = Math.min(estimate, clause.estimate(context));
+            }
+            return estimate;
+        }
+
+        @Override
+        long[] docs(Context context) {
+            List<Query> required = new ArrayList<>();
+            List<Query> excluded = new ArrayList<>();
+            for (Query clause : clauses) {
+                if (clause instanceof Not) {
+                    excluded.add(((Not) clause).clause);
+                } else {
+                    required.add(clause);
+                }
+            }
+
+            // Most selective first, so every later step works on the smallest candidate set
+            long[] requiredEstimates = estimates(required, context);
+            long[] excludedEstimates = estimates(excluded, context);
+            sortByEstimate(required, requiredEstimates);
+
+            long[] bits;
+            int first = 0;
+            if (required.isEmpty()) {
+                bits = context.liveDocs();
+                context.plan.add("all live docs");
+            } else {
+                bits = required.get(0).docs(context);
+                context.plan.add(required.get(0) + ": postings (~" + requiredEstimates[0] + ")");
+                first = 1;
+            }
+            long candidates = cardinality(bits);
+
+            for (int i = first; i < required.size() + excluded.size() && candidates > 0; i++) {
+                boolean exclude = i >= required.size();
+                Query clause = exclude ? excluded.get(i - required.size()) : required.get(i);
+                long estimate = exclude ? excludedEstimates[i - required.size()] : requiredEstimates[i];
+                String label = (exclude ? "-" : "") + clause;
+
+                if (candidates * clause.verifyCost() < clause.cost(context)) {
+                    // Cheaper to test the few candidates left than to read the clause's postings
+                    for (int doc = nextSetBit(bits, 0); doc >= 0; doc = nextSetBit(bits, doc + 1)) {
+                        if (clause.matches(context.storedFields(doc), context.schema) == exclude) {
+                            clear(bits, doc);
+                        }
+                    }
+                    context.plan.add(label + ": verified " + candidates + " candidates");
+                } else {
+                    long[] other = clause.docs(context);
+                    for (int w = 0; w < bits.length; w++) {
+                        bits[w] &= exclude ? ~other[w] : other[w];
+                    }
+                    context.plan.add(label + ": postings (~" + estimate + ")");
+                }
+                candidates = cardinality(bits);
+            }
+            return bits;
+        }
+
+        @Override
+        long cost(Context context) {
+            return sumOfCosts(clauses, context);
+        }
+
+        @Override
+        public boolean matches(Map<String, String> fields, IndexSchema schema) {
+            for (Query clause : clauses) {
+                if (!clause.matches(fields, schema)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        int verifyCost() {
+            int cost = 0;
+            for (Query clause : clauses) {
+                cost += clause.verifyCost();
+            }
+            return cost;
+        }
+
+        @Override
+        void collectScoringTerms(Collection<String> terms) {
+            clauses.forEach(clause -> clause.collectScoringTerms(terms));
+        }
+
+        @Override
+        public boolean isPlainText() {
+            return clauses.stream().allMatch(Query::isPlainText);
+        }
+
+        @Override
+        public String toString() {
+            List<String> parts = new ArrayList<>();
+            clauses.forEach(clause -> parts.add(clause instanceof Or ? "(" + clause + ")" : clause.toString()));
+            return String.join(" ", parts);
+        }
+    }
+
+    /**
+     * At least one clause must match.
+     */
+    public static final class Or extends Query {
+        private final List<Query> clauses;
+
+        public Or(List<Query> clauses) {
+            this.clauses = Collections.unmodifiableList(new ArrayList<>(clauses));
+        }
+
+        public List<Query> getClauses() {
+            return clauses;
+        }
+
+        @Override
+        long estimate(Context context) {
+            long estimate = 0;
+            for (Query clause : clauses) {
+                estimate += clause.estimate(context);
+            }
+            return Math.min(estimate, context.snapshot.numDocs());
+        }
+
+        @Override
+        long[] docs(Context context) {
+            long[] bits = context.newBits();
+            for (Query clause : clauses) {
+                long[] other = clause.docs(context);
+                for (int w = 0; w < bits.length; w++) {
+                    bits[w] |= other[w];
+                }
+            }
+            return bits;
+        }
+
+        @Override
+        long cost(Context context) {
+            return sumOfCosts(clauses, context);
+        }
+
+        @Override
+        public boolean matches(Map<String, String> fields, IndexSchema schema) {
+            for (Query clause : clauses) {
+                if (clause.matches(fields, schema)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        int verifyCost() {
+            int cost = 0;
+            for (Query clause : clauses) {
+                cost += clause.verifyCost();
+            }
+            return cost;
+        }
+
+        @Override
+        void collectScoringTerms(Collection<String> terms) {
+            clauses.forEach(clause -> clause.collectScoringTerms(terms));
+        }
+
+        @Override
+        public String toString() {
+            List<String> parts = new ArrayList<>();
+            clauses.forEach(clause -> parts.add(clause instanceof And ? "(" + clause + ")" : clause.toString()));
+            return String.join(" OR ", parts);
+        }
+    }
+
+    /**
+     * Matches every live document the clause does not.
+     */
+    public static final class Not extends Query {
+        private final Query clause;
+
+        public Not(Query clause) {
+            this.clause = clause;
+        }
+
+        public Query getClause() {
+            return clause;
+        }
+
+        @Override
+        long estimate(Context context) {
+            return Math.max(context.snapshot.numDocs() - clause.estimate(context), 0);
+        }
+
+        @Override
+        long[] docs(Context context) {
+            long[] bits = context.liveDocs();
+            long[] other = clause.docs(context);
+            for (int w = 0; w < bits.length; w++) {
+                bits[w] &= ~other[w];
+            }
+            return bits;
+        }
+
+        @Override
+        long cost(Context context) {
+            return clause.cost(context) + context.snapshot.maxDoc();
+        }
+
+        @Override
+        public boolean matches(Map<String, String> fields, IndexSchema schema) {
+            return !clause.matches(fields, schema);
+        }
+
+        @Override
+        int verifyCost() {
+            return clause.verifyCost();
+        }
+
+        @Override
+        public String toString() {
+            return "-" + (clause instanceof And || clause instanceof Or ? "(" + clause + ")" : clause.toString());
+        }
+    }
+
+    private static Collection<String> fields(String field, IndexSchema schema) {
+        return field != null ? Collections.singletonList(field) : schema.getTextFields();
+    }
+
+    private static long sumOfCosts(List<Query> queries, Context context) {
+        long cost = 0;
+        for (Query query : queries) {
+            cost += query.cost(context);
+        }
+        return cost;
+    }
+
+    private static long[] estimates(List<Query> queries, Context context) {
+        long[] estimates = new long[queries.size()];
+        for (int i = 0; i < estimates.length; i++) {
+            estimates[i] = queries.get(i).estimate(context);
+        }
+        return estimates;
+    }
+
+    // Insertion sort of both lists together; conjunctions have a handful of clauses
+    private static void sortByEstimate(List<Query> queries, long[] estimates) {
+        for (int i = 1; i < estimates.length; i++) {
+            for (int j = i; j > 0 && estimates[j] < estimates[j - 1]; j--) {
+                long estimate = estimates[j];
+                estimates[j] = estimates[j - 1];
+                estimates[j - 1] = estimate;
+                Collections.swap(queries, j, j - 1);
+            }
+        }
+    }
+
+    static void set(long[] bits, int doc) {
+        bits[doc >>> 6] |= 1L << doc;
+    }
+
+    static void clear(long[] bits, int doc) {
+        bits[doc >>> 6] &= ~(1L << doc);
+    }
+
+    static long cardinality(long[] bits) {
+        long count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    static int nextSetBit(long[] bits, int from) {
+        int w = from >>> 6;
+        if (w >= bits.length) {
+            return -1;
+        }
+        long word = bits[w] & (-1L << from);
+        while (true) {
+            if (word != 0) {
+                return (w << 6) + Long.numberOfTrailingZeros(word);
+            }
+            if (++w == bits.length) {
+                return -1;
+            }
+            word = bits[w];
+        }
+    }
+}
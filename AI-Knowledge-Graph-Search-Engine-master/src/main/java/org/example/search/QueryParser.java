@@ -0,0 +1,269 @@
+package org.example.search;
+
+import org.example.exception.ValidationException;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parses search box syntax into a {@link Query}:
+ *
+ * <pre>
+ *   status:OPEN priority:HIGH,CRITICAL assignee:jdoe "login error" -vpn created:&gt;2026-01-01
+ *   (crash OR freeze) NOT category:hardware title:printer updated:2026-01-01..2026-01-31
+ * </pre>
+ *
+ * Clauses separated by spaces (or AND) must all match and bind tighter than OR;
+ * parentheses group. A leading - or NOT negates a clause. Keyword fields take comma-separated alternatives; date fields take a day,
+ * a comparison (&gt;, &gt;=, &lt;, &lt;=) or an inclusive from..to range with * for an
+ * open end, each bound a day or a date-time such as 2026-01-31T08:00. An unknown field, an unclosed quote or a stray parenthesis is read as
+ * plain text rather than rejected, so half-typed queries still search; only an
+ * invalid date is an error.
+ */
+public class QueryParser {
+    private final IndexSchema schema;
+    private final Map<String, String> fields = new HashMap<>();
+
+    private String input;
+    private int pos;
+
+    public QueryParser(IndexSchema schema) {
+        this.schema = schema;
+        schema.getTextFields().forEach(field -> fields.put(field.toLowerCase(), field));
+        schema.getKeywordFields().forEach(field -> fields.put(field.toLowerCase(), field));
+    }
+
+    // Accepts another name for a schema field, such as "assignee" for assignedTo
+    public QueryParser alias(String name, String field) {
+        fields.put(name.toLowerCase(), field);
+        return this;
+    }
+
+    /**
+     * Returns null when the query has no searchable content. Not thread-safe; parsers
+     * are cheap, so create one per query.
+     */
+    public Query parse(String query) {
+        this.input = query != null ? query : "";
+        this.pos = 0;
+        Query parsed = null;
+        while (pos < input.length()) {
+            Query next = parseOr();
+            parsed = parsed == null ? next : next == null ? parsed : and(parsed, next);
+            // A stray closing parenthesis ends a group that was never opened
+            if (pos < input.length() && input.charAt(pos) == ')') {
+                pos++;
+            }
+        }
+        return parsed;
+    }
+
+    private Query parseOr() {
+        List<Query> clauses = new ArrayList<>();
+        Query first = parseAnd();
+        if (first != null) {
+            clauses.add(first);
+        }
+        while (keyword("OR")) {
+            Query next = parseAnd();
+            if (next != null) {
+                clauses.add(next);
+            }
+        }
+        if (clauses.isEmpty()) {
+            return null;
+        }
+        return clauses.size() == 1 ? clauses.get(0) : new Query.Or(clauses);
+    }
+
+    private Query parseAnd() {
+        List<Query> clauses = new ArrayList<>();
+        while (true) {
+            skipWhitespace();
+            if (pos >= input.length() || input.charAt(pos) == ')' || peekKeyword("OR")) {
+                break;
+            }
+            if (keyword("AND")) {
+                continue;
+            }
+            Query clause = parseUnary();
+            if (clause instanceof Query.And) {
+                clauses.addAll(((Query.And) clause).getClauses());
+            } else if (clause != null) {
+                clauses.add(clause);
+            }
+        }
+        if (clauses.isEmpty()) {
+            return null;
+        }
+        return clauses.size() == 1 ? clauses.get(0) : new Query.And(clauses);
+    }
+
+    private Query parseUnary() {
+        skipWhitespace();
+        char c = input.charAt(pos);
+        if ((c == '-' || c == '+') && pos + 1 < input.length() && !Character.isWhitespace(input.charAt(pos + 1))) {
+            pos++;
+            Query clause = parseUnary();
+            return c == '-' && clause != null ? new Query.Not(clause) : clause;
+        }
+        if (keyword("NOT")) {
+            skipWhitespace();
+            Query clause = pos < input.length() ? parseUnary() : null;
+            return clause != null ? new Query.Not(clause) : null;
+        }
+        return parsePrimary();
+    }
+
+    private Query parsePrimary() {
+        char c = input.charAt(pos);
+        if (c == '(') {
+            pos++;
+            Query group = parseOr();
+            if (pos < input.length() && input.charAt(pos) == ')') {
+                pos++;
+            }
+            return group;
+        }
+        if (c == '"') {
+            return text(null, quoted());
+        }
+
+        int start = pos;
+        while (pos < input.length() && (Character.isLetterOrDigit(input.charAt(pos)) || input.charAt(pos) == '_')) {
+            pos++;
+        }
+        String field = pos < input.length() && input.charAt(pos) == ':' && pos > start
+                ? fields.get(input.substring(start, pos).toLowerCase()) : null;
+        if (field == null) {
+            pos = start;
+            return text(null, word());
+        }
+
+        pos++;
+        String value = pos < input.length() && input.charAt(pos) == '"' ? quoted() : word();
+        if (value.isBlank()) {
+            return null;
+        }
+        if (schema.isDateField(field)) {
+            return range(field, value.trim());
+        }
+        if (schema.isKeywordField(field)) {
+            List<String> values = new ArrayList<>();
+            for (String alternative : value.split(",")) {
+                if (!alternative.isBlank()) {
+                    values.add(alternative.trim());
+                }
+            }
+            return values.isEmpty() ? null : new Query.Field(field, values);
+        }
+        return text(field, value);
+    }
+
+    // A single word is a term; text the analyzer splits into several words ("e-mail") is a phrase
+    private Query text(String field, String text) {
+        List<String> terms = schema.getAnalyzer().analyze(text);
+        if (terms.isEmpty()) {
+            return null;
+        }
+        return terms.size() == 1 ? new Query.Term(field, terms.get(0)) : new Query.Phrase(field, terms);
+    }
+
+    private Query range(String field, String value) {
+        if (value.startsWith(">=")) {
+            return new Query.Range(field, day(value.substring(2)), true, null, false);
+        }
+        if (value.startsWith(">")) {
+            return new Query.Range(field, day(value.substring(1)), false, null, false);
+        }
+        if (value.startsWith("<=")) {
+            return new Query.Range(field, null, false, day(value.substring(2)), true);
+        }
+        if (value.startsWith("<")) {
+            return new Query.Range(field, null, false, day(value.substring(1)), false);
+        }
+        int separator = value.indexOf("..");
+        if (separator >= 0) {
+            String from = value.substring(0, separator).trim();
+            String to = value.substring(separator + 2).trim();
+            return new Query.Range(field, from.isEmpty() || from.equals("*") ? null : day(from), true,
+                    to.isEmpty() || to.equals("*") ? null : day(to), true);
+        }
+        String day = day(value);
+        return new Query.Range(field, day, true, day, true);
+    }
+
+    // An ISO day, or a date-time for a bound finer than a day
+    private static String day(String value) {
+        String text = value.trim();
+        try {
+            return text.length() <= 10 ? LocalDate.parse(text).toString() : LocalDateTime.parse(text).toString();
+        } catch (DateTimeParseException e) {
+            throw new ValidationException("Invalid date in search query, expected yyyy-MM-dd or yyyy-MM-ddTHH:mm: " +
+                    text);
+        }
+    }
+
+    // Text up to the closing quote, or to the end if it is never closed
+    private String quoted() {
+        int end = input.indexOf('"', pos + 1);
+        String text = input.substring(pos + 1, end >= 0 ? end : input.length());
+        pos = end >= 0 ? end + 1 : input.length();
+        return text;
+    }
+
+    private String word() {
+        int start = pos;
+        while (pos < input.length()) {
+            char c = input.charAt(pos);
+            if (Character.isWhitespace(c) || c == '(' || c == ')' || c == '"') {
+                break;
+            }
+            pos++;
+        }
+        if (pos == start) {
+            // A lone quote or parenthesis that no rule consumed
+            pos++;
+        }
+        return input.substring(start, pos);
+    }
+
+    private boolean keyword(String word) {
+        skipWhitespace();
+        if (!peekKeyword(word)) {
+            return false;
+        }
+        pos += word.length();
+        return true;
+    }
+
+    // Operators are upper case so "or" and "not" can still be searched for as words
+    private boolean peekKeyword(String word) {
+        int end = pos + word.length();
+        return input.startsWith(word, pos)
+                && (end == input.length() || Character.isWhitespace(input.charAt(end)) || input.charAt(end) == '(');
+    }
+
+    private void skipWhitespace() {
+        while (pos < input.length() && Character.isWhitespace(input.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private static Query and(Query left, Query right) {
+        List<Query> clauses = new ArrayList<>();
+        for (Query query : new Query[] { left, right }) {
+            if (query instanceof Query.And) {
+                clauses.addAll(((Query.And) query).getClauses());
+            } else {
+                clauses.add(query);
+            }
+        }
+        return new Query.And(clauses);
+    }
+}
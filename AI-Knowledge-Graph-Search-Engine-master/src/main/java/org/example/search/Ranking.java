@@ -0,0 +1,270 @@
+package org.example.search;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Query-independent signals multiplied into a document's text relevance score, such as
+ * how recent it is or how urgent. Each signal reads one field; its per-document values
+ * are taken once per segment, from the postings of a keyword field or else from the
+ * stored fields, and kept until the segment is dropped. Signals that do not age are
+ * folded into a single boost per document, so ranking a candidate costs one array read
+ * plus one exponential per recency signal.
+ */
+public class Ranking {
+    private static final double LN2 = Math.log(2);
+
+    private final List<Signal> signals = new ArrayList<>();
+    private final Map<IndexSegment, SegmentRanking> segments = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * One ranking signal over a field. Aging signals get the query time as days since
+     * the epoch; the others ignore it.
+     */
+    public abstract static class Signal {
+        private final String field;
+
+        protected Signal(String field) {
+            this.field = field;
+        }
+
+        public String getField() {
+            return field;
+        }
+
+        // The value of a document whose field reads text; for keyword fields text is the indexed term
+        protected abstract float value(String text);
+
+        // The value of a document without the field
+        protected abstract float missing();
+
+        protected abstract float factor(float value, float now);
+
+        // Upper bound of factor over all values and times
+        protected abstract float maxFactor();
+
+        protected boolean ages() {
+            return false;
+        }
+    }
+
+    // A document's factors in one segment
+    static final class SegmentRanking {
+        final float[] boosts;
+        final Signal[] aging;
+        final float[][] values;
+        final float maxBoost;
+
+        SegmentRanking(float[] boosts, Signal[] aging, float[][] values, float maxBoost) {
+            this.boosts = boosts;
+            this.aging = aging;
+            this.values = values;
+            this.maxBoost = maxBoost;
+        }
+
+        float boost(int doc, float now) {
+            float boost = boosts[doc];
+            for (int i = 0; i < aging.length; i++) {
+                boost *= aging[i].factor(values[i][doc], now);
+            }
+            return boost;
+        }
+    }
+
+    public Ranking add(Signal signal) {
+        signals.add(signal);
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return signals.isEmpty();
+    }
+
+    // Days since the epoch, the time aging signals measure against
+    static float now() {
+        return System.currentTimeMillis() / 86_400_000f;
+    }
+
+    SegmentRanking forSegment(IndexSegment segment, IndexSchema schema) {
+        return segments.computeIfAbsent(segment, key -> build(segment, schema));
+    }
+
+    private SegmentRanking build(IndexSegment segment, IndexSchema schema) {
+        int maxDoc = segment.maxDoc();
+        float[] boosts = new float[maxDoc];
+        Arrays.fill(boosts, 1f);
+        List<Signal> aging = new ArrayList<>();
+        List<float[]> agingValues = new ArrayList<>();
+        float agingMax = 1f;
+        for (Signal signal : signals) {
+            float[] values = values(segment, schema, signal);
+            if (signal.ages()) {
+                aging.add(signal);
+                agingValues.add(values);
+                agingMax *= signal.maxFactor();
+            } else {
+                for (int doc = 0; doc < maxDoc; doc++) {
+                    boosts[doc] *= signal.factor(values[doc], 0);
+                }
+            }
+        }
+        float maxBoost = 0;
+        for (int doc = 0; doc < maxDoc; doc++) {
+            maxBoost = Math.max(maxBoost, boosts[doc]);
+        }
+        // Rounded up a little, so float error never lets a document's boost exceed the bound
+        return new SegmentRanking(boosts, aging.toArray(new Signal[0]), agingValues.toArray(new float[0][]),
+                maxBoost * agingMax * 1.0001f);
+    }
+
+    private static float[] values(IndexSegment segment, IndexSchema schema, Signal signal) {
+        float[] values = new float[segment.maxDoc()];
+        Arrays.fill(values, signal.missing());
+        if (schema.isKeywordField(signal.getField())) {
+            IndexSegment.FieldIndex fieldIndex = segment.field(signal.getField());
+            if (fieldIndex != null) {
+                for (String term : fieldIndex.terms()) {
+                    PostingList postings = fieldIndex.postings(term);
+                    float value = signal.value(term);
+                    for (int i = 0; postings != null && i < postings.size(); i++) {
+                        values[postings.docId(i)] = value;
+                    }
+                }
+            }
+            return values;
+        }
+        for (int doc = 0; doc < values.length; doc++) {
+            String text = segment.storedFields(doc).get(signal.getField());
+            if (text != null) {
+                values[doc] = signal.value(text);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Multiplies the score by a factor per field value, matched ignoring case and with
+     * underscores read as spaces, so "IN_PROGRESS" also names "In Progress". Other values
+     * keep the score as it is.
+     */
+    public static Signal valueBoost(String field, Map<String, Float> boosts) {
+        Map<String, Float> normalized = new HashMap<>();
+        boosts.forEach((value, boost) -> normalized.put(normalize(value), boost));
+        float max = 1f;
+        for (float boost : normalized.values()) {
+            max = Math.max(max, boost);
+        }
+        float maxFactor = max;
+        return new Signal(field) {
+            @Override
+            protected float value(String text) {
+                return normalized.getOrDefault(normalize(text), 1f);
+            }
+
+            @Override
+            protected float missing() {
+                return 1f;
+            }
+
+            @Override
+            protected float factor(float value, float now) {
+                return value;
+            }
+
+            @Override
+            protected float maxFactor() {
+                return maxFactor;
+            }
+        };
+    }
+
+    /**
+     * Multiplies the score by 1 + weight * ln(1 + count) for a field holding a count, so
+     * each tenfold increase adds about the same. Counts are capped at maxCount, which
+     * bounds how far popularity can lift a weak text match.
+     */
+    public static Signal logCount(String field, float weight, long maxCount) {
+        float maxFactor = (float) (1 + weight * Math.log1p(maxCount));
+        return new Signal(field) {
+            @Override
+            protected float value(String text) {
+                try {
+                    return (float) (1 + weight * Math.log1p(Math.min(Math.max(Long.parseLong(text.trim()), 0), maxCount)));
+                } catch (NumberFormatException e) {
+                    return 1f;
+                }
+            }
+
+            @Override
+            protected float missing() {
+                return 1f;
+            }
+
+            @Override
+            protected float factor(float value, float now) {
+                return value;
+            }
+
+            @Override
+            protected float maxFactor() {
+                return maxFactor;
+            }
+        };
+    }
+
+    /**
+     * Multiplies the score by 1 + weight * 2^(-age / halfLifeDays), age being measured from
+     * a date field (by hour when the index buckets it by hour). A brand-new document gets
+     * 1 + weight, one halfLifeDays old 1 + weight / 2, and very old ones close to 1.
+     */
+    public static Signal recency(String field, float halfLifeDays, float weight) {
+        float decay = (float) (LN2 / halfLifeDays);
+        return new Signal(field) {
+            @Override
+            protected float value(String text) {
+                try {
+                    float day = LocalDate.parse(text.substring(0, IndexSchema.DAY_LENGTH)).toEpochDay();
+                    if (text.length() >= IndexSchema.HOUR_LENGTH) {
+                        day += Integer.parseInt(text.substring(IndexSchema.DAY_LENGTH + 1, IndexSchema.HOUR_LENGTH)) / 24f;
+                    }
+                    return day;
+                } catch (DateTimeParseException | NumberFormatException | IndexOutOfBoundsException e) {
+                    return Float.NEGATIVE_INFINITY;
+                }
+            }
+
+            // Undated documents rank as if very old
+            @Override
+            protected float missing() {
+                return Float.NEGATIVE_INFINITY;
+            }
+
+            @Override
+            protected float factor(float value, float now) {
+                float age = Math.max(now - value, 0);
+                return 1 + weight * (float) Math.exp(-decay * age);
+            }
+
+            @Override
+            protected float maxFactor() {
+                return 1 + weight;
+            }
+
+            @Override
+            protected boolean ages() {
+                return true;
+            }
+        };
+    }
+
+    private static String normalize(String value) {
+        return value.trim().replace('_', ' ').toLowerCase();
+    }
+}
@@ -0,0 +1,372 @@
+package org.example.search;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BiPredicate;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Bounded cache with W-TinyLFU eviction (Einziger, Friedman and Manes).
+ *
+ * New entries enter a small LRU window; entries leaving the window compete with the
+ * main region's LRU victim and only the one accessed more often, according to a
+ * 4-bit count-min sketch, stays. This keeps one-off queries from flushing the
+ * popular ones. The main region is a segmented LRU (probation and protected).
+ * Both entry count and total weight are bounded.
+ *
+ * Concurrent misses on the same key share a single load. A load that overlaps an
+ * invalidation is returned to its callers but not cached, so a write can never be
+ * hidden by a result computed before it.
+ */
+public class ResultCache<V> {
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    private final long maximumSize;
+    private final long maximumWeight;
+    private final long windowMaximum;
+    private final long protectedMaximum;
+    private final ToIntFunction<V> weigher;
+    private final FrequencySketch sketch;
+
+    private final Map<String, Node<V>> nodes = new HashMap<>();
+    private final Node<V>[] queues;
+    private final long[] queueWeights = new long[3];
+    private long totalWeight;
+    private Node<V> candidate;
+
+    private final Map<String, CompletableFuture<V>> loading = new ConcurrentHashMap<>();
+    private long invalidations;
+
+    private long hits;
+    private long misses;
+    private long loads;
+    private long coalesced;
+    private long evictions;
+    private long invalidated;
+
+    private static class Node<V> {
+        final String key;
+        V value;
+        int weight;
+        int queue;
+        Node<V> prev;
+        Node<V> next;
+
+        Node(String key) {
+            this.key = key;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public ResultCache(long maximumSize, long maximumWeight, ToIntFunction<V> weigher) {
+        this.maximumSize = Math.max(maximumSize, 1);
+        this.maximumWeight = Math.max(maximumWeight, 1);
+        this.windowMaximum = Math.max(this.maximumWeight / 100, 1);
+        this.protectedMaximum = (this.maximumWeight - windowMaximum) * 4 / 5;
+        this.weigher = weigher;
+        this.sketch = new FrequencySketch((int) Math.min(this.maximumSize, 1 << 24));
+
+        // Each queue is a circular list with a sentinel head
+        this.queues = (Node<V>[]) new Node<?>[3];
+        for (int i = 0; i < queues.length; i++) {
+            Node<V> sentinel = new Node<>(null);
+            sentinel.prev = sentinel;
+            sentinel.next = sentinel;
+            queues[i] = sentinel;
+        }
+    }
+
+    public V getIfPresent(String key) {
+        synchronized (this) {
+            sketch.increment(key.hashCode());
+            Node<V> node = nodes.get(key);
+            if (node == null) {
+                misses++;
+                return null;
+            }
+            hits++;
+            onAccess(node);
+            return node.value;
+        }
+    }
+
+    /**
+     * Returns the cached value or loads it. Callers missing on the same key at the
+     * same time wait for one load instead of each running their own.
+     */
+    public V get(String key, Supplier<V> loader) {
+        V cached = getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = loading.putIfAbsent(key, future);
+        if (existing != null) {
+            synchronized (this) {
+                coalesced++;
+            }
+            return join(existing);
+        }
+
+        long epoch;
+        synchronized (this) {
+            loads++;
+            epoch = invalidations;
+        }
+        try {
+            V value = loader.get();
+            synchronized (this) {
+                if (value != null && epoch == invalidations) {
+                    put(key, value);
+                }
+            }
+            future.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, future);
+        }
+    }
+
+    private V join(CompletableFuture<V> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for a cache load", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new IllegalStateException(cause);
+        }
+    }
+
+    public synchronized void put(String key, V value) {
+        int weight = Math.max(weigher.applyAsInt(value), 1);
+        if (weight > maximumWeight) {
+            return;
+        }
+        Node<V> node = nodes.get(key);
+        if (node != null) {
+            queueWeights[node.queue] += weight - node.weight;
+            totalWeight += weight - node.weight;
+            node.value = value;
+            node.weight = weight;
+            onAccess(node);
+        } else {
+            node = new Node<>(key);
+            node.value = value;
+            node.weight = weight;
+            nodes.put(key, node);
+            append(node, WINDOW);
+        }
+        evict();
+    }
+
+    public synchronized void invalidate(String key) {
+        invalidations++;
+        Node<V> node = nodes.remove(key);
+        if (node != null) {
+            unlink(node);
+            invalidated++;
+        }
+    }
+
+    // Removes every entry the predicate matches; returns how many were removed
+    public synchronized int invalidateIf(BiPredicate<String, V> predicate) {
+        invalidations++;
+        int removed = 0;
+        Iterator<Node<V>> iterator = nodes.values().iterator();
+        while (iterator.hasNext()) {
+            Node<V> node = iterator.next();
+            if (predicate.test(node.key, node.value)) {
+                iterator.remove();
+                unlink(node);
+                removed++;
+            }
+        }
+        invalidated += removed;
+        return removed;
+    }
+
+    public synchronized void invalidateAll() {
+        invalidations++;
+        invalidated += nodes.size();
+        for (Node<V> node : nodes.values()) {
+            unlink(node);
+        }
+        nodes.clear();
+    }
+
+    public synchronized int size() {
+        return nodes.size();
+    }
+
+    public synchronized Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long requests = hits + misses;
+        stats.put("size", nodes.size());
+        stats.put("weight", totalWeight);
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("hitRate", requests > 0 ? (double) hits / requests : 0.0);
+        stats.put("loads", loads);
+        stats.put("coalescedLoads", coalesced);
+        stats.put("evictions", evictions);
+        stats.put("invalidations", invalidated);
+        return stats;
+    }
+
+    private void onAccess(Node<V> node) {
+        switch (node.queue) {
+            case WINDOW:
+                moveToTail(node, WINDOW);
+                break;
+            case PROBATION:
+                // A second hit in the main region earns protection
+                moveToTail(node, PROTECTED);
+                while (queueWeights[PROTECTED] > protectedMaximum) {
+                    Node<V> demoted = queues[PROTECTED].next;
+                    moveToTail(demoted, PROBATION);
+                }
+                break;
+            default:
+                moveToTail(node, PROTECTED);
+                break;
+        }
+    }
+
+    private void evict() {
+        // Entries overflowing the window become candidates for the main region
+        while (queueWeights[WINDOW] > windowMaximum) {
+            Node<V> first = queues[WINDOW].next;
+            moveToTail(first, PROBATION);
+            candidate = first;
+        }
+
+        while (totalWeight > maximumWeight || nodes.size() > maximumSize) {
+            Node<V> victim = firstOf(PROBATION, PROTECTED, WINDOW);
+            Node<V> evicted = victim;
+            if (candidate != null && candidate != victim && candidate.queue == PROBATION) {
+                // Admit the candidate only if it is more popular than the victim
+                evicted = sketch.frequency(candidate.key.hashCode()) > sketch.frequency(victim.key.hashCode())
+                        ? victim : candidate;
+                candidate = null;
+            }
+            nodes.remove(evicted.key);
+            unlink(evicted);
+            evictions++;
+        }
+    }
+
+    private Node<V> firstOf(int... order) {
+        for (int queue : order) {
+            if (queues[queue].next != queues[queue]) {
+                return queues[queue].next;
+            }
+        }
+        throw new IllegalStateException("Cache is over capacity but empty");
+    }
+
+    private void moveToTail(Node<V> node, int queue) {
+        unlink(node);
+        append(node, queue);
+    }
+
+    private void append(Node<V> node, int queue) {
+        Node<V> head = queues[queue];
+        node.prev = head.prev;
+        node.next = head;
+        head.prev.next = node;
+        head.prev = node;
+        node.queue = queue;
+        queueWeights[queue] += node.weight;
+        totalWeight += node.weight;
+    }
+
+    private void unlink(Node<V> node) {
+        if (node.prev == null) {
+            return;
+        }
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        node.prev = null;
+        node.next = null;
+        queueWeights[node.queue] -= node.weight;
+        totalWeight -= node.weight;
+        if (candidate == node) {
+            candidate = null;
+        }
+    }
+
+    /**
+     * Count-min sketch of 4-bit counters, four rows packed sixteen to a long.
+     * All counters are halved every 10 * capacity increments so old popularity fades.
+     */
+    private static class FrequencySketch {
+        private static final long[] SEEDS = {
+                0xC3A5C85C97CB3127L, 0xB492B66FBE98F273L, 0x9AE16A3B2F90404FL, 0xCBF29CE484222325L };
+        private final long[] table;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int capacity) {
+            int size = Integer.highestOneBit(Math.max(capacity, 16) - 1) << 1;
+            this.table = new long[size];
+            this.mask = size - 1;
+            this.sampleSize = 10 * Math.max(capacity, 16);
+        }
+
+        int frequency(int hash) {
+            int frequency = Integer.MAX_VALUE;
+            for (int i = 0; i < 4; i++) {
+                frequency = Math.min(frequency, counter(hash, i));
+            }
+            return frequency;
+        }
+
+        void increment(int hash) {
+            boolean added = false;
+            for (int i = 0; i < 4; i++) {
+                int index = index(hash, i);
+                int shift = shift(hash, i);
+                if (((table[index] >>> shift) & 0xF) < 15) {
+                    table[index] += 1L << shift;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                for (int i = 0; i < table.length; i++) {
+                    table[i] = (table[i] >>> 1) & 0x7777777777777777L;
+                }
+                additions /= 2;
+            }
+        }
+
+        private int counter(int hash, int row) {
+            return (int) ((table[index(hash, row)] >>> shift(hash, row)) & 0xF);
+        }
+
+        private int index(int hash, int row) {
+            long h = (hash + SEEDS[row]) * SEEDS[row];
+            return (int) (h >>> 32) & mask;
+        }
+
+        // Each row uses its own quarter of the long's sixteen counters
+        private int shift(int hash, int row) {
+            long h = (hash ^ SEEDS[row]) * 0x9E3779B97F4A7C15L;
+            return ((row << 2) + (int) (h >>> 62)) << 2;
+        }
+    }
+}
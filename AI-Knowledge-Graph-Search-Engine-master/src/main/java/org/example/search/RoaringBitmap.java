@@ -0,0 +1,499 @@
+package org.example.search;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Compressed set of non-negative ints laid out like a Roaring bitmap: values are split
+ * by their high 16 bits into chunks, and a chunk is a sorted char array while it holds
+ * at most 4096 values and a 65536-bit bitmap beyond that. No chunk takes more than
+ * 8 KB, and a sparse chunk takes two bytes per value.
+ */
+public class RoaringBitmap {
+    private static final int ARRAY_MAX = 4096;
+    private static final int BITMAP_WORDS = 1 << 10;
+    // Below this many values two arrays are merged rather than combined through a bitmap
+    private static final int MERGE_MAX = 256;
+
+    // Per chunk, sorted by key: either arrays[i] or bitmaps[i] is set
+    private char[] keys = new char[4];
+    private char[][] arrays = new char[4][];
+    private long[][] bitmaps = new long[4][];
+    private int[] cardinalities = new int[4];
+    private int chunkCount;
+
+    public void add(int value) {
+        char key = (char) (value >>> 16);
+        char low = (char) value;
+        int chunk = chunkIndex(key);
+        if (chunk < 0) {
+            chunk = insertChunk(-chunk - 1, key);
+        }
+
+        long[] bitmap = bitmaps[chunk];
+        if (bitmap != null) {
+            long mask = 1L << low;
+            if ((bitmap[low >>> 6] & mask) == 0) {
+                bitmap[low >>> 6] |= mask;
+                cardinalities[chunk]++;
+            }
+            return;
+        }
+
+        char[] array = arrays[chunk];
+        int cardinality = cardinalities[chunk];
+        // Values usually arrive in order, so check the end before searching
+        int position = cardinality > 0 && array[cardinality - 1] < low ? -cardinality - 1
+                : Arrays.binarySearch(array, 0, cardinality, low);
+        if (position >= 0) {
+            return;
+        }
+        position = -position - 1;
+        if (cardinality == ARRAY_MAX) {
+            bitmap = new long[BITMAP_WORDS];
+            for (int i = 0; i < cardinality; i++) {
+                bitmap[array[i] >>> 6] |= 1L << array[i];
+            }
+            bitmap[low >>> 6] |= 1L << low;
+            bitmaps[chunk] = bitmap;
+            arrays[chunk] = null;
+            cardinalities[chunk]++;
+            return;
+        }
+        if (cardinality == array.length) {
+            array = arrays[chunk] = Arrays.copyOf(array, Math.min(ARRAY_MAX, cardinality * 2));
+        }
+        System.arraycopy(array, position, array, position + 1, cardinality - position);
+        array[position] = low;
+        cardinalities[chunk]++;
+    }
+
+    public void remove(int value) {
+        int chunk = chunkIndex((char) (value >>> 16));
+        if (chunk < 0) {
+            return;
+        }
+        char low = (char) value;
+        long[] bitmap = bitmaps[chunk];
+        if (bitmap != null) {
+            long mask = 1L << low;
+            if ((bitmap[low >>> 6] & mask) == 0) {
+                return;
+            }
+            bitmap[low >>> 6] &= ~mask;
+            if (--cardinalities[chunk] <= ARRAY_MAX) {
+                arrays[chunk] = toArray(bitmap, cardinalities[chunk]);
+                bitmaps[chunk] = null;
+            }
+            return;
+        }
+        char[] array = arrays[chunk];
+        int cardinality = cardinalities[chunk];
+        int position = Arrays.binarySearch(array, 0, cardinality, low);
+        if (position < 0) {
+            return;
+        }
+        System.arraycopy(array, position + 1, array, position, cardinality - position - 1);
+        if (--cardinalities[chunk] == 0) {
+            removeChunk(chunk);
+        }
+    }
+
+    public boolean contains(int value) {
+        int chunk = chunkIndex((char) (value >>> 16));
+        if (chunk < 0) {
+            return false;
+        }
+        char low = (char) value;
+        if (bitmaps[chunk] != null) {
+            return (bitmaps[chunk][low >>> 6] & (1L << low)) != 0;
+        }
+        return Arrays.binarySearch(arrays[chunk], 0, cardinalities[chunk], low) >= 0;
+    }
+
+    public long getCardinality() {
+        long cardinality = 0;
+        for (int i = 0; i < chunkCount; i++) {
+            cardinality += cardinalities[i];
+        }
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return chunkCount == 0;
+    }
+
+    // Values in ascending order
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < chunkCount; i++) {
+            int high = keys[i] << 16;
+            long[] bitmap = bitmaps[i];
+            if (bitmap != null) {
+                for (int w = 0; w < BITMAP_WORDS; w++) {
+                    long word = bitmap[w];
+                    while (word != 0) {
+                        action.accept(high | (w << 6) + Long.numberOfTrailingZeros(word));
+                        word &= word - 1;
+                    }
+                }
+            } else {
+                char[] array = arrays[i];
+                for (int j = 0; j < cardinalities[i]; j++) {
+                    action.accept(high | array[j]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Values in both a and b. Chunks are only compared when their keys match, and two
+     * sorted arrays are merged, so sparse sets intersect in time proportional to their size.
+     */
+    public static RoaringBitmap and(RoaringBitmap a, RoaringBitmap b) {
+        RoaringBitmap result = new RoaringBitmap();
+        long[] scratch = null;
+        int i = 0;
+        int j = 0;
+        while (i < a.chunkCount && j < b.chunkCount) {
+            if (a.keys[i] < b.keys[j]) {
+                i++;
+            } else if (a.keys[i] > b.keys[j]) {
+                j++;
+            } else {
+                if (a.bitmaps[i] != null && b.bitmaps[j] != null) {
+                    long[] words = new long[BITMAP_WORDS];
+                    for (int w = 0; w < BITMAP_WORDS; w++) {
+                        words[w] = a.bitmaps[i][w] & b.bitmaps[j][w];
+                    }
+                    result.appendBitmap(a.keys[i], words);
+                } else if (a.bitmaps[i] != null || b.bitmaps[j] != null) {
+                    boolean aArray = a.bitmaps[i] == null;
+                    char[] array = aArray ? a.arrays[i] : b.arrays[j];
+                    result.appendFiltered(a.keys[i], array, aArray ? a.cardinalities[i] : b.cardinalities[j],
+                            aArray ? b.bitmaps[j] : a.bitmaps[i], true);
+                } else {
+                    int xCount = a.cardinalities[i];
+                    int yCount = b.cardinalities[j];
+                    char[] values = new char[Math.min(xCount, yCount)];
+                    int count;
+                    if (Math.min(xCount, yCount) < MERGE_MAX) {
+                        count = intersect(a.arrays[i], xCount, b.arrays[j], yCount, values);
+                    } else {
+                        scratch = scratch != null ? scratch : new long[BITMAP_WORDS];
+                        count = intersect(a.arrays[i], xCount, b.arrays[j], yCount, values, scratch);
+                    }
+                    result.appendArray(a.keys[i], values, count);
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    public static RoaringBitmap or(RoaringBitmap a, RoaringBitmap b) {
+        RoaringBitmap result = new RoaringBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < a.chunkCount || j < b.chunkCount) {
+            if (j == b.chunkCount || i < a.chunkCount && a.keys[i] < b.keys[j]) {
+                result.appendCopy(a, i++);
+            } else if (i == a.chunkCount || a.keys[i] > b.keys[j]) {
+                result.appendCopy(b, j++);
+            } else {
+                if (a.bitmaps[i] != null || b.bitmaps[j] != null) {
+                    long[] words = a.bitmaps[i] != null ? a.bitmaps[i].clone() : b.bitmaps[j].clone();
+                    RoaringBitmap other = a.bitmaps[i] != null ? b : a;
+                    int chunk = a.bitmaps[i] != null ? j : i;
+                    if (other.bitmaps[chunk] != null) {
+                        for (int w = 0; w < BITMAP_WORDS; w++) {
+                            words[w] |= other.bitmaps[chunk][w];
+                        }
+                    } else {
+                        char[] array = other.arrays[chunk];
+                        for (int k = 0; k < other.cardinalities[chunk]; k++) {
+                            words[array[k] >>> 6] |= 1L << array[k];
+                        }
+                    }
+                    result.appendBitmap(a.keys[i], words);
+                } else {
+                    char[] x = a.arrays[i];
+                    char[] y = b.arrays[j];
+                    int xCount = a.cardinalities[i];
+                    int yCount = b.cardinalities[j];
+                    if (xCount + yCount < MERGE_MAX) {
+                        char[] values = new char[xCount + yCount];
+                        result.appendArray(a.keys[i], values, union(x, xCount, y, yCount, values));
+                    } else {
+                        // Large unions set both into a bitmap, which appendBitmap turns back into an array if small
+                        long[] words = new long[BITMAP_WORDS];
+                        for (int k = 0; k < xCount; k++) {
+                            words[x[k] >>> 6] |= 1L << x[k];
+                        }
+                        for (int k = 0; k < yCount; k++) {
+                            words[y[k] >>> 6] |= 1L << y[k];
+                        }
+                        result.appendBitmap(a.keys[i], words);
+                    }
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    // Values in a but not in b
+    public static RoaringBitmap andNot(RoaringBitmap a, RoaringBitmap b) {
+        RoaringBitmap result = new RoaringBitmap();
+        int j = 0;
+        for (int i = 0; i < a.chunkCount; i++) {
+            while (j < b.chunkCount && b.keys[j] < a.keys[i]) {
+                j++;
+            }
+            if (j == b.chunkCount || b.keys[j] != a.keys[i]) {
+                result.appendCopy(a, i);
+            } else if (a.bitmaps[i] != null) {
+                long[] words = a.bitmaps[i].clone();
+                if (b.bitmaps[j] != null) {
+                    for (int w = 0; w < BITMAP_WORDS; w++) {
+                        words[w] &= ~b.bitmaps[j][w];
+                    }
+                } else {
+                    char[] array = b.arrays[j];
+                    for (int k = 0; k < b.cardinalities[j]; k++) {
+                        words[array[k] >>> 6] &= ~(1L << array[k]);
+                    }
+                }
+                result.appendBitmap(a.keys[i], words);
+            } else if (b.bitmaps[j] != null) {
+                result.appendFiltered(a.keys[i], a.arrays[i], a.cardinalities[i], b.bitmaps[j], false);
+            } else {
+                char[] x = a.arrays[i];
+                char[] y = b.arrays[j];
+                int yCount = b.cardinalities[j];
+                char[] values = new char[a.cardinalities[i]];
+                int count = 0;
+                int q = 0;
+                for (int p = 0; p < a.cardinalities[i]; p++) {
+                    while (q < yCount && y[q] < x[p]) {
+                        q++;
+                    }
+                    if (q == yCount || y[q] != x[p]) {
+                        values[count++] = x[p];
+                    }
+                }
+                result.appendArray(a.keys[i], values, count);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Number of values v in this set whose bit offset + v is set in bits, so a
+     * segment's bitmap can be intersected with a bitset over the whole snapshot.
+     */
+    public long andCardinality(long[] bits, int offset) {
+        long count = 0;
+        for (int i = 0; i < chunkCount; i++) {
+            int start = offset + (keys[i] << 16);
+            long[] bitmap = bitmaps[i];
+            if (bitmap != null) {
+                for (int w = 0; w < BITMAP_WORDS; w++) {
+                    if (bitmap[w] != 0) {
+                        count += Long.bitCount(bitmap[w] & window(bits, start + (w << 6)));
+                    }
+                }
+            } else {
+                char[] array = arrays[i];
+                int cardinality = cardinalities[i];
+                // Values past the end of bits are unset; array is sorted, so stop at the first
+                int limit = bits.length << 6;
+                for (int j = 0; j < cardinality; j++) {
+                    int bit = start + array[j];
+                    if (bit >= limit) {
+                        break;
+                    }
+                    count += (bits[bit >>> 6] >>> bit) & 1;
+                }
+            }
+        }
+        return count;
+    }
+
+    // Approximate heap footprint of the chunks
+    public long sizeInBytes() {
+        long bytes = (long) keys.length * (Character.BYTES + Integer.BYTES + 2L * 8);
+        for (int i = 0; i < chunkCount; i++) {
+            bytes += bitmaps[i] != null ? (long) BITMAP_WORDS * Long.BYTES : (long) arrays[i].length * Character.BYTES;
+        }
+        return bytes;
+    }
+
+    // The 64 bits of bits starting at position, which need not be word aligned
+    private static long window(long[] bits, int position) {
+        int word = position >>> 6;
+        int shift = position & 63;
+        long value = word < bits.length ? bits[word] >>> shift : 0;
+        if (shift != 0 && word + 1 < bits.length) {
+            value |= bits[word + 1] << (64 - shift);
+        }
+        return value;
+    }
+
+    /*
+     * Sorted merges of two arrays. Which side advances is data dependent and mispredicts
+     * about half the time, so the loops compute it arithmetically instead of branching.
+     * Past MERGE_MAX values that is still slower than going through a bitmap.
+     */
+    private static int intersect(char[] x, int xCount, char[] y, int yCount, char[] values) {
+        int count = 0;
+        int p = 0;
+        int q = 0;
+        while (p < xCount && q < yCount) {
+            char a = x[p];
+            char b = y[q];
+            values[count] = a;
+            count += a == b ? 1 : 0;
+            p += a <= b ? 1 : 0;
+            q += a >= b ? 1 : 0;
+        }
+        return count;
+    }
+
+    // Marks x in scratch, keeps the values of y that are marked and clears scratch again
+    private static int intersect(char[] x, int xCount, char[] y, int yCount, char[] values, long[] scratch) {
+        for (int k = 0; k < xCount; k++) {
+            scratch[x[k] >>> 6] |= 1L << x[k];
+        }
+        int count = 0;
+        for (int k = 0; k < yCount && count < values.length; k++) {
+            char value = y[k];
+            values[count] = value;
+            count += (int) (scratch[value >>> 6] >>> value) & 1;
+        }
+        for (int k = 0; k < xCount; k++) {
+            scratch[x[k] >>> 6] = 0;
+        }
+        return count;
+    }
+
+    private static int union(char[] x, int xCount, char[] y, int yCount, char[] values) {
+        int count = 0;
+        int p = 0;
+        int q = 0;
+        while (p < xCount && q < yCount) {
+            char a = x[p];
+            char b = y[q];
+            values[count++] = a <= b ? a : b;
+            p += a <= b ? 1 : 0;
+            q += a >= b ? 1 : 0;
+        }
+        System.arraycopy(x, p, values, count, xCount - p);
+        count += xCount - p;
+        System.arraycopy(y, q, values, count, yCount - q);
+        return count + yCount - q;
+    }
+
+    // Chunks are appended in key order while a set operation builds its result
+    private void appendArray(char key, char[] values, int cardinality) {
+        if (cardinality > 0) {
+            int chunk = insertChunk(chunkCount, key);
+            arrays[chunk] = values;
+            cardinalities[chunk] = cardinality;
+        }
+    }
+
+    private void appendBitmap(char key, long[] words) {
+        int cardinality = 0;
+        for (long word : words) {
+            cardinality += Long.bitCount(word);
+        }
+        if (cardinality > ARRAY_MAX) {
+            int chunk = insertChunk(chunkCount, key);
+            arrays[chunk] = null;
+            bitmaps[chunk] = words;
+            cardinalities[chunk] = cardinality;
+        } else {
+            appendArray(key, toArray(words, cardinality), cardinality);
+        }
+    }
+
+    // The array values whose bit in bitmap is set (keep) or clear (!keep)
+    private void appendFiltered(char key, char[] array, int cardinality, long[] bitmap, boolean keep) {
+        char[] values = new char[cardinality];
+        int count = 0;
+        for (int k = 0; k < cardinality; k++) {
+            char value = array[k];
+            if (((bitmap[value >>> 6] & (1L << value)) != 0) == keep) {
+                values[count++] = value;
+            }
+        }
+        appendArray(key, values, count);
+    }
+
+    private void appendCopy(RoaringBitmap source, int chunk) {
+        if (source.bitmaps[chunk] != null) {
+            int position = insertChunk(chunkCount, source.keys[chunk]);
+            arrays[position] = null;
+            bitmaps[position] = source.bitmaps[chunk].clone();
+            cardinalities[position] = source.cardinalities[chunk];
+        } else {
+            appendArray(source.keys[chunk], Arrays.copyOf(source.arrays[chunk], source.cardinalities[chunk]),
+                    source.cardinalities[chunk]);
+        }
+    }
+
+    private static char[] toArray(long[] bitmap, int cardinality) {
+        char[] array = new char[Math.max(cardinality, 4)];
+        int count = 0;
+        for (int w = 0; w < BITMAP_WORDS; w++) {
+            long word = bitmap[w];
+            while (word != 0) {
+                array[count++] = (char) ((w << 6) + Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+        return array;
+    }
+
+    private void removeChunk(int chunk) {
+        int moved = chunkCount - chunk - 1;
+        System.arraycopy(keys, chunk + 1, keys, chunk, moved);
+        System.arraycopy(arrays, chunk + 1, arrays, chunk, moved);
+        System.arraycopy(bitmaps, chunk + 1, bitmaps, chunk, moved);
+        System.arraycopy(cardinalities, chunk + 1, cardinalities, chunk, moved);
+        chunkCount--;
+        arrays[chunkCount] = null;
+        bitmaps[chunkCount] = null;
+    }
+
+    private int chunkIndex(char key) {
+        // Appending in order is the common case
+        if (chunkCount > 0 && keys[chunkCount - 1] == key) {
+            return chunkCount - 1;
+        }
+        return Arrays.binarySearch(keys, 0, chunkCount, key);
+    }
+
+    private int insertChunk(int position, char key) {
+        if (chunkCount == keys.length) {
+            int capacity = chunkCount * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            arrays = Arrays.copyOf(arrays, capacity);
+            bitmaps = Arrays.copyOf(bitmaps, capacity);
+            cardinalities = Arrays.copyOf(cardinalities, capacity);
+        }
+        int moved = chunkCount - position;
+        System.arraycopy(keys, position, keys, position + 1, moved);
+        System.arraycopy(arrays, position, arrays, position + 1, moved);
+        System.arraycopy(bitmaps, position, bitmaps, position + 1, moved);
+        System.arraycopy(cardinalities, position, cardinalities, position + 1, moved);
+        keys[position] = key;
+        arrays[position] = new char[4];
+        bitmaps[position] = null;
+        cardinalities[position] = 0;
+        chunkCount++;
+        return position;
+    }
+}
@@ -0,0 +1,201 @@
+package org.example.search;
+
+import org.example.model.Comment;
+import org.example.model.KnowledgeBase;
+import org.example.model.Ticket;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts domain objects to and from their search index representation.
+ */
+public class SearchDocuments {
+    public static final String ID = "id";
+    public static final String TITLE = "title";
+    public static final String DESCRIPTION = "description";
+    public static final String CONTENT = "content";
+    public static final String COMMENTS = "comments";
+    public static final String STATUS = "status";
+    public static final String PRIORITY = "priority";
+    public static final String CATEGORY = "category";
+    public static final String ASSIGNED_TO = "assignedTo";
+    public static final String CREATED_BY = "createdBy";
+    public static final String CREATED_AT = "createdAt";
+    public static final String UPDATED_AT = "updatedAt";
+    public static final String AUTHOR_ID = "authorId";
+    public static final String VIEW_COUNT = "viewCount";
+    public static final String HELPFUL_COUNT = "helpfulCount";
+    public static final String PUBLISHED = "published";
+    // Stored only; tag filters go through the engine's TagIndex
+    public static final String TAGS = "tags";
+    // Stored only, as name=value lines; filters go through the engine's CustomFieldStore
+    public static final String CUSTOM_FIELDS = "customFields";
+    // Stored only, so ticket rows from a search show the summary without making it again
+    public static final String SUMMARY = "summary";
+    public static final String SUMMARY_HASH = "summaryHash";
+
+    public static IndexSchema ticketSchema() {
+        return new IndexSchema()
+                .analyzer(Analyzer.getInstance())
+                .text(TITLE, 2.0f)
+                .text(DESCRIPTION, 1.0f)
+                .text(COMMENTS, 0.5f)
+                .keyword(STATUS)
+                .keyword(PRIORITY)
+                .keyword(CATEGORY)
+                .keyword(ASSIGNED_TO)
+                .keyword(CREATED_BY)
+                .date(CREATED_AT)
+                .date(UPDATED_AT)
+                .stored(SUMMARY, SUMMARY_HASH);
+    }
+
+    public static IndexSchema articleSchema() {
+        return new IndexSchema()
+                .analyzer(Analyzer.getInstance())
+                .text(TITLE, 2.0f)
+                .text(CONTENT, 1.0f)
+                .keyword(CATEGORY)
+                .keyword(AUTHOR_ID)
+                .date(CREATED_AT);
+    }
+
+    // Search box syntax for tickets, with the field names agents use
+    public static QueryParser ticketQueryParser() {
+        return new QueryParser(ticketSchema())
+                .alias("assignee", ASSIGNED_TO)
+                .alias("reporter", CREATED_BY)
+                .alias("created", CREATED_AT)
+                .alias("updated", UPDATED_AT);
+    }
+
+    public static IndexDocument fromTicket(Ticket ticket) {
+        return new IndexDocument(ticket.getId())
+                .put(ID, ticket.getId())
+                .put(TITLE, ticket.getTitle())
+                .put(DESCRIPTION, ticket.getDescription())
+                .put(STATUS, ticket.getStatus())
+                .put(PRIORITY, ticket.getPriority())
+                .put(CATEGORY, ticket.getCategory())
+                .put(ASSIGNED_TO, ticket.getAssignedTo())
+                .put(CREATED_BY, ticket.getCreatedBy())
+                .put(CREATED_AT, toString(ticket.getCreatedAt()))
+                .put(UPDATED_AT, toString(ticket.getUpdatedAt()))
+                .put(TAGS, TagIndex.join(ticket.getTags()))
+                .put(CUSTOM_FIELDS, joinCustomFields(ticket.getCustomFields()))
+                .put(SUMMARY, ticket.getSummary())
+                .put(SUMMARY_HASH, ticket.getSummaryHash());
+    }
+
+    // Comment bodies are indexed on the ticket they belong to
+    public static IndexDocument withComments(IndexDocument ticketDocument, List<Comment> comments) {
+        StringBuilder text = new StringBuilder();
+        for (Comment comment : comments) {
+            if (comment.getContent() != null) {
+                if (text.length() > 0) {
+                    text.append('\n');
+                }
+                text.append(comment.getContent());
+            }
+        }
+        ticketDocument.getFields().remove(COMMENTS);
+        return ticketDocument.put(COMMENTS, text.length() > 0 ? text.toString() : null);
+    }
+
+    public static Ticket toTicket(Map<String, String> fields) {
+        Ticket ticket = new Ticket();
+        ticket.setId(fields.get(ID));
+        ticket.setTitle(fields.get(TITLE));
+        ticket.setDescription(fields.getOrDefault(DESCRIPTION, ""));
+        ticket.setStatus(fields.get(STATUS));
+        ticket.setPriority(fields.get(PRIORITY));
+        ticket.setCategory(fields.get(CATEGORY));
+        ticket.setAssignedTo(fields.getOrDefault(ASSIGNED_TO, ""));
+        ticket.setCreatedBy(fields.getOrDefault(CREATED_BY, ""));
+        ticket.setCreatedAt(toDateTime(fields.get(CREATED_AT)));
+        ticket.setUpdatedAt(toDateTime(fields.get(UPDATED_AT)));
+        ticket.setTags(TagIndex.split(fields.get(TAGS)));
+        ticket.setCustomFields(splitCustomFields(fields.get(CUSTOM_FIELDS)));
+        ticket.setSummary(fields.get(SUMMARY));
+        ticket.setSummaryHash(fields.get(SUMMARY_HASH));
+        return ticket;
+    }
+
+    public static IndexDocument fromArticle(KnowledgeBase article) {
+        return new IndexDocument(article.getId())
+                .put(ID, article.getId())
+                .put(TITLE, article.getTitle())
+                .put(CONTENT, article.getContent())
+                .put(CATEGORY, article.getCategoryId())
+                .put(AUTHOR_ID, article.getAuthorId())
+                .put(VIEW_COUNT, String.valueOf(article.getViewCount()))
+                .put(HELPFUL_COUNT, String.valueOf(article.getHelpfulCount()))
+                .put(PUBLISHED, String.valueOf(article.isPublished()))
+                .put(CREATED_AT, toString(article.getCreatedAt()))
+                .put(TAGS, TagIndex.join(article.getTags()));
+    }
+
+    public static KnowledgeBase toArticle(Map<String, String> fields) {
+        KnowledgeBase article = new KnowledgeBase();
+        article.setId(fields.get(ID));
+        article.setTitle(fields.get(TITLE));
+        article.setContent(fields.get(CONTENT));
+        article.setCategoryId(fields.get(CATEGORY));
+        article.setAuthorId(fields.get(AUTHOR_ID));
+        article.setViewCount(toInt(fields.get(VIEW_COUNT)));
+        article.setHelpfulCount(toInt(fields.get(HELPFUL_COUNT)));
+        article.setPublished(Boolean.parseBoolean(fields.get(PUBLISHED)));
+        article.setCreatedAt(toDateTime(fields.get(CREATED_AT)));
+        article.setTags(TagIndex.split(fields.get(TAGS)));
+        return article;
+    }
+
+    // Canonical values never contain a line break, and field names never an equals sign
+    static String joinCustomFields(Map<String, String> values) {
+        if (values == null || values.isEmpty()) {
+            return null;
+        }
+        StringBuilder joined = new StringBuilder();
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            if (entry.getValue() != null) {
+                if (joined.length() > 0) {
+                    joined.append('\n');
+                }
+                joined.append(entry.getKey()).append('=').append(entry.getValue());
+            }
+        }
+        return joined.length() > 0 ? joined.toString() : null;
+    }
+
+    static Map<String, String> splitCustomFields(String joined) {
+        Map<String, String> values = new LinkedHashMap<>();
+        if (joined != null) {
+            for (String line : joined.split("\n")) {
+                int separator = line.indexOf('=');
+                if (separator > 0) {
+                    values.put(line.substring(0, separator), line.substring(separator + 1));
+                }
+            }
+        }
+        return values;
+    }
+
+    private static String toString(LocalDateTime dateTime) {
+        return dateTime != null ? dateTime.toString() : null;
+    }
+
+    static LocalDateTime toDateTime(String value) {
+        return value != null ? LocalDateTime.parse(value) : null;
+    }
+
+    private static int toInt(String value) {
+        try {
+            return value != null ? Integer.parseInt(value) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
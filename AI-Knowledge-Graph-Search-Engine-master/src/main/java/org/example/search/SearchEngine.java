@@ -0,0 +1,1265 @@
+package org.example.search;
+
+import org.example.config.AppConfig;
+import org.example.model.Category;
+import org.example.model.Comment;
+import org.example.model.CustomField;
+import org.example.model.KnowledgeBase;
+import org.example.model.Team;
+import org.example.model.Ticket;
+import org.example.model.User;
+import org.example.model.enums.Priority;
+import org.example.model.enums.TicketStatus;
+import org.example.repository.CategoryRepository;
+import org.example.repository.ChangeEvent;
+import org.example.repository.ChangeFeed;
+import org.example.repository.CommentRepository;
+import org.example.repository.CustomFieldRepository;
+import org.example.repository.KBRepository;
+import org.example.repository.TeamRepository;
+import org.example.repository.TicketRepository;
+import org.example.repository.UserRepository;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process-wide holder of the ticket and knowledge base search indexes.
+ * At startup the last commit is memory-mapped from the index directory and only
+ * entities changed since its watermark are reindexed; without a commit the
+ * indexes are built from the repositories in the background, and callers fall
+ * back to the Cypher search until then. Afterwards repository writes arrive
+ * through the {@link ChangeFeed} and are applied every refresh interval
+ * without a full rebuild.
+ */
+public class SearchEngine {
+    // Catch-up re-reads a little before the watermark to absorb clock skew between writers
+    private static final Duration WATERMARK_OVERLAP = Duration.ofMinutes(5);
+    private static final String WATERMARK = "watermark";
+    private static final String SCHEMA = "schema";
+    private static final String VECTORS_FILE = "vectors.hnsw";
+    private static final String CORPUS_FILE = "corpus.stats";
+    private static final String ARTICLE_WATERMARK = "articleWatermark";
+    private static final String ANALYZER = "analyzer";
+    // Weight of one occurrence of a phrase in the completion index, by where it was seen
+    private static final double TICKET_TITLE_WEIGHT = 1.0;
+    private static final double ARTICLE_TITLE_WEIGHT = 2.0;
+    private static final double CATEGORY_WEIGHT = 3.0;
+    private static final double QUERY_WEIGHT = 2.0;
+    // Score multipliers by priority and status, indexed by ordinal; search.rank.* overrides them
+    private static final double[] PRIORITY_BOOSTS = { 0.9, 1.0, 1.2, 1.4 };
+    private static final double[] STATUS_BOOSTS = { 1.2, 1.15, 0.9, 0.8, 0.7 };
+
+    private static SearchEngine instance;
+
+    private final SearchIndex ticketIndex;
+    private final SearchIndex articleIndex;
+    private final IndexWriter ticketWriter;
+    private final IndexWriter articleWriter;
+    private final IndexDirectory ticketDirectory;
+    private final IndexDirectory articleDirectory;
+    private final MinHashIndex similarTickets;
+    private final TextEmbedder embedder;
+    private final HnswIndex ticketVectors;
+    private final HnswIndex articleVectors;
+    private final ResultCache<CachedHits> resultCache;
+    private final CompletionIndex completions;
+    private final SpellChecker spelling;
+    private final CorpusStatistics corpus;
+    private final Path corpusFile;
+    private final TagIndex ticketTags = new TagIndex();
+    private final TagIndex articleTags = new TagIndex();
+    private final CustomFieldStore customFields = new CustomFieldStore();
+    private final Highlighter highlighter;
+    // Names the completion index holds for each category, so renames and deletes can withdraw them
+    private final Map<String, String> categoryNames = new ConcurrentHashMap<>();
+    // Team of each user and name of each team, so team facets roll up assignee counts without a query
+    private final Map<String, String> userTeams = new ConcurrentHashMap<>();
+    private final Map<String, String> teamNames = new ConcurrentHashMap<>();
+    // Category names carry no date of their own; they count as seen when the engine started
+    private final LocalDateTime categoryTime = LocalDateTime.now();
+    private final int fuzzyExpansions;
+    private final long refreshIntervalMs;
+    private final long commitIntervalMs;
+    private ScheduledExecutorService scheduler;
+    private volatile boolean ready;
+
+    // Only touched on the indexer thread
+    private LocalDateTime ticketWatermark;
+    private LocalDateTime articleWatermark;
+    private boolean dirty;
+
+    private SearchEngine() {
+        AppConfig config = AppConfig.getInstance();
+        BM25Similarity similarity = new BM25Similarity(
+                (float) config.getDoubleProperty("search.bm25.k1", BM25Similarity.DEFAULT_K1),
+                (float) config.getDoubleProperty("search.bm25.b", BM25Similarity.DEFAULT_B));
+        int batchSize = config.getIntProperty("search.index.batchSize", 1000);
+        int maxSegments = config.getIntProperty("search.index.maxSegments", 10);
+        this.refreshIntervalMs = config.getIntProperty("search.index.refreshIntervalMs", 1000);
+        this.commitIntervalMs = config.getIntProperty("search.index.commitIntervalMs", 60000);
+
+        this.ticketIndex = new SearchIndex("tickets", SearchDocuments.ticketSchema(), similarity);
+        this.articleIndex = new SearchIndex("knowledgeBase", SearchDocuments.articleSchema(), similarity);
+        ticketIndex.setRanking(ticketRanking(config));
+        articleIndex.setRanking(articleRanking(config));
+        this.ticketWriter = new IndexWriter(ticketIndex, batchSize, maxSegments);
+        this.articleWriter = new IndexWriter(articleIndex, batchSize, maxSegments);
+
+        String indexDir = config.getProperty("search.index.dir", "data/index");
+        this.ticketDirectory = new IndexDirectory(Paths.get(indexDir, ticketIndex.getName()));
+        this.articleDirectory = new IndexDirectory(Paths.get(indexDir, articleIndex.getName()));
+        this.similarTickets = new MinHashIndex(Analyzer.getInstance(),
+                config.getIntProperty("search.similar.bands", MinHashIndex.DEFAULT_BANDS),
+                config.getIntProperty("search.similar.rows", MinHashIndex.DEFAULT_ROWS));
+
+        int dimensions = config.getIntProperty("search.semantic.dimensions", TextEmbedder.DEFAULT_DIMENSIONS);
+        int m = config.getIntProperty("search.semantic.m", HnswIndex.DEFAULT_M);
+        int efConstruction = config.getIntProperty("search.semantic.efConstruction", HnswIndex.DEFAULT_EF_CONSTRUCTION);
+        int efSearch = config.getIntProperty("search.semantic.efSearch", HnswIndex.DEFAULT_EF_SEARCH);
+        this.embedder = new TextEmbedder(dimensions, Analyzer.getInstance());
+        this.ticketVectors = new HnswIndex(dimensions, m, efConstruction, efSearch);
+        this.articleVectors = new HnswIndex(dimensions, m, efConstruction, efSearch);
+
+        this.resultCache = new ResultCache<>(
+                config.getIntProperty("search.cache.maxEntries", 10000),
+                config.getIntProperty("search.cache.maxWeight", 200000),
+                cached -> cached.hits.size() + 1);
+        this.fuzzyExpansions = config.getIntProperty("search.fuzzy.maxExpansions", 5);
+        this.highlighter = new Highlighter(
+                config.getIntProperty("search.highlight.fragmentLength", Highlighter.DEFAULT_FRAGMENT_LENGTH));
+        this.completions = new CompletionIndex(CompletionIndex.DEFAULT_TOP_K,
+                config.getDoubleProperty("search.suggest.halfLifeDays", 30));
+        this.spelling = new SpellChecker(config.getIntProperty("search.spell.maxEdits", SpellChecker.DEFAULT_MAX_EDITS),
+                config.getIntProperty("search.spell.maxMemoryMb", 32) * 1024L * 1024);
+        this.corpus = new CorpusStatistics(Analyzer.getInstance());
+        this.corpusFile = Paths.get(indexDir, CORPUS_FILE);
+        ticketWriter.addRefreshListener(changed -> invalidateCached(ticketIndex, changed));
+        articleWriter.addRefreshListener(changed -> invalidateCached(articleIndex, changed));
+
+        ChangeFeed.getInstance().subscribe(this::onChange);
+    }
+
+    // Recently updated, urgent and still open tickets rank above equally relevant others
+    private static Ranking ticketRanking(AppConfig config) {
+        Ranking ranking = new Ranking();
+        addRecency(ranking, config, "search.rank.tickets", SearchDocuments.UPDATED_AT, 30, 0.5);
+        Map<String, Float> priorities = new HashMap<>();
+        for (Priority priority : Priority.values()) {
+            priorities.put(priority.name(), (float) config.getDoubleProperty(
+                    "search.rank.priority." + priority.name().toLowerCase(), PRIORITY_BOOSTS[priority.ordinal()]));
+        }
+        ranking.add(Ranking.valueBoost(SearchDocuments.PRIORITY, priorities));
+        Map<String, Float> statuses = new HashMap<>();
+        for (TicketStatus status : TicketStatus.values()) {
+            statuses.put(status.name(), (float) config.getDoubleProperty(
+                    "search.rank.status." + status.name().toLowerCase(), STATUS_BOOSTS[status.ordinal()]));
+        }
+        ranking.add(Ranking.valueBoost(SearchDocuments.STATUS, statuses));
+        return ranking;
+    }
+
+    // Articles readers found helpful, and to a lesser degree often read ones, rank higher
+    private static Ranking articleRanking(AppConfig config) {
+        Ranking ranking = new Ranking();
+        addRecency(ranking, config, "search.rank.kb", SearchDocuments.CREATED_AT, 365, 0.2);
+        long maxCount = config.getIntProperty("search.rank.kb.maxCount", 100000);
+        ranking.add(Ranking.logCount(SearchDocuments.HELPFUL_COUNT,
+                (float) config.getDoubleProperty("search.rank.kb.helpfulWeight", 0.1), maxCount));
+        ranking.add(Ranking.logCount(SearchDocuments.VIEW_COUNT,
+                (float) config.getDoubleProperty("search.rank.kb.viewWeight", 0.03), maxCount));
+        return ranking;
+    }
+
+    private static void addRecency(Ranking ranking, AppConfig config, String prefix, String field,
+            double defaultHalfLifeDays, double defaultWeight) {
+        double halfLifeDays = config.getDoubleProperty(prefix + ".recency.halfLifeDays", defaultHalfLifeDays);
+        double weight = config.getDoubleProperty(prefix + ".recency.weight", defaultWeight);
+        if (halfLifeDays > 0 && weight > 0) {
+            ranking.add(Ranking.recency(field, (float) halfLifeDays, (float) weight));
+        }
+    }
+
+    // Ranked hits for one query, with what is needed to decide whether a change affects them
+    private static class CachedHits {
+        final SearchIndex index;
+        final Set<String> terms;
+        final List<SearchHit> hits;
+        final boolean invalidateOnAnyChange;
+
+        CachedHits(SearchIndex index, Set<String> terms, List<SearchHit> hits, boolean invalidateOnAnyChange) {
+            this.index = index;
+            this.terms = terms;
+            this.hits = hits;
+            this.invalidateOnAnyChange = invalidateOnAnyChange;
+        }
+
+        boolean containsAny(Set<String> entityIds) {
+            for (SearchHit hit : hits) {
+                if (entityIds.contains(hit.getEntityId())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    public static synchronized SearchEngine getInstance() {
+        if (instance == null) {
+            instance = new SearchEngine();
+        }
+        return instance;
+    }
+
+    // Load the indexes on a background thread so the UI can come up immediately
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "search-indexer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.execute(this::load);
+        scheduler.scheduleWithFixedDelay(this::refresh, refreshIntervalMs, refreshIntervalMs, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::commit, commitIntervalMs, commitIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    // Commits outstanding changes before shutting the indexer down
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.execute(() -> {
+                refresh();
+                commit();
+            });
+            scheduler.shutdown();
+            try {
+                scheduler.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            scheduler = null;
+        }
+    }
+
+    private void load() {
+        if (ticketDirectory.hasCommit() && articleDirectory.hasCommit()) {
+            try {
+                long start = System.currentTimeMillis();
+                Map<String, String> ticketData = new HashMap<>();
+                Map<String, String> articleData = new HashMap<>();
+                IndexSnapshot tickets = ticketDirectory.open(ticketData);
+                IndexSnapshot articles = articleDirectory.open(articleData);
+                if (!ticketIndex.getSchema().signature().equals(ticketData.get(SCHEMA))
+                        || !articleIndex.getSchema().signature().equals(articleData.get(SCHEMA))) {
+                    throw new IOException("index was committed with a different schema");
+                }
+                ticketWriter.open(tickets);
+                articleWriter.open(articles);
+                ticketWatermark = parseWatermark(ticketData.get(WATERMARK));
+                articleWatermark = parseWatermark(articleData.get(WATERMARK));
+                loadSimilarTickets();
+                loadCompletions();
+                loadSpelling();
+                loadCorpus();
+                loadTags(ticketIndex, ticketTags);
+                loadTags(articleIndex, articleTags);
+                loadCustomFields();
+                loadTeams();
+                loadVectors(ticketIndex, ticketVectors, ticketDirectory, ticketWatermark);
+                loadVectors(articleIndex, articleVectors, articleDirectory, articleWatermark);
+                ready = true;
+                System.out.println("✅ Search index opened: " + ticketIndex.size() + " tickets, " +
+                        articleIndex.size() + " articles in " + (System.currentTimeMillis() - start) + " ms");
+
+                catchUp();
+                return;
+            } catch (Exception e) {
+                System.err.println("❌ Error opening search index, rebuilding: " + e.getMessage());
+            }
+        }
+        rebuild();
+        commit();
+    }
+
+    // Reindexes what changed while the application was not running
+    private void catchUp() {
+        long start = System.currentTimeMillis();
+        LocalDateTime ticketsSince = minusOverlap(ticketWatermark);
+        LocalDateTime articlesSince = minusOverlap(articleWatermark);
+
+        List<Ticket> tickets = new TicketRepository().findUpdatedSince(ticketsSince);
+        tickets.forEach(this::indexTicket);
+        for (Comment comment : new CommentRepository().findCreatedSince(ticketsSince)) {
+            if (comment.getTicketId() != null) {
+                ticketWriter.update(comment.getTicketId(), this::reloadComments);
+            }
+        }
+        List<KnowledgeBase> articles = new KBRepository().findUpdatedSince(articlesSince);
+        articles.forEach(this::indexArticle);
+        refresh();
+
+        // Deletes leave no trace in updatedAt, so compare id sets when the counts disagree
+        TicketRepository ticketRepository = new TicketRepository();
+        if (ticketRepository.count() != ticketIndex.size()) {
+            removeMissing(ticketWriter, ticketIndex.entityIds(), ticketRepository.findAllIds());
+        }
+        removeMissing(articleWriter, articleIndex.entityIds(), new KBRepository().findAllPublishedIds());
+        refresh();
+
+        System.out.println("✅ Search index caught up: " + tickets.size() + " tickets, " + articles.size() +
+                " articles changed since last commit (" + (System.currentTimeMillis() - start) + " ms)");
+    }
+
+    private void removeMissing(IndexWriter writer, Set<String> indexed, List<String> existing) {
+        Set<String> missing = new HashSet<>(indexed);
+        existing.forEach(missing::remove);
+        for (String entityId : missing) {
+            writer.update(entityId, current -> {
+                forget(writer, entityId, current);
+                return null;
+            });
+        }
+    }
+
+    // Drops an entity, indexed as current, from the structures derived from the given index
+    private void forget(IndexWriter writer, String entityId, IndexDocument current) {
+        if (writer == ticketWriter) {
+            similarTickets.remove(entityId);
+            ticketVectors.remove(entityId);
+            ticketTags.remove(entityId);
+            customFields.remove(entityId);
+            replaceCompletion(current, null, TICKET_TITLE_WEIGHT);
+            replaceWords(ticketIndex, current, null);
+        } else {
+            articleVectors.remove(entityId);
+            articleTags.remove(entityId);
+            replaceCompletion(current, null, ARTICLE_TITLE_WEIGHT);
+            replaceWords(articleIndex, current, null);
+        }
+    }
+
+    /**
+     * Opens the vector graph saved with the last commit. If it is missing or was saved
+     * at a different watermark than the index, vectors are recomputed from stored fields.
+     */
+    private void loadVectors(SearchIndex index, HnswIndex vectors, IndexDirectory directory, LocalDateTime watermark) {
+        long start = System.currentTimeMillis();
+        Path file = directory.getPath().resolve(VECTORS_FILE);
+        if (Files.exists(file)) {
+            try {
+                Map<String, String> data = new HashMap<>();
+                vectors.load(file, data);
+                if ((watermark != null ? watermark.toString() : "").equals(data.get(WATERMARK))) {
+                    System.out.println("✅ Vector index opened: " + vectors.size() + " " + index.getName() +
+                            " in " + (System.currentTimeMillis() - start) + " ms");
+                    return;
+                }
+            } catch (IOException e) {
+                System.err.println("❌ Error opening vector index " + file + ": " + e.getMessage());
+            }
+        }
+
+        vectors.clear();
+        IndexSnapshot snapshot = index.snapshot();
+        for (int s = 0; s < snapshot.segmentCount(); s++) {
+            IndexSegment segment = snapshot.segment(s);
+            for (int doc = 0; doc < segment.maxDoc(); doc++) {
+                if (!snapshot.isDeleted(s, doc)) {
+                    Map<String, String> fields = segment.storedFields(doc);
+                    embed(vectors, segment.entityId(doc), new IndexDocument(segment.entityId(doc), fields));
+                }
+            }
+        }
+        dirty = true;
+        System.out.println("✅ Vector index built: " + vectors.size() + " " + index.getName() + " in " +
+                (System.currentTimeMillis() - start) + " ms");
+    }
+
+    // Signatures are not persisted; they are recomputed from the stored ticket fields
+    private void loadSimilarTickets() {
+        long start = System.currentTimeMillis();
+        similarTickets.clear();
+        IndexSnapshot snapshot = ticketIndex.snapshot();
+        for (int s = 0; s < snapshot.segmentCount(); s++) {
+            IndexSegment segment = snapshot.segment(s);
+            for (int doc = 0; doc < segment.maxDoc(); doc++) {
+                if (!snapshot.isDeleted(s, doc)) {
+                    Map<String, String> fields = segment.storedFields(doc);
+                    similarTickets.put(segment.entityId(doc), similarityText(fields.get(SearchDocuments.TITLE),
+                            fields.get(SearchDocuments.DESCRIPTION)));
+                }
+            }
+        }
+        System.out.println("✅ Similar ticket index built: " + similarTickets.size() + " tickets in " +
+                (System.currentTimeMillis() - start) + " ms");
+    }
+
+    // Tags are kept as a stored field, so the bitmaps are rebuilt from the index rather than the database
+    private void loadTags(SearchIndex index, TagIndex tags) {
+        long start = System.currentTimeMillis();
+        tags.clear();
+        IndexSnapshot snapshot = index.snapshot();
+        for (int s = 0; s < snapshot.segmentCount(); s++) {
+            IndexSegment segment = snapshot.segment(s);
+            for (int doc = 0; doc < segment.maxDoc(); doc++) {
+                if (!snapshot.isDeleted(s, doc)) {
+                    String stored = segment.storedFields(doc).get(SearchDocuments.TAGS);
+                    tags.put(segment.entityId(doc), TagIndex.split(stored));
+                }
+            }
+        }
+        System.out.println("✅ Tag index built: " + tags.size() + " " + index.getName() + " in " +
+                (System.currentTimeMillis() - start) + " ms");
+    }
+
+    // Like tags, custom field values come from the stored fields; only the definitions are read from the database
+    private void loadCustomFields() {
+        long start = System.currentTimeMillis();
+        customFields.clear();
+        try {
+            for (CustomField field : new CustomFieldRepository().findAll()) {
+                customFields.define(field);
+            }
+        } catch (Exception e) {
+            System.err.println("❌ Error loading custom field definitions: " + e.getMessage());
+        }
+        putCustomFields();
+        System.out.println("✅ Custom field store built in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    private void putCustomFields() {
+        IndexSnapshot snapshot = ticketIndex.snapshot();
+        for (int s = 0; s < snapshot.segmentCount(); s++) {
+            IndexSegment segment = snapshot.segment(s);
+            for (int doc = 0; doc < segment.maxDoc(); doc++) {
+                if (!snapshot.isDeleted(s, doc)) {
+                    String stored = segment.storedFields(doc).get(SearchDocuments.CUSTOM_FIELDS);
+                    customFields.put(segment.entityId(doc), SearchDocuments.splitCustomFields(stored));
+                }
+            }
+        }
+    }
+
+    // A new field's column is filled from the stored values tickets may already have
+    private void defineCustomField(CustomField field) {
+        if (customFields.define(field)) {
+            putCustomFields();
+        }
+    }
+
+    /**
+     * Fills the completion index from the indexed titles and the category names. Past
+     * queries are only kept in memory and start over with the application.
+     */
+    private void loadCompletions() {
+        long start = System.currentTimeMillis();
+        completions.clear();
+        categoryNames.clear();
+        addTitleCompletions(ticketIndex, TICKET_TITLE_WEIGHT);
+        addTitleCompletions(articleIndex, ARTICLE_TITLE_WEIGHT);
+        try {
+            for (Category category : new CategoryRepository().findAll()) {
+                putCategory(category);
+            }
+        } catch (Exception e) {
+            System.err.println("❌ Error loading categories for completion: " + e.getMessage());
+        }
+        System.out.println("✅ Completion index built: " + completions.size() + " phrases in " +
+                (System.currentTimeMillis() - start) + " ms");
+    }
+
+    private void loadTeams() {
+        userTeams.clear();
+        teamNames.clear();
+        try {
+            for (Team team : new TeamRepository().findAll()) {
+                putTeam(team);
+            }
+            for (User user : new UserRepository().findAll()) {
+                putUser(user);
+            }
+        } catch (Exception e) {
+            System.err.println("❌ Error loading teams for facets: " + e.getMessage());
+        }
+    }
+
+    private void putTeam(Team team) {
+        if (team.getName() != null) {
+            teamNames.put(team.getId(), team.getName());
+        } else {
+            teamNames.remove(team.getId());
+        }
+    }
+
+    private void putUser(User user) {
+        if (user.getTeamId() != null) {
+            userTeams.put(user.getId(), user.getTeamId());
+        } else {
+            userTeams.remove(user.getId());
+        }
+    }
+
+    private void addTitleCompletions(SearchIndex index, double weight) {
+        IndexSnapshot snapshot = index.snapshot();
+        for (int s = 0; s < snapshot.segmentCount(); s++) {
+            IndexSegment segment = snapshot.segment(s);
+            for (int doc = 0; doc < segment.maxDoc(); doc++) {
+                if (!snapshot.isDeleted(s, doc)) {
+                    Map<String, String> fields = segment.storedFields(doc);
+                    completions.add(fields.get(SearchDocuments.TITLE), weight,
+                            SearchDocuments.toDateTime(fields.get(SearchDocuments.CREATED_AT)));
+                }
+            }
+        }
+    }
+
+    // Moves a title's completion weight from the indexed version of a document to its replacement
+    private void replaceCompletion(IndexDocument current, IndexDocument document, double weight) {
+        String before = current != null ? current.get(SearchDocuments.TITLE) : null;
+        String after = document != null ? document.get(SearchDocuments.TITLE) : null;
+        if (Objects.equals(before, after)) {
+            return;
+        }
+        if (before != null) {
+            completions.remove(before, weight, SearchDocuments.toDateTime(current.get(SearchDocuments.CREATED_AT)));
+        }
+        if (after != null) {
+            completions.add(after, weight, SearchDocuments.toDateTime(document.get(SearchDocuments.CREATED_AT)));
+        }
+    }
+
+    // The spelling vocabulary is not persisted either; it is counted from the stored text fields
+    private void loadSpelling() {
+        long start = System.currentTimeMillis();
+        spelling.clear();
+        for (SearchIndex index : List.of(ticketIndex, articleIndex)) {
+            IndexSnapshot snapshot = index.snapshot();
+            for (int s = 0; s < snapshot.segmentCount(); s++) {
+                IndexSegment segment = snapshot.segment(s);
+                for (int doc = 0; doc < segment.maxDoc(); doc++) {
+                    if (!snapshot.isDeleted(s, doc)) {
+                        Map<String, String> fields = segment.storedFields(doc);
+                        for (String field : index.getSchema().getTextFields()) {
+                            spelling.add(fields.get(field));
+                        }
+                    }
+                }
+            }
+        }
+        System.out.println("✅ Spelling dictionary built: " + spelling.getStatistics().get("words") + " words in " +
+                (System.currentTimeMillis() - start) + " ms");
+    }
+
+    // Moves the spelling and corpus counts of a document's text fields from its indexed version to its replacement
+    private void replaceWords(SearchIndex index, IndexDocument current, IndexDocument document) {
+        for (String field : index.getSchema().getTextFields()) {
+            spelling.replace(current != null ? current.get(field) : null, document != null ? document.get(field) : null);
+        }
+        corpus.replace(texts(index, current), texts(index, document));
+    }
+
+    /**
+     * Opens the document frequencies saved with the last commit, if they were saved at the
+     * index's watermarks with the same analyzer; otherwise counts them from stored fields.
+     */
+    private void loadCorpus() {
+        long start = System.currentTimeMillis();
+        if (Files.exists(corpusFile)) {
+            try {
+                Map<String, String> data = new HashMap<>();
+                corpus.load(corpusFile, data);
+                if (corpusData().equals(data)) {
+                    System.out.println("✅ Corpus statistics opened: " + corpus.getStatistics().get("terms") +
+                            " terms in " + (System.currentTimeMillis() - start) + " ms");
+                    return;
+                }
+            } catch (IOException e) {
+                System.err.println("❌ Error opening corpus statistics " + corpusFile + ": " + e.getMessage());
+            }
+        }
+        countCorpus();
+    }
+
+    private void countCorpus() {
+        long start = System.currentTimeMillis();
+        corpus.clear();
+        for (SearchIndex index : List.of(ticketIndex, articleIndex)) {
+            IndexSnapshot snapshot = index.snapshot();
+            for (int s = 0; s < snapshot.segmentCount(); s++) {
+                IndexSegment segment = snapshot.segment(s);
+                for (int doc = 0; doc < segment.maxDoc(); doc++) {
+                    if (!snapshot.isDeleted(s, doc)) {
+                        corpus.add(texts(index, new IndexDocument(segment.entityId(doc), segment.storedFields(doc))));
+                    }
+                }
+            }
+        }
+        dirty = true;
+        System.out.println("✅ Corpus statistics built: " + corpus.getStatistics().get("terms") + " terms in " +
+                corpus.documents() + " documents in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    // What the saved corpus statistics must match to be current
+    private Map<String, String> corpusData() {
+        Map<String, String> data = new HashMap<>();
+        data.put(WATERMARK, ticketWatermark != null ? ticketWatermark.toString() : "");
+        data.put(ARTICLE_WATERMARK, articleWatermark != null ? articleWatermark.toString() : "");
+        data.put(ANALYZER, Analyzer.getInstance().signature());
+        return data;
+    }
+
+    // A document's text fields as one corpus document, or null for none
+    private static CharSequence[] texts(SearchIndex index, IndexDocument document) {
+        if (document == null) {
+            return null;
+        }
+        List<String> fields = new ArrayList<>(index.getSchema().getTextFields());
+        CharSequence[] texts = new CharSequence[fields.size()];
+        for (int i = 0; i < texts.length; i++) {
+            texts[i] = document.get(fields.get(i));
+        }
+        return texts;
+    }
+
+    private void putCategory(Category category) {
+        String previous = category.getName() != null ? categoryNames.put(category.getId(), category.getName())
+                : categoryNames.remove(category.getId());
+        if (Objects.equals(previous, category.getName())) {
+            return;
+        }
+        if (previous != null) {
+            completions.remove(previous, CATEGORY_WEIGHT, categoryTime);
+        }
+        if (category.getName() != null) {
+            completions.add(category.getName(), CATEGORY_WEIGHT, categoryTime);
+        }
+    }
+
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        try {
+            Map<String, List<Comment>> commentsByTicket = new HashMap<>();
+            for (Comment comment : new CommentRepository().findAll()) {
+                commentsByTicket.computeIfAbsent(comment.getTicketId(), id -> new ArrayList<>()).add(comment);
+            }
+
+            List<IndexDocument> tickets = new ArrayList<>();
+            for (Ticket ticket : new TicketRepository().findAll()) {
+                tickets.add(SearchDocuments.withComments(SearchDocuments.fromTicket(ticket),
+                        commentsByTicket.getOrDefault(ticket.getId(), new ArrayList<>())));
+                ticketWatermark = later(ticketWatermark, ticket.getUpdatedAt());
+            }
+            ticketWriter.replaceAll(tickets);
+            similarTickets.clear();
+            ticketVectors.clear();
+            for (IndexDocument ticket : tickets) {
+                similarTickets.put(ticket.getEntityId(), similarityText(ticket));
+                embed(ticketVectors, ticket.getEntityId(), ticket);
+            }
+
+            List<IndexDocument> articles = new ArrayList<>();
+            for (KnowledgeBase article : new KBRepository().findAll()) {
+                articles.add(SearchDocuments.fromArticle(article));
+                articleWatermark = later(articleWatermark, articleTimestamp(article));
+            }
+            articleWriter.replaceAll(articles);
+            articleVectors.clear();
+            for (IndexDocument article : articles) {
+                embed(articleVectors, article.getEntityId(), article);
+            }
+            loadCompletions();
+            loadSpelling();
+            countCorpus();
+            loadTags(ticketIndex, ticketTags);
+            loadTags(articleIndex, articleTags);
+            loadCustomFields();
+            loadTeams();
+
+            dirty = true;
+            ready = true;
+            System.out.println("✅ Search index built: " + ticketIndex.size() + " tickets, " +
+                    articleIndex.size() + " articles in " + (System.currentTimeMillis() - start) + " ms");
+        } catch (Exception e) {
+            System.err.println("❌ Error building search index: " + e.getMessage());
+        }
+    }
+
+    // Applies queued repository changes; runs on the indexer thread
+    public void refresh() {
+        try {
+            int applied = ticketWriter.refresh() + articleWriter.refresh();
+            if (applied > 0) {
+                dirty = true;
+                System.out.println("✅ Search index refreshed: " + applied + " changes");
+            }
+        } catch (Exception e) {
+            System.err.println("❌ Error refreshing search index: " + e.getMessage());
+        }
+    }
+
+    // Writes heap segments to the index directory along with the current watermarks
+    public void commit() {
+        if (!dirty) {
+            return;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            Map<String, String> ticketData = new HashMap<>();
+            ticketData.put(WATERMARK, ticketWatermark != null ? ticketWatermark.toString() : null);
+            ticketData.put(SCHEMA, ticketIndex.getSchema().signature());
+            ticketWriter.commit(ticketDirectory, ticketData);
+
+            Map<String, String> articleData = new HashMap<>();
+            articleData.put(WATERMARK, articleWatermark != null ? articleWatermark.toString() : null);
+            articleData.put(SCHEMA, articleIndex.getSchema().signature());
+            articleWriter.commit(articleDirectory, articleData);
+
+            // Saved with the same watermark so a load can tell whether the graph matches the index
+            saveVectors(ticketVectors, ticketDirectory, ticketData);
+            saveVectors(articleVectors, articleDirectory, articleData);
+            corpus.save(corpusFile, corpusData());
+
+            dirty = false;
+            System.out.println("✅ Search index committed in " + (System.currentTimeMillis() - start) + " ms");
+        } catch (IOException e) {
+            System.err.println("❌ Error committing search index: " + e.getMessage());
+        }
+    }
+
+    private void saveVectors(HnswIndex vectors, IndexDirectory directory, Map<String, String> userData)
+            throws IOException {
+        if (vectors.needsCompaction()) {
+            vectors.compact();
+        }
+        vectors.save(directory.getPath().resolve(VECTORS_FILE), userData);
+    }
+
+    private void onChange(ChangeEvent event) {
+        switch (event.getEntityType()) {
+            case TICKET:
+                if (event.getOperation() == ChangeEvent.Operation.DELETE) {
+                    String entityId = event.getEntityId();
+                    ticketWriter.update(entityId, current -> {
+                        forget(ticketWriter, entityId, current);
+                        return null;
+                    });
+                } else {
+                    indexTicket((Ticket) event.getEntity());
+                }
+                break;
+            case KNOWLEDGE_BASE:
+                if (event.getOperation() == ChangeEvent.Operation.DELETE) {
+                    String entityId = event.getEntityId();
+                    articleWriter.update(entityId, current -> {
+                        forget(articleWriter, entityId, current);
+                        return null;
+                    });
+                } else {
+                    indexArticle((KnowledgeBase) event.getEntity());
+                }
+                break;
+            case COMMENT:
+                String ticketId = ((Comment) event.getEntity()).getTicketId();
+                if (ticketId != null) {
+                    ticketWriter.update(ticketId, this::reloadComments);
+                }
+                break;
+            case CUSTOM_FIELD:
+                if (event.getOperation() == ChangeEvent.Operation.DELETE) {
+                    customFields.drop(event.getEntityId());
+                } else {
+                    // Filling the column reads every ticket's stored fields, so leave it to the indexer thread
+                    CustomField field = (CustomField) event.getEntity();
+                    ScheduledExecutorService indexer = scheduler;
+                    if (indexer != null) {
+                        indexer.execute(() -> defineCustomField(field));
+                    } else {
+                        defineCustomField(field);
+                    }
+                }
+                break;
+            case USER:
+                if (event.getOperation() == ChangeEvent.Operation.DELETE) {
+                    userTeams.remove(event.getEntityId());
+                } else {
+                    putUser((User) event.getEntity());
+                }
+                break;
+            case TEAM:
+                if (event.getOperation() == ChangeEvent.Operation.DELETE) {
+                    teamNames.remove(event.getEntityId());
+                } else {
+                    putTeam((Team) event.getEntity());
+                }
+                break;
+            case CATEGORY:
+                if (event.getOperation() == ChangeEvent.Operation.DELETE) {
+                    String previous = categoryNames.remove(event.getEntityId());
+                    if (previous != null) {
+                        completions.remove(previous, CATEGORY_WEIGHT, categoryTime);
+                    }
+                } else {
+                    putCategory((Category) event.getEntity());
+                }
+                break;
+        }
+    }
+
+    private void indexTicket(Ticket ticket) {
+        IndexDocument document = SearchDocuments.fromTicket(ticket);
+        ticketWriter.update(ticket.getId(), current -> {
+            // The watermark only advances once the change is actually in the index
+            ticketWatermark = later(ticketWatermark, ticket.getUpdatedAt());
+            similarTickets.put(ticket.getId(), similarityText(document));
+            embed(ticketVectors, ticket.getId(), document);
+            ticketTags.put(ticket.getId(), ticket.getTags());
+            customFields.put(ticket.getId(), ticket.getCustomFields());
+            replaceCompletion(current, document, TICKET_TITLE_WEIGHT);
+            // Keep the comments already indexed for this ticket
+            IndexDocument updated = current == null ? document
+                    : document.put(SearchDocuments.COMMENTS, current.get(SearchDocuments.COMMENTS));
+            replaceWords(ticketIndex, current, updated);
+            return updated;
+        });
+    }
+
+    /**
+     * Stores a summary written straight to the ticket's node, as bulk triage does, on its
+     * indexed document. Only stored fields change, so nothing else is redone.
+     */
+    public void updateTicketSummary(String ticketId, String summary, String summaryHash) {
+        ticketWriter.update(ticketId, current -> current == null ? null
+                : new IndexDocument(ticketId, current.getFields())
+                        .put(SearchDocuments.SUMMARY, summary)
+                        .put(SearchDocuments.SUMMARY_HASH, summaryHash));
+    }
+
+    private void indexArticle(KnowledgeBase article) {
+        IndexDocument document = article.isPublished() ? SearchDocuments.fromArticle(article) : null;
+        articleWriter.update(article.getId(), current -> {
+            articleWatermark = later(articleWatermark, articleTimestamp(article));
+            if (document != null) {
+                embed(articleVectors, article.getId(), document);
+                articleTags.put(article.getId(), article.getTags());
+                replaceCompletion(current, document, ARTICLE_TITLE_WEIGHT);
+                replaceWords(articleIndex, current, document);
+            } else {
+                forget(articleWriter, article.getId(), current);
+            }
+            return document;
+        });
+    }
+
+    // Tickets embed their title and description, articles their title and content
+    private void embed(HnswIndex vectors, String entityId, IndexDocument document) {
+        float[] vector;
+        if (vectors == ticketVectors) {
+            vector = embedder.embed(similarityText(document), termWeights(ticketIndex,
+                    SearchDocuments.TITLE, SearchDocuments.DESCRIPTION));
+        } else {
+            vector = embedder.embed(similarityText(document.get(SearchDocuments.TITLE),
+                    document.get(SearchDocuments.CONTENT)), termWeights(articleIndex,
+                    SearchDocuments.TITLE, SearchDocuments.CONTENT));
+        }
+        if (vector != null) {
+            vectors.put(entityId, vector);
+        } else {
+            vectors.remove(entityId);
+        }
+    }
+
+    // IDF over the given fields of the current snapshot; terms the index has never seen weigh the most
+    private static TextEmbedder.TermWeights termWeights(SearchIndex index, String... fields) {
+        IndexSnapshot snapshot = index.snapshot();
+        double documents = Math.max(snapshot.numDocs(), 1);
+        return term -> {
+            int docFreq = 0;
+            for (String field : fields) {
+                docFreq = Math.max(docFreq, snapshot.docFreq(field, term));
+            }
+            return (float) Math.log(1 + documents / (docFreq + 1));
+        };
+    }
+
+    private static String similarityText(IndexDocument document) {
+        return similarityText(document.get(SearchDocuments.TITLE), document.get(SearchDocuments.DESCRIPTION));
+    }
+
+    private static String similarityText(String title, String description) {
+        return (title != null ? title : "") + " " + (description != null ? description : "");
+    }
+
+    private static LocalDateTime articleTimestamp(KnowledgeBase article) {
+        return article.getUpdatedAt() != null ? article.getUpdatedAt() : article.getCreatedAt();
+    }
+
+    private static LocalDateTime later(LocalDateTime current, LocalDateTime candidate) {
+        if (candidate == null) {
+            return current;
+        }
+        return current == null || candidate.isAfter(current) ? candidate : current;
+    }
+
+    private static LocalDateTime minusOverlap(LocalDateTime watermark) {
+        return watermark != null ? watermark.minus(WATERMARK_OVERLAP) : LocalDateTime.of(1970, 1, 1, 0, 0);
+    }
+
+    private static LocalDateTime parseWatermark(String value) {
+        return value != null ? LocalDateTime.parse(value) : null;
+    }
+
+    // Re-reads the ticket's comments so edits replace rather than append
+    private IndexDocument reloadComments(IndexDocument current) {
+        if (current == null) {
+            return null;
+        }
+        try {
+            List<Comment> comments = new CommentRepository().findByTicketId(current.getEntityId());
+            String before = current.get(SearchDocuments.COMMENTS);
+            IndexDocument updated = SearchDocuments.withComments(current, comments);
+            spelling.replace(before, updated.get(SearchDocuments.COMMENTS));
+            corpus.replace(texts(ticketIndex, current), texts(ticketIndex, updated));
+            return updated;
+        } catch (Exception e) {
+            System.err.println("❌ Error loading comments for " + current.getEntityId() + ": " + e.getMessage());
+            return current;
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public SearchIndex getTicketIndex() {
+        return ticketIndex;
+    }
+
+    public SearchIndex getArticleIndex() {
+        return articleIndex;
+    }
+
+    public MinHashIndex getSimilarTickets() {
+        return similarTickets;
+    }
+
+    public HnswIndex getTicketVectors() {
+        return ticketVectors;
+    }
+
+    /**
+     * Tickets whose title and description share at least minSimilarity of their
+     * words with the given ticket (Jaccard), most similar first.
+     */
+    public List<Ticket> findSimilarTickets(Ticket ticket, int limit, double minSimilarity) {
+        List<SearchHit> hits = similarTickets.findSimilar(
+                similarityText(ticket.getTitle(), ticket.getDescription()), ticket.getId(), limit, minSimilarity);
+        List<Ticket> tickets = new ArrayList<>();
+        for (SearchHit hit : hits) {
+            Map<String, String> fields = ticketIndex.getDocument(hit.getEntityId());
+            if (fields != null) {
+                tickets.add(SearchDocuments.toTicket(fields));
+            }
+        }
+        return tickets;
+    }
+
+    // Tickets whose wording is closest to the query, even without shared keywords
+    public List<Ticket> semanticSearchTickets(String query, int k) {
+        float[] vector = embedder.embed(query, termWeights(ticketIndex, SearchDocuments.TITLE,
+                SearchDocuments.DESCRIPTION));
+        List<Ticket> tickets = new ArrayList<>();
+        for (SearchHit hit : ticketVectors.search(vector, k)) {
+            Map<String, String> fields = ticketIndex.getDocument(hit.getEntityId());
+            if (fields != null) {
+                tickets.add(SearchDocuments.toTicket(fields));
+            }
+        }
+        return tickets;
+    }
+
+    public List<KnowledgeBase> semanticSearchArticles(String query, int k) {
+        float[] vector = embedder.embed(query, termWeights(articleIndex, SearchDocuments.TITLE,
+                SearchDocuments.CONTENT));
+        List<KnowledgeBase> articles = new ArrayList<>();
+        for (SearchHit hit : articleVectors.search(vector, k)) {
+            Map<String, String> fields = articleIndex.getDocument(hit.getEntityId());
+            if (fields != null) {
+                articles.add(SearchDocuments.toArticle(fields));
+            }
+        }
+        return articles;
+    }
+
+    /**
+     * Drops cached results a refresh may have changed: those containing a changed
+     * entity, and those whose query shares a term with a changed document's text,
+     * since that document may now rank among them. Other entries stay valid.
+     */
+    private void invalidateCached(SearchIndex index, Map<String, IndexDocument> changed) {
+        if (changed == null) {
+            resultCache.invalidateIf((key, cached) -> cached.index == index);
+            return;
+        }
+        Set<String> changedTerms = new HashSet<>();
+        for (IndexDocument document : changed.values()) {
+            if (document != null) {
+                for (String field : index.getSchema().getTextFields()) {
+                    index.getSchema().getAnalyzer().analyze(document.get(field),
+                            (term, position, startOffset, endOffset) -> changedTerms.add(term));
+                }
+            }
+        }
+        resultCache.invalidateIf((key, cached) -> cached.index == index && (cached.invalidateOnAnyChange
+                || cached.containsAny(changed.keySet()) || !Collections.disjoint(cached.terms, changedTerms)));
+    }
+
+    /**
+     * Term order does not change a BM25 score, so "vpn login" and "Login  VPN" share an entry.
+     * An entry's terms include the misspelling variants searched, so a change to a document
+     * containing one drops it. Queries with a word the index does not have are dropped on
+     * any change, since the first document with a spelling close to it may arrive at any time.
+     */
+    private List<SearchHit> cachedSearch(SearchIndex index, String query, int limit) {
+        List<String> terms = index.getSchema().getAnalyzer().analyze(query);
+        Collections.sort(terms);
+        String key = index.getName() + '|' + limit + '|' + String.join(" ", terms);
+        return resultCache.get(key, () -> {
+            boolean unknownWord = fuzzyExpansions > 0 && hasUnknownWord(index, terms);
+            Set<String> searched = new HashSet<>(terms);
+            List<SearchHit> hits = index.search(query, limit, fuzzyExpansions, searched);
+            return new CachedHits(index, searched, hits, unknownWord);
+        }).hits;
+    }
+
+    private static boolean hasUnknownWord(SearchIndex index, List<String> terms) {
+        IndexSnapshot snapshot = index.snapshot();
+        for (String term : terms) {
+            int docFreq = 0;
+            for (String field : index.getSchema().getTextFields()) {
+                docFreq += snapshot.docFreq(field, term);
+            }
+            if (docFreq == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Completions for what has been typed so far: ticket and article titles, category
+     * names and earlier queries, favouring frequent and recent ones.
+     */
+    public List<String> suggest(String prefix, int limit) {
+        return completions.suggest(prefix, limit);
+    }
+
+    // Makes a query that found something a completion for later searches
+    public void recordQuery(String query) {
+        completions.add(query, QUERY_WEIGHT, LocalDateTime.now());
+    }
+
+    /**
+     * The query with each word no indexed text contains replaced by its closest, most
+     * frequent correction, or null when no word needed one. Field names and filter values
+     * are left as typed.
+     */
+    public String didYouMean(String query) {
+        if (query == null) {
+            return null;
+        }
+        StringBuilder corrected = new StringBuilder(query.length());
+        int[] copied = { 0 };
+        boolean[] changed = { false };
+        Tokenizer.tokenize(query, (word, position, startOffset, endOffset) -> {
+            boolean field = endOffset < query.length() && query.charAt(endOffset) == ':';
+            boolean value = startOffset > 0 && query.charAt(startOffset - 1) == ':';
+            if (field || value || !SpellChecker.isWord(word) || spelling.count(word) > 0) {
+                return;
+            }
+            List<SpellChecker.Suggestion> suggestions = spelling.suggest(word, 1);
+            if (!suggestions.isEmpty()) {
+                corrected.append(query, copied[0], startOffset).append(suggestions.get(0).getWord());
+                copied[0] = endOffset;
+                changed[0] = true;
+            }
+        });
+        return changed[0] ? corrected.append(query, copied[0], query.length()).toString() : null;
+    }
+
+    // Known words close to a possibly misspelled one, best first
+    public List<String> spellingSuggestions(String word, int limit) {
+        List<String> words = new ArrayList<>();
+        for (SpellChecker.Suggestion suggestion : spelling.suggest(word, limit)) {
+            words.add(suggestion.getWord());
+        }
+        return words;
+    }
+
+    // Document frequencies over all indexed tickets and articles, kept current with the index
+    public CorpusStatistics getCorpusStatistics() {
+        return corpus;
+    }
+
+    public Map<String, Object> getSpellingStatistics() {
+        return spelling.getStatistics();
+    }
+
+    public Map<String, Object> getCompletionStatistics() {
+        return completions.getStatistics();
+    }
+
+    public Map<String, Object> getCacheStatistics() {
+        return resultCache.getStatistics();
+    }
+
+    public List<Ticket> searchTickets(String query, int limit) {
+        List<Ticket> tickets = new ArrayList<>();
+        for (SearchHit hit : cachedSearch(ticketIndex, query, limit)) {
+            tickets.add(SearchDocuments.toTicket(hit.getFields()));
+        }
+        return tickets;
+    }
+
+    // Best passage per text field of each ticket containing one of the terms, by ticket id and field
+    public Map<String, Map<String, Highlight>> highlightTickets(Collection<String> ticketIds, Collection<String> terms) {
+        return ticketIndex.highlight(ticketIds, terms, highlighter);
+    }
+
+    public Map<String, Map<String, Highlight>> highlightArticles(Collection<String> articleIds,
+            Collection<String> terms) {
+        return articleIndex.highlight(articleIds, terms, highlighter);
+    }
+
+    /**
+     * Runs a structured ticket query. Results are not cached: a filter can be affected
+     * by field changes the text-based cache invalidation does not look at.
+     */
+    public SearchResults queryTickets(Query query, int limit) {
+        return ticketIndex.search(query, limit);
+    }
+
+    /**
+     * Ticket counts per assignee rolled up to the assignees' teams, named where the team
+     * still exists, most first. Teams come from memory, kept current by user and team writes.
+     */
+    public Map<String, Long> teamCounts(Map<String, Long> assigneeCounts) {
+        Map<String, Long> teams = new HashMap<>();
+        for (Map.Entry<String, Long> assignee : assigneeCounts.entrySet()) {
+            String teamId = userTeams.get(assignee.getKey());
+            if (teamId != null) {
+                teams.merge(teamNames.getOrDefault(teamId, teamId), assignee.getValue(), Long::sum);
+            }
+        }
+        List<Map.Entry<String, Long>> sorted = new ArrayList<>(teams.entrySet());
+        sorted.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> entry : sorted) {
+            result.put(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    // Facet counts are computed from bitmaps over the index, so they are not cached either
+    public FacetResults ticketFacets(Query query, List<String> fields) {
+        return ticketIndex.facets(query, fields);
+    }
+
+    /**
+     * At most limit tickets having every tag of allOf, one of anyOf and none of noneOf.
+     * Which tickets come back when more match is unspecified; countTaggedTickets gives the total.
+     */
+    public List<Ticket> filterTicketsByTags(List<String> allOf, List<String> anyOf, List<String> noneOf, int limit) {
+        List<Ticket> tickets = new ArrayList<>();
+        for (String entityId : ticketTags.filter(allOf, anyOf, noneOf, limit)) {
+            Map<String, String> fields = ticketIndex.getDocument(entityId);
+            if (fields != null) {
+                tickets.add(SearchDocuments.toTicket(fields));
+            }
+        }
+        return tickets;
+    }
+
+    public long countTaggedTickets(List<String> allOf, List<String> anyOf, List<String> noneOf) {
+        return ticketTags.count(allOf, anyOf, noneOf);
+    }
+
+    /**
+     * At most limit tickets whose value of a custom field lies between from and to, both
+     * inclusive canonical values and null when open; string and enum fields need from
+     * equal to to. Which tickets come back when more match is unspecified.
+     */
+    public List<Ticket> findTicketsByCustomField(String field, String from, String to, int limit) {
+        List<Ticket> tickets = new ArrayList<>();
+        for (String entityId : customFields.find(field, from, to, limit)) {
+            Map<String, String> fields = ticketIndex.getDocument(entityId);
+            if (fields != null) {
+                tickets.add(SearchDocuments.toTicket(fields));
+            }
+        }
+        return tickets;
+    }
+
+    public long countTicketsByCustomField(String field, String from, String to) {
+        return customFields.count(field, from, to);
+    }
+
+    public Map<String, Object> getCustomFieldStatistics() {
+        return customFields.getStatistics();
+    }
+
+    public List<KnowledgeBase> filterArticlesByTags(List<String> allOf, List<String> anyOf, List<String> noneOf,
+            int limit) {
+        List<KnowledgeBase> articles = new ArrayList<>();
+        for (String entityId : articleTags.filter(allOf, anyOf, noneOf, limit)) {
+            Map<String, String> fields = articleIndex.getDocument(entityId);
+            if (fields != null) {
+                articles.add(SearchDocuments.toArticle(fields));
+            }
+        }
+        return articles;
+    }
+
+    // Tickets per tag, most used first
+    public Map<String, Long> getTicketTagCounts(int limit) {
+        return ticketTags.getTagCounts(limit);
+    }
+
+    public Map<String, Long> getArticleTagCounts(int limit) {
+        return articleTags.getTagCounts(limit);
+    }
+
+    public Map<String, Object> getTagStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("tickets", ticketTags.getStatistics());
+        stats.put("articles", articleTags.getStatistics());
+        return stats;
+    }
+
+    public List<KnowledgeBase> searchArticles(String query, int limit) {
+        List<KnowledgeBase> articles = new ArrayList<>();
+        for (SearchHit hit : cachedSearch(articleIndex, query, limit)) {
+            articles.add(SearchDocuments.toArticle(hit.getFields()));
+        }
+        return articles;
+    }
+}
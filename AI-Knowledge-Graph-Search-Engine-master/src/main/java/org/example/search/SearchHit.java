@@ -0,0 +1,39 @@
+package org.example.search;
+
+import java.util.Map;
+
+public class SearchHit {
+    private final String entityId;
+    private final float score;
+    private final Map<String, String> fields;
+
+    public SearchHit(String entityId, float score, Map<String, String> fields) {
+        this.entityId = entityId;
+        this.score = score;
+        this.fields = fields;
+    }
+
+    public String getEntityId() {
+        return entityId;
+    }
+
+    public float getScore() {
+        return score;
+    }
+
+    public Map<String, String> getFields() {
+        return fields;
+    }
+
+    public String get(String field) {
+        return fields.get(field);
+    }
+
+    @Override
+    public String toString() {
+        return "SearchHit{" +
+                "entityId='" + entityId + '\'' +
+                ", score=" + score +
+                '}';
+    }
+}
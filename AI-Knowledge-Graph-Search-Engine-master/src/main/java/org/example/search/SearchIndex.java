@@ -0,0 +1,374 @@
+package org.example.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-process full-text index over one entity type, ranked with BM25.
+ * Readers take the current {@link IndexSnapshot} with a single volatile read and
+ * never block; the {@link IndexWriter} publishes a new snapshot after each refresh.
+ */
+public class SearchIndex {
+    // Per-edit score discount of a misspelling variant
+    private static final float FUZZY_DISCOUNT = 0.5f;
+
+    private final String name;
+    private final IndexSchema schema;
+    private final BM25Similarity similarity;
+    private final FuzzyTerms fuzzyTerms;
+    private final FacetCounter facetCounter;
+    private volatile IndexSnapshot snapshot;
+    private volatile Ranking ranking;
+
+    // Per-thread score accumulator, grown to the largest segment seen
+    private final ThreadLocal<float[]> scratch = ThreadLocal.withInitial(() -> new float[0]);
+
+    // A term to score, the query word it stands for and how much of the word's weight it gets
+    private static final class WeightedTerm {
+        final String term;
+        final String word;
+        final float boost;
+
+        WeightedTerm(String term, String word, float boost) {
+            this.term = term;
+            this.word = word;
+            this.boost = boost;
+        }
+    }
+
+    public SearchIndex(String name, IndexSchema schema, BM25Similarity similarity) {
+        this.name = name;
+        this.schema = schema;
+        this.similarity = similarity;
+        this.fuzzyTerms = new FuzzyTerms(schema);
+        this.facetCounter = new FacetCounter(schema);
+        this.snapshot = IndexSnapshot.empty();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public IndexSchema getSchema() {
+        return schema;
+    }
+
+    public IndexSnapshot snapshot() {
+        return snapshot;
+    }
+
+    public Ranking getRanking() {
+        return ranking;
+    }
+
+    // Signals multiplied into the BM25 score of every ranked hit; null ranks by text alone
+    public void setRanking(Ranking ranking) {
+        this.ranking = ranking;
+    }
+
+    void publish(IndexSnapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    public int size() {
+        return snapshot.numDocs();
+    }
+
+    // Stored fields of the live document for an entity, or null
+    public Map<String, String> getDocument(String entityId) {
+        IndexSnapshot current = snapshot;
+        int doc = current.lookup(entityId);
+        return doc >= 0 ? current.storedFields(doc) : null;
+    }
+
+    // Entity ids of all live documents; used to reconcile deletes after a restart
+    public Set<String> entityIds() {
+        IndexSnapshot current = snapshot;
+        Set<String> ids = new HashSet<>(current.numDocs() * 2);
+        for (int s = 0; s < current.segmentCount(); s++) {
+            IndexSegment segment = current.segment(s);
+            for (int doc = 0; doc < segment.maxDoc(); doc++) {
+                if (!current.isDeleted(s, doc)) {
+                    ids.add(segment.entityId(doc));
+                }
+            }
+        }
+        return ids;
+    }
+
+    public List<SearchHit> search(String query, int limit) {
+        return search(query, limit, 0, null);
+    }
+
+    /**
+     * Ranked search that also matches up to maxExpansions misspellings per query word.
+     * A variant is scored with its word's IDF when that is lower, so a rare misspelling
+     * never outranks the word itself, and discounted per edit so exact matches score higher.
+     */
+    public List<SearchHit> search(String query, int limit, int maxExpansions) {
+        return search(query, limit, maxExpansions, null);
+    }
+
+    // Adds the words and variants that were searched to matchedTerms when it is given
+    List<SearchHit> search(String query, int limit, int maxExpansions, Set<String> matchedTerms) {
+        IndexSnapshot current = snapshot;
+        Set<String> words = new LinkedHashSet<>(schema.getAnalyzer().analyze(query));
+        if (words.isEmpty() || current.numDocs() == 0 || limit <= 0) {
+            return new ArrayList<>();
+        }
+        List<WeightedTerm> terms = expand(current, words, maxExpansions, limit);
+        if (matchedTerms != null) {
+            terms.forEach(term -> matchedTerms.add(term.term));
+        }
+        return rank(current, terms, null, limit);
+    }
+
+    /**
+     * Runs a structured query: the matching documents are found first, then ranked
+     * by BM25 over the query's positive words. Queries without words list the most
+     * recently indexed matches first.
+     */
+    public SearchResults search(Query query, int limit) {
+        IndexSnapshot current = snapshot;
+        Query.Context context = new Query.Context(current, schema);
+        context.plan.add("query: " + query);
+        long[] matched = query.docs(context);
+        int totalHits = (int) Query.cardinality(matched);
+        List<SearchHit> hits = totalHits == 0 || limit <= 0 ? new ArrayList<>()
+                : rank(current, expand(current, new LinkedHashSet<>(query.scoringTerms()), 0, limit), matched, limit);
+        return new SearchResults(hits, totalHits, context.plan);
+    }
+
+    /**
+     * Value counts of the given keyword fields over every document the query matches,
+     * or over all documents when query is null. No document is loaded.
+     */
+    public FacetResults facets(Query query, List<String> fields) {
+        IndexSnapshot current = snapshot;
+        Query.Context context = new Query.Context(current, schema);
+        long[] matched = query != null ? query.docs(context) : context.liveDocs();
+        Map<String, Map<String, Long>> counts = new LinkedHashMap<>();
+        for (String field : fields) {
+            counts.put(field, facetCounter.count(current, matched, field));
+        }
+        return new FacetResults((int) Query.cardinality(matched), counts);
+    }
+
+    /**
+     * The best passage of every text field of each entity that contains one of the terms,
+     * by entity id and field, weighting terms by IDF. Offsets come from the index, so the
+     * text is not analyzed again; entities no longer indexed are left out.
+     */
+    public Map<String, Map<String, Highlight>> highlight(Collection<String> entityIds, Collection<String> terms,
+            Highlighter highlighter) {
+        IndexSnapshot current = snapshot;
+        Map<String, Map<String, Highlight>> highlights = new LinkedHashMap<>();
+        List<String> words = new ArrayList<>(new LinkedHashSet<>(terms));
+        if (words.isEmpty()) {
+            return highlights;
+        }
+        float[] weights = new float[words.size()];
+        for (int t = 0; t < words.size(); t++) {
+            int docFreq = 0;
+            for (String field : schema.getTextFields()) {
+                docFreq += current.docFreq(field, words.get(t));
+            }
+            weights[t] = similarity.idf(docFreq, Math.max(current.maxDoc(), 1));
+        }
+
+        int[][] offsets = new int[words.size()][];
+        for (String entityId : entityIds) {
+            int doc = current.lookup(entityId);
+            if (doc < 0) {
+                continue;
+            }
+            int s = current.segmentOf(doc);
+            IndexSegment segment = current.segment(s);
+            int local = doc - current.docBase(s);
+            Map<String, String> fields = null;
+            Map<String, Highlight> fieldHighlights = new LinkedHashMap<>();
+            for (String field : schema.getTextFields()) {
+                IndexSegment.FieldIndex fieldIndex = segment.field(field);
+                if (fieldIndex == null) {
+                    continue;
+                }
+                boolean found = false;
+                for (int t = 0; t < words.size(); t++) {
+                    offsets[t] = fieldIndex.offsets(local, words.get(t));
+                    found |= offsets[t] != null;
+                }
+                if (!found) {
+                    continue;
+                }
+                if (fields == null) {
+                    fields = segment.storedFields(local);
+                }
+                String text = fields.get(field);
+                Highlight highlight = text != null ? highlighter.highlight(field, text, offsets, weights) : null;
+                if (highlight != null) {
+                    fieldHighlights.put(field, highlight);
+                }
+            }
+            highlights.put(entityId, fieldHighlights);
+        }
+        return highlights;
+    }
+
+    /**
+     * Adds spelling variants of words that match fewer than limit documents; a word that
+     * fills the page by itself is taken as spelled correctly. A word's variants may read as
+     * many postings as the word or its most frequent variant, whichever is more, so the
+     * query costs at most twice what it would have with the intended spelling.
+     */
+    private List<WeightedTerm> expand(IndexSnapshot current, Set<String> words, int maxExpansions, int limit) {
+        List<WeightedTerm> terms = new ArrayList<>();
+        for (String word : words) {
+            terms.add(new WeightedTerm(word, word, 1f));
+        }
+        if (maxExpansions <= 0) {
+            return terms;
+        }
+
+        Set<String> added = new HashSet<>(words);
+        for (String word : words) {
+            int docFreq = 0;
+            for (String field : schema.getTextFields()) {
+                docFreq += current.docFreq(field, word);
+            }
+            if (docFreq >= limit) {
+                continue;
+            }
+            List<FuzzyTerms.Match> matches = fuzzyTerms.expand(current, word, FuzzyTerms.maxEdits(word), maxExpansions);
+            long budget = matches.isEmpty() ? 0 : Math.max(docFreq, matches.get(0).getDocFreq());
+            for (FuzzyTerms.Match match : matches) {
+                if (match.getDocFreq() <= budget && added.add(match.getTerm())) {
+                    budget -= match.getDocFreq();
+                    terms.add(new WeightedTerm(match.getTerm(), word,
+                            (float) Math.pow(FUZZY_DISCOUNT, match.getDistance())));
+                }
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Top documents by BM25 times the ranking's boost; when accepted is given, exactly those
+     * documents are the hits. A candidate whose BM25 score times the segment's largest boost
+     * cannot enter the full heap is skipped without computing its own boost.
+     */
+    private List<SearchHit> rank(IndexSnapshot current, List<WeightedTerm> terms, long[] accepted, int limit) {
+        Ranking ranking = terms.isEmpty() || this.ranking == null || this.ranking.isEmpty() ? null : this.ranking;
+        float now = Ranking.now();
+        // Collection-wide statistics so scores are comparable across segments
+        List<String> fields = new ArrayList<>(schema.getTextFields());
+        float[] avgLengths = new float[fields.size()];
+        float[][] weights = new float[fields.size()][];
+        for (int f = 0; f < fields.size(); f++) {
+            String field = fields.get(f);
+            avgLengths[f] = Math.max((float) current.totalLength(field) / current.maxDoc(), 1e-6f);
+            weights[f] = new float[terms.size()];
+            int t = 0;
+            for (WeightedTerm term : terms) {
+                int docFreq = current.docFreq(field, term.term);
+                int blended = term.term.equals(term.word) ? docFreq
+                        : Math.max(docFreq, current.docFreq(field, term.word));
+                weights[f][t++] = docFreq == 0 ? 0
+                        : term.boost * schema.getBoost(field) * similarity.idf(blended, current.maxDoc());
+            }
+        }
+
+        TopKCollector collector = new TopKCollector(limit);
+        int[] touched = new int[64];
+
+        for (int s = 0; s < current.segmentCount(); s++) {
+            IndexSegment segment = current.segment(s);
+            float[] scores = scratch.get();
+            if (scores.length < segment.maxDoc()) {
+                scores = new float[segment.maxDoc()];
+                scratch.set(scores);
+            }
+
+            int docBase = current.docBase(s);
+            Ranking.SegmentRanking segmentRanking = ranking != null ? ranking.forSegment(segment, schema) : null;
+            int touchedCount = 0;
+            for (int f = 0; f < fields.size(); f++) {
+                IndexSegment.FieldIndex fieldIndex = segment.field(fields.get(f));
+                if (fieldIndex == null) {
+                    continue;
+                }
+                int t = 0;
+                for (WeightedTerm term : terms) {
+                    float weight = weights[f][t++];
+                    PostingList postings = weight == 0 ? null : fieldIndex.postings(term.term);
+                    if (postings == null) {
+                        continue;
+                    }
+                    for (int i = 0; i < postings.size(); i++) {
+                        int doc = postings.docId(i);
+                        if (accepted != null && (accepted[(docBase + doc) >>> 6] & (1L << (docBase + doc))) == 0) {
+                            continue;
+                        }
+                        float norm = similarity.lengthNorm(fieldIndex.docLength(doc), avgLengths[f]);
+                        if (scores[doc] == 0) {
+                            if (touchedCount == touched.length) {
+                                touched = Arrays.copyOf(touched, touchedCount * 2);
+                            }
+                            touched[touchedCount++] = doc;
+                        }
+                        scores[doc] += similarity.score(weight, postings.freq(i), norm);
+                    }
+                }
+            }
+
+            if (accepted != null) {
+                // Every accepted document is a hit, whether or not it contains a scoring term
+                int end = docBase + segment.maxDoc();
+                for (int doc = Query.nextSetBit(accepted, docBase); doc >= 0 && doc < end;
+                     doc = Query.nextSetBit(accepted, doc + 1)) {
+                    float score = terms.isEmpty() ? (float) doc / current.maxDoc() : scores[doc - docBase];
+                    scores[doc - docBase] = 0;
+                    if (segmentRanking != null && score > 0) {
+                        if (score * segmentRanking.maxBoost < collector.minCompetitiveScore()) {
+                            continue;
+                        }
+                        score *= segmentRanking.boost(doc - docBase, now);
+                    }
+                    collector.collect(doc, score);
+                }
+                continue;
+            }
+            for (int i = 0; i < touchedCount; i++) {
+                int doc = touched[i];
+                float score = scores[doc];
+                scores[doc] = 0;
+                if (current.isDeleted(s, doc)) {
+                    continue;
+                }
+                if (segmentRanking != null) {
+                    if (score * segmentRanking.maxBoost < collector.minCompetitiveScore()) {
+                        continue;
+                    }
+                    score *= segmentRanking.boost(doc, now);
+                }
+                collector.collect(docBase + doc, score);
+            }
+        }
+
+        int[] docs = new int[collector.size()];
+        float[] topScores = new float[collector.size()];
+        int count = collector.drainTo(docs, topScores);
+
+        List<SearchHit> hits = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            hits.add(new SearchHit(current.entityId(docs[i]), topScores[i], current.storedFields(docs[i])));
+        }
+        return hits;
+    }
+}
@@ -0,0 +1,32 @@
+package org.example.search;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Top hits of a structured query, how many documents matched in total and the
+ * steps the planner took, in evaluation order.
+ */
+public class SearchResults {
+    private final List<SearchHit> hits;
+    private final int totalHits;
+    private final List<String> plan;
+
+    public SearchResults(List<SearchHit> hits, int totalHits, List<String> plan) {
+        this.hits = hits;
+        this.totalHits = totalHits;
+        this.plan = Collections.unmodifiableList(plan);
+    }
+
+    public List<SearchHit> getHits() {
+        return hits;
+    }
+
+    public int getTotalHits() {
+        return totalHits;
+    }
+
+    public List<String> getPlan() {
+        return plan;
+    }
+}
@@ -0,0 +1,121 @@
+package org.example.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Accumulates documents and seals them into a {@link MemorySegment}.
+ * Not thread-safe; a builder is owned by whoever is currently indexing.
+ */
+public class SegmentBuilder {
+    private final IndexSchema schema;
+    private final List<String> entityIds = new ArrayList<>();
+    private final List<Map<String, String>> storedFields = new ArrayList<>();
+    private final Map<String, Map<String, PostingList>> postings = new HashMap<>();
+    private final Map<String, IntBuffer> docLengths = new HashMap<>();
+    private final Map<String, Long> totalLengths = new HashMap<>();
+    private final Map<String, List<TermVector>> termVectors = new HashMap<>();
+
+    public SegmentBuilder(IndexSchema schema) {
+        this.schema = schema;
+        for (String field : allFields()) {
+            postings.put(field, new HashMap<>());
+            docLengths.put(field, new IntBuffer());
+            totalLengths.put(field, 0L);
+        }
+        for (String field : schema.getTextFields()) {
+            termVectors.put(field, new ArrayList<>());
+        }
+    }
+
+    private List<String> allFields() {
+        List<String> fields = new ArrayList<>(schema.getTextFields());
+        fields.addAll(schema.getKeywordFields());
+        return fields;
+    }
+
+    public int addDocument(IndexDocument document) {
+        int docId = entityIds.size();
+        entityIds.add(document.getEntityId());
+        storedFields.add(new LinkedHashMap<>(document.getFields()));
+
+        // Per term: the number of offsets used, then start, end pairs
+        Map<String, int[]> termOffsets = new HashMap<>();
+        for (String field : schema.getTextFields()) {
+            termOffsets.clear();
+            int[] length = new int[1];
+            schema.getAnalyzer().analyze(document.get(field), (term, position, startOffset, endOffset) -> {
+                int[] offsets = termOffsets.computeIfAbsent(term, t -> new int[5]);
+                if (offsets[0] + 3 > offsets.length) {
+                    offsets = Arrays.copyOf(offsets, offsets.length * 2 + 1);
+                    termOffsets.put(term, offsets);
+                }
+                offsets[++offsets[0]] = startOffset;
+                offsets[++offsets[0]] = endOffset;
+                length[0]++;
+            });
+
+            Map<String, PostingList> fieldPostings = postings.get(field);
+            String[] terms = termOffsets.keySet().toArray(new String[0]);
+            Arrays.sort(terms);
+            int[] starts = new int[terms.length + 1];
+            int[] offsets = new int[length[0] * 2];
+            for (int t = 0; t < terms.length; t++) {
+                int[] entry = termOffsets.get(terms[t]);
+                fieldPostings.computeIfAbsent(terms[t], key -> new PostingList()).add(docId, entry[0] / 2);
+                System.arraycopy(entry, 1, offsets, starts[t], entry[0]);
+                starts[t + 1] = starts[t] + entry[0];
+            }
+            termVectors.get(field).add(new TermVector(terms, starts, offsets));
+            docLengths.get(field).add(length[0]);
+            totalLengths.merge(field, (long) length[0], Long::sum);
+        }
+
+        // Keyword fields hold at most one term per document
+        for (String field : schema.getKeywordFields()) {
+            String term = schema.keywordTerm(field, document.get(field));
+            if (term != null) {
+                postings.get(field).computeIfAbsent(term, t -> new PostingList()).add(docId, 1);
+            }
+            docLengths.get(field).add(term != null ? 1 : 0);
+            totalLengths.merge(field, term != null ? 1L : 0L, Long::sum);
+        }
+        return docId;
+    }
+
+    public int size() {
+        return entityIds.size();
+    }
+
+    public MemorySegment build() {
+        Map<String, IndexSegment.FieldIndex> fields = new HashMap<>();
+        for (String field : allFields()) {
+            Map<String, PostingList> fieldPostings = postings.get(field);
+            fieldPostings.values().forEach(PostingList::trim);
+            List<TermVector> vectors = termVectors.get(field);
+            fields.put(field, new MemorySegment.MemoryFieldIndex(fieldPostings, docLengths.get(field).toArray(),
+                    totalLengths.get(field), vectors != null ? vectors.toArray(new TermVector[0]) : null));
+        }
+        return new MemorySegment(entityIds.toArray(new String[0]), storedFields, fields);
+    }
+
+    private static class IntBuffer {
+        private int[] values = new int[16];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
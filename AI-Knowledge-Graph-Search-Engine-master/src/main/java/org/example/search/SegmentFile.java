@@ -0,0 +1,223 @@
+package org.example.search;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * On-disk segment format, read back by {@link MappedSegment}.
+ *
+ * <pre>
+ * header      magic, version, maxDoc, fieldCount, storedOffset, entityOffset, fieldTableOffset
+ * per field   docLengths int[maxDoc]
+ *             postings: (varint docDelta, varint freq)* per term, in term order
+ *             term bytes: UTF-8 terms sorted by unsigned byte order
+ *             term table: (int termStart, int termLength, int postingsOffset, int docFreq) per term
+ *             term vectors, text fields only: per doc varint termCount,
+ *             (varint termOrd, varint count, (varint startDelta, varint length)*)* per term,
+ *             then int[maxDoc] record offsets
+ * stored      records: varint fieldCount, (varint len, name, varint len, value)*
+ *             offsets int[maxDoc]
+ * entities    UTF-8 entity ids, (int start, int length) per doc, doc ids sorted by entity id
+ * field table (UTF name, long totalLength, int termCount, int docLengths,
+ *             int termBytes, int termTable, int termVectors or 0) per field
+ * </pre>
+ *
+ * All offsets are absolute ints, so a single segment file is capped at 2 GB.
+ */
+public class SegmentFile {
+    static final int MAGIC = 0x4B475349;
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 28;
+    static final int TERM_ENTRY_SIZE = 16;
+
+    static final Comparator<byte[]> UNSIGNED_ORDER = Arrays::compareUnsigned;
+
+    public static void write(IndexSegment segment, Path file) throws IOException {
+        int maxDoc = segment.maxDoc();
+        List<String> fieldNames = new ArrayList<>(segment.fieldNames());
+        List<int[]> fieldOffsets = new ArrayList<>();
+        List<long[]> fieldStats = new ArrayList<>();
+        int storedOffset;
+        int entityOffset;
+        int fieldTableOffset;
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                        StandardOpenOption.WRITE), 1 << 16))) {
+            out.write(new byte[HEADER_SIZE]);
+
+            for (String fieldName : fieldNames) {
+                IndexSegment.FieldIndex field = segment.field(fieldName);
+
+                int docLengthsOffset = position(out);
+                for (int doc = 0; doc < maxDoc; doc++) {
+                    out.writeInt(field.docLength(doc));
+                }
+
+                List<byte[]> terms = new ArrayList<>();
+                for (String term : field.terms()) {
+                    terms.add(term.getBytes(StandardCharsets.UTF_8));
+                }
+                terms.sort(UNSIGNED_ORDER);
+
+                int[] postingsOffsets = new int[terms.size()];
+                int[] docFreqs = new int[terms.size()];
+                for (int t = 0; t < terms.size(); t++) {
+                    PostingList postings = field.postings(new String(terms.get(t), StandardCharsets.UTF_8));
+                    postingsOffsets[t] = position(out);
+                    docFreqs[t] = postings.size();
+                    int previous = 0;
+                    for (int i = 0; i < postings.size(); i++) {
+                        writeVInt(out, postings.docId(i) - previous);
+                        writeVInt(out, postings.freq(i));
+                        previous = postings.docId(i);
+                    }
+                }
+
+                int termBytesOffset = position(out);
+                int[] termStarts = new int[terms.size()];
+                int start = 0;
+                for (int t = 0; t < terms.size(); t++) {
+                    termStarts[t] = start;
+                    out.write(terms.get(t));
+                    start += terms.get(t).length;
+                }
+
+                int termTableOffset = position(out);
+                for (int t = 0; t < terms.size(); t++) {
+                    out.writeInt(termStarts[t]);
+                    out.writeInt(terms.get(t).length);
+                    out.writeInt(postingsOffsets[t]);
+                    out.writeInt(docFreqs[t]);
+                }
+
+                int termVectorsOffset = 0;
+                if (maxDoc > 0 && field.termVector(0) != null) {
+                    Map<String, Integer> ords = new HashMap<>();
+                    for (int t = 0; t < terms.size(); t++) {
+                        ords.put(new String(terms.get(t), StandardCharsets.UTF_8), t);
+                    }
+                    int[] vectorOffsets = new int[maxDoc];
+                    for (int doc = 0; doc < maxDoc; doc++) {
+                        vectorOffsets[doc] = position(out);
+                        writeTermVector(out, field.termVector(doc), ords);
+                    }
+                    termVectorsOffset = position(out);
+                    for (int offset : vectorOffsets) {
+                        out.writeInt(offset);
+                    }
+                }
+
+                fieldOffsets.add(new int[] { docLengthsOffset, termBytesOffset, termTableOffset, termVectorsOffset });
+                fieldStats.add(new long[] { field.getTotalLength(), terms.size() });
+            }
+
+            int[] storedOffsets = new int[maxDoc];
+            for (int doc = 0; doc < maxDoc; doc++) {
+                storedOffsets[doc] = position(out);
+                Map<String, String> stored = segment.storedFields(doc);
+                writeVInt(out, stored.size());
+                for (Map.Entry<String, String> entry : stored.entrySet()) {
+                    writeBytes(out, entry.getKey().getBytes(StandardCharsets.UTF_8));
+                    writeBytes(out, entry.getValue().getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            storedOffset = position(out);
+            for (int offset : storedOffsets) {
+                out.writeInt(offset);
+            }
+
+            byte[][] entityIds = new byte[maxDoc][];
+            int[] entityStarts = new int[maxDoc];
+            for (int doc = 0; doc < maxDoc; doc++) {
+                entityIds[doc] = segment.entityId(doc).getBytes(StandardCharsets.UTF_8);
+                entityStarts[doc] = position(out);
+                out.write(entityIds[doc]);
+            }
+            entityOffset = position(out);
+            for (int doc = 0; doc < maxDoc; doc++) {
+                out.writeInt(entityStarts[doc]);
+                out.writeInt(entityIds[doc].length);
+            }
+            Integer[] sorted = new Integer[maxDoc];
+            for (int doc = 0; doc < maxDoc; doc++) {
+                sorted[doc] = doc;
+            }
+            Arrays.sort(sorted, (a, b) -> Arrays.compareUnsigned(entityIds[a], entityIds[b]));
+            for (int doc : sorted) {
+                out.writeInt(doc);
+            }
+            fieldTableOffset = position(out);
+            for (int f = 0; f < fieldNames.size(); f++) {
+                out.writeUTF(fieldNames.get(f));
+                out.writeLong(fieldStats.get(f)[0]);
+                out.writeInt((int) fieldStats.get(f)[1]);
+                out.writeInt(fieldOffsets.get(f)[0]);
+                out.writeInt(fieldOffsets.get(f)[1]);
+                out.writeInt(fieldOffsets.get(f)[2]);
+                out.writeInt(fieldOffsets.get(f)[3]);
+            }
+            position(out); // fails if the field table pushed the file past the limit
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putInt(maxDoc).putInt(fieldNames.size())
+                .putInt(storedOffset).putInt(entityOffset).putInt(fieldTableOffset).flip();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(header, 0);
+            channel.force(true);
+        }
+    }
+
+    // DataOutputStream.size() saturates at Integer.MAX_VALUE, which is also our format limit
+    private static int position(DataOutputStream out) throws IOException {
+        int size = out.size();
+        if (size == Integer.MAX_VALUE) {
+            throw new IOException("Segment exceeds the 2 GB file format limit");
+        }
+        return size;
+    }
+
+    // Offsets are delta coded from the previous start, so a term vector is mostly one-byte varints
+    private static void writeTermVector(DataOutputStream out, TermVector vector, Map<String, Integer> ords)
+            throws IOException {
+        writeVInt(out, vector.size());
+        for (int t = 0; t < vector.size(); t++) {
+            int[] offsets = vector.offsets(t);
+            writeVInt(out, ords.get(vector.term(t)));
+            writeVInt(out, offsets.length / 2);
+            int previous = 0;
+            for (int i = 0; i < offsets.length; i += 2) {
+                writeVInt(out, offsets[i] - previous);
+                writeVInt(out, offsets[i + 1] - offsets[i]);
+                previous = offsets[i];
+            }
+        }
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        writeVInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    static void writeVInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+}
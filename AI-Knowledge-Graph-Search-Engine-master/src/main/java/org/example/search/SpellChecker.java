@@ -0,0 +1,424 @@
+package org.example.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * "Did you mean" corrections from the words of the indexed text and how many fields
+ * contain each, by symmetric deletes: a word is filed under every string that deleting
+ * up to maxEdits letters from its first PREFIX_LENGTH letters makes, and a misspelling
+ * is looked up under its own deletes. Two words within k edits share one of them, so a
+ * lookup reads a few short lists and compares only their words, however large the
+ * vocabulary.
+ *
+ * Deletes are kept only as hashes, in an open-addressing table of chains over parallel
+ * int arrays; a collision costs a comparison, never a wrong correction. The estimated
+ * size of words and deletes together never exceeds maxBytes: when it would, words seen
+ * fewer times than a doubling threshold are dropped and the deletes rebuilt, and words
+ * stay unfiled until they reach the threshold.
+ */
+public class SpellChecker {
+    public static final int DEFAULT_MAX_EDITS = 2;
+    public static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024;
+    // Deletes are made from this many leading letters only; longer words are told apart by the distance check
+    private static final int PREFIX_LENGTH = 7;
+    private static final int MIN_WORD_LENGTH = 3;
+    private static final int MAX_WORD_LENGTH = 32;
+    // Estimated heap per word besides its letters (string, map entry, boxed id, array slots), and per
+    // delete: three ints, with room for arrays grown by half and a table up to four times as long
+    private static final int WORD_BYTES = 112;
+    private static final int ENTRY_BYTES = 36;
+
+    private final int maxEdits;
+    private final long maxBytes;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Integer> wordIds = new HashMap<>();
+    private String[] words;
+    private int[] counts;
+    private boolean[] filed;
+    private int wordCount;
+    private long wordBytes;
+    // Words seen fewer times than this are counted but not suggested
+    private int minCount;
+
+    // Chains of deletes by hash: table[slot] is the first entry, entryNext the rest
+    private int[] table;
+    private int[] entryHash;
+    private int[] entryWord;
+    private int[] entryNext;
+    private int entryCount;
+
+    public static final class Suggestion {
+        private final String word;
+        private final int distance;
+        private final int count;
+
+        Suggestion(String word, int distance, int count) {
+            this.word = word;
+            this.distance = distance;
+            this.count = count;
+        }
+
+        public String getWord() {
+            return word;
+        }
+
+        public int getDistance() {
+            return distance;
+        }
+
+        // Indexed fields containing the word
+        public int getCount() {
+            return count;
+        }
+    }
+
+    public SpellChecker(int maxEdits, long maxBytes) {
+        if (maxEdits < 1 || maxEdits > 3) {
+            throw new IllegalArgumentException("maxEdits must be between 1 and 3");
+        }
+        this.maxEdits = maxEdits;
+        this.maxBytes = maxBytes;
+        clear();
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            reset(16, 64);
+            minCount = 1;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Counts each distinct word of a text once
+    public void add(CharSequence text) {
+        for (String word : words(text)) {
+            add(word, 1);
+        }
+    }
+
+    // Moves the counts of a field's words from its indexed text to its new one
+    public void replace(CharSequence before, CharSequence after) {
+        Set<String> removed = words(before);
+        Set<String> added = words(after);
+        for (String word : removed) {
+            if (!added.contains(word)) {
+                add(word, -1);
+            }
+        }
+        for (String word : added) {
+            if (!removed.contains(word)) {
+                add(word, 1);
+            }
+        }
+    }
+
+    private void add(String word, int delta) {
+        lock.writeLock().lock();
+        try {
+            Integer existing = wordIds.get(word);
+            if (existing == null) {
+                if (delta <= 0) {
+                    return;
+                }
+                if (estimatedBytes() + WORD_BYTES + word.length() > maxBytes) {
+                    prune();
+                }
+            }
+            int id = existing != null ? existing : newWord(word);
+            counts[id] = Math.max(counts[id] + delta, 0);
+            if (!filed[id] && counts[id] >= minCount) {
+                Set<String> deletes = deletes(word);
+                if (estimatedBytes() + (long) deletes.size() * ENTRY_BYTES > maxBytes) {
+                    prune();
+                    Integer kept = wordIds.get(word);
+                    if (kept == null || counts[kept] < minCount) {
+                        return;
+                    }
+                    id = kept;
+                }
+                file(id, deletes);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Times the word was counted, 0 for an unknown word
+    public int count(String word) {
+        lock.readLock().lock();
+        try {
+            Integer id = wordIds.get(word.toLowerCase());
+            return id != null ? counts[id] : 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Known words within the edits {@link FuzzyTerms#maxEdits} allows for a word of this
+     * length, closest first and most frequent first among equally close ones. A known
+     * word comes first itself, at distance 0.
+     */
+    public List<Suggestion> suggest(String word, int limit) {
+        List<Suggestion> suggestions = new ArrayList<>();
+        String input = word != null ? word.toLowerCase() : "";
+        int edits = Math.min(maxEdits, FuzzyTerms.maxEdits(input));
+        if (limit <= 0 || !isWord(input)) {
+            return suggestions;
+        }
+        Set<String> deletes = deletes(input.substring(0, Math.min(input.length(), PREFIX_LENGTH)), edits);
+
+        lock.readLock().lock();
+        try {
+            Integer known = wordIds.get(input);
+            if (known != null && counts[known] > 0) {
+                suggestions.add(new Suggestion(input, 0, counts[known]));
+            }
+            Set<Integer> seen = new HashSet<>();
+            int mask = table.length - 1;
+            for (String delete : deletes) {
+                int hash = delete.hashCode();
+                for (int e = table[spread(hash) & mask]; e >= 0; e = entryNext[e]) {
+                    int id = entryWord[e];
+                    if (entryHash[e] != hash || counts[id] <= 0 || !seen.add(id) || words[id].equals(input)) {
+                        continue;
+                    }
+                    int distance = distance(input, words[id], edits);
+                    if (distance <= edits) {
+                        suggestions.add(new Suggestion(words[id], distance, counts[id]));
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        suggestions.sort((a, b) -> a.distance != b.distance ? Integer.compare(a.distance, b.distance)
+                : a.count != b.count ? Integer.compare(b.count, a.count) : a.word.compareTo(b.word));
+        return suggestions.size() > limit ? new ArrayList<>(suggestions.subList(0, limit)) : suggestions;
+    }
+
+    public Map<String, Object> getStatistics() {
+        lock.readLock().lock();
+        try {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("words", wordIds.size());
+            stats.put("deletes", entryCount);
+            stats.put("minCount", minCount);
+            stats.put("estimatedBytes", estimatedBytes());
+            stats.put("maxBytes", maxBytes);
+            return stats;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Drops the words below the threshold, raising it until the words that reach it and
+     * their deletes take at most half of maxBytes, so the next prune is some way off.
+     */
+    private void prune() {
+        int oldMinCount = minCount;
+        String[] oldWords = words;
+        int[] oldCounts = counts;
+        int oldCount = wordCount;
+        for (;; minCount *= 2) {
+            int kept = 0;
+            long keptBytes = 0;
+            int keptEntries = 0;
+            for (int id = 0; id < oldCount; id++) {
+                if (oldCounts[id] >= minCount) {
+                    kept++;
+                    keptBytes += WORD_BYTES + oldWords[id].length();
+                    keptEntries += deletes(oldWords[id]).size();
+                }
+            }
+            if (keptBytes + (long) keptEntries * ENTRY_BYTES <= maxBytes / 2 || kept == 0) {
+                reset(kept, keptEntries);
+                break;
+            }
+        }
+
+        for (int id = 0; id < oldCount; id++) {
+            if (oldCounts[id] >= minCount) {
+                int kept = newWord(oldWords[id]);
+                counts[kept] = oldCounts[id];
+                file(kept, deletes(oldWords[id]));
+            }
+        }
+        if (minCount > oldMinCount) {
+            System.out.println("✅ Spelling dictionary pruned to " + wordCount + " words seen " + minCount +
+                    " times or more");
+        }
+    }
+
+    private void reset(int wordCapacity, int entryCapacity) {
+        wordIds.clear();
+        words = new String[Math.max(wordCapacity, 16)];
+        counts = new int[words.length];
+        filed = new boolean[words.length];
+        wordCount = 0;
+        wordBytes = 0;
+        entryCapacity = Math.max(entryCapacity, 64);
+        table = new int[Integer.highestOneBit(entryCapacity * 2 - 1) << 1];
+        Arrays.fill(table, -1);
+        entryHash = new int[entryCapacity];
+        entryWord = new int[entryCapacity];
+        entryNext = new int[entryCapacity];
+        entryCount = 0;
+    }
+
+    private int newWord(String word) {
+        if (wordCount == words.length) {
+            int capacity = wordCount + (wordCount >> 1);
+            words = Arrays.copyOf(words, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+            filed = Arrays.copyOf(filed, capacity);
+        }
+        int id = wordCount++;
+        words[id] = word;
+        counts[id] = 0;
+        filed[id] = false;
+        wordIds.put(word, id);
+        wordBytes += WORD_BYTES + word.length();
+        return id;
+    }
+
+    private void file(int id, Set<String> deletes) {
+        for (String delete : deletes) {
+            if (entryCount == entryHash.length) {
+                int capacity = entryCount + (entryCount >> 1);
+                entryHash = Arrays.copyOf(entryHash, capacity);
+                entryWord = Arrays.copyOf(entryWord, capacity);
+                entryNext = Arrays.copyOf(entryNext, capacity);
+            }
+            if (entryCount * 2 >= table.length) {
+                rehash(table.length * 2);
+            }
+            int e = entryCount++;
+            int hash = delete.hashCode();
+            int slot = spread(hash) & (table.length - 1);
+            entryHash[e] = hash;
+            entryWord[e] = id;
+            entryNext[e] = table[slot];
+            table[slot] = e;
+        }
+        filed[id] = true;
+    }
+
+    private void rehash(int capacity) {
+        table = new int[capacity];
+        Arrays.fill(table, -1);
+        for (int e = 0; e < entryCount; e++) {
+            int slot = spread(entryHash[e]) & (capacity - 1);
+            entryNext[e] = table[slot];
+            table[slot] = e;
+        }
+    }
+
+    private long estimatedBytes() {
+        return wordBytes + (long) entryCount * ENTRY_BYTES;
+    }
+
+    private Set<String> deletes(String word) {
+        return deletes(word.substring(0, Math.min(word.length(), PREFIX_LENGTH)), maxEdits);
+    }
+
+    // The key and every distinct string made by deleting up to edits of its letters, none empty
+    private static Set<String> deletes(String key, int edits) {
+        Set<String> deletes = new HashSet<>();
+        deletes.add(key);
+        addDeletes(key, edits, deletes);
+        return deletes;
+    }
+
+    private static void addDeletes(String key, int edits, Set<String> deletes) {
+        if (edits == 0 || key.length() <= 1) {
+            return;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            String delete = key.substring(0, i) + key.substring(i + 1);
+            if (deletes.add(delete)) {
+                addDeletes(delete, edits - 1, deletes);
+            }
+        }
+    }
+
+    /**
+     * Edit distance counting a swap of neighbouring letters as one edit (optimal string
+     * alignment), or max + 1 as soon as it is known to exceed max.
+     */
+    static int distance(String a, String b, int max) {
+        int n = a.length();
+        int m = b.length();
+        if (Math.abs(n - m) > max) {
+            return max + 1;
+        }
+        int[] beforePrevious = new int[m + 1];
+        int[] previous = new int[m + 1];
+        int[] current = new int[m + 1];
+        for (int j = 0; j <= m; j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= n; i++) {
+            current[0] = i;
+            int rowMin = i;
+            char ca = a.charAt(i - 1);
+            for (int j = 1; j <= m; j++) {
+                char cb = b.charAt(j - 1);
+                int d = Math.min(Math.min(previous[j], current[j - 1]) + 1, previous[j - 1] + (ca == cb ? 0 : 1));
+                if (i > 1 && j > 1 && ca == b.charAt(j - 2) && a.charAt(i - 2) == cb) {
+                    d = Math.min(d, beforePrevious[j - 2] + 1);
+                }
+                current[j] = d;
+                rowMin = Math.min(rowMin, d);
+            }
+            if (rowMin > max) {
+                return max + 1;
+            }
+            int[] swap = beforePrevious;
+            beforePrevious = previous;
+            previous = current;
+            current = swap;
+        }
+        return Math.min(previous[m], max + 1);
+    }
+
+    // Distinct words of a text worth correcting to: letters only, so ids and version numbers stay out
+    private static Set<String> words(CharSequence text) {
+        Set<String> words = new HashSet<>();
+        Tokenizer.tokenize(text, (token, position, startOffset, endOffset) -> {
+            if (isWord(token)) {
+                words.add(token);
+            }
+        });
+        return words;
+    }
+
+    static boolean isWord(String token) {
+        if (token.length() < MIN_WORD_LENGTH || token.length() > MAX_WORD_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < token.length(); i++) {
+            if (!Character.isLetter(token.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
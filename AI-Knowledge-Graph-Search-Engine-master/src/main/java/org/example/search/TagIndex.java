@@ -0,0 +1,279 @@
+package org.example.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Tags of a set of items with one {@link RoaringBitmap} per tag. Items are numbered
+ * densely as they are added and a removed item's number goes to the next new one, so
+ * the bitmaps stay compact; a filter is a few bitmap intersections, unions and
+ * differences, however many items carry the tags.
+ */
+public class TagIndex {
+    // Tags are stored comma separated, so a comma in a tag becomes a space
+    private static final char SEPARATOR = ',';
+    private static final String[] NO_TAGS = new String[0];
+
+    private final Map<String, RoaringBitmap> items = new HashMap<>();
+    private final EntityOrdinals ordinals = new EntityOrdinals();
+    private String[][] itemTags = new String[16][];
+    private RoaringBitmap live = new RoaringBitmap();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * A tag as it is indexed: trimmed, lower case and with runs of whitespace as a single
+     * space. Returns null for a blank tag.
+     */
+    public static String normalize(String tag) {
+        if (tag == null) {
+            return null;
+        }
+        StringBuilder normalized = new StringBuilder(tag.length());
+        boolean space = false;
+        for (int i = 0; i < tag.length(); i++) {
+            char c = tag.charAt(i);
+            if (Character.isWhitespace(c) || c == SEPARATOR) {
+                space = normalized.length() > 0;
+            } else {
+                if (space) {
+                    normalized.append(' ');
+                    space = false;
+                }
+                normalized.append(Character.toLowerCase(c));
+            }
+        }
+        return normalized.length() > 0 ? normalized.toString() : null;
+    }
+
+    // Normalized, without duplicates and in their original order
+    public static List<String> normalize(Collection<String> tags) {
+        Set<String> normalized = new LinkedHashSet<>();
+        if (tags != null) {
+            for (String tag : tags) {
+                String value = normalize(tag);
+                if (value != null) {
+                    normalized.add(value);
+                }
+            }
+        }
+        return new ArrayList<>(normalized);
+    }
+
+    // The stored form of a tag list, or null without tags
+    public static String join(Collection<String> tags) {
+        List<String> normalized = normalize(tags);
+        return normalized.isEmpty() ? null : String.join(String.valueOf(SEPARATOR), normalized);
+    }
+
+    public static List<String> split(String joined) {
+        if (joined == null || joined.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return normalize(Arrays.asList(joined.split(String.valueOf(SEPARATOR))));
+    }
+
+    // Replaces the item's tags; an item without tags is still counted as an item for NOT filters
+    public void put(String entityId, Collection<String> tags) {
+        String[] values = normalize(tags).toArray(NO_TAGS);
+        lock.writeLock().lock();
+        try {
+            int ordinal = ordinals.get(entityId);
+            if (ordinal < 0) {
+                ordinal = ordinals.acquire(entityId);
+                if (ordinals.limit() > itemTags.length) {
+                    itemTags = Arrays.copyOf(itemTags, itemTags.length * 2);
+                }
+                itemTags[ordinal] = NO_TAGS;
+                live.add(ordinal);
+            }
+            unlink(ordinal);
+            for (String tag : values) {
+                items.computeIfAbsent(tag, key -> new RoaringBitmap()).add(ordinal);
+            }
+            itemTags[ordinal] = values;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String entityId) {
+        lock.writeLock().lock();
+        try {
+            int ordinal = ordinals.get(entityId);
+            if (ordinal < 0) {
+                return;
+            }
+            unlink(ordinal);
+            live.remove(ordinal);
+            itemTags[ordinal] = null;
+            ordinals.release(entityId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Takes the item out of its tags' bitmaps, dropping tags no item has any more
+    private void unlink(int ordinal) {
+        for (String tag : itemTags[ordinal]) {
+            RoaringBitmap bitmap = items.get(tag);
+            bitmap.remove(ordinal);
+            if (bitmap.isEmpty()) {
+                items.remove(tag);
+            }
+        }
+    }
+
+    public List<String> getTags(String entityId) {
+        lock.readLock().lock();
+        try {
+            int ordinal = ordinals.get(entityId);
+            return ordinal >= 0 ? new ArrayList<>(Arrays.asList(itemTags[ordinal])) : new ArrayList<>();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ids of at most limit items having every tag of allOf, at least one of anyOf and none
+     * of noneOf, in no particular order. Empty allOf and anyOf impose nothing, so a filter
+     * with only noneOf returns every other item.
+     */
+    public List<String> filter(Collection<String> allOf, Collection<String> anyOf, Collection<String> noneOf,
+            int limit) {
+        lock.readLock().lock();
+        try {
+            RoaringBitmap matches = matches(allOf, anyOf, noneOf);
+            List<String> result = new ArrayList<>((int) Math.min(limit, matches.getCardinality()));
+            matches.forEach(ordinal -> {
+                if (result.size() < limit) {
+                    result.add(ordinals.entityId(ordinal));
+                }
+            });
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long count(Collection<String> allOf, Collection<String> anyOf, Collection<String> noneOf) {
+        lock.readLock().lock();
+        try {
+            return matches(allOf, anyOf, noneOf).getCardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private RoaringBitmap matches(Collection<String> allOf, Collection<String> anyOf, Collection<String> noneOf) {
+        // Intersect the rarest tags first so the running result is small from the start
+        List<RoaringBitmap> required = new ArrayList<>();
+        for (String tag : normalize(allOf)) {
+            RoaringBitmap bitmap = items.get(tag);
+            if (bitmap == null) {
+                return new RoaringBitmap();
+            }
+            required.add(bitmap);
+        }
+        required.sort((a, b) -> Long.compare(a.getCardinality(), b.getCardinality()));
+
+        RoaringBitmap result = null;
+        for (RoaringBitmap bitmap : required) {
+            result = result == null ? bitmap : RoaringBitmap.and(result, bitmap);
+            if (result.isEmpty()) {
+                return result;
+            }
+        }
+
+        List<String> optional = normalize(anyOf);
+        if (!optional.isEmpty()) {
+            RoaringBitmap any = new RoaringBitmap();
+            for (String tag : optional) {
+                RoaringBitmap bitmap = items.get(tag);
+                if (bitmap != null) {
+                    any = RoaringBitmap.or(any, bitmap);
+                }
+            }
+            result = result == null ? any : RoaringBitmap.and(result, any);
+        }
+
+        if (result == null) {
+            result = live;
+        }
+        for (String tag : normalize(noneOf)) {
+            RoaringBitmap bitmap = items.get(tag);
+            if (bitmap != null) {
+                result = RoaringBitmap.andNot(result, bitmap);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Items per tag, most used first, for at most limit tags.
+     */
+    public Map<String, Long> getTagCounts(int limit) {
+        List<Map.Entry<String, Long>> counts = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (Map.Entry<String, RoaringBitmap> entry : items.entrySet()) {
+                counts.add(Map.entry(entry.getKey(), entry.getValue().getCardinality()));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        counts.sort((a, b) -> !a.getValue().equals(b.getValue()) ? Long.compare(b.getValue(), a.getValue())
+                : a.getKey().compareTo(b.getKey()));
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> entry : counts.subList(0, Math.min(limit, counts.size()))) {
+            result.put(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ordinals.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Map<String, Object> getStatistics() {
+        lock.readLock().lock();
+        try {
+            long bytes = live.sizeInBytes();
+            for (RoaringBitmap bitmap : items.values()) {
+                bytes += bitmap.sizeInBytes();
+            }
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("items", ordinals.size());
+            stats.put("tags", items.size());
+            stats.put("bitmapBytes", bytes);
+            return stats;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            items.clear();
+            ordinals.clear();
+            itemTags = new String[16][];
+            live = new RoaringBitmap();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
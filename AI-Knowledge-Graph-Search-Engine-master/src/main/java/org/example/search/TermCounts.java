@@ -0,0 +1,212 @@
+package org.example.search;
+
+import java.util.Arrays;
+
+/**
+ * Counts of the terms of a text, in primitive arrays behind an open-addressing table, meant
+ * to be kept per thread and cleared between texts so counting allocates nothing once it
+ * has grown to the texts it sees. Terms are numbered 0, 1, ... in order of first
+ * occurrence, with the offsets of that occurrence.
+ */
+public final class TermCounts {
+    private String[] terms;
+    private int[] counts;
+    private int[] startOffsets;
+    private int[] endOffsets;
+    // Table slot of each term, so clearing touches only used slots
+    private int[] slots;
+    // Term number + 1 per slot, 0 when free
+    private int[] table;
+    private int size;
+    // Scratch heap for top(), reused across calls, and the weights it ranks by, null for counts
+    private int[] heap = new int[16];
+    private float[] ranking;
+
+    public TermCounts() {
+        this(64);
+    }
+
+    public TermCounts(int expectedTerms) {
+        int capacity = Math.max(8, Integer.highestOneBit(Math.max(expectedTerms, 1) - 1) << 1);
+        this.terms = new String[capacity];
+        this.counts = new int[capacity];
+        this.startOffsets = new int[capacity];
+        this.endOffsets = new int[capacity];
+        this.slots = new int[capacity];
+        this.table = new int[capacity * 2];
+    }
+
+    // Counts one occurrence and returns the term's number
+    public int add(String term, int startOffset, int endOffset) {
+        int mask = table.length - 1;
+        int slot = spread(term.hashCode()) & mask;
+        while (table[slot] != 0) {
+            int id = table[slot] - 1;
+            if (terms[id].equals(term)) {
+                counts[id]++;
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size == terms.length) {
+            grow();
+            return add(term, startOffset, endOffset);
+        }
+        int id = size++;
+        terms[id] = term;
+        counts[id] = 1;
+        startOffsets[id] = startOffset;
+        endOffsets[id] = endOffset;
+        slots[id] = slot;
+        table[slot] = id + 1;
+        return id;
+    }
+
+    public int add(String term) {
+        return add(term, -1, -1);
+    }
+
+    // The term's number, or -1 when it has not been counted
+    public int indexOf(String term) {
+        int mask = table.length - 1;
+        int slot = spread(term.hashCode()) & mask;
+        while (table[slot] != 0) {
+            int id = table[slot] - 1;
+            if (terms[id].equals(term)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String term(int id) {
+        return terms[id];
+    }
+
+    public int count(int id) {
+        return counts[id];
+    }
+
+    public int startOffset(int id) {
+        return startOffsets[id];
+    }
+
+    public int endOffset(int id) {
+        return endOffsets[id];
+    }
+
+    /**
+     * Puts the numbers of the k most frequent terms into result, most frequent first and
+     * the earlier seen first on a tie, and returns how many there were. A bounded heap
+     * keeps this O(n log k) without sorting every term.
+     */
+    public int top(int k, int[] result) {
+        return top(k, null, result);
+    }
+
+    // Like top(k, result) but ranked by a weight per term number, then by count
+    public int top(int k, float[] weights, int[] result) {
+        ranking = weights;
+        k = Math.min(Math.min(k, size), result.length);
+        if (k <= 0) {
+            return 0;
+        }
+        if (heap.length < k) {
+            heap = new int[Integer.highestOneBit(k) << 1];
+        }
+        // Min-heap on rank: its root is the weakest of the best k so far
+        int n = 0;
+        for (int id = 0; id < size; id++) {
+            if (n < k) {
+                heap[n] = id;
+                siftUp(n++);
+            } else if (ranksAbove(id, heap[0])) {
+                heap[0] = id;
+                siftDown(0, n);
+            }
+        }
+        // Popping the weakest fills the result from the back
+        for (int i = n - 1; i >= 0; i--) {
+            result[i] = heap[0];
+            heap[0] = heap[i];
+            siftDown(0, i);
+        }
+        ranking = null;
+        return n;
+    }
+
+    public void clear() {
+        for (int id = 0; id < size; id++) {
+            table[slots[id]] = 0;
+            terms[id] = null;
+        }
+        size = 0;
+    }
+
+    private boolean ranksAbove(int a, int b) {
+        if (ranking != null && ranking[a] != ranking[b]) {
+            return ranking[a] > ranking[b];
+        }
+        return counts[a] > counts[b] || counts[a] == counts[b] && a < b;
+    }
+
+    private void siftUp(int i) {
+        int id = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!ranksAbove(heap[parent], id)) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = id;
+    }
+
+    private void siftDown(int i, int n) {
+        int id = heap[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= n) {
+                break;
+            }
+            if (child + 1 < n && ranksAbove(heap[child], heap[child + 1])) {
+                child++;
+            }
+            if (!ranksAbove(id, heap[child])) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = id;
+    }
+
+    private void grow() {
+        int capacity = terms.length * 2;
+        terms = Arrays.copyOf(terms, capacity);
+        counts = Arrays.copyOf(counts, capacity);
+        startOffsets = Arrays.copyOf(startOffsets, capacity);
+        endOffsets = Arrays.copyOf(endOffsets, capacity);
+        slots = Arrays.copyOf(slots, capacity);
+        table = new int[capacity * 2];
+        int mask = table.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = spread(terms[id].hashCode()) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = id + 1;
+            slots[id] = slot;
+        }
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
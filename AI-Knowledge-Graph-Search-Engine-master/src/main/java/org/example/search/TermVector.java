@@ -0,0 +1,40 @@
+package org.example.search;
+
+import java.util.Arrays;
+
+/**
+ * The terms of one document's text field with where each occurs: start and end
+ * offsets into the field's stored text, in text order. Kept at indexing time so
+ * hits can be highlighted without analyzing their text again.
+ */
+public final class TermVector {
+    private final String[] terms;
+    // Term t's offsets are offsets[starts[t]] up to offsets[starts[t + 1]], as start, end pairs
+    private final int[] starts;
+    private final int[] offsets;
+
+    TermVector(String[] terms, int[] starts, int[] offsets) {
+        this.terms = terms;
+        this.starts = starts;
+        this.offsets = offsets;
+    }
+
+    public int size() {
+        return terms.length;
+    }
+
+    public String term(int index) {
+        return terms[index];
+    }
+
+    // Start and end offsets of every occurrence of the term at index, as pairs
+    public int[] offsets(int index) {
+        return Arrays.copyOfRange(offsets, starts[index], starts[index + 1]);
+    }
+
+    // Offsets of the term, or null if the document does not contain it
+    public int[] offsets(String term) {
+        int index = Arrays.binarySearch(terms, term);
+        return index >= 0 ? offsets(index) : null;
+    }
+}
@@ -0,0 +1,100 @@
+package org.example.search;
+
+/**
+ * Turns text into a fixed-size, unit-length vector without any model or network call.
+ *
+ * Each term, as the index's {@link Analyzer} makes it, is hashed into one of
+ * {@code dimensions} buckets with a hashed sign and a TF-IDF weight; its character
+ * trigrams are hashed the same way at a lower weight, so misspellings of a word
+ * ("password", "pasword") still land near each other. Cosine similarity of two embeddings is their dot product.
+ */
+public class TextEmbedder {
+    public static final int DEFAULT_DIMENSIONS = 256;
+    private static final float TRIGRAM_WEIGHT = 0.5f;
+
+    // Inverse document frequency of a term in the collection the text belongs to
+    public interface TermWeights {
+        float weight(String term);
+    }
+
+    private final int dimensions;
+    private final Analyzer analyzer;
+
+    public TextEmbedder(int dimensions) {
+        this(dimensions, Analyzer.SIMPLE);
+    }
+
+    // Term weights are looked up with the analyzer's terms, so it must be the index's analyzer
+    public TextEmbedder(int dimensions, Analyzer analyzer) {
+        if (dimensions < 8) {
+            throw new IllegalArgumentException("dimensions must be at least 8");
+        }
+        this.dimensions = dimensions;
+        this.analyzer = analyzer;
+    }
+
+    public int getDimensions() {
+        return dimensions;
+    }
+
+    /**
+     * Returns null when the text has no terms, since such a vector has no direction.
+     */
+    public float[] embed(CharSequence text, TermWeights weights) {
+        float[] vector = new float[dimensions];
+        boolean[] empty = { true };
+        analyzer.analyze(text, (term, position, startOffset, endOffset) -> {
+            float weight = weights != null ? weights.weight(term) : 1f;
+            if (weight <= 0f) {
+                return;
+            }
+            empty[0] = false;
+            add(vector, term.hashCode(), weight);
+
+            // Trigrams of the word padded with boundary markers: "<cr", "cra", ... "sh>"
+            int length = term.length();
+            if (length > 2) {
+                float trigramWeight = weight * TRIGRAM_WEIGHT / length;
+                for (int i = -1; i < length - 1; i++) {
+                    char a = i < 0 ? '<' : term.charAt(i);
+                    char b = term.charAt(i + 1);
+                    char c = i + 2 < length ? term.charAt(i + 2) : '>';
+                    add(vector, ((a * 31 + b) * 31 + c) * 0x9E3779B1, trigramWeight);
+                }
+            }
+        });
+        return empty[0] || !normalize(vector) ? null : vector;
+    }
+
+    private void add(float[] vector, int hash, float weight) {
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        // Signed hashing keeps collisions from biasing every dimension upwards
+        float sign = (hash & 0x80000000) == 0 ? 1f : -1f;
+        vector[(hash & 0x7FFFFFFF) % dimensions] += sign * weight;
+    }
+
+    private static boolean normalize(float[] vector) {
+        double sum = 0;
+        for (float value : vector) {
+            sum += value * value;
+        }
+        if (sum == 0) {
+            return false;
+        }
+        float scale = (float) (1 / Math.sqrt(sum));
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] *= scale;
+        }
+        return true;
+    }
+
+    public static float dot(float[] a, float[] b) {
+        float sum = 0f;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,60 @@
+package org.example.search;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Single-pass tokenizer underneath the {@link Analyzer}.
+ * Splits on anything that is not a letter or digit and lowercases as it goes,
+ * so text is never copied or regex-rewritten before tokenizing.
+ */
+public class Tokenizer {
+    public static final int MAX_TOKEN_LENGTH = 64;
+
+    public interface TokenHandler {
+        void onToken(String term, int position, int startOffset, int endOffset);
+    }
+
+    // Receives each token in the caller's buffer, which is overwritten by the next one
+    public interface CharTokenHandler {
+        void onToken(char[] buffer, int length, int position, int startOffset, int endOffset);
+    }
+
+    public static void tokenize(CharSequence text, TokenHandler handler) {
+        tokenize(text, new char[MAX_TOKEN_LENGTH], (buffer, length, position, startOffset, endOffset) ->
+                handler.onToken(new String(buffer, 0, length), position, startOffset, endOffset));
+    }
+
+    // Tokens longer than MAX_TOKEN_LENGTH are cut to it; buffer must hold that many chars
+    public static void tokenize(CharSequence text, char[] buffer, CharTokenHandler handler) {
+        if (text == null) {
+            return;
+        }
+
+        int length = 0;
+        int start = -1;
+        int position = 0;
+
+        for (int i = 0, n = text.length(); i <= n; i++) {
+            char c = i < n ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                if (start < 0) {
+                    start = i;
+                }
+                if (length < MAX_TOKEN_LENGTH) {
+                    buffer[length++] = Character.toLowerCase(c);
+                }
+            } else if (start >= 0) {
+                handler.onToken(buffer, length, position++, start, i);
+                length = 0;
+                start = -1;
+            }
+        }
+    }
+
+    public static List<String> tokenize(CharSequence text) {
+        List<String> terms = new ArrayList<>();
+        tokenize(text, (term, position, startOffset, endOffset) -> terms.add(term));
+        return terms;
+    }
+}
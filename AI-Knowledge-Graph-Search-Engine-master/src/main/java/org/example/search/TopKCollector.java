@@ -0,0 +1,104 @@
+package org.example.search;
+
+/**
+ * Keeps the k highest scoring documents in a min-heap backed by primitive arrays,
+ * so collecting a candidate never allocates.
+ */
+public class TopKCollector {
+    private final int[] docs;
+    private final float[] scores;
+    private int size;
+    private int totalHits;
+
+    public TopKCollector(int k) {
+        this.docs = new int[Math.max(k, 1)];
+        this.scores = new float[Math.max(k, 1)];
+    }
+
+    public void collect(int doc, float score) {
+        totalHits++;
+        if (size < docs.length) {
+            docs[size] = doc;
+            scores[size] = score;
+            siftUp(size++);
+        } else if (lessThan(scores[0], docs[0], score, doc)) {
+            docs[0] = doc;
+            scores[0] = score;
+            siftDown(0);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getTotalHits() {
+        return totalHits;
+    }
+
+    // Lowest score currently kept; a candidate must beat this to enter a full heap
+    public float minCompetitiveScore() {
+        return size < docs.length ? Float.NEGATIVE_INFINITY : scores[0];
+    }
+
+    /**
+     * Drains the heap into the given arrays ordered by descending score.
+     * Returns the number of entries written.
+     */
+    public int drainTo(int[] outDocs, float[] outScores) {
+        int count = size;
+        for (int i = count - 1; i >= 0; i--) {
+            outDocs[i] = docs[0];
+            outScores[i] = scores[0];
+            size--;
+            if (size > 0) {
+                docs[0] = docs[size];
+                scores[0] = scores[size];
+                siftDown(0);
+            }
+        }
+        return count;
+    }
+
+    private void siftUp(int index) {
+        int doc = docs[index];
+        float score = scores[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!lessThan(score, doc, scores[parent], docs[parent])) {
+                break;
+            }
+            docs[index] = docs[parent];
+            scores[index] = scores[parent];
+            index = parent;
+        }
+        docs[index] = doc;
+        scores[index] = score;
+    }
+
+    private void siftDown(int index) {
+        int doc = docs[index];
+        float score = scores[index];
+        int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            int right = child + 1;
+            if (right < size && lessThan(scores[right], docs[right], scores[child], docs[child])) {
+                child = right;
+            }
+            if (!lessThan(scores[child], docs[child], score, doc)) {
+                break;
+            }
+            docs[index] = docs[child];
+            scores[index] = scores[child];
+            index = child;
+        }
+        docs[index] = doc;
+        scores[index] = score;
+    }
+
+    // Ties go to the lower doc id so results are stable between runs
+    private static boolean lessThan(float scoreA, int docA, float scoreB, int docB) {
+        return scoreA < scoreB || (scoreA == scoreB && docA > docB);
+    }
+}
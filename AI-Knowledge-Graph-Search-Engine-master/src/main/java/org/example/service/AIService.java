@@ -1,15 +1,83 @@
 package org.example.service;
 
+import org.example.config.AppConfig;
 import org.example.model.Ticket;
 import org.example.model.KnowledgeBase;
 import org.example.model.enums.Priority;
 import org.example.model.enums.Severity;
-
+import org.example.repository.TicketRepository;
+import org.example.search.Analyzer;
+import org.example.search.CorpusStatistics;
+import org.example.search.ResultCache;
+import org.example.search.SearchEngine;
+import org.example.search.TermCounts;
+import org.example.search.Tokenizer;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.example.service.TicketClassifier.CATEGORY;
+import static org.example.service.TicketClassifier.PRIORITY;
+import static org.example.service.TicketClassifier.SEVERITY;
 
 public class AIService {
+    private static final int KEYWORD_LIMIT = 10;
+    // Summaries by content hash, shared by all instances so a text is summarized once
+    private static final ResultCache<String> summaries = new ResultCache<>(
+            AppConfig.getInstance().getIntProperty("ai.summary.cacheSize", 10000),
+            AppConfig.getInstance().getIntProperty("ai.summary.cacheSize", 10000), summary -> 1);
+    // One thread's term counts and handlers, cleared after each call so keywords and similarities allocate no maps
+    private static final ThreadLocal<TermScratch> termScratch = ThreadLocal.withInitial(TermScratch::new);
+
+    private static final class TermScratch {
+        final TermCounts first = new TermCounts();
+        final TermCounts second = new TermCounts();
+        final int[] top = new int[KEYWORD_LIMIT];
+        float[] weights = new float[64];
+        final Tokenizer.TokenHandler keywords = (term, position, startOffset, endOffset) -> {
+            if (endOffset - startOffset > 4) { // Only consider longer words
+                first.add(term, startOffset, endOffset);
+            }
+        };
+        final Tokenizer.TokenHandler firstTerms = (term, position, startOffset, endOffset) -> first.add(term);
+        final Tokenizer.TokenHandler secondTerms = (term, position, startOffset, endOffset) -> second.add(term);
+    }
+
+    public interface BatchProgress {
+        void onProgress(long analyzed, long written, double ticketsPerSecond);
+    }
+
+    // The search index's analyzer, so keywords and similarities use the terms search matches on
+    private final Analyzer analyzer;
+    private final TriageRules rules;
+    // Learned triage, asked before the rules once a model has been trained
+    private final TicketClassifier classifier;
+    // Document frequencies of the indexed tickets and articles, so keywords are weighted by TF-IDF
+    private final CorpusStatistics corpus;
+    // Takes the summaries bulk triage writes, so search results carry them too
+    private final SearchEngine searchEngine;
+    private final TextRankSummarizer summarizer;
+    private final int summaryLength;
 
     public AIService() {
+        this.analyzer = Analyzer.getInstance();
+        this.classifier = TicketClassifier.getInstance();
+        this.searchEngine = SearchEngine.getInstance();
+        this.corpus = searchEngine.getCorpusStatistics();
+        AppConfig config = AppConfig.getInstance();
+        this.summarizer = new TextRankSummarizer(analyzer, config.getIntProperty("ai.summary.maxSentences", 100),
+                config.getIntProperty("ai.summary.maxIterations", 50));
+        this.summaryLength = config.getIntProperty("ai.summary.maxLength", 200);
+        Map<String, Set<String>> allowed = new HashMap<>();
+        allowed.put(PRIORITY, Arrays.stream(Priority.values()).map(Enum::name).collect(Collectors.toSet()));
+        allowed.put(SEVERITY, Arrays.stream(Severity.values()).map(Enum::name).collect(Collectors.toSet()));
+        this.rules = TriageRules.fromConfig(config, List.of(CATEGORY, PRIORITY, SEVERITY), allowed);
     }
 
     public String classifyTicket(String text) {
@@ -17,20 +85,7 @@ public class AIService {
     }
 
     public String classifyTicket(String title, String description) {
-        String text = (title + " " + description).toLowerCase();
-
-        // Simple keyword-based classification
-        if (text.contains("bug") || text.contains("error") || text.contains("crash")) {
-            return "BUG";
-        } else if (text.contains("feature") || text.contains("enhancement") || text.contains("improve")) {
-            return "FEATURE_REQUEST";
-        } else if (text.contains("question") || text.contains("how to") || text.contains("help")) {
-            return "QUESTION";
-        } else if (text.contains("urgent") || text.contains("critical") || text.contains("down")) {
-            return "INCIDENT";
-        }
-
-        return "GENERAL";
+        return category(classifier.features(title, description), rules.score(title, description));
     }
 
     public Priority suggestPriority(String text) {
@@ -38,34 +93,39 @@ public class AIService {
     }
 
     public Priority suggestPriority(String title, String description) {
-        String text = (title + " " + description).toLowerCase();
-
-        // Priority keywords
-        if (text.contains("critical") || text.contains("urgent") || text.contains("production down") ||
-                text.contains("security") || text.contains("data loss")) {
-            return Priority.CRITICAL;
-        } else if (text.contains("high") || text.contains("important") || text.contains("asap") ||
-                text.contains("blocking")) {
-            return Priority.HIGH;
-        } else if (text.contains("low") || text.contains("minor") || text.contains("cosmetic")) {
-            return Priority.LOW;
-        }
-
-        return Priority.MEDIUM;
+        return priority(classifier.features(title, description), rules.score(title, description));
     }
 
     public Severity suggestSeverity(String title, String description) {
-        String text = (title + " " + description).toLowerCase();
-
-        if (text.contains("blocker") || text.contains("cannot") || text.contains("unable to")) {
-            return Severity.BLOCKER;
-        } else if (text.contains("major") || text.contains("significant") || text.contains("important")) {
-            return Severity.MAJOR;
-        } else if (text.contains("minor") || text.contains("small") || text.contains("cosmetic")) {
-            return Severity.MINOR;
-        }
+        return severity(classifier.features(title, description), rules.score(title, description));
+    }
+
+    /**
+     * Trains the triage model on resolved and closed tickets; see {@link TicketClassifier#train()}.
+     */
+    public Map<String, Object> trainModel() throws IOException, InterruptedException {
+        return classifier.train();
+    }
+
+    private String category(TicketFeatures features, float[] scores) {
+        String category = label(CATEGORY, features, scores);
+        return category != null ? category : "GENERAL";
+    }
+
+    private Priority priority(TicketFeatures features, float[] scores) {
+        String priority = label(PRIORITY, features, scores);
+        return priority != null ? Priority.valueOf(priority) : Priority.MEDIUM;
+    }
+
+    private Severity severity(TicketFeatures features, float[] scores) {
+        String severity = label(SEVERITY, features, scores);
+        return severity != null ? Severity.valueOf(severity) : Severity.LOW;
+    }
 
-        return Severity.LOW;
+    // The model's label when it is confident, else the rules'
+    private String label(String dimension, TicketFeatures features, float[] scores) {
+        String label = classifier.predict(dimension, features);
+        return label != null ? label : rules.best(scores, dimension);
     }
 
     public String suggestAssignee(Ticket ticket) {
@@ -95,74 +155,245 @@ public class AIService {
         return new ArrayList<>();
     }
 
+    // Jaccard similarity of the two tickets' sets of terms, the shingles MinHashIndex compares too
     public double calculateSimilarity(Ticket ticket1, Ticket ticket2) {
-        // Simple word-based similarity
-        Set<String> words1 = extractWords(ticket1.getTitle() + " " + ticket1.getDescription());
-        Set<String> words2 = extractWords(ticket2.getTitle() + " " + ticket2.getDescription());
-
-        Set<String> intersection = new HashSet<>(words1);
-        intersection.retainAll(words2);
-
-        Set<String> union = new HashSet<>(words1);
-        union.addAll(words2);
-
-        if (union.isEmpty())
-            return 0.0;
-        return (double) intersection.size() / union.size();
+        TermScratch scratch = termScratch.get();
+        try {
+            analyzer.analyze(ticket1.getTitle(), scratch.firstTerms);
+            analyzer.analyze(ticket1.getDescription(), scratch.firstTerms);
+            analyzer.analyze(ticket2.getTitle(), scratch.secondTerms);
+            analyzer.analyze(ticket2.getDescription(), scratch.secondTerms);
+
+            int intersection = 0;
+            for (int id = 0; id < scratch.second.size(); id++) {
+                if (scratch.first.indexOf(scratch.second.term(id)) >= 0) {
+                    intersection++;
+                }
+            }
+            int union = scratch.first.size() + scratch.second.size() - intersection;
+
+            if (union == 0)
+                return 0.0;
+            return (double) intersection / union;
+        } finally {
+            scratch.first.clear();
+            scratch.second.clear();
+        }
     }
 
-    private Set<String> extractWords(String text) {
-        String[] words = text.toLowerCase()
-                .replaceAll("[^a-z0-9\\s]", "")
-                .split("\\s+");
-
-        Set<String> wordSet = new HashSet<>();
-        for (String word : words) {
-            if (word.length() > 3) { // Filter out short words
-                wordSet.add(word);
+    /**
+     * The words that best set the text apart: counted by term, so "crash", "crashes" and
+     * "crashing" count as one word, and weighted by TF-IDF against all indexed tickets and
+     * articles so words found everywhere ("please", "thanks") rank low. Each is returned
+     * as it was first written, in lower case.
+     */
+    public List<String> extractKeywords(String text) {
+        TermScratch scratch = termScratch.get();
+        try {
+            int count = topKeywords(scratch, text);
+            List<String> keywords = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int id = scratch.top[i];
+                keywords.add(text.substring(scratch.first.startOffset(id), scratch.first.endOffset(id)).toLowerCase());
             }
+            return keywords;
+        } finally {
+            scratch.first.clear();
         }
-        return wordSet;
     }
 
-    public List<String> extractKeywords(String text) {
-        Map<String, Integer> wordFrequency = new HashMap<>();
-        String[] words = text.toLowerCase()
-                .replaceAll("[^a-z0-9\\s]", "")
-                .split("\\s+");
-
-        for (String word : words) {
-            if (word.length() > 4) { // Only consider longer words
-                wordFrequency.put(word, wordFrequency.getOrDefault(word, 0) + 1);
+    // The analyzed terms of the text's keywords with their TF-IDF weights, best first
+    public Map<String, Double> extractKeywordWeights(String text) {
+        TermScratch scratch = termScratch.get();
+        try {
+            int count = topKeywords(scratch, text);
+            Map<String, Double> weights = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                int id = scratch.top[i];
+                weights.put(scratch.first.term(id), (double) scratch.weights[id]);
             }
+            return weights;
+        } finally {
+            scratch.first.clear();
         }
+    }
 
-        // Sort by frequency and return top keywords
-        return wordFrequency.entrySet().stream()
-                .sorted((e1, e2) -> e2.getValue().compareTo(e1.getValue()))
-                .limit(10)
-                .map(Map.Entry::getKey)
-                .toList();
+    // Counts the text's longer words and puts the best by TF-IDF into scratch.top; linear in the text's length
+    private int topKeywords(TermScratch scratch, String text) {
+        analyzer.analyze(text, scratch.keywords);
+        TermCounts terms = scratch.first;
+        if (scratch.weights.length < terms.size()) {
+            scratch.weights = new float[Integer.highestOneBit(terms.size()) << 1];
+        }
+        corpus.idf(terms, scratch.weights);
+        // Sublinear term frequency, so a word repeated in one text cannot outweigh a rare one
+        for (int id = 0; id < terms.size(); id++) {
+            scratch.weights[id] *= 1 + (float) Math.log(terms.count(id));
+        }
+        return terms.top(KEYWORD_LIMIT, scratch.weights, scratch.top);
     }
 
+    /**
+     * The text when it is at most ai.summary.maxLength characters, else its most central
+     * sentences by TextRank. Summaries are cached by a hash of the text.
+     */
     public String generateSummary(String text) {
-        // Simple summary: first 200 characters
-        if (text.length() <= 200) {
+        if (text == null || text.length() <= summaryLength) {
             return text;
         }
-        return text.substring(0, 197) + "...";
+        return summaries.get(contentHash(text), () -> summarizer.summarize(text, summaryLength));
+    }
+
+    /**
+     * The ticket's summary, made from its description only when the stored one was made
+     * from different text; the ticket is updated so saving it stores the summary.
+     */
+    public String summarize(Ticket ticket) {
+        String hash = contentHash(ticket.getDescription());
+        if (ticket.getSummary() == null || !hash.equals(ticket.getSummaryHash())) {
+            ticket.setSummary(generateSummary(ticket.getDescription()));
+            ticket.setSummaryHash(hash);
+        }
+        return ticket.getSummary();
+    }
+
+    // 64-bit FNV-1a of the text and its length, in hex
+    static String contentHash(String text) {
+        if (text == null) {
+            return "";
+        }
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < text.length(); i++) {
+            hash ^= text.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+        return Long.toHexString(hash) + ":" + Integer.toHexString(text.length());
     }
 
     public Map<String, Object> analyzeTicket(Ticket ticket) {
         Map<String, Object> analysis = new HashMap<>();
 
-        analysis.put("classification", classifyTicket(ticket.getTitle(), ticket.getDescription()));
-        analysis.put("suggestedPriority", suggestPriority(ticket.getTitle(), ticket.getDescription()));
-        analysis.put("suggestedSeverity", suggestSeverity(ticket.getTitle(), ticket.getDescription()));
+        // The text is featurized and scored once for the category, priority and severity together
+        TicketFeatures features = classifier.features(ticket.getTitle(), ticket.getDescription());
+        float[] scores = rules.score(ticket.getTitle(), ticket.getDescription());
+        analysis.put("classification", category(features, scores));
+        analysis.put("suggestedPriority", priority(features, scores));
+        analysis.put("suggestedSeverity", severity(features, scores));
         analysis.put("suggestedAssignee", suggestAssignee(ticket));
         analysis.put("keywords", extractKeywords(ticket.getTitle() + " " + ticket.getDescription()));
-        analysis.put("summary", generateSummary(ticket.getDescription()));
+        analysis.put("summary", summarize(ticket));
 
         return analysis;
     }
+
+    /**
+     * Triage for a whole backlog: the category, priority, severity, keywords and summary of
+     * every ticket in the stream, stored on the tickets as suggestions. Tickets are taken
+     * ai.batch.size at a time and analyzed across a fork-join pool of ai.batch.threads
+     * workers (all cores when 0) while the previous batch is written in one repository
+     * call. The progress callback hears after every batch; the result has the counts,
+     * time and throughput. Interrupting the calling thread stops after the batch in hand.
+     */
+    public Map<String, Object> analyzeAll(Stream<Ticket> tickets, BatchProgress progress) {
+        AppConfig config = AppConfig.getInstance();
+        int batchSize = Math.max(1, config.getIntProperty("ai.batch.size", 1000));
+        int threads = config.getIntProperty("ai.batch.threads", 0);
+        if (threads <= 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        ForkJoinPool pool = new ForkJoinPool(threads, forkJoinPool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("ai-batch-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+
+        TicketRepository repository = new TicketRepository();
+        long start = System.nanoTime();
+        long analyzed = 0;
+        long written = 0;
+        Iterator<Ticket> iterator = tickets.iterator();
+        try {
+            List<Ticket> batch = nextBatch(iterator, batchSize);
+            ForkJoinTask<List<Map<String, Object>>> analysis = analyze(pool, batch);
+            while (!batch.isEmpty()) {
+                List<Map<String, Object>> suggestions = analysis.join();
+                analyzed += suggestions.size();
+                if (Thread.currentThread().isInterrupted()) {
+                    batch = Collections.emptyList();
+                } else {
+                    // The pool works on the next batch while this thread writes the last one
+                    batch = nextBatch(iterator, batchSize);
+                    analysis = analyze(pool, batch);
+                }
+                written += repository.saveSuggestions(suggestions);
+                for (Map<String, Object> row : suggestions) {
+                    searchEngine.updateTicketSummary((String) row.get("id"), (String) row.get("summary"),
+                            (String) row.get("summaryHash"));
+                }
+                if (progress != null) {
+                    progress.onProgress(analyzed, written, throughput(analyzed, start));
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+            tickets.close();
+        }
+
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("analyzed", analyzed);
+        result.put("written", written);
+        result.put("threads", threads);
+        result.put("elapsedMs", elapsedMs);
+        result.put("ticketsPerSecond", throughput(analyzed, start));
+        System.out.println("✅ Analyzed " + analyzed + " tickets in " + elapsedMs + " ms (" +
+                Math.round(throughput(analyzed, start)) + "/s), " + written + " updated");
+        return result;
+    }
+
+    /**
+     * {@link #analyzeAll} over every ticket matching the criteria (as for advanced search),
+     * read from the repository a batch at a time.
+     */
+    public Map<String, Object> analyzeAll(Map<String, Object> criteria, BatchProgress progress) {
+        int batchSize = Math.max(1, AppConfig.getInstance().getIntProperty("ai.batch.size", 1000));
+        return analyzeAll(new TicketRepository().streamByCriteria(criteria, batchSize), progress);
+    }
+
+    private ForkJoinTask<List<Map<String, Object>>> analyze(ForkJoinPool pool, List<Ticket> batch) {
+        // A parallel stream started inside the pool splits its work across the pool's workers
+        return pool.submit(() -> batch.parallelStream().map(this::suggestions).collect(Collectors.toList()));
+    }
+
+    // The stored form of a ticket's triage, as written by TicketRepository.saveSuggestions
+    private Map<String, Object> suggestions(Ticket ticket) {
+        String title = ticket.getTitle() != null ? ticket.getTitle() : "";
+        String description = ticket.getDescription() != null ? ticket.getDescription() : "";
+        TicketFeatures features = classifier.features(title, description);
+        float[] scores = rules.score(title, description);
+        Map<String, Object> suggestions = new HashMap<>();
+        suggestions.put("id", ticket.getId());
+        suggestions.put("category", category(features, scores));
+        suggestions.put("priority", priority(features, scores).name());
+        suggestions.put("severity", severity(features, scores).name());
+        suggestions.put("keywords", extractKeywords(title + " " + description));
+        suggestions.put("summary", summarize(ticket));
+        suggestions.put("summaryHash", ticket.getSummaryHash());
+        suggestions.put("analyzedAt", LocalDateTime.now().toString());
+        return suggestions;
+    }
+
+    private static List<Ticket> nextBatch(Iterator<Ticket> tickets, int size) {
+        List<Ticket> batch = new ArrayList<>(size);
+        while (batch.size() < size && tickets.hasNext()) {
+            batch.add(tickets.next());
+        }
+        return batch;
+    }
+
+    private static double throughput(long count, long startNanos) {
+        long elapsed = System.nanoTime() - startNanos;
+        return elapsed > 0 ? count * 1e9 / elapsed : 0;
+    }
 }
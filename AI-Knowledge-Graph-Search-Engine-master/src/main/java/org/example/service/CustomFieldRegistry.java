@@ -0,0 +1,234 @@
+package org.example.service;
+
+import org.example.exception.ValidationException;
+import org.example.model.CustomField;
+import org.example.model.enums.CustomFieldType;
+import org.example.repository.ChangeEvent;
+import org.example.repository.ChangeFeed;
+import org.example.repository.CustomFieldRepository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * The custom ticket fields teams have defined, and the rules for their values. Values
+ * are kept in a canonical form per type, so stored values compare as the type does:
+ * whole numbers and decimals as written by Java, dates as yyyy-MM-dd and date-times
+ * as yyyy-MM-ddTHH:mm:ss, enum values as defined, and strings trimmed with single spaces.
+ */
+public class CustomFieldRegistry {
+    private static final Pattern NAME = Pattern.compile("[a-zA-Z][a-zA-Z0-9_]{0,63}");
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+    private static final int MAX_STRING_LENGTH = 500;
+
+    private static CustomFieldRegistry instance;
+
+    private final CustomFieldRepository repository;
+    private final Map<String, CustomField> fields = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+
+    private CustomFieldRegistry() {
+        this.repository = new CustomFieldRepository();
+        ChangeFeed.getInstance().subscribe(this::onChange);
+    }
+
+    public static synchronized CustomFieldRegistry getInstance() {
+        if (instance == null) {
+            instance = new CustomFieldRegistry();
+        }
+        return instance;
+    }
+
+    /**
+     * Adds a field or updates its label and allowed values. A field's type cannot change,
+     * since the values tickets already have would no longer parse.
+     */
+    public CustomField define(CustomField field) {
+        if (field.getName() == null || !NAME.matcher(field.getName()).matches()) {
+            throw new ValidationException("Custom field name must start with a letter and contain only " +
+                    "letters, digits and underscores: " + field.getName());
+        }
+        if (field.getType() == null) {
+            throw new ValidationException("Custom field type is required");
+        }
+        CustomField existing = getField(field.getName());
+        if (existing != null && existing.getType() != field.getType()) {
+            throw new ValidationException("Custom field " + field.getName() + " is already of type " +
+                    existing.getType());
+        }
+        if (field.getType() == CustomFieldType.ENUM) {
+            Set<String> allowed = new LinkedHashSet<>();
+            for (String value : field.getAllowedValues() != null ? field.getAllowedValues() : new ArrayList<String>()) {
+                String canonical = canonicalString(value);
+                if (canonical != null) {
+                    allowed.add(canonical);
+                }
+            }
+            if (allowed.isEmpty()) {
+                throw new ValidationException("Enum custom field " + field.getName() + " needs allowed values");
+            }
+            field.setAllowedValues(new ArrayList<>(allowed));
+        } else {
+            field.setAllowedValues(new ArrayList<>());
+        }
+        if (field.getLabel() == null || field.getLabel().isBlank()) {
+            field.setLabel(field.getName());
+        }
+        return repository.save(field);
+    }
+
+    public void remove(String name) {
+        repository.delete(name);
+    }
+
+    public CustomField getField(String name) {
+        load();
+        return name != null ? fields.get(name) : null;
+    }
+
+    public CustomField requireField(String name) {
+        CustomField field = getField(name);
+        if (field == null) {
+            throw new ValidationException("Unknown custom field: " + name);
+        }
+        return field;
+    }
+
+    public List<CustomField> getFields() {
+        load();
+        List<CustomField> result = new ArrayList<>(fields.values());
+        result.sort(Comparator.comparing(CustomField::getName));
+        return result;
+    }
+
+    /**
+     * The canonical form of a value for the field, or null for a blank value, which
+     * clears the field. Throws a ValidationException if the value does not fit the type.
+     */
+    public String canonicalize(CustomField field, String value) {
+        String trimmed = canonicalString(value);
+        if (trimmed == null) {
+            return null;
+        }
+        try {
+            switch (field.getType()) {
+                case LONG:
+                    return Long.toString(Long.parseLong(trimmed));
+                case DOUBLE:
+                    double number = Double.parseDouble(trimmed);
+                    if (Double.isNaN(number) || Double.isInfinite(number)) {
+                        throw new NumberFormatException(trimmed);
+                    }
+                    return Double.toString(number == 0 ? 0.0 : number);
+                case DATE:
+                    if (trimmed.length() == 10) {
+                        return LocalDate.parse(trimmed).toString();
+                    }
+                    return LocalDateTime.parse(trimmed).truncatedTo(ChronoUnit.SECONDS).format(DATE_TIME);
+                case ENUM:
+                    for (String allowed : field.getAllowedValues()) {
+                        if (allowed.equalsIgnoreCase(trimmed)) {
+                            return allowed;
+                        }
+                    }
+                    throw new ValidationException(field.getLabel() + " must be one of " + field.getAllowedValues());
+                default:
+                    if (trimmed.length() > MAX_STRING_LENGTH) {
+                        throw new ValidationException(field.getLabel() + " must be at most " + MAX_STRING_LENGTH +
+                                " characters");
+                    }
+                    return trimmed;
+            }
+        } catch (NumberFormatException | DateTimeParseException e) {
+            throw new ValidationException(field.getLabel() + " is not a valid " +
+                    field.getType().name().toLowerCase() + ": " + value);
+        }
+    }
+
+    // Canonical values for a ticket; blank values and values of fields since removed are dropped
+    public Map<String, String> canonicalize(Map<String, String> values) {
+        Map<String, String> canonical = new LinkedHashMap<>();
+        if (values != null) {
+            for (Map.Entry<String, String> entry : values.entrySet()) {
+                CustomField field = getField(entry.getKey());
+                String value = field != null ? canonicalize(field, entry.getValue()) : null;
+                if (value != null) {
+                    canonical.put(entry.getKey(), value);
+                }
+            }
+        }
+        return canonical;
+    }
+
+    /**
+     * Orders two canonical values of the field. Strings and enum values compare ignoring
+     * case; a date and a date-time compare by day, so a day bound covers the whole day.
+     */
+    public int compare(CustomField field, String a, String b) {
+        switch (field.getType()) {
+            case LONG:
+                return Long.compare(Long.parseLong(a), Long.parseLong(b));
+            case DOUBLE:
+                return Double.compare(Double.parseDouble(a), Double.parseDouble(b));
+            case DATE:
+                int length = Math.min(a.length(), b.length());
+                return a.substring(0, length).compareTo(b.substring(0, length));
+            default:
+                return a.compareToIgnoreCase(b);
+        }
+    }
+
+    public boolean supportsRange(CustomField field) {
+        return field.getType() == CustomFieldType.LONG || field.getType() == CustomFieldType.DOUBLE
+                || field.getType() == CustomFieldType.DATE;
+    }
+
+    private static String canonicalString(String value) {
+        if (value == null) {
+            return null;
+        }
+        String trimmed = value.trim().replaceAll("\\s+", " ");
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    private void load() {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (!loaded) {
+                try {
+                    for (CustomField field : repository.findAll()) {
+                        fields.putIfAbsent(field.getName(), field);
+                    }
+                    loaded = true;
+                } catch (Exception e) {
+                    System.err.println("❌ Error loading custom fields: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void onChange(ChangeEvent event) {
+        if (event.getEntityType() != ChangeEvent.EntityType.CUSTOM_FIELD) {
+            return;
+        }
+        if (event.getOperation() == ChangeEvent.Operation.DELETE) {
+            fields.remove(event.getEntityId());
+        } else {
+            fields.put(event.getEntityId(), (CustomField) event.getEntity());
+        }
+    }
+}
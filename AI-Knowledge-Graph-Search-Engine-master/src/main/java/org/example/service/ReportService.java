@@ -4,6 +4,10 @@ import org.example.model.Ticket;
 import org.example.model.AuditLog;
 import org.example.repository.TicketRepository;
 import org.example.repository.AuditRepository;
+import org.example.search.FacetResults;
+import org.example.search.Query;
+import org.example.search.SearchDocuments;
+import org.example.search.SearchEngine;
 import org.example.util.ExportUtils;
 import org.example.util.DateUtils;
 
@@ -14,38 +18,38 @@ import java.util.*;
 public class ReportService {
     private final TicketRepository ticketRepository;
     private final AuditRepository auditRepository;
+    private final SearchEngine searchEngine;
 
     public ReportService() {
         this.ticketRepository = new TicketRepository();
         this.auditRepository = new AuditRepository();
+        this.searchEngine = SearchEngine.getInstance();
     }
 
     public String generateTicketReport() {
         return generateTicketReport(LocalDateTime.now().minusDays(30), LocalDateTime.now());
     }
 
+    // Tickets created in [startDate, endDate); no ticket is loaded to count them
     public String generateTicketReport(LocalDateTime startDate, LocalDateTime endDate) {
-        List<Ticket> tickets = ticketRepository.findAll();
-
-        // Filter by date range
-        List<Ticket> filteredTickets = tickets.stream()
-                .filter(t -> t.getCreatedAt() != null &&
-                        t.getCreatedAt().isAfter(startDate) &&
-                        t.getCreatedAt().isBefore(endDate))
-                .toList();
+        Map<String, Long> statusCounts;
+        long total;
+        if (searchEngine.isReady()) {
+            // Reads only the index's hour buckets between the two dates
+            FacetResults facets = searchEngine.ticketFacets(new Query.Range(SearchDocuments.CREATED_AT,
+                    startDate.toString(), true, endDate.toString(), false), List.of(SearchDocuments.STATUS));
+            statusCounts = facets.getCounts(SearchDocuments.STATUS);
+            total = facets.getTotalHits();
+        } else {
+            statusCounts = ticketRepository.countByStatusCreatedBetween(startDate, endDate);
+            total = statusCounts.values().stream().mapToLong(Long::longValue).sum();
+        }
 
         StringBuilder report = new StringBuilder();
         report.append("TICKET REPORT\n");
         report.append("Period: ").append(DateUtils.formatDate(startDate))
                 .append(" to ").append(DateUtils.formatDate(endDate)).append("\n");
-        report.append("Total Tickets: ").append(filteredTickets.size()).append("\n\n");
-
-        // Status breakdown
-        Map<String, Long> statusCounts = new HashMap<>();
-        for (Ticket ticket : filteredTickets) {
-            String status = ticket.getStatus();
-            statusCounts.put(status, statusCounts.getOrDefault(status, 0L) + 1);
-        }
+        report.append("Total Tickets: ").append(total).append("\n\n");
 
         report.append("Status Breakdown:\n");
         statusCounts
@@ -0,0 +1,166 @@
+package org.example.service;
+
+import org.example.config.AppConfig;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs independent search sources concurrently on a shared worker pool.
+ *
+ * Each source has its own deadline, read from {@code search.global.timeoutMs.<source>}
+ * and falling back to {@code search.global.timeoutMs}. A source that misses its deadline
+ * is cancelled and contributes an empty list, and the result is flagged as partial.
+ * Latency is recorded per source so the slowest backend is visible.
+ */
+public class SearchFanOut {
+    private static SearchFanOut instance;
+
+    private final ExecutorService executor;
+    private final long defaultTimeoutMs;
+    private final Map<String, SourceStats> stats = new ConcurrentHashMap<>();
+
+    private SearchFanOut() {
+        AppConfig config = AppConfig.getInstance();
+        int threads = config.getIntProperty("search.global.threads", 4);
+        this.defaultTimeoutMs = config.getIntProperty("search.global.timeoutMs", 2000);
+
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(threads, 1), runnable -> {
+            Thread thread = new Thread(runnable, "search-worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static synchronized SearchFanOut getInstance() {
+        if (instance == null) {
+            instance = new SearchFanOut();
+        }
+        return instance;
+    }
+
+    /**
+     * Runs every source and waits at most its deadline for each.
+     * The returned map holds one entry per source plus "partial", "timedOut",
+     * "failed" and "latencyMs" (source to milliseconds).
+     */
+    public Map<String, Object> execute(Map<String, Callable<List<?>>> sources) {
+        long start = System.nanoTime();
+        Map<String, Future<List<?>>> futures = new LinkedHashMap<>();
+        Map<String, Long> finishedAt = new ConcurrentHashMap<>();
+        for (Map.Entry<String, Callable<List<?>>> source : sources.entrySet()) {
+            Callable<List<?>> task = source.getValue();
+            futures.put(source.getKey(), executor.submit(() -> {
+                try {
+                    return task.call();
+                } finally {
+                    finishedAt.put(source.getKey(), System.nanoTime());
+                }
+            }));
+        }
+
+        Map<String, Object> results = new HashMap<>();
+        Map<String, Long> latencyMs = new LinkedHashMap<>();
+        List<String> timedOut = new ArrayList<>();
+        List<String> failed = new ArrayList<>();
+
+        for (Map.Entry<String, Future<List<?>>> entry : futures.entrySet()) {
+            String name = entry.getKey();
+            Future<List<?>> future = entry.getValue();
+            long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeoutMs(name));
+            List<?> value = new ArrayList<>();
+            boolean timeout = false;
+            boolean failure = false;
+            try {
+                value = future.get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                timeout = true;
+                timedOut.add(name);
+                System.err.println("❌ Search source '" + name + "' missed its " + timeoutMs(name) + " ms deadline");
+            } catch (ExecutionException e) {
+                failure = true;
+                failed.add(name);
+                System.err.println("❌ Search source '" + name + "' failed: " + e.getCause().getMessage());
+            } catch (InterruptedException e) {
+                future.cancel(true);
+                Thread.currentThread().interrupt();
+                timeout = true;
+                timedOut.add(name);
+            }
+
+            // A source that timed out is charged up to now
+            Long end = finishedAt.get(name);
+            long elapsed = TimeUnit.NANOSECONDS.toMillis((end != null ? end : System.nanoTime()) - start);
+            latencyMs.put(name, elapsed);
+            stats.computeIfAbsent(name, key -> new SourceStats()).record(elapsed, timeout, failure);
+            results.put(name, value != null ? value : new ArrayList<>());
+        }
+
+        results.put("partial", !timedOut.isEmpty() || !failed.isEmpty());
+        results.put("timedOut", timedOut);
+        results.put("failed", failed);
+        results.put("latencyMs", latencyMs);
+        return results;
+    }
+
+    private long timeoutMs(String source) {
+        return AppConfig.getInstance().getIntProperty("search.global.timeoutMs." + source, (int) defaultTimeoutMs);
+    }
+
+    // Per source: calls, average and maximum latency, timeouts and failures since startup
+    public Map<String, Map<String, Object>> getLatencyStats() {
+        Map<String, Map<String, Object>> report = new LinkedHashMap<>();
+        stats.forEach((name, sourceStats) -> report.put(name, sourceStats.toMap()));
+        return report;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static class SourceStats {
+        private final AtomicLong calls = new AtomicLong();
+        private final AtomicLong totalMs = new AtomicLong();
+        private final AtomicLong maxMs = new AtomicLong();
+        private final AtomicLong timeouts = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+
+        void record(long elapsedMs, boolean timeout, boolean failure) {
+            calls.incrementAndGet();
+            totalMs.addAndGet(elapsedMs);
+            maxMs.accumulateAndGet(elapsedMs, Math::max);
+            if (timeout) {
+                timeouts.incrementAndGet();
+            }
+            if (failure) {
+                failures.incrementAndGet();
+            }
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            long count = calls.get();
+            map.put("calls", count);
+            map.put("avgMs", count > 0 ? (double) totalMs.get() / count : 0.0);
+            map.put("maxMs", maxMs.get());
+            map.put("timeouts", timeouts.get());
+            map.put("failures", failures.get());
+            return map;
+        }
+    }
+}
@@ -1,77 +1,224 @@
 package org.example.service;
 
+import org.example.model.CustomField;
 import org.example.model.Ticket;
 import org.example.model.KnowledgeBase;
 import org.example.model.User;
 import org.example.repository.TicketRepository;
 import org.example.repository.KBRepository;
+import org.example.repository.Page;
 import org.example.repository.UserRepository;
-
+import org.example.search.Analyzer;
+import org.example.search.FacetResults;
+import org.example.search.Highlight;
+import org.example.search.IndexSchema;
+import org.example.search.Query;
+import org.example.search.SearchDocuments;
+import org.example.search.SearchEngine;
+import org.example.search.SearchHit;
+import org.example.search.SearchResults;
+import org.example.search.TagIndex;
+import org.example.config.AppConfig;
+import org.example.exception.ValidationException;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.concurrent.Callable;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class SearchService {
+    // Facet derived from the assignee's team rather than indexed on the ticket
+    private static final String TEAM_FACET = "team";
+    private static final int RELATED_ARTICLES = 5;
+
     private final TicketRepository ticketRepository;
     private final KBRepository kbRepository;
     private final UserRepository userRepository;
+    private final SearchEngine searchEngine;
+    private final CustomFieldRegistry customFields;
+    private final int maxTicketResults;
+    private final int maxArticleResults;
+    private final int advancedPageSize;
+    private final int advancedCountCap;
+    private final int maxSimilarResults;
+    private final double similarThreshold;
+    private final int maxSuggestions;
+    private final List<String> facetFields = new ArrayList<>();
 
     public SearchService() {
         this.ticketRepository = new TicketRepository();
         this.kbRepository = new KBRepository();
         this.userRepository = new UserRepository();
+        this.searchEngine = SearchEngine.getInstance();
+        this.customFields = CustomFieldRegistry.getInstance();
+
+        AppConfig config = AppConfig.getInstance();
+        this.maxTicketResults = config.getIntProperty("search.tickets.maxResults", 100);
+        this.advancedPageSize = config.getIntProperty("search.advanced.pageSize", 100);
+        this.advancedCountCap = config.getIntProperty("search.advanced.countCap", 10000);
+        this.maxArticleResults = config.getIntProperty("search.kb.maxResults", 20);
+        this.maxSimilarResults = config.getIntProperty("search.similar.maxResults", 10);
+        this.similarThreshold = config.getDoubleProperty("search.similar.threshold", 0.5);
+        this.maxSuggestions = config.getIntProperty("search.suggest.maxResults", 5);
+
+        IndexSchema schema = searchEngine.getTicketIndex().getSchema();
+        for (String field : config.getProperty("search.facets.fields", "status,priority,category,assignedTo,team")
+                .split(",")) {
+            if (field.isBlank()) {
+                continue;
+            }
+            if (field.trim().equals(TEAM_FACET) || schema.isKeywordField(field.trim())) {
+                facetFields.add(field.trim());
+            } else {
+                System.err.println("❌ Ignoring facet on unknown ticket field: " + field.trim());
+            }
+        }
     }
 
+    /**
+     * Accepts plain words or the structured syntax of {@link org.example.search.QueryParser},
+     * e.g. {@code status:OPEN assignee:jdoe "login error" -vpn created:>2026-01-01}.
+     * Plain words keep the ranked any-word search.
+     */
     public List<Ticket> searchTickets(String query) {
         if (query == null || query.trim().isEmpty()) {
             return new ArrayList<>();
         }
 
-        return ticketRepository.search(query.trim());
+        Query parsed = SearchDocuments.ticketQueryParser().parse(query.trim());
+        if (parsed == null) {
+            return new ArrayList<>();
+        }
+        List<Ticket> tickets;
+        if (!parsed.isPlainText()) {
+            tickets = queryTickets(parsed, maxTicketResults).getItems();
+        } else if (searchEngine.isReady()) {
+            // Ranked in-process search; Cypher scan only until the index has loaded
+            tickets = searchEngine.searchTickets(query.trim(), maxTicketResults);
+        } else {
+            tickets = ticketRepository.search(query.trim(), maxTicketResults);
+        }
+        recordQuery(query, tickets.size());
+        return tickets;
     }
 
-    public List<Ticket> advancedTicketSearch(Map<String, Object> criteria) {
-        List<Ticket> allTickets = ticketRepository.findAll();
+    // Top matches of a structured query with the exact number it matched; unlike searchTickets every word must match
+    public Page<Ticket> queryTickets(String query, int limit) {
+        Query parsed = SearchDocuments.ticketQueryParser().parse(query);
+        if (parsed == null) {
+            return new Page<>(new ArrayList<>(), 0, limit, 0, true, false, null);
+        }
+        Page<Ticket> page = queryTickets(parsed, limit > 0 ? limit : maxTicketResults);
+        recordQuery(query, page.getItems().size());
+        return page;
+    }
 
-        return allTickets.stream()
-                .filter(ticket -> matchesCriteria(ticket, criteria))
-                .collect(Collectors.toList());
+    /**
+     * The best passage of each field that matched, per ticket id and field, for the words
+     * of a search box query; field filters and negated words are not highlighted. Empty
+     * until the index has loaded.
+     */
+    public Map<String, Map<String, Highlight>> getTicketHighlights(String query, List<Ticket> tickets) {
+        Query parsed = query != null ? SearchDocuments.ticketQueryParser().parse(query.trim()) : null;
+        if (parsed == null || !searchEngine.isReady()) {
+            return new HashMap<>();
+        }
+        return searchEngine.highlightTickets(tickets.stream().map(Ticket::getId).collect(Collectors.toList()),
+                parsed.scoringTerms());
     }
 
-    private boolean matchesCriteria(Ticket ticket, Map<String, Object> criteria) {
-        // Status filter
-        if (criteria.containsKey("status")) {
-            String status = (String) criteria.get("status");
-            if (!ticket.getStatus().equals(status)) {
-                return false;
-            }
+    public Map<String, Map<String, Highlight>> getArticleHighlights(String query, List<KnowledgeBase> articles) {
+        if (query == null || !searchEngine.isReady()) {
+            return new HashMap<>();
         }
+        return searchEngine.highlightArticles(articles.stream().map(KnowledgeBase::getId).collect(Collectors.toList()),
+                Analyzer.getInstance().analyze(query));
+    }
+
+    // Queries that found nothing are not worth suggesting again
+    private void recordQuery(String query, int found) {
+        if (found > 0) {
+            searchEngine.recordQuery(query);
+        }
+    }
 
-        // Priority filter
-        if (criteria.containsKey("priority")) {
-            String priority = (String) criteria.get("priority");
-            if (!ticket.getPriority().equals(priority)) {
-                return false;
+    private Page<Ticket> queryTickets(Query query, int limit) {
+        if (searchEngine.isReady()) {
+            SearchResults results = searchEngine.queryTickets(query, limit);
+            List<Ticket> tickets = new ArrayList<>();
+            for (SearchHit hit : results.getHits()) {
+                tickets.add(SearchDocuments.toTicket(hit.getFields()));
             }
+            return new Page<>(tickets, 0, limit, results.getTotalHits(), true,
+                    results.getTotalHits() > tickets.size(), null);
         }
 
-        // Assignee filter
-        if (criteria.containsKey("assignedTo")) {
-            String assignedTo = (String) criteria.get("assignedTo");
-            if (ticket.getAssignedTo() == null || !ticket.getAssignedTo().equals(assignedTo)) {
-                return false;
+        // Until the index has loaded: top-level filters run in Neo4j, the rest in memory
+        Page<Ticket> page = ticketRepository.findByCriteria(toCriteria(query), 0, advancedCountCap);
+        IndexSchema schema = searchEngine.getTicketIndex().getSchema();
+        List<Ticket> matches = new ArrayList<>();
+        for (Ticket ticket : page.getItems()) {
+            if (query.matches(SearchDocuments.fromTicket(ticket).getFields(), schema)) {
+                matches.add(ticket);
             }
         }
+        List<Ticket> items = matches.stream().limit(limit).collect(Collectors.toList());
+        return new Page<>(items, 0, limit, matches.size(), !page.hasMore(), matches.size() > items.size(), null);
+    }
 
-        // Text search in title/description
-        if (criteria.containsKey("text")) {
-            String text = ((String) criteria.get("text")).toLowerCase();
-            String searchableText = (ticket.getTitle() + " " + ticket.getDescription()).toLowerCase();
-            if (!searchableText.contains(text)) {
-                return false;
+    // The field filters and date ranges every result must satisfy, as advanced search criteria
+    private static Map<String, Object> toCriteria(Query query) {
+        Map<String, Object> criteria = new HashMap<>();
+        List<Query> clauses = query instanceof Query.And
+                ? ((Query.And) query).getClauses() : Collections.singletonList(query);
+        for (Query clause : clauses) {
+            if (clause instanceof Query.Field && !((Query.Field) clause).getField().equals(SearchDocuments.CREATED_BY)) {
+                Query.Field field = (Query.Field) clause;
+                // Status and priority are stored as enum names; the index compares them ignoring case
+                boolean enumField = field.getField().equals(SearchDocuments.STATUS)
+                        || field.getField().equals(SearchDocuments.PRIORITY);
+                criteria.put(field.getField(), field.getValues().stream()
+                        .map(value -> enumField ? value.toUpperCase() : value)
+                        .collect(Collectors.toList()));
+            } else if (clause instanceof Query.Range) {
+                Query.Range range = (Query.Range) clause;
+                String prefix = range.getField().equals(SearchDocuments.CREATED_AT) ? "created" : "updated";
+                // Bounds finer than a day widen to their whole day; matches() trims the rest afterwards
+                if (range.getFrom() != null) {
+                    LocalDate from = LocalDate.parse(range.getFrom().substring(0, 10));
+                    boolean wholeDay = range.getFrom().length() == 10;
+                    criteria.put(prefix + "From", range.isFromInclusive() || !wholeDay ? from : from.plusDays(1));
+                }
+                if (range.getTo() != null) {
+                    LocalDate to = LocalDate.parse(range.getTo().substring(0, 10));
+                    boolean wholeDay = range.getTo().length() == 10;
+                    criteria.put(prefix + "To", range.isToInclusive() || !wholeDay ? to : to.minusDays(1));
+                }
             }
         }
+        return criteria;
+    }
+
+    /**
+     * Every ticket matching the criteria, read a page at a time with keyset paging. Loads
+     * all matches into the list; views that show one page should use the Page overloads.
+     */
+    public List<Ticket> advancedTicketSearch(Map<String, Object> criteria) {
+        try (Stream<Ticket> tickets = ticketRepository.streamByCriteria(criteria, advancedPageSize)) {
+            return tickets.collect(Collectors.toList());
+        }
+    }
 
-        return true;
+    // Filters are evaluated in Neo4j; only the requested page is loaded
+    public Page<Ticket> advancedTicketSearch(Map<String, Object> criteria, int skip, int limit) {
+        return ticketRepository.findByCriteria(criteria, skip, limit > 0 ? limit : advancedPageSize);
+    }
+
+    public Page<Ticket> advancedTicketSearchAfter(Map<String, Object> criteria, String cursor, int limit) {
+        return ticketRepository.findByCriteriaAfter(criteria, cursor, limit > 0 ? limit : advancedPageSize);
     }
 
     public List<KnowledgeBase> searchKnowledgeBase(String query) {
@@ -79,6 +226,9 @@ public class SearchService {
             return new ArrayList<>();
         }
 
+        if (searchEngine.isReady()) {
+            return searchEngine.searchArticles(query.trim(), maxArticleResults);
+        }
         return kbRepository.searchByTitle(query.trim());
     }
 
@@ -101,6 +251,36 @@ public class SearchService {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Tickets and articles closest in meaning to the query, k of each, from the local
+     * embedding index. Falls back to keyword search until the index has loaded.
+     */
+    public Map<String, Object> semanticSearch(String query, int k) {
+        Map<String, Object> results = new HashMap<>();
+        List<Ticket> tickets = new ArrayList<>();
+        List<KnowledgeBase> articles = new ArrayList<>();
+
+        if (query != null && !query.trim().isEmpty() && k > 0) {
+            if (searchEngine.isReady()) {
+                tickets = searchEngine.semanticSearchTickets(query.trim(), k);
+                articles = searchEngine.semanticSearchArticles(query.trim(), k);
+            } else {
+                tickets = searchTickets(query).stream().limit(k).collect(Collectors.toList());
+                articles = searchKnowledgeBase(query).stream().limit(k).collect(Collectors.toList());
+            }
+        }
+
+        results.put("tickets", tickets);
+        results.put("knowledgeBase", articles);
+        results.put("query", query);
+        results.put("totalResults", tickets.size() + articles.size());
+        return results;
+    }
+
+    /**
+     * Queries tickets, knowledge base and users concurrently. A source that misses its
+     * deadline contributes no results and sets "partial"; "latencyMs" has the time per source.
+     */
     public Map<String, Object> globalSearch(String query) {
         Map<String, Object> results = new HashMap<>();
 
@@ -111,9 +291,12 @@ public class SearchService {
             return results;
         }
 
-        results.put("tickets", searchTickets(query));
-        results.put("knowledgeBase", searchKnowledgeBase(query));
-        results.put("users", searchUsers(query));
+        Map<String, Callable<List<?>>> sources = new LinkedHashMap<>();
+        sources.put("tickets", () -> searchTickets(query));
+        sources.put("knowledgeBase", () -> searchKnowledgeBase(query));
+        sources.put("users", () -> searchUsers(query));
+
+        results.putAll(SearchFanOut.getInstance().execute(sources));
         results.put("query", query);
         results.put("totalResults",
                 ((List<?>) results.get("tickets")).size() +
@@ -123,38 +306,93 @@ public class SearchService {
         return results;
     }
 
+    // Hit, miss, load and eviction counters of the search result cache
+    public Map<String, Object> getSearchCacheStatistics() {
+        return searchEngine.getCacheStatistics();
+    }
+
+    public Map<String, Map<String, Object>> getSourceLatencyStats() {
+        return SearchFanOut.getInstance().getLatencyStats();
+    }
+
+    /**
+     * Tickets created between two ISO days or date-times, both inclusive at their own
+     * precision; a blank bound is open. Newest first, at most search.tickets.maxResults.
+     */
     public List<Ticket> searchTicketsByDateRange(String startDate, String endDate) {
-        // Placeholder - would need date-based repository query
-        return new ArrayList<>();
+        String from = dateBound(startDate);
+        String to = dateBound(endDate);
+        int precision = from != null && to != null ? Math.min(from.length(), to.length()) : 0;
+        if (precision > 0 && from.substring(0, precision).compareTo(to.substring(0, precision)) > 0) {
+            throw new ValidationException("Start date must not be after end date");
+        }
+        return queryTickets(new Query.Range(SearchDocuments.CREATED_AT, from, true, to, true), maxTicketResults)
+                .getItems();
+    }
+
+    private static String dateBound(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        String text = value.trim();
+        try {
+            return text.length() <= 10 ? LocalDate.parse(text).toString() : LocalDateTime.parse(text).toString();
+        } catch (DateTimeParseException e) {
+            throw new ValidationException("Invalid date, expected yyyy-MM-dd or yyyy-MM-ddTHH:mm: " + text);
+        }
     }
 
     public List<Ticket> searchSimilarTickets(Ticket ticket) {
+        if (searchEngine.isReady()) {
+            return searchEngine.findSimilarTickets(ticket, maxSimilarResults, similarThreshold);
+        }
+
         List<Ticket> allTickets = ticketRepository.findAll();
         AIService aiService = new AIService();
 
         // Find tickets with similarity > 0.5
         return allTickets.stream()
                 .filter(t -> !t.getId().equals(ticket.getId()))
-                .filter(t -> aiService.calculateSimilarity(ticket, t) > 0.5)
-                .limit(10)
+                .filter(t -> aiService.calculateSimilarity(ticket, t) > similarThreshold)
+                .limit(maxSimilarResults)
                 .collect(Collectors.toList());
     }
 
+    // Recall of the similar-ticket lookup against an exact scan, for tuning search.similar.bands/rows
+    public Map<String, Object> getSimilarTicketAccuracyReport(int sampleSize) {
+        return searchEngine.getSimilarTickets().accuracyReport(sampleSize, maxSimilarResults, similarThreshold);
+    }
+
+    // Recall@k and latency of semantic search against an exact scan, for tuning search.semantic.*
+    public Map<String, Object> getSemanticAccuracyReport(int sampleSize, int k) {
+        return searchEngine.getTicketVectors().accuracyReport(sampleSize, k);
+    }
+
+    // Completions from titles, category names and earlier queries; called on every keystroke
     public List<String> getSuggestedSearchTerms(String partialQuery) {
-        if (partialQuery == null || partialQuery.length() < 2) {
+        if (partialQuery == null || partialQuery.trim().length() < 2) {
             return new ArrayList<>();
         }
+        return searchEngine.suggest(partialQuery, maxSuggestions);
+    }
 
-        // Simple suggestion based on common terms
-        List<String> suggestions = Arrays.asList(
-                "bug", "feature", "error", "crash", "performance",
-                "login", "password", "network", "database", "security");
+    /**
+     * A corrected version of a query that found nothing, with misspelled words replaced by
+     * words from the indexed tickets and articles, or null when there is none to offer.
+     */
+    public String getDidYouMean(String query) {
+        if (query == null || query.isBlank() || !searchEngine.isReady()) {
+            return null;
+        }
+        return searchEngine.didYouMean(query.trim());
+    }
 
-        String lowerQuery = partialQuery.toLowerCase();
-        return suggestions.stream()
-                .filter(term -> term.startsWith(lowerQuery))
-                .limit(5)
-                .collect(Collectors.toList());
+    // Ranked corrections for a single word
+    public List<String> getSpellingSuggestions(String word) {
+        if (word == null || word.isBlank() || !searchEngine.isReady()) {
+            return new ArrayList<>();
+        }
+        return searchEngine.spellingSuggestions(word.trim(), maxSuggestions);
     }
 
     public Map<String, Long> getSearchStatistics() {
@@ -165,50 +403,200 @@ public class SearchService {
         return stats;
     }
 
+    // Tickets carrying every one of the tags
     public List<Ticket> filterTicketsByTags(List<String> tags) {
-        // Placeholder - would need tag-based filtering
-        return new ArrayList<>();
+        return filterTicketsByTags(tags, null, null).getItems();
+    }
+
+    /**
+     * Tickets with all tags of allOf, at least one of anyOf and none of noneOf, with the
+     * exact number of matches. Tags are compared case-insensitively; null lists impose nothing.
+     */
+    public Page<Ticket> filterTicketsByTags(List<String> allOf, List<String> anyOf, List<String> noneOf) {
+        if (searchEngine.isReady()) {
+            List<Ticket> tickets = searchEngine.filterTicketsByTags(allOf, anyOf, noneOf, maxTicketResults);
+            long total = searchEngine.countTaggedTickets(allOf, anyOf, noneOf);
+            return new Page<>(tickets, 0, maxTicketResults, total, true, total > tickets.size(), null);
+        }
+
+        // Until the index has loaded: allOf runs in Neo4j, the rest in memory
+        List<String> required = TagIndex.normalize(allOf);
+        List<String> optional = TagIndex.normalize(anyOf);
+        List<String> excluded = TagIndex.normalize(noneOf);
+        List<Ticket> matches = new ArrayList<>();
+        for (Ticket ticket : required.isEmpty() ? ticketRepository.findAll() : ticketRepository.findByTags(required)) {
+            List<String> tags = TagIndex.normalize(ticket.getTags());
+            if ((optional.isEmpty() || !Collections.disjoint(tags, optional)) && Collections.disjoint(tags, excluded)) {
+                matches.add(ticket);
+            }
+        }
+        List<Ticket> items = new ArrayList<>(matches.subList(0, Math.min(maxTicketResults, matches.size())));
+        return new Page<>(items, 0, maxTicketResults, matches.size(), true, matches.size() > items.size(), null);
+    }
+
+    // Tickets per tag, most used first, for tag clouds and filter pickers
+    public Map<String, Long> getTicketTagCounts(int limit) {
+        if (searchEngine.isReady()) {
+            return searchEngine.getTicketTagCounts(limit);
+        }
+        return countTags(ticketRepository.findAll().stream().map(Ticket::getTags), limit);
+    }
+
+    public Map<String, Long> getArticleTagCounts(int limit) {
+        if (searchEngine.isReady()) {
+            return searchEngine.getArticleTagCounts(limit);
+        }
+        return countTags(kbRepository.findAll().stream().map(KnowledgeBase::getTags), limit);
+    }
+
+    private static Map<String, Long> countTags(Stream<List<String>> tagLists, int limit) {
+        Map<String, Long> counts = new HashMap<>();
+        tagLists.forEach(tags -> TagIndex.normalize(tags).forEach(tag -> counts.merge(tag, 1L, Long::sum)));
+        return counts.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(limit)
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> a, LinkedHashMap::new));
     }
 
     public List<KnowledgeBase> getRelatedArticles(Ticket ticket) {
-        // Find KB articles related to ticket category or keywords
+        // Find KB articles sharing the ticket's most distinctive (TF-IDF) keywords
         AIService aiService = new AIService();
-        List<String> keywords = aiService.extractKeywords(ticket.getTitle() + " " + ticket.getDescription());
-
-        List<KnowledgeBase> allArticles = kbRepository.findAll();
+        String text = ticket.getTitle() + " " + ticket.getDescription();
+        List<String> keywords = aiService.extractKeywords(text);
+        if (keywords.isEmpty()) {
+            return new ArrayList<>();
+        }
+        if (searchEngine.isReady()) {
+            return searchEngine.searchArticles(String.join(" ", keywords), RELATED_ARTICLES);
+        }
 
-        return allArticles.stream()
-                .filter(article -> {
-                    String articleText = (article.getTitle() + " " + article.getContent()).toLowerCase();
-                    return keywords.stream().anyMatch(keyword -> articleText.contains(keyword.toLowerCase()));
-                })
-                .limit(5)
+        // Compared as analyzed terms, the way the index would have matched them; an article
+        // scores the weights of the keywords it contains
+        Map<String, Double> weights = aiService.extractKeywordWeights(text);
+        Analyzer analyzer = Analyzer.getInstance();
+        Map<KnowledgeBase, Double> scores = new HashMap<>();
+        for (KnowledgeBase article : kbRepository.findAll()) {
+            double score = 0;
+            for (String term : new HashSet<>(analyzer.analyze(article.getTitle() + " " + article.getContent()))) {
+                score += weights.getOrDefault(term, 0.0);
+            }
+            if (score > 0) {
+                scores.put(article, score);
+            }
+        }
+        return scores.entrySet().stream()
+                .sorted(Map.Entry.<KnowledgeBase, Double>comparingByValue().reversed())
+                .limit(RELATED_ARTICLES)
+                .map(Map.Entry::getKey)
                 .collect(Collectors.toList());
     }
 
+    // Tickets whose custom field equals the value; strings and enum values ignore case
     public List<Ticket> searchByCustomField(String fieldName, String fieldValue) {
-        // Placeholder for custom field search
-        return new ArrayList<>();
+        CustomField field = customFields.requireField(fieldName);
+        String value = customFields.canonicalize(field, fieldValue);
+        if (value == null) {
+            throw new ValidationException("A value is required to search " + field.getLabel());
+        }
+        return searchByCustomField(field, value, value).getItems();
     }
 
-    public Map<String, Object> getFacetedSearchResults(String query) {
-        List<Ticket> tickets = searchTickets(query);
+    /**
+     * Tickets whose number, decimal or date custom field lies between from and to, both
+     * inclusive and either left blank for no bound, with the exact number of matches.
+     * A day as the upper bound of a date field includes the whole day.
+     */
+    public Page<Ticket> searchByCustomFieldRange(String fieldName, String from, String to) {
+        CustomField field = customFields.requireField(fieldName);
+        if (!customFields.supportsRange(field)) {
+            throw new ValidationException(field.getLabel() + " can only be searched for a value");
+        }
+        String low = customFields.canonicalize(field, from);
+        String high = customFields.canonicalize(field, to);
+        if (low != null && high != null && customFields.compare(field, low, high) > 0) {
+            throw new ValidationException("The lower bound of " + field.getLabel() + " is above the upper bound");
+        }
+        return searchByCustomField(field, low, high);
+    }
 
-        Map<String, Object> facets = new HashMap<>();
+    private Page<Ticket> searchByCustomField(CustomField field, String from, String to) {
+        if (searchEngine.isReady()) {
+            List<Ticket> tickets = searchEngine.findTicketsByCustomField(field.getName(), from, to, maxTicketResults);
+            long total = searchEngine.countTicketsByCustomField(field.getName(), from, to);
+            return new Page<>(tickets, 0, maxTicketResults, total, true, total > tickets.size(), null);
+        }
 
-        // Status facets
-        Map<String, Long> statusFacets = tickets.stream()
-                .collect(Collectors.groupingBy(Ticket::getStatus, Collectors.counting()));
-        facets.put("status", statusFacets);
+        // Until the index has loaded: Neo4j finds the tickets having the field, the values are compared here
+        List<Ticket> matches = new ArrayList<>();
+        for (Ticket ticket : ticketRepository.findWithCustomField(field.getName())) {
+            String value = ticket.getCustomFields().get(field.getName());
+            try {
+                if (value != null && (from == null || customFields.compare(field, value, from) >= 0)
+                        && (to == null || customFields.compare(field, value, to) <= 0)) {
+                    matches.add(ticket);
+                }
+            } catch (NumberFormatException e) {
+                // A value written without the registry; it cannot match a typed bound
+            }
+        }
+        List<Ticket> items = new ArrayList<>(matches.subList(0, Math.min(maxTicketResults, matches.size())));
+        return new Page<>(items, 0, maxTicketResults, matches.size(), true, matches.size() > items.size(), null);
+    }
 
-        // Priority facets
-        Map<String, Long> priorityFacets = tickets.stream()
-                .collect(Collectors.groupingBy(Ticket::getPriority, Collectors.counting()));
-        facets.put("priority", priorityFacets);
+    public List<CustomField> getCustomFields() {
+        return customFields.getFields();
+    }
 
-        facets.put("results", tickets);
-        facets.put("totalCount", tickets.size());
+    /**
+     * Ranked results plus, per facet in search.facets.fields, how many of all matching
+     * tickets have each value, most frequent first. Counts cover every match, not just
+     * the returned results; totalCount is the number of matches.
+     */
+    public Map<String, Object> getFacetedSearchResults(String query) {
+        List<Ticket> tickets = searchTickets(query);
+        Query parsed = query != null ? SearchDocuments.ticketQueryParser().parse(query.trim()) : null;
+
+        Set<String> fields = new LinkedHashSet<>();
+        facetFields.forEach(facet -> fields.add(facet.equals(TEAM_FACET) ? SearchDocuments.ASSIGNED_TO : facet));
+
+        Map<String, Map<String, Long>> counts;
+        long totalCount;
+        if (parsed != null && searchEngine.isReady()) {
+            // Plain words match any of them, as in searchTickets
+            FacetResults results = searchEngine.ticketFacets(parsed.isPlainText() ? anyWord(parsed) : parsed,
+                    new ArrayList<>(fields));
+            counts = results.getCounts();
+            totalCount = results.getTotalHits();
+        } else {
+            // Until the index has loaded, only the returned tickets are counted
+            counts = new HashMap<>();
+            for (Ticket ticket : tickets) {
+                Map<String, String> values = SearchDocuments.fromTicket(ticket).getFields();
+                for (String field : fields) {
+                    if (values.get(field) != null) {
+                        counts.computeIfAbsent(field, key -> new LinkedHashMap<>()).merge(values.get(field), 1L, Long::sum);
+                    }
+                }
+            }
+            totalCount = tickets.size();
+        }
 
+        Map<String, Object> facets = new LinkedHashMap<>();
+        for (String facet : facetFields) {
+            facets.put(facet, facet.equals(TEAM_FACET)
+                    ? searchEngine.teamCounts(counts.getOrDefault(SearchDocuments.ASSIGNED_TO, new HashMap<>()))
+                    : counts.getOrDefault(facet, new HashMap<>()));
+        }
+        facets.put("results", tickets);
+        facets.put("totalCount", totalCount);
         return facets;
     }
+
+    private static Query anyWord(Query query) {
+        List<Query> terms = new ArrayList<>();
+        for (String term : query.scoringTerms()) {
+            terms.add(new Query.Term(null, term));
+        }
+        return new Query.Or(terms);
+    }
 }
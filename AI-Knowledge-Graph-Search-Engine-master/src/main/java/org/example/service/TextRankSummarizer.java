@@ -0,0 +1,213 @@
+package org.example.service;
+
+import org.example.search.Analyzer;
+
+import java.util.Arrays;
+
+/**
+ * Extractive summaries by TextRank (Mihalcea and Tarau): sentences are nodes, linked by
+ * how many terms they share relative to their lengths, and ranked like pages by PageRank.
+ * The best ranked sentences that fit the length budget are returned in text order.
+ *
+ * Only the first maxSentences sentences are considered and ranking stops after
+ * maxIterations rounds, so a summary costs one analyzer pass over the text plus a bounded
+ * amount of graph work however long the text is.
+ */
+final class TextRankSummarizer {
+    private static final double DAMPING = 0.85;
+    private static final double TOLERANCE = 1e-4;
+
+    private final Analyzer analyzer;
+    private final int maxSentences;
+    private final int maxIterations;
+
+    TextRankSummarizer(Analyzer analyzer, int maxSentences, int maxIterations) {
+        this.analyzer = analyzer;
+        this.maxSentences = Math.max(maxSentences, 1);
+        this.maxIterations = Math.max(maxIterations, 1);
+    }
+
+    // The text itself when it fits in maxLength, else its most central sentences
+    String summarize(String text, int maxLength) {
+        if (text == null || text.length() <= maxLength) {
+            return text;
+        }
+
+        // Sentence i spans [starts[i], ends[i]); a hard cap on how many are considered
+        int[] starts = new int[Math.min(maxSentences, 16)];
+        int[] ends = new int[starts.length];
+        int count = 0;
+        int start = -1;
+        int scanned = text.length();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (start < 0) {
+                if (!Character.isWhitespace(c)) {
+                    start = i;
+                }
+                continue;
+            }
+            boolean end = c == '\n' || (c == '.' || c == '!' || c == '?')
+                    && (i + 1 == text.length() || Character.isWhitespace(text.charAt(i + 1)));
+            if (end) {
+                if (count == starts.length) {
+                    starts = Arrays.copyOf(starts, Math.min(count * 2, maxSentences));
+                    ends = Arrays.copyOf(ends, starts.length);
+                }
+                int stop = c == '\n' ? i : i + 1;
+                while (Character.isWhitespace(text.charAt(stop - 1))) {
+                    stop--;
+                }
+                starts[count] = start;
+                ends[count++] = stop;
+                start = -1;
+                if (count == maxSentences) {
+                    scanned = i + 1;
+                    break;
+                }
+            }
+        }
+        if (start >= 0 && count < maxSentences) {
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count + 1);
+                ends = Arrays.copyOf(ends, count + 1);
+            }
+            int stop = text.length();
+            while (Character.isWhitespace(text.charAt(stop - 1))) {
+                stop--;
+            }
+            starts[count] = start;
+            ends[count++] = stop;
+        }
+        if (count < 2) {
+            return truncate(text, maxLength);
+        }
+
+        // Each sentence's distinct term hashes, sorted, from one pass over the considered text
+        int[][] terms = new int[count][8];
+        int[] termCounts = new int[count];
+        int[] sentence = { 0 };
+        int sentences = count;
+        int[] sentenceEnds = ends;
+        analyzer.analyze(text.subSequence(0, scanned), (term, position, startOffset, endOffset) -> {
+            while (sentence[0] < sentences && startOffset >= sentenceEnds[sentence[0]]) {
+                sentence[0]++;
+            }
+            if (sentence[0] < sentences) {
+                int s = sentence[0];
+                if (termCounts[s] == terms[s].length) {
+                    terms[s] = Arrays.copyOf(terms[s], termCounts[s] * 2);
+                }
+                terms[s][termCounts[s]++] = term.hashCode();
+            }
+        });
+        for (int s = 0; s < count; s++) {
+            termCounts[s] = distinct(terms[s], termCounts[s]);
+        }
+
+        // Edge weight: shared terms over the log of both lengths
+        double[] weights = new double[count * count];
+        double[] outWeights = new double[count];
+        for (int i = 0; i < count; i++) {
+            for (int j = i + 1; j < count; j++) {
+                int shared = overlap(terms[i], termCounts[i], terms[j], termCounts[j]);
+                if (shared > 0) {
+                    double weight = shared / (Math.log(1 + termCounts[i]) + Math.log(1 + termCounts[j]));
+                    weights[i * count + j] = weight;
+                    weights[j * count + i] = weight;
+                    outWeights[i] += weight;
+                    outWeights[j] += weight;
+                }
+            }
+        }
+
+        double[] scores = new double[count];
+        double[] next = new double[count];
+        Arrays.fill(scores, 1);
+        for (int iteration = 0; iteration < maxIterations; iteration++) {
+            double change = 0;
+            for (int i = 0; i < count; i++) {
+                double rank = 0;
+                for (int j = 0; j < count; j++) {
+                    double weight = weights[j * count + i];
+                    if (weight > 0) {
+                        rank += weight / outWeights[j] * scores[j];
+                    }
+                }
+                next[i] = 1 - DAMPING + DAMPING * rank;
+                change = Math.max(change, Math.abs(next[i] - scores[i]));
+            }
+            double[] swap = scores;
+            scores = next;
+            next = swap;
+            if (change < TOLERANCE) {
+                break;
+            }
+        }
+
+        // Best first, the earlier sentence on a tie; take what fits, then restore text order.
+        // Sentences sharing no term with any other (greetings, signatures) are left out.
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        double[] ranks = scores;
+        Arrays.sort(order, (a, b) -> ranks[a] != ranks[b] ? Double.compare(ranks[b], ranks[a]) : a - b);
+        boolean[] chosen = new boolean[count];
+        int length = 0;
+        int picked = 0;
+        for (int s : order) {
+            int sentenceLength = ends[s] - starts[s] + (picked > 0 ? 1 : 0);
+            if (outWeights[s] > 0 && length + sentenceLength <= maxLength) {
+                chosen[s] = true;
+                length += sentenceLength;
+                picked++;
+            }
+        }
+        if (picked == 0) {
+            return truncate(text.substring(starts[order[0]], ends[order[0]]), maxLength);
+        }
+        StringBuilder summary = new StringBuilder(length);
+        for (int s = 0; s < count; s++) {
+            if (chosen[s]) {
+                if (summary.length() > 0) {
+                    summary.append(' ');
+                }
+                summary.append(text, starts[s], ends[s]);
+            }
+        }
+        return summary.toString();
+    }
+
+    private static String truncate(String text, int maxLength) {
+        return text.length() <= maxLength ? text : text.substring(0, Math.max(maxLength - 3, 0)) + "...";
+    }
+
+    // Sorts the hashes and drops repeats, returning how many are left
+    private static int distinct(int[] hashes, int size) {
+        Arrays.sort(hashes, 0, size);
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            if (n == 0 || hashes[i] != hashes[n - 1]) {
+                hashes[n++] = hashes[i];
+            }
+        }
+        return n;
+    }
+
+    private static int overlap(int[] a, int aSize, int[] b, int bSize) {
+        int shared = 0;
+        for (int i = 0, j = 0; i < aSize && j < bSize; ) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                shared++;
+                i++;
+                j++;
+            }
+        }
+        return shared;
+    }
+}
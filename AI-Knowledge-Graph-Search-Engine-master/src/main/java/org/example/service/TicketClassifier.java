@@ -0,0 +1,155 @@
+package org.example.service;
+
+import org.example.config.AppConfig;
+import org.example.model.Ticket;
+import org.example.model.enums.Priority;
+import org.example.model.enums.Severity;
+import org.example.model.enums.TicketStatus;
+import org.example.repository.Page;
+import org.example.repository.TicketRepository;
+import org.example.search.Analyzer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * The learned side of ticket triage. Trains a {@link TriageModel} on resolved and closed
+ * tickets, saves it to ai.model.file and answers from it. {@link AIService} asks it first
+ * and falls back to its keyword rules when there is no model or the model is unsure.
+ */
+public class TicketClassifier {
+    static final String CATEGORY = "category";
+    static final String PRIORITY = "priority";
+    static final String SEVERITY = "severity";
+    // Tickets have no severity of their own; it is learned from this custom field where set
+    static final String SEVERITY_FIELD = "severity";
+
+    private static TicketClassifier instance;
+
+    private final Analyzer analyzer;
+    private final Path modelFile;
+    private final double minConfidence;
+    private volatile TriageModel model;
+
+    private TicketClassifier() {
+        AppConfig config = AppConfig.getInstance();
+        this.analyzer = Analyzer.getInstance();
+        this.modelFile = Paths.get(config.getProperty("ai.model.file", "data/model/triage.model"));
+        this.minConfidence = config.getDoubleProperty("ai.model.minConfidence", 0.5);
+        if (Files.exists(modelFile)) {
+            try {
+                long start = System.currentTimeMillis();
+                this.model = TriageModel.load(modelFile);
+                System.out.println("✅ Triage model loaded from " + modelFile + " in " +
+                        (System.currentTimeMillis() - start) + " ms");
+            } catch (IOException e) {
+                System.err.println("❌ Error loading triage model " + modelFile + ": " + e.getMessage());
+            }
+        }
+    }
+
+    public static synchronized TicketClassifier getInstance() {
+        if (instance == null) {
+            instance = new TicketClassifier();
+        }
+        return instance;
+    }
+
+    public boolean hasModel() {
+        return model != null;
+    }
+
+    // The ticket's features for the current model, or null without one
+    TicketFeatures features(String title, String description) {
+        TriageModel current = model;
+        return current != null ? TicketFeatures.of(analyzer, title, description, current.bits()) : null;
+    }
+
+    // The model's label for the dimension, or null when it has none or is less sure than ai.model.minConfidence
+    String predict(String dimension, TicketFeatures features) {
+        TriageModel current = model;
+        if (current == null || features == null) {
+            return null;
+        }
+        TriageModel.Prediction prediction = current.predict(dimension, features);
+        return prediction != null && prediction.probability >= minConfidence ? prediction.label : null;
+    }
+
+    /**
+     * Learns category, priority and severity from every resolved and closed ticket, saves
+     * the model and starts answering from it. Tickets are read a page at a time and their
+     * features extracted in parallel; the report has the example count and held-out
+     * accuracy per dimension.
+     */
+    public synchronized Map<String, Object> train() throws IOException, InterruptedException {
+        AppConfig config = AppConfig.getInstance();
+        int bits = Math.max(10, Math.min(config.getIntProperty("ai.model.featureBits", 18), 24));
+        int pageSize = config.getIntProperty("ai.model.pageSize", 5000);
+        long start = System.currentTimeMillis();
+
+        TriageModel.Examples examples = new TriageModel.Examples(bits, CATEGORY, PRIORITY, SEVERITY);
+        TicketRepository repository = new TicketRepository();
+        Map<String, Object> criteria = new HashMap<>();
+        criteria.put("status", List.of(TicketStatus.RESOLVED, TicketStatus.CLOSED));
+        String cursor = null;
+        do {
+            Page<Ticket> page = repository.findByCriteriaAfter(criteria, cursor, pageSize);
+            List<TicketFeatures> features = page.getItems().parallelStream()
+                    .map(ticket -> TicketFeatures.of(analyzer, ticket.getTitle(), ticket.getDescription(), bits))
+                    .collect(Collectors.toList());
+            for (int i = 0; i < features.size(); i++) {
+                Ticket ticket = page.getItems().get(i);
+                examples.add(features.get(i), category(ticket), priority(ticket), severity(ticket));
+            }
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        long loaded = System.currentTimeMillis();
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        TriageModel trained = TriageModel.train(examples,
+                config.getIntProperty("ai.model.epochs", 5),
+                (float) config.getDoubleProperty("ai.model.learningRate", 0.5),
+                config.getIntProperty("ai.model.minExamples", 20),
+                Runtime.getRuntime().availableProcessors(), report);
+        trained.save(modelFile);
+        model = trained;
+
+        report.put("loadMs", loaded - start);
+        report.put("trainMs", System.currentTimeMillis() - loaded);
+        report.put("modelBytes", Files.size(modelFile));
+        System.out.println("✅ Triage model trained on " + examples.size() + " tickets in " +
+                (System.currentTimeMillis() - start) + " ms");
+        return report;
+    }
+
+    private static String category(Ticket ticket) {
+        return ticket.getCategory() != null && !ticket.getCategory().isBlank() ? ticket.getCategory().trim() : null;
+    }
+
+    private static String priority(Ticket ticket) {
+        return enumName(Priority.class, ticket.getPriority());
+    }
+
+    private static String severity(Ticket ticket) {
+        Map<String, String> fields = ticket.getCustomFields();
+        return fields != null ? enumName(Severity.class, fields.get(SEVERITY_FIELD)) : null;
+    }
+
+    private static <E extends Enum<E>> String enumName(Class<E> type, String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Enum.valueOf(type, value.trim().toUpperCase().replace(' ', '_')).name();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
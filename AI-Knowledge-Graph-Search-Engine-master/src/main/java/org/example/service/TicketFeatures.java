@@ -0,0 +1,94 @@
+package org.example.service;
+
+import org.example.search.Analyzer;
+
+import java.util.Arrays;
+
+/**
+ * A ticket's text as a sparse vector over 2^bits hashed features: every analyzed term of
+ * the title and of the description, each field hashed apart, and every pair of adjacent
+ * terms. Weights are 1 + log(count), scaled to unit length. Features are kept as sorted
+ * indices with their values in primitive arrays, so training sets of millions of
+ * tickets hold no boxed numbers or maps.
+ */
+final class TicketFeatures {
+    private static final int TITLE_SEED = 0x7A3C1B5D;
+    private static final int DESCRIPTION_SEED = 0x1F2E3D4C;
+    private static final int BIGRAM_SEED = 0x5BD1E995;
+
+    final int bits;
+    final int[] indices;
+    final float[] values;
+    final int size;
+
+    private TicketFeatures(int bits, int[] indices, float[] values, int size) {
+        this.bits = bits;
+        this.indices = indices;
+        this.values = values;
+        this.size = size;
+    }
+
+    static TicketFeatures of(Analyzer analyzer, String title, String description, int bits) {
+        int mask = (1 << bits) - 1;
+        int[][] hashes = { new int[32] };
+        int[] count = { 0 };
+        addField(analyzer, title, TITLE_SEED, mask, hashes, count);
+        addField(analyzer, description, DESCRIPTION_SEED, mask, hashes, count);
+
+        int[] raw = hashes[0];
+        int n = count[0];
+        Arrays.sort(raw, 0, n);
+        int[] indices = new int[n];
+        float[] values = new float[n];
+        int size = 0;
+        double norm = 0;
+        for (int i = 0; i < n; ) {
+            int j = i;
+            while (j < n && raw[j] == raw[i]) {
+                j++;
+            }
+            float value = 1 + (float) Math.log(j - i);
+            indices[size] = raw[i];
+            values[size++] = value;
+            norm += value * value;
+            i = j;
+        }
+        float scale = norm > 0 ? (float) (1 / Math.sqrt(norm)) : 0;
+        for (int i = 0; i < size; i++) {
+            values[i] *= scale;
+        }
+        return new TicketFeatures(bits, indices, values, size);
+    }
+
+    private static void addField(Analyzer analyzer, String text, int seed, int mask, int[][] hashes, int[] count) {
+        int[] previous = { 0 };
+        int[] lastPosition = { -2 };
+        analyzer.analyze(text, (term, position, startOffset, endOffset) -> {
+            int hash = mix(term.hashCode() ^ seed);
+            add(hash & mask, hashes, count);
+            // Only terms next to each other form a pair; a dropped stop word breaks it
+            if (position == lastPosition[0] + 1) {
+                add(mix(previous[0] * BIGRAM_SEED + hash) & mask, hashes, count);
+            }
+            previous[0] = hash;
+            lastPosition[0] = position;
+        });
+    }
+
+    private static void add(int index, int[][] hashes, int[] count) {
+        if (count[0] == hashes[0].length) {
+            hashes[0] = Arrays.copyOf(hashes[0], count[0] * 2);
+        }
+        hashes[0][count[0]++] = index;
+    }
+
+    // Murmur3 finalizer, so similar strings spread over the whole table
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
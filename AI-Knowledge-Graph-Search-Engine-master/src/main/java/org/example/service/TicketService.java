@@ -13,9 +13,13 @@ import java.util.List;
 
 public class TicketService {
     private final TicketRepository ticketRepository;
+    private final CustomFieldRegistry customFields;
+    private final AIService aiService;
 
     public TicketService() {
         this.ticketRepository = new TicketRepository();
+        this.customFields = CustomFieldRegistry.getInstance();
+        this.aiService = new AIService();
     }
 
     public Ticket createTicket(String title, String description, String categoryId, Priority priority,
@@ -33,6 +37,7 @@ public class TicketService {
         ticket.setStatus(TicketStatus.OPEN.name());
         ticket.setCreatedBy(createdBy);
         ticket.setCreatedAt(LocalDateTime.now());
+        aiService.summarize(ticket);
 
         return ticketRepository.save(ticket);
     }
@@ -66,6 +71,22 @@ public class TicketService {
         ValidationUtils.validateNotNull(ticket.getId(), "Ticket ID");
 
         getTicketById(ticket.getId()); // Verify exists
+        ticket.setCustomFields(customFields.canonicalize(ticket.getCustomFields()));
+        ticket.setUpdatedAt(LocalDateTime.now());
+        aiService.summarize(ticket);
+
+        return ticketRepository.save(ticket);
+    }
+
+    // Sets one custom field; a blank value clears it
+    public Ticket setCustomField(String ticketId, String fieldName, String value) {
+        Ticket ticket = getTicketById(ticketId);
+        String canonical = customFields.canonicalize(customFields.requireField(fieldName), value);
+        if (canonical != null) {
+            ticket.getCustomFields().put(fieldName, canonical);
+        } else {
+            ticket.getCustomFields().remove(fieldName);
+        }
         ticket.setUpdatedAt(LocalDateTime.now());
 
         return ticketRepository.save(ticket);
@@ -0,0 +1,479 @@
+package org.example.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Learned triage: a multinomial logistic regression per dimension (category, priority,
+ * severity) over {@link TicketFeatures}. A dimension's weights are one float[] laid out
+ * by feature, its labels side by side, so scoring a ticket reads one short run of floats
+ * per feature.
+ *
+ * Training runs a few passes of stochastic gradient descent. Each pass splits the
+ * examples among the threads, every thread improving its own copy of the weights on its
+ * share, and averages the copies at the end of the pass (iterative parameter mixing), so
+ * the result does not depend on thread timing. Every tenth example is held out to
+ * measure accuracy.
+ *
+ * Saved models are gzipped and keep only the features some ticket had.
+ */
+final class TriageModel {
+    private static final int MAGIC = 0x54524941;
+    private static final int VERSION = 1;
+    private static final long SHUFFLE_SEED = 42;
+
+    private final int bits;
+    private final String[] dimensions;
+    // Per dimension, null when it had too few labelled examples to learn
+    private final String[][] labels;
+    private final float[][] weights;
+    private final float[][] biases;
+
+    static final class Prediction {
+        final String label;
+        final float probability;
+
+        Prediction(String label, float probability) {
+            this.label = label;
+            this.probability = probability;
+        }
+    }
+
+    private TriageModel(int bits, String[] dimensions, String[][] labels, float[][] weights, float[][] biases) {
+        this.bits = bits;
+        this.dimensions = dimensions;
+        this.labels = labels;
+        this.weights = weights;
+        this.biases = biases;
+    }
+
+    int bits() {
+        return bits;
+    }
+
+    // The most likely label of the dimension, or null when the model has not learned it
+    Prediction predict(String dimension, TicketFeatures features) {
+        int d = Arrays.asList(dimensions).indexOf(dimension);
+        if (d < 0 || labels[d] == null || features.bits != bits) {
+            return null;
+        }
+        float[] probabilities = probabilities(weights[d], biases[d], features.indices, features.values,
+                0, features.size);
+        int best = 0;
+        for (int k = 1; k < probabilities.length; k++) {
+            if (probabilities[k] > probabilities[best]) {
+                best = k;
+            }
+        }
+        return new Prediction(labels[d][best], probabilities[best]);
+    }
+
+    private static float[] probabilities(float[] weights, float[] biases, int[] indices, float[] values,
+            int from, int to) {
+        int k = biases.length;
+        float[] scores = biases.clone();
+        for (int i = from; i < to; i++) {
+            int base = indices[i] * k;
+            float value = values[i];
+            for (int label = 0; label < k; label++) {
+                scores[label] += weights[base + label] * value;
+            }
+        }
+        float max = scores[0];
+        for (float score : scores) {
+            max = Math.max(max, score);
+        }
+        float sum = 0;
+        for (int label = 0; label < k; label++) {
+            scores[label] = (float) Math.exp(scores[label] - max);
+            sum += scores[label];
+        }
+        for (int label = 0; label < k; label++) {
+            scores[label] /= sum;
+        }
+        return scores;
+    }
+
+    /**
+     * Labelled feature vectors, packed end to end: the features of example i are
+     * indices[rowStarts[i]...rowStarts[i + 1]] with their values. Labels are ids per
+     * dimension, -1 where the ticket has none.
+     */
+    static final class Examples {
+        private final int bits;
+        private final String[] dimensions;
+        private final List<Map<String, Integer>> labelIds = new ArrayList<>();
+        private final List<List<String>> labelNames = new ArrayList<>();
+        private int[] rowStarts = new int[1024];
+        private int[] indices = new int[16384];
+        private float[] values = new float[16384];
+        private int[][] rowLabels;
+        private int rows;
+
+        Examples(int bits, String... dimensions) {
+            this.bits = bits;
+            this.dimensions = dimensions;
+            this.rowLabels = new int[dimensions.length][1024];
+            for (int d = 0; d < dimensions.length; d++) {
+                labelIds.add(new HashMap<>());
+                labelNames.add(new ArrayList<>());
+            }
+        }
+
+        // One label per dimension, in the order the dimensions were given
+        void add(TicketFeatures features, String... labels) {
+            if (rows + 1 == rowStarts.length) {
+                rowStarts = Arrays.copyOf(rowStarts, rowStarts.length * 2);
+                for (int d = 0; d < dimensions.length; d++) {
+                    rowLabels[d] = Arrays.copyOf(rowLabels[d], rowStarts.length);
+                }
+            }
+            int start = rowStarts[rows];
+            if (start + features.size > indices.length) {
+                int capacity = Math.max(indices.length * 2, start + features.size);
+                indices = Arrays.copyOf(indices, capacity);
+                values = Arrays.copyOf(values, capacity);
+            }
+            System.arraycopy(features.indices, 0, indices, start, features.size);
+            System.arraycopy(features.values, 0, values, start, features.size);
+            for (int d = 0; d < dimensions.length; d++) {
+                String label = d < labels.length ? labels[d] : null;
+                if (label == null) {
+                    rowLabels[d][rows] = -1;
+                } else {
+                    List<String> names = labelNames.get(d);
+                    rowLabels[d][rows] = labelIds.get(d).computeIfAbsent(label, name -> {
+                        names.add(name);
+                        return names.size() - 1;
+                    });
+                }
+            }
+            rowStarts[++rows] = start + features.size;
+        }
+
+        int size() {
+            return rows;
+        }
+    }
+
+    /**
+     * Learns every dimension from the examples. Labels with fewer than minExamples examples
+     * are not learned, nor is a dimension left with fewer than two labels. Counts and
+     * held-out accuracy per dimension go into the report.
+     */
+    static TriageModel train(Examples examples, int epochs, float learningRate, int minExamples, int threads,
+            Map<String, Object> report) throws InterruptedException {
+        int dimensionCount = examples.dimensions.length;
+        int features = 1 << examples.bits;
+        String[][] labels = new String[dimensionCount][];
+        int[][] targets = new int[dimensionCount][];
+        float[][] weights = new float[dimensionCount][];
+        float[][] biases = new float[dimensionCount][];
+        for (int d = 0; d < dimensionCount; d++) {
+            // Renumber the labels that have enough examples, the rest become -1
+            List<String> names = examples.labelNames.get(d);
+            int[] counts = new int[names.size()];
+            for (int row = 0; row < examples.rows; row++) {
+                if (examples.rowLabels[d][row] >= 0) {
+                    counts[examples.rowLabels[d][row]]++;
+                }
+            }
+            int[] renumbered = new int[names.size()];
+            List<String> kept = new ArrayList<>();
+            for (int label = 0; label < names.size(); label++) {
+                renumbered[label] = counts[label] >= minExamples ? kept.size() : -1;
+                if (renumbered[label] >= 0) {
+                    kept.add(names.get(label));
+                }
+            }
+            if (kept.size() < 2) {
+                continue;
+            }
+            targets[d] = new int[examples.rows];
+            for (int row = 0; row < examples.rows; row++) {
+                int label = examples.rowLabels[d][row];
+                targets[d][row] = label >= 0 ? renumbered[label] : -1;
+            }
+            labels[d] = kept.toArray(new String[0]);
+            weights[d] = new float[features * kept.size()];
+            biases[d] = new float[kept.size()];
+        }
+
+        int[] training = new int[examples.rows];
+        int trainingCount = 0;
+        for (int row = 0; row < examples.rows; row++) {
+            if (!isHeldOut(row, examples.rows)) {
+                training[trainingCount++] = row;
+            }
+        }
+        training = Arrays.copyOf(training, trainingCount);
+
+        int workers = Math.max(1, Math.min(threads, trainingCount / 1000 + 1));
+        ExecutorService executor = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "triage-trainer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            Random random = new Random(SHUFFLE_SEED);
+            for (int epoch = 0; epoch < epochs; epoch++) {
+                shuffle(training, random);
+                float rate = learningRate / (1 + epoch);
+                List<Callable<float[][][]>> shards = new ArrayList<>();
+                for (int w = 0; w < workers; w++) {
+                    int from = (int) ((long) training.length * w / workers);
+                    int to = (int) ((long) training.length * (w + 1) / workers);
+                    int[] rows = training;
+                    shards.add(() -> sgd(examples, targets, copy(weights), copy(biases), rows, from, to, rate));
+                }
+                List<Future<float[][][]>> results = executor.invokeAll(shards);
+                average(results, weights, biases);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        TriageModel model = new TriageModel(examples.bits, examples.dimensions, labels, weights, biases);
+        report.put("examples", examples.rows);
+        report.put("threads", workers);
+        for (int d = 0; d < dimensionCount; d++) {
+            Map<String, Object> dimension = new LinkedHashMap<>();
+            if (labels[d] == null) {
+                dimension.put("learned", false);
+            } else {
+                int tested = 0;
+                int correct = 0;
+                for (int row = 0; row < examples.rows; row++) {
+                    if (isHeldOut(row, examples.rows) && targets[d][row] >= 0) {
+                        float[] probabilities = probabilities(weights[d], biases[d], examples.indices,
+                                examples.values, examples.rowStarts[row], examples.rowStarts[row + 1]);
+                        int best = 0;
+                        for (int k = 1; k < probabilities.length; k++) {
+                            if (probabilities[k] > probabilities[best]) {
+                                best = k;
+                            }
+                        }
+                        tested++;
+                        correct += best == targets[d][row] ? 1 : 0;
+                    }
+                }
+                dimension.put("learned", true);
+                dimension.put("labels", Arrays.asList(labels[d]));
+                dimension.put("heldOut", tested);
+                dimension.put("accuracy", tested > 0 ? (double) correct / tested : Double.NaN);
+            }
+            report.put(examples.dimensions[d], dimension);
+        }
+        return model;
+    }
+
+    private static boolean isHeldOut(int row, int rows) {
+        return rows >= 20 && row % 10 == 9;
+    }
+
+    // One pass over rows[from..to) with the thread's own weights, which it returns
+    private static float[][][] sgd(Examples examples, int[][] targets, float[][] weights, float[][] biases,
+            int[] rows, int from, int to, float rate) {
+        for (int r = from; r < to; r++) {
+            int row = rows[r];
+            int start = examples.rowStarts[row];
+            int end = examples.rowStarts[row + 1];
+            for (int d = 0; d < weights.length; d++) {
+                if (weights[d] == null || targets[d][row] < 0) {
+                    continue;
+                }
+                float[] w = weights[d];
+                float[] b = biases[d];
+                int k = b.length;
+                float[] scores = b.clone();
+                for (int i = start; i < end; i++) {
+                    int base = examples.indices[i] * k;
+                    float value = examples.values[i];
+                    for (int label = 0; label < k; label++) {
+                        scores[label] += w[base + label] * value;
+                    }
+                }
+                float max = scores[0];
+                for (float score : scores) {
+                    max = Math.max(max, score);
+                }
+                float sum = 0;
+                for (int label = 0; label < k; label++) {
+                    scores[label] = (float) Math.exp(scores[label] - max);
+                    sum += scores[label];
+                }
+                // Gradient of the log loss: predicted probability minus 1 for the true label
+                for (int label = 0; label < k; label++) {
+                    scores[label] = rate * (scores[label] / sum - (label == targets[d][row] ? 1 : 0));
+                    b[label] -= scores[label];
+                }
+                for (int i = start; i < end; i++) {
+                    int base = examples.indices[i] * k;
+                    float value = examples.values[i];
+                    for (int label = 0; label < k; label++) {
+                        w[base + label] -= scores[label] * value;
+                    }
+                }
+            }
+        }
+        return new float[][][] { weights, biases };
+    }
+
+    private static void average(List<Future<float[][][]>> results, float[][] weights, float[][] biases)
+            throws InterruptedException {
+        for (int d = 0; d < weights.length; d++) {
+            if (weights[d] != null) {
+                Arrays.fill(weights[d], 0);
+                Arrays.fill(biases[d], 0);
+            }
+        }
+        float share = 1f / results.size();
+        for (Future<float[][][]> result : results) {
+            float[][][] copy;
+            try {
+                copy = result.get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Training failed", e.getCause());
+            }
+            for (int d = 0; d < weights.length; d++) {
+                if (weights[d] == null) {
+                    continue;
+                }
+                for (int i = 0; i < weights[d].length; i++) {
+                    weights[d][i] += copy[0][d][i] * share;
+                }
+                for (int i = 0; i < biases[d].length; i++) {
+                    biases[d][i] += copy[1][d][i] * share;
+                }
+            }
+        }
+    }
+
+    private static float[][] copy(float[][] arrays) {
+        float[][] copy = new float[arrays.length][];
+        for (int i = 0; i < arrays.length; i++) {
+            copy[i] = arrays[i] != null ? arrays[i].clone() : null;
+        }
+        return copy;
+    }
+
+    private static void shuffle(int[] rows, Random random) {
+        for (int i = rows.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = rows[i];
+            rows[i] = rows[j];
+            rows[j] = swap;
+        }
+    }
+
+    void save(Path file) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(Files.newOutputStream(temp))))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(bits);
+            out.writeInt(dimensions.length);
+            for (int d = 0; d < dimensions.length; d++) {
+                out.writeUTF(dimensions[d]);
+                out.writeInt(labels[d] != null ? labels[d].length : 0);
+                if (labels[d] == null) {
+                    continue;
+                }
+                int k = labels[d].length;
+                for (int label = 0; label < k; label++) {
+                    out.writeUTF(labels[d][label]);
+                    out.writeFloat(biases[d][label]);
+                }
+                // Features no training ticket had kept their zero weights; only the others are written
+                int features = weights[d].length / k;
+                int used = 0;
+                for (int f = 0; f < features; f++) {
+                    used += isUsed(weights[d], f * k, k) ? 1 : 0;
+                }
+                out.writeInt(used);
+                for (int f = 0; f < features; f++) {
+                    if (isUsed(weights[d], f * k, k)) {
+                        out.writeInt(f);
+                        for (int label = 0; label < k; label++) {
+                            out.writeFloat(weights[d][f * k + label]);
+                        }
+                    }
+                }
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static TriageModel load(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(file))))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("not a triage model: " + file);
+            }
+            int bits = in.readInt();
+            if (bits < 1 || bits > 24) {
+                throw new IOException("invalid feature bits " + bits + " in " + file);
+            }
+            int dimensionCount = in.readInt();
+            String[] dimensions = new String[dimensionCount];
+            String[][] labels = new String[dimensionCount][];
+            float[][] weights = new float[dimensionCount][];
+            float[][] biases = new float[dimensionCount][];
+            for (int d = 0; d < dimensionCount; d++) {
+                dimensions[d] = in.readUTF();
+                int k = in.readInt();
+                if (k == 0) {
+                    continue;
+                }
+                labels[d] = new String[k];
+                biases[d] = new float[k];
+                for (int label = 0; label < k; label++) {
+                    labels[d][label] = in.readUTF();
+                    biases[d][label] = in.readFloat();
+                }
+                weights[d] = new float[(1 << bits) * k];
+                int used = in.readInt();
+                for (int i = 0; i < used; i++) {
+                    int base = in.readInt() * k;
+                    for (int label = 0; label < k; label++) {
+                        weights[d][base + label] = in.readFloat();
+                    }
+                }
+            }
+            return new TriageModel(bits, dimensions, labels, weights, biases);
+        }
+    }
+
+    private static boolean isUsed(float[] weights, int base, int k) {
+        for (int label = 0; label < k; label++) {
+            if (weights[base + label] != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
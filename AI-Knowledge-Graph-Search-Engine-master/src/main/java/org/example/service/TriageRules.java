@@ -0,0 +1,136 @@
+package org.example.service;
+
+import org.example.config.AppConfig;
+import org.example.search.KeywordMatcher;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keyword rules that label a ticket along several dimensions (category, priority, severity)
+ * from its text. Every keyword of every rule goes into one {@link KeywordMatcher}, so a
+ * single pass over the title and the description scores all labels at once.
+ *
+ * A label scores the weights of its distinct keywords found; each dimension takes its
+ * highest scoring label, the one listed first on a tie, and has none when no keyword of
+ * it occurs.
+ */
+class TriageRules {
+    private final List<String> dimensions = new ArrayList<>();
+    // Labels of dimension d are labels[firstLabel[d]] up to labels[firstLabel[d + 1]]
+    private final List<String> labels = new ArrayList<>();
+    private final int[] firstLabel;
+    private final int[] keywordLabels;
+    private final float[] keywordWeights;
+    private final KeywordMatcher matcher;
+
+    /**
+     * Rules by dimension, then label, as keyword lists: "bug*, error*, data loss:2". A keyword
+     * matches whole words, or any word it starts when it ends in '*'; ":weight" overrides
+     * the weight of 1.
+     */
+    TriageRules(Map<String, Map<String, String>> rules) {
+        List<String> keywords = new ArrayList<>();
+        List<Integer> keywordLabelList = new ArrayList<>();
+        List<Float> keywordWeightList = new ArrayList<>();
+        this.firstLabel = new int[rules.size() + 1];
+        for (Map.Entry<String, Map<String, String>> dimension : rules.entrySet()) {
+            firstLabel[dimensions.size()] = labels.size();
+            dimensions.add(dimension.getKey());
+            for (Map.Entry<String, String> label : dimension.getValue().entrySet()) {
+                for (String keyword : label.getValue().split(",")) {
+                    int separator = keyword.lastIndexOf(':');
+                    float weight = 1;
+                    if (separator > 0) {
+                        try {
+                            weight = Float.parseFloat(keyword.substring(separator + 1).trim());
+                            keyword = keyword.substring(0, separator);
+                        } catch (NumberFormatException e) {
+                            System.err.println("❌ Invalid weight in triage rule: " + keyword);
+                        }
+                    }
+                    if (!keyword.isBlank()) {
+                        keywords.add(keyword.trim());
+                        keywordLabelList.add(labels.size());
+                        keywordWeightList.add(weight);
+                    }
+                }
+                labels.add(label.getKey());
+            }
+        }
+        firstLabel[dimensions.size()] = labels.size();
+        this.keywordLabels = new int[keywords.size()];
+        this.keywordWeights = new float[keywords.size()];
+        for (int i = 0; i < keywords.size(); i++) {
+            keywordLabels[i] = keywordLabelList.get(i);
+            keywordWeights[i] = keywordWeightList.get(i);
+        }
+        this.matcher = new KeywordMatcher(keywords);
+    }
+
+    /**
+     * Rules from ai.rules.&lt;dimension&gt; (the labels, in order of precedence) and
+     * ai.rules.&lt;dimension&gt;.&lt;label&gt; (the keywords), shipped in application.properties.
+     * A dimension without them has no rules. Labels outside a dimension's allowed set are
+     * skipped; null allows any.
+     */
+    static TriageRules fromConfig(AppConfig config, List<String> dimensions, Map<String, Set<String>> allowed) {
+        Map<String, Map<String, String>> rules = new LinkedHashMap<>();
+        for (String dimension : dimensions) {
+            String prefix = "ai.rules." + dimension;
+            String configured = config.getProperty(prefix, "");
+            Set<String> valid = allowed.get(dimension);
+            Map<String, String> keywords = new LinkedHashMap<>();
+            for (String label : configured.split(",")) {
+                label = label.trim();
+                if (label.isEmpty()) {
+                    continue;
+                }
+                if (valid != null && !valid.contains(label)) {
+                    System.err.println("❌ Ignoring unknown " + dimension + " in triage rules: " + label);
+                    continue;
+                }
+                keywords.put(label, config.getProperty(prefix + "." + label, ""));
+            }
+            rules.put(dimension, keywords);
+        }
+        return new TriageRules(rules);
+    }
+
+    /**
+     * Label scores of all dimensions for the texts, which are matched one after another
+     * as if separated by a space.
+     */
+    float[] score(CharSequence... texts) {
+        float[] scores = new float[labels.size()];
+        boolean[] seen = new boolean[keywordLabels.length];
+        KeywordMatcher.MatchHandler handler = (keyword, startOffset, endOffset) -> {
+            if (!seen[keyword]) {
+                seen[keyword] = true;
+                scores[keywordLabels[keyword]] += keywordWeights[keyword];
+            }
+        };
+        for (CharSequence text : texts) {
+            matcher.match(text, handler);
+        }
+        return scores;
+    }
+
+    // The dimension's best label for the scores, or null when none scored
+    String best(float[] scores, String dimension) {
+        int d = dimensions.indexOf(dimension);
+        if (d < 0) {
+            return null;
+        }
+        int best = -1;
+        for (int label = firstLabel[d]; label < firstLabel[d + 1]; label++) {
+            if (scores[label] > 0 && (best < 0 || scores[label] > scores[best])) {
+                best = label;
+            }
+        }
+        return best >= 0 ? labels.get(best) : null;
+    }
+}
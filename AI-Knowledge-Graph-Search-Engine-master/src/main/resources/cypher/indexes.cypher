@@ -5,3 +5,9 @@ CREATE INDEX category_id_index FOR (c:Category) ON (c.id);
 CREATE INDEX team_id_index FOR (t:Team) ON (t.id);
 CREATE INDEX kb_id_index FOR (k:KnowledgeBaseArticle) ON (k.id);
 CREATE INDEX sla_id_index FOR (s:SLA) ON (s.id);
+CREATE INDEX ticket_updated_at_index FOR (t:Ticket) ON (t.updatedAt);
+CREATE INDEX ticket_status_index FOR (t:Ticket) ON (t.status);
+CREATE INDEX ticket_priority_index FOR (t:Ticket) ON (t.priority);
+CREATE INDEX ticket_assigned_to_index FOR (t:Ticket) ON (t.assignedTo);
+CREATE INDEX ticket_category_index FOR (t:Ticket) ON (t.category);
+CREATE INDEX ticket_created_at_index FOR (t:Ticket) ON (t.createdAt);